@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Creates the temporary server roots served by the benchmarks.
+ */
+
+final class BenchFiles {
+
+    private static final byte[] FILLER = ("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, " +
+            "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>\n").getBytes(StandardCharsets.US_ASCII);
+
+    private BenchFiles() {
+    }
+
+    /**
+     * Creates a temporary root holding a small {@code index.html} and {@code 404.html}.
+     *
+     * @param prefix the prefix of the directory name
+     * @return the root directory
+     * @throws IOException if the files cannot be written
+     */
+
+    static Path createRoot(String prefix) throws IOException {
+        Path root = Files.createTempDirectory(prefix);
+        Files.write(root.resolve("index.html"), "<html><body><h1>Benchmark</h1></body></html>".getBytes(StandardCharsets.US_ASCII));
+        Files.write(root.resolve("404.html"), "<html><body><h1>404</h1></body></html>".getBytes(StandardCharsets.US_ASCII));
+        return root;
+    }
+
+    /**
+     * Writes an HTML-like file of an exact size.
+     *
+     * @param root the directory
+     * @param name the relative file name, whose parent directories are created
+     * @param size the size in bytes
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+
+    static Path write(Path root, String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i += FILLER.length) {
+            System.arraycopy(FILLER, 0, content, i, Math.min(FILLER.length, size - i));
+        }
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+
+    /**
+     * @param config the configuration to complete
+     * @param root the root directory served
+     * @return the configuration, with the root, default page and 404 page set
+     */
+
+    static ServerConfig configure(ServerConfig config, Path root) {
+        config.setConfig("server.root", root.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        return config;
+    }
+
+    /**
+     * Deletes a directory and everything below it.
+     *
+     * @param root the directory
+     * @throws IOException if a file cannot be listed
+     */
+
+    static void delete(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * The per-request operations of a {@link ClientHandler} connection, measured by {@code bench.ClientHandlerBenchmark}.
+ * <p>
+ * Each operation does what the handler's loop does for one keep-alive request: the head
+ * is parsed by the connection's {@link HttpRequestParser}, answered by a
+ * {@link RequestProcessor} and written with {@link HttpResponse#writeTo}, to a channel
+ * that discards the bytes instead of a socket. The three routes cover the response body
+ * kinds of small files: a cached byte array, a shared memory mapping and the 404 page.
+ * <p>
+ * Access log entries go to a queue of capacity one that drops them once full, so the
+ * operations measure the request path without a log consumer.
+ */
+
+public class ClientHandlerWorkload implements AutoCloseable {
+
+    private static final String ORIGIN = "/127.0.0.1";
+
+    private final Path root;
+    private final ServerSettings settings;
+    private final RequestProcessor processor;
+    private final HttpRequestParser parser;
+    private final DiscardingOutput output = new DiscardingOutput();
+
+    public ClientHandlerWorkload() throws IOException {
+        root = BenchFiles.createRoot("client-handler-bench");
+        BenchFiles.write(root, "assets/main.css", 8 * 1024);
+        BenchFiles.write(root, "assets/app.js", 64 * 1024);
+        settings = ServerSettings.fromConfig(BenchFiles.configure(new ServerConfig(), root));
+        processor = new RequestProcessor(settings, new FileAccessController(settings),
+                new LogQueue(1, LogQueue.OverflowPolicy.DROP_AND_COUNT));
+        parser = HttpRequestParser.fromSettings(settings);
+    }
+
+    /**
+     * @return a request for a file cached as a byte array
+     */
+
+    public Callable<Object> cachedFile() {
+        return serve("/assets/main.css");
+    }
+
+    /**
+     * @return a request for a file served from a memory mapping
+     */
+
+    public Callable<Object> mappedFile() {
+        return serve("/assets/app.js");
+    }
+
+    /**
+     * @return a request for a missing file, answered with the 404 page
+     */
+
+    public Callable<Object> notFound() {
+        return serve("/missing.html");
+    }
+
+    private Callable<Object> serve(String route) {
+        ByteBuffer head = ByteBuffer.wrap(("GET " + route + " HTTP/1.1\r\n" +
+                "Host: localhost:8080\r\n" +
+                "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0\r\n" +
+                "Accept: */*\r\n" +
+                "Connection: keep-alive\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        return () -> {
+            HttpRequest request = parser.parse(head.clear());
+            try (HttpResponse response = processor.process(request, ORIGIN, true)) {
+                response.writeTo(output, output);
+            }
+            return output.written;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        BenchFiles.delete(root);
+    }
+
+    /**
+     * Counts and discards what is written to it, as a stream and as a channel.
+     */
+
+    private static final class DiscardingOutput extends OutputStream implements WritableByteChannel {
+
+        private long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            written += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Compares synchronous stdout tracing of the request path with the asynchronous {@link DiagnosticLog}.
+ * <p>
+ * Worker threads serve a cached file through the {@link RequestProcessor} in a loop,
+ * tracing every request with the three lines the server used to print per request:
+ * the request line and the start and end of the pool task. Three modes are measured:
+ * <ul>
+ *     <li>{@code stdout} - the lines are printed with {@code System.out.println}, as before,
+ *     so the workers serialize on the stream's lock and its write system calls;</li>
+ *     <li>{@code async-debug} - the lines are queued to the DiagnosticLog at the
+ *     {@code debug} level and printed by the log consumer thread;</li>
+ *     <li>{@code async-info} - the default level, where the debug lines are skipped.</li>
+ * </ul>
+ * Standard output is redirected to a temporary file with automatic flushing, like the
+ * console stream, which is the most favourable case for {@code stdout}: a terminal is slower.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class=DiagnosticLogBenchmark}.
+ * The system properties {@code threads} (default 8) and {@code seconds} (default 5, per mode)
+ * can be passed through {@code -Dbench.jvm.args}.
+ */
+
+public class DiagnosticLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("threads", 8);
+        int seconds = Integer.getInteger("seconds", 5);
+
+        Path root = Files.createTempDirectory("diagnostic-bench");
+        Files.write(root.resolve("index.html"), "<html><body><h1>Benchmark</h1></body></html>".getBytes());
+        Files.write(root.resolve("404.html"), "<html><body><h1>404</h1></body></html>".getBytes());
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new FileOutputStream(root.resolve("stdout.txt").toFile()), true));
+
+        console.printf("%d worker threads, %d s per mode%n", threads, seconds);
+        try {
+            for (String mode : new String[] { "stdout", "async-debug", "async-info" }) {
+                double rate = run(mode, root, threads, seconds);
+                console.printf("%-11s: %,.0f requests/s (%d diagnostic messages dropped so far)%n",
+                        mode, rate, DiagnosticLog.getDroppedCount());
+            }
+        } finally {
+            System.out.close();
+            System.setOut(console);
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static double run(String mode, Path root, int threads, int seconds) throws Exception {
+        boolean synchronous = mode.equals("stdout");
+        DiagnosticLog.setLevel(synchronous ? DiagnosticLog.Level.OFF
+                : mode.equals("async-debug") ? DiagnosticLog.Level.DEBUG : DiagnosticLog.Level.INFO);
+
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", root.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        ServerSettings settings = ServerSettings.fromConfig(config);
+
+        LogQueue logQueue = new LogQueue(LogQueue.DEFAULT_CAPACITY, LogQueue.OverflowPolicy.DROP_AND_COUNT);
+        Thread consumer = new Thread(new LogConsumer(logQueue, root.resolve("access.log").toString()), "log-consumer");
+        consumer.start();
+        RequestProcessor processor = new RequestProcessor(settings, new FileAccessController(settings), logQueue);
+        HttpRequest request = HttpRequestParser.fromSettings(settings)
+                .parse(java.nio.ByteBuffer.wrap("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes()));
+
+        LongAdder served = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    Runnable task = () -> { };
+                    while (System.nanoTime() < deadline) {
+                        if (synchronous) {
+                            System.out.println("Executing task: " + task);
+                            System.out.println("Request received: " + request.getMethod() + " " + request.getTarget() + " " + request.getVersion());
+                        } else {
+                            DiagnosticLog.debug("Executing task: %s", task);
+                        }
+                        processor.process(request, "/127.0.0.1", true).close();
+                        if (synchronous) {
+                            System.out.println("Task completed: " + task);
+                        } else {
+                            DiagnosticLog.debug("Task completed: %s", task);
+                        }
+                        served.increment();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            }, "worker-" + t);
+            worker.start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        consumer.interrupt();
+        consumer.join();
+        return served.sum() / elapsed;
+    }
+}
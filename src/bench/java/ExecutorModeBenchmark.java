@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the platform thread pool with virtual threads when many slow clients are connected at once.
+ * <p>
+ * Every client opens a keep-alive connection, sends a request, waits {@code slowMillis}
+ * after the response and then sends a second and final request. With the blocking engine
+ * each waiting connection occupies an executor thread, so a fixed pool serves the clients
+ * in waves while virtual threads serve all of them concurrently.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class=ExecutorModeBenchmark}.
+ * The system properties {@code clients} (default 10000), {@code slowMillis} (default 200),
+ * {@code poolSize} (default 200) and {@code modes} (default {@code platform,virtual}) can be
+ * passed through {@code -Dbench.jvm.args}.
+ * Every client needs two file descriptors, so raise {@code ulimit -n} accordingly.
+ */
+
+public class ExecutorModeBenchmark {
+
+    private static final byte[] FIRST_REQUEST =
+            "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] SECOND_REQUEST =
+            "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("clients", 10000);
+        int slowMillis = Integer.getInteger("slowMillis", 200);
+        int poolSize = Integer.getInteger("poolSize", 200);
+
+        Path root = Files.createTempDirectory("executor-bench");
+        Files.write(root.resolve("index.html"), "<html><body><h1>Benchmark</h1></body></html>".getBytes());
+        Files.write(root.resolve("404.html"), "<html><body><h1>404</h1></body></html>".getBytes());
+
+        System.out.printf("%d clients, %d ms think time between requests, platform pool of %d threads%n",
+                clients, slowMillis, poolSize);
+        try {
+            for (String mode : System.getProperty("modes", "platform,virtual").split(",")) {
+                if (mode.equals("virtual") && ServerExecutors.newVirtualThreadPerTaskExecutor() == null) {
+                    System.out.println("virtual : skipped, virtual threads need Java 21 (use -Pjdk21)");
+                    continue;
+                }
+                run(mode, root, clients, slowMillis, poolSize);
+            }
+        } finally {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        // The blocking accept loop does not always stop on interrupt
+        System.exit(0);
+    }
+
+    private static void run(String mode, Path root, int clients, int slowMillis, int poolSize) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.port", String.valueOf(port));
+        config.setConfig("server.root", root.toString());
+        config.setConfig("server.document.root", root.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        config.setConfig("server.maximum.requests", String.valueOf(poolSize));
+        config.setConfig("server.executor", mode);
+        // Connections are opened long before their first request is sent
+        config.setConfig("server.keepalive.timeout.ms", "120000");
+
+        ExecutorService executor = ServerExecutors.create(config);
+        MainHTTPServerThread server = new MainHTTPServerThread(ServerSettings.fromConfig(config), executor, new FileAccessController(ServerSettings.fromConfig(config)),
+                new LinkedBlockingQueue<>(), new Semaphore(clients));
+        server.start();
+        Thread.sleep(300);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        long[] elapsedNanos = new long[1];
+        int completed = driveSlowClients(port, clients, slowMillis, elapsedNanos);
+
+        server.interrupt();
+        server.join(1000);
+        executor.shutdownNow();
+
+        double seconds = elapsedNanos[0] / 1e9;
+        System.out.printf("%-8s: %d/%d clients served in %.2f s (%.0f req/s), peak platform threads %d%n",
+                mode, completed, clients, seconds, 2 * completed / seconds, threads.getPeakThreadCount());
+    }
+
+    /**
+     * Opens all client connections and drives each through two requests separated by the think time.
+     * <p>
+     * Only the request phase is timed, so the cost of establishing thousands of connections
+     * does not distort the comparison.
+     *
+     * @param elapsedNanos receives the duration of the request phase
+     * @return the number of connections that received both responses
+     */
+
+    private static int driveSlowClients(int port, int clients, int slowMillis, long[] elapsedNanos) throws IOException {
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        SocketChannel[] channels = new SocketChannel[clients];
+        ArrayDeque<SelectionKey> thinking = new ArrayDeque<>();
+        int completed = 0;
+
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; i++) {
+                channels[i] = SocketChannel.open(address);
+                channels[i].configureBlocking(false);
+                channels[i].register(selector, SelectionKey.OP_READ, new ClientState());
+            }
+
+            long start = System.nanoTime();
+            for (SocketChannel channel : channels) {
+                channel.write(ByteBuffer.wrap(FIRST_REQUEST));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+            int open = clients;
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+            while (open > 0 && System.nanoTime() < deadline) {
+                selector.select(Math.max(1, slowMillis / 10));
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    ClientState state = (ClientState) key.attachment();
+                    buffer.clear();
+                    int read;
+                    try {
+                        read = channel.read(buffer);
+                    } catch (IOException e) {
+                        read = -1;
+                    }
+                    if (read == -1) {
+                        if (state.firstResponseDone) {
+                            completed++;
+                        }
+                        key.cancel();
+                        channel.close();
+                        open--;
+                    } else if (!state.firstResponseDone && state.append(buffer.array(), read)) {
+                        state.firstResponseDone = true;
+                        state.resumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(slowMillis);
+                        thinking.add(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+                elapsedNanos[0] = System.nanoTime() - start;
+
+                long now = System.nanoTime();
+                while (!thinking.isEmpty() && ((ClientState) thinking.peek().attachment()).resumeAt <= now) {
+                    SelectionKey key = thinking.poll();
+                    if (key.isValid()) {
+                        ((SocketChannel) key.channel()).write(ByteBuffer.wrap(SECOND_REQUEST));
+                    }
+                }
+            }
+        } finally {
+            for (SocketChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Accumulates the first response of a client until its body is complete.
+     */
+
+    private static final class ClientState {
+        private final StringBuilder response = new StringBuilder();
+        private boolean firstResponseDone;
+        private long resumeAt;
+
+        private boolean append(byte[] bytes, int length) {
+            response.append(new String(bytes, 0, length, StandardCharsets.ISO_8859_1));
+            int headEnd = response.indexOf("\r\n\r\n");
+            if (headEnd < 0) {
+                return false;
+            }
+            int lengthStart = response.indexOf("Content-Length: ");
+            int lengthEnd = response.indexOf("\r\n", lengthStart);
+            int contentLength = Integer.parseInt(response.substring(lengthStart + 16, lengthEnd));
+            return response.length() >= headEnd + 4 + contentLength;
+        }
+    }
+}
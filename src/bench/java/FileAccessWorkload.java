@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * The {@link FileAccessController#readFile(String)} operations measured by {@code bench.FileAccessBenchmark}.
+ * <p>
+ * One workload is shared by all benchmark threads, so they read the same file through the
+ * same controller at once: {@code cachedRead} returns the cached content after checking the
+ * file's attributes, {@code uncachedRead} goes through a controller whose cache is disabled
+ * and takes the file's read lock and reads it from disk on every call.
+ */
+
+public class FileAccessWorkload implements AutoCloseable {
+
+    private static final String ROUTE = "/page.html";
+
+    private final Path root;
+    private final FileAccessController cached;
+    private final FileAccessController uncached;
+
+    public FileAccessWorkload() throws IOException {
+        root = BenchFiles.createRoot("file-access-bench");
+        BenchFiles.write(root, "page.html", 8 * 1024);
+        cached = new FileAccessController(ServerSettings.fromConfig(BenchFiles.configure(new ServerConfig(), root)));
+        ServerConfig uncachedConfig = BenchFiles.configure(new ServerConfig(), root);
+        uncachedConfig.setConfig("server.cache.max.bytes", "0");
+        uncached = new FileAccessController(ServerSettings.fromConfig(uncachedConfig));
+    }
+
+    /**
+     * @return a read through the file cache
+     */
+
+    public Callable<Object> cachedRead() {
+        return () -> cached.readFile(ROUTE);
+    }
+
+    /**
+     * @return a read from disk under the file's read lock
+     */
+
+    public Callable<Object> uncachedRead() {
+        return () -> uncached.readFile(ROUTE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        BenchFiles.delete(root);
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * The access log operation measured by {@code bench.LogConsumerBenchmark}.
+ * <p>
+ * A {@link LogConsumer} with the default batching writes JSON lines to a temporary log
+ * that is rotated every 16 MB, keeping one segment, so long runs do not fill the disk.
+ * The queue blocks when full, so once it has filled up the rate at which request threads
+ * can put entries is the rate at which the consumer writes them.
+ */
+
+public class LogConsumerWorkload implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final long SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    private final Path directory;
+    private final LogQueue queue = new LogQueue(QUEUE_CAPACITY, LogQueue.OverflowPolicy.BLOCK);
+    private final Thread consumer;
+
+    public LogConsumerWorkload() throws IOException {
+        directory = Files.createTempDirectory("log-consumer-bench");
+        Path logFile = directory.resolve("access.log");
+        LogRotator rotator = new LogRotator(logFile, SEGMENT_BYTES, LogRotator.Interval.NONE, false, 1, 0);
+        consumer = new Thread(new LogConsumer(queue, logFile.toString(), LogFormat.JSON,
+                LogConsumer.DEFAULT_BATCH_SIZE, LogConsumer.DEFAULT_FLUSH_MILLIS, rotator), "log-consumer");
+        consumer.start();
+    }
+
+    /**
+     * @return the creation and queueing of an entry, as {@link RequestProcessor} does
+     */
+
+    public Callable<Object> put() {
+        return () -> {
+            queue.put(new LogEntry(LogEntry.currentTimeNanos(), "GET", "/assets/css/main.css", "/127.0.0.1", 200));
+            return queue;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        consumer.interrupt();
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        BenchFiles.delete(directory);
+    }
+}
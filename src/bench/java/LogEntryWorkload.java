@@ -0,0 +1,56 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Callable;
+
+/**
+ * The log entry serialization operations measured by {@code bench.LogEntryBenchmark}.
+ * <p>
+ * The baseline reproduces the original logging path: the request thread formats the
+ * timestamp with a new {@link DateTimeFormatter} and the consumer renders the entry with
+ * {@link String#format} and a multi-line template. The encoder operation renders the same
+ * entry with a reused {@link LogEntryEncoder}, and {@code toJSON} with
+ * {@link LogEntry#toJSON()}, which allocates an encoder and a String per call.
+ */
+
+public class LogEntryWorkload {
+
+    private final LogEntry entry = new LogEntry(LogEntry.currentTimeNanos(), "GET", "/assets/css/main.css", "/127.0.0.1", 200);
+    private final LogEntryEncoder encoder = new LogEntryEncoder();
+
+    /**
+     * @return the original timestamp formatting and String.format rendering
+     */
+
+    public Callable<Object> baselineStringFormat() {
+        return () -> {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"));
+            return String.format(
+                    "{\n"+
+                            "\"timestamp\": \"%s\",\n" +
+                            "\"method\": \"%s\", \n" +
+                            "\"route\": \"%s\", \n" +
+                            "\"origin\": \"%s\", \n" +
+                            "\"httpStatus\": %d\n" +
+                    "}", timestamp, entry.getMethod(), entry.getRoute(), entry.getOrigin(), entry.getHttpStatus());
+        };
+    }
+
+    /**
+     * @return the epoch nanosecond timestamp and streaming encoder
+     */
+
+    public Callable<Object> encoder() {
+        return () -> {
+            LogEntry current = new LogEntry(LogEntry.currentTimeNanos(), entry.getMethod(), entry.getRoute(), entry.getOrigin(), entry.getHttpStatus());
+            return encoder.encode(current);
+        };
+    }
+
+    /**
+     * @return the allocating {@link LogEntry#toJSON()} rendering of a fresh entry
+     */
+
+    public Callable<Object> toJSON() {
+        return () -> new LogEntry(LogEntry.currentTimeNanos(), entry.getMethod(), entry.getRoute(), entry.getOrigin(), entry.getHttpStatus()).toJSON();
+    }
+}
@@ -0,0 +1,90 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares flushing the log after every entry with the batched group-commit LogConsumer.
+ * <p>
+ * Each mode is measured twice. First the queue is fed at a fixed rate, by default
+ * 100k entries per second, and the benchmark reports the largest queue depth seen and how
+ * long the consumer needed after the last entry to catch up. Then a pre-filled queue is
+ * drained as fast as possible to obtain the maximum sustained throughput.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class=LogThroughputBenchmark}.
+ * The system properties {@code rate} (default 100000), {@code seconds} (default 3) and
+ * {@code entries} (default 1000000, for the maximum throughput run) can be passed through
+ * {@code -Dbench.jvm.args}.
+ */
+
+public class LogThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("rate", 100_000);
+        int seconds = Integer.getInteger("seconds", 3);
+        int entries = Integer.getInteger("entries", 1_000_000);
+
+        System.out.printf("Offered load %d entries/s for %d s, maximum throughput over %d entries%n", rate, seconds, entries);
+        run("per-entry", 1, 0, rate, seconds, entries);
+        run("batched", LogConsumer.DEFAULT_BATCH_SIZE, LogConsumer.DEFAULT_FLUSH_MILLIS, rate, seconds, entries);
+    }
+
+    private static void run(String mode, int batchSize, long flushMillis, int rate, int seconds, int entries) throws Exception {
+        Path logFile = Files.createTempFile("log-bench", ".log");
+        try {
+            BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>();
+            Thread consumer = new Thread(new LogConsumer(queue, logFile.toString(), batchSize, flushMillis));
+            consumer.start();
+
+            int total = rate * seconds;
+            int maxDepth = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                long due = start + i * 1_000_000_000L / rate;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                queue.put(entry(i));
+                if ((i & 1023) == 0) {
+                    maxDepth = Math.max(maxDepth, queue.size());
+                }
+            }
+            long produced = System.nanoTime();
+            while (!queue.isEmpty()) {
+                Thread.sleep(1);
+            }
+            long caughtUp = System.nanoTime();
+            consumer.interrupt();
+            consumer.join();
+
+            double offered = total / ((produced - start) / 1e9);
+            System.out.printf("%-9s: offered %.0f entries/s, max queue depth %d, caught up %d ms after the last entry%n",
+                    mode, offered, maxDepth, TimeUnit.NANOSECONDS.toMillis(caughtUp - produced));
+
+            Files.write(logFile, new byte[0]);
+            queue.clear();
+            for (int i = 0; i < entries; i++) {
+                queue.add(entry(i));
+            }
+            consumer = new Thread(new LogConsumer(queue, logFile.toString(), batchSize, flushMillis));
+            start = System.nanoTime();
+            consumer.start();
+            while (!queue.isEmpty()) {
+                Thread.sleep(1);
+            }
+            consumer.interrupt();
+            consumer.join();
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-9s: maximum throughput %.0f entries/s%n", mode, entries / elapsed);
+        } finally {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    private static LogEntry entry(int i) {
+        return new LogEntry(1711627200000000000L, "GET", "/index.html", "/127.0.0.1", i % 10 == 0 ? 404 : 200);
+    }
+}
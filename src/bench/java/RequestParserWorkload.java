@@ -0,0 +1,88 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+/**
+ * The request parsing operations measured by {@code bench.RequestParserBenchmark}.
+ * <p>
+ * The baseline reproduces what ClientHandler used to do: a {@link BufferedReader} over an
+ * {@link InputStreamReader}, a {@link StringBuilder} holding the head, {@code split(" ")}
+ * and {@link URLDecoder#decode}. The parser operations reuse one {@link HttpRequestParser},
+ * as a connection does, and feed the same browser-like head either in one piece or split
+ * over three reads.
+ * <p>
+ * JMH does not accept benchmarks in the default package, so the benchmark class lives in
+ * the {@code bench} package and obtains these operations by name.
+ */
+
+public class RequestParserWorkload {
+
+    private static final String HEAD = "GET /assets/css/main.css HTTP/1.1\r\n" +
+            "Host: localhost:8080\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:124.0) Gecko/20100101 Firefox/124.0\r\n" +
+            "Accept: text/css,*/*;q=0.1\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Referer: http://localhost:8080/index.html\r\n" +
+            "Cache-Control: no-cache\r\n" +
+            "\r\n";
+
+    private final byte[] head = HEAD.getBytes(StandardCharsets.ISO_8859_1);
+    private final HttpRequestParser parser = new HttpRequestParser();
+
+    /**
+     * @return the original BufferedReader and String.split based parsing
+     */
+
+    public Callable<Object> baselineReaderSplit() {
+        return () -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(head)));
+            StringBuilder requestBuilder = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isBlank()) {
+                requestBuilder.append(line).append("\r\n");
+            }
+
+            String[] tokens = requestBuilder.toString().split(" ");
+            return URLDecoder.decode(tokens[1], StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * @return the incremental parser fed the whole head at once
+     */
+
+    public Callable<Object> parserSingleRead() {
+        ByteBuffer whole = ByteBuffer.wrap(head);
+        return () -> {
+            whole.clear();
+            return parser.parse(whole);
+        };
+    }
+
+    /**
+     * @return the incremental parser fed the head in three reads
+     */
+
+    public Callable<Object> parserThreeReads() {
+        int third = head.length / 3;
+        ByteBuffer[] pieces = {
+                ByteBuffer.wrap(head, 0, third).slice(),
+                ByteBuffer.wrap(head, third, third).slice(),
+                ByteBuffer.wrap(head, 2 * third, head.length - 2 * third).slice()
+        };
+        return () -> {
+            Object request = null;
+            for (ByteBuffer piece : pieces) {
+                piece.clear();
+                request = parser.parse(piece);
+            }
+            return request;
+        };
+    }
+}
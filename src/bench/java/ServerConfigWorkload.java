@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+/**
+ * The configuration lookups measured by {@code bench.ServerConfigBenchmark}.
+ * <p>
+ * The configuration is the project's {@code server.config}, read from the working
+ * directory, with the root replaced by a temporary directory. {@code getConfig} and {@code getIntConfig} are the raw lookups;
+ * {@code fromConfig} resolves every key into a {@link ServerSettings} snapshot, as done at
+ * startup and on each reload, and {@code settingsLookup} reads a value from the snapshot,
+ * as request threads do.
+ */
+
+public class ServerConfigWorkload implements AutoCloseable {
+
+    private final Path root;
+    private final ServerConfig config;
+    private final ServerSettings settings;
+
+    public ServerConfigWorkload() throws IOException {
+        root = BenchFiles.createRoot("server-config-bench");
+        config = BenchFiles.configure(ConfigLoader.loadConfig("server.config"), root);
+        settings = ServerSettings.fromConfig(config);
+    }
+
+    /**
+     * @return a string lookup
+     */
+
+    public Callable<Object> getConfig() {
+        return () -> config.getConfig("server.log.format");
+    }
+
+    /**
+     * @return an integer lookup, parsed on every call
+     */
+
+    public Callable<Object> getIntConfig() {
+        return () -> config.getIntConfig("server.keepalive.max.requests");
+    }
+
+    /**
+     * @return the resolution of the whole configuration into settings
+     */
+
+    public Callable<Object> fromConfig() {
+        return () -> ServerSettings.fromConfig(config);
+    }
+
+    /**
+     * @return a lookup in the resolved settings
+     */
+
+    public Callable<Object> settingsLookup() {
+        return () -> settings.getKeepAliveMaxRequests();
+    }
+
+    @Override
+    public void close() throws IOException {
+        BenchFiles.delete(root);
+    }
+}
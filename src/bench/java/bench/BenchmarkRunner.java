@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH benchmarks and saves their results as JSON, named after the current commit.
+ * <p>
+ * The arguments are JMH command line arguments, typically a benchmark name pattern such
+ * as {@code ClientHandlerBenchmark}; without a pattern every benchmark runs. Unless
+ * {@code -rff} is given, the results are written to
+ * {@code target/jmh/<commit>.json}, where the commit is the output of
+ * {@code git describe --always --dirty}, or the value of the {@code bench.label} system
+ * property. Two result files are compared with {@link CompareResults}.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.BenchmarkRunner"}.
+ */
+
+public final class BenchmarkRunner {
+
+    private static final Path RESULTS_DIRECTORY = Paths.get("target", "jmh");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rff")) {
+            Files.createDirectories(RESULTS_DIRECTORY);
+            Path results = RESULTS_DIRECTORY.resolve(label() + ".json");
+            arguments.addAll(List.of("-rf", "json", "-rff", results.toString()));
+            System.out.println("Saving results to " + results);
+        }
+        new Runner(new CommandLineOptions(arguments.toArray(new String[0]))).run();
+    }
+
+    private static String label() throws InterruptedException {
+        String label = System.getProperty("bench.label");
+        if (label != null && !label.isBlank()) {
+            return label;
+        }
+        try {
+            Process git = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+            String output;
+            try (InputStream input = git.getInputStream()) {
+                output = new String(input.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+            if (git.waitFor() == 0 && !output.isEmpty()) {
+                return output;
+            }
+        } catch (IOException e) {
+            // No git: fall through to a time-based name
+        }
+        return "run-" + System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one keep-alive request on a ClientHandler connection: parsing the head,
+ * processing the request and writing the response.
+ * <p>
+ * The measured operations are defined by {@code ClientHandlerWorkload}; parsing alone is
+ * measured by {@link RequestParserBenchmark}.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.BenchmarkRunner ClientHandlerBenchmark"}.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientHandlerBenchmark {
+
+    private Workloads.Workload workload;
+    private Callable<Object> cachedFile;
+    private Callable<Object> mappedFile;
+    private Callable<Object> notFound;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.open("ClientHandlerWorkload");
+        cachedFile = workload.operation("cachedFile");
+        mappedFile = workload.operation("mappedFile");
+        notFound = workload.operation("notFound");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object cachedFile() throws Exception {
+        return cachedFile.call();
+    }
+
+    @Benchmark
+    public Object mappedFile() throws Exception {
+        return mappedFile.call();
+    }
+
+    @Benchmark
+    public Object notFound() throws Exception {
+        return notFound.call();
+    }
+}
@@ -0,0 +1,118 @@
+package bench;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, such as those saved by
+ * {@link BenchmarkRunner} for two commits.
+ * <p>
+ * For every benchmark present in both files, prints the two scores, the relative change
+ * and whether it is an improvement or a regression given the mode: lower is better for
+ * times, higher for throughput. A change is only labelled when the score intervals of
+ * the two runs, score plus or minus its 99.9% error, do not overlap.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.CompareResults target/jmh/<old>.json target/jmh/<new>.json"}.
+ */
+
+public final class CompareResults {
+
+    private static final Pattern BENCHMARK = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern MODE = Pattern.compile("\"mode\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern PARAMS = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)}");
+    private static final Pattern SCORE = Pattern.compile("\"score\"\\s*:\\s*\"?([^,\"\\s]+)");
+    private static final Pattern SCORE_ERROR = Pattern.compile("\"scoreError\"\\s*:\\s*\"?([^,\"\\s]+)");
+    private static final Pattern SCORE_UNIT = Pattern.compile("\"scoreUnit\"\\s*:\\s*\"([^\"]+)\"");
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <old results.json> <new results.json>");
+            System.exit(2);
+        }
+        Map<String, Result> before = read(args[0]);
+        Map<String, Result> after = read(args[1]);
+
+        System.out.printf("%-60s %5s %14s %14s %-10s %8s%n", "Benchmark", "Mode", "Old", "New", "Unit", "Change");
+        for (Map.Entry<String, Result> entry : after.entrySet()) {
+            Result old = before.get(entry.getKey());
+            Result current = entry.getValue();
+            if (old == null) {
+                System.out.printf("%-60s %5s %14s %14.3f %-10s %8s%n", entry.getKey(), current.mode, "-", current.score, current.unit, "new");
+                continue;
+            }
+            double change = (current.score - old.score) / old.score * 100;
+            System.out.printf("%-60s %5s %14.3f %14.3f %-10s %+7.1f%% %s%n", entry.getKey(), current.mode,
+                    old.score, current.score, current.unit, change, verdict(old, current));
+        }
+    }
+
+    private static String verdict(Result old, Result current) {
+        boolean overlap = Math.abs(current.score - old.score) <= safe(old.error) + safe(current.error);
+        if (overlap) {
+            return "";
+        }
+        boolean higherIsBetter = current.mode.equals("thrpt");
+        return (current.score > old.score) == higherIsBetter ? "improvement" : "regression";
+    }
+
+    private static double safe(double error) {
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * Extracts the primary score of each benchmark. JMH writes one object per benchmark,
+     * each starting with its {@code jmhVersion}, so the file is split there.
+     */
+
+    private static Map<String, Result> read(String file) throws Exception {
+        String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String benchmark : json.split("\"jmhVersion\"")) {
+            Matcher name = BENCHMARK.matcher(benchmark);
+            if (!name.find()) {
+                continue;
+            }
+            String key = name.group(1);
+            Matcher params = PARAMS.matcher(benchmark);
+            if (params.find()) {
+                key += " {" + params.group(1).replaceAll("\\s+", "") + "}";
+            }
+            int primary = benchmark.indexOf("\"primaryMetric\"");
+            results.put(key, new Result(find(MODE, benchmark, 0),
+                    Double.parseDouble(find(SCORE, benchmark, primary)),
+                    Double.parseDouble(find(SCORE_ERROR, benchmark, primary)),
+                    find(SCORE_UNIT, benchmark, primary)));
+        }
+        return results;
+    }
+
+    private static String find(Pattern pattern, String text, int from) {
+        Matcher matcher = pattern.matcher(text);
+        if (from < 0 || !matcher.find(from)) {
+            throw new IllegalArgumentException("Not a JMH JSON result: missing " + pattern.pattern());
+        }
+        return matcher.group(1);
+    }
+
+    private static final class Result {
+        private final String mode;
+        private final double score;
+        private final double error;
+        private final String unit;
+
+        private Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+}
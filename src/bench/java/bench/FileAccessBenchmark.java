@@ -0,0 +1,52 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures FileAccessController.readFile with four threads reading the same file at once.
+ * <p>
+ * The state is shared by the benchmark threads, so they contend on the same cache and
+ * file lock. The measured operations are defined by {@code FileAccessWorkload}; change the
+ * thread count with the JMH option {@code -t}.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.BenchmarkRunner FileAccessBenchmark"}.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FileAccessBenchmark {
+
+    private Workloads.Workload workload;
+    private Callable<Object> cachedRead;
+    private Callable<Object> uncachedRead;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.open("FileAccessWorkload");
+        cachedRead = workload.operation("cachedRead");
+        uncachedRead = workload.operation("uncachedRead");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object cachedRead() throws Exception {
+        return cachedRead.call();
+    }
+
+    @Benchmark
+    public Object uncachedRead() throws Exception {
+        return uncachedRead.call();
+    }
+}
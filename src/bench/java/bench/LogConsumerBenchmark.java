@@ -0,0 +1,45 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sustained throughput of the LogConsumer, in entries per second, with two
+ * request threads feeding its blocking queue.
+ * <p>
+ * The measured operation is defined by {@code LogConsumerWorkload}. The warmup fills the
+ * queue, so the measured rate is the rate at which the consumer encodes and writes entries.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.BenchmarkRunner LogConsumerBenchmark"}.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(2)
+@State(Scope.Benchmark)
+public class LogConsumerBenchmark {
+
+    private Workloads.Workload workload;
+    private Callable<Object> put;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.open("LogConsumerWorkload");
+        put = workload.operation("put");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object put() throws Exception {
+        return put.call();
+    }
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the String.format based log entry rendering with the streaming LogEntryEncoder
+ * and with LogEntry.toJSON.
+ * <p>
+ * All operations include creating the timestamp, so the comparison covers the whole
+ * per-request logging cost. The measured operations are defined by {@code LogEntryWorkload}.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="org.openjdk.jmh.Main LogEntryBenchmark -prof gc"}.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogEntryBenchmark {
+
+    private Callable<Object> baselineStringFormat;
+    private Callable<Object> encoder;
+    private Callable<Object> toJSON;
+
+    @Setup
+    public void setUp() throws Exception {
+        baselineStringFormat = Workloads.load("LogEntryWorkload", "baselineStringFormat");
+        encoder = Workloads.load("LogEntryWorkload", "encoder");
+        toJSON = Workloads.load("LogEntryWorkload", "toJSON");
+    }
+
+    @Benchmark
+    public Object baselineStringFormat() throws Exception {
+        return baselineStringFormat.call();
+    }
+
+    @Benchmark
+    public Object encoder() throws Exception {
+        return encoder.call();
+    }
+
+    @Benchmark
+    public Object toJSON() throws Exception {
+        return toJSON.call();
+    }
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the byte-level HttpRequestParser with the original line-based request reading.
+ * <p>
+ * The measured operations are defined by {@code RequestParserWorkload} in the default
+ * package, next to the server classes.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="org.openjdk.jmh.Main RequestParserBenchmark"};
+ * add {@code -prof gc} to the JMH arguments to compare allocation rates.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestParserBenchmark {
+
+    private Callable<Object> baselineReaderSplit;
+    private Callable<Object> parserSingleRead;
+    private Callable<Object> parserThreeReads;
+
+    @Setup
+    public void setUp() throws Exception {
+        baselineReaderSplit = Workloads.load("RequestParserWorkload", "baselineReaderSplit");
+        parserSingleRead = Workloads.load("RequestParserWorkload", "parserSingleRead");
+        parserThreeReads = Workloads.load("RequestParserWorkload", "parserThreeReads");
+    }
+
+    @Benchmark
+    public Object baselineReaderSplit() throws Exception {
+        return baselineReaderSplit.call();
+    }
+
+    @Benchmark
+    public Object parserSingleRead() throws Exception {
+        return parserSingleRead.call();
+    }
+
+    @Benchmark
+    public Object parserThreeReads() throws Exception {
+        return parserThreeReads.call();
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ServerConfig lookups and their resolution into ServerSettings.
+ * <p>
+ * The measured operations are defined by {@code ServerConfigWorkload}, which reads
+ * {@code server.config} from the working directory.
+ * <p>
+ * Run with {@code mvn -Pbench test-compile exec:exec -Dbench.class="bench.BenchmarkRunner ServerConfigBenchmark"}.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ServerConfigBenchmark {
+
+    private Workloads.Workload workload;
+    private Callable<Object> getConfig;
+    private Callable<Object> getIntConfig;
+    private Callable<Object> fromConfig;
+    private Callable<Object> settingsLookup;
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workloads.open("ServerConfigWorkload");
+        getConfig = workload.operation("getConfig");
+        getIntConfig = workload.operation("getIntConfig");
+        fromConfig = workload.operation("fromConfig");
+        settingsLookup = workload.operation("settingsLookup");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object getConfig() throws Exception {
+        return getConfig.call();
+    }
+
+    @Benchmark
+    public Object getIntConfig() throws Exception {
+        return getIntConfig.call();
+    }
+
+    @Benchmark
+    public Object fromConfig() throws Exception {
+        return fromConfig.call();
+    }
+
+    @Benchmark
+    public Object settingsLookup() throws Exception {
+        return settingsLookup.call();
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * Looks up benchmark operations defined next to the server classes.
+ * <p>
+ * The server classes live in the default package, which named packages cannot import,
+ * while JMH requires benchmarks to live in a named package. Workload classes therefore
+ * stay in the default package and expose each operation as a {@link Callable}, which the
+ * benchmarks obtain here once during setup.
+ */
+
+public final class Workloads {
+
+    private Workloads() {
+    }
+
+    /**
+     * Creates a workload and returns one of its operations.
+     *
+     * @param className the name of a default-package class with a public no-argument constructor
+     * @param operation the name of a public method of that class returning a {@link Callable}
+     * @return the operation
+     * @throws ReflectiveOperationException if the class or method cannot be found or invoked
+     */
+
+    public static Callable<Object> load(String className, String operation) throws ReflectiveOperationException {
+        return open(className).operation(operation);
+    }
+
+    /**
+     * Creates a workload whose operations share its state, such as files or threads,
+     * and which must be closed when the benchmark ends.
+     *
+     * @param className the name of a default-package class with a public no-argument constructor
+     * @return the workload
+     * @throws ReflectiveOperationException if the class cannot be found or instantiated
+     */
+
+    public static Workload open(String className) throws ReflectiveOperationException {
+        return new Workload(Class.forName(className).getConstructor().newInstance());
+    }
+
+    /**
+     * A workload instance. Closing it closes the instance if it is {@link AutoCloseable}.
+     */
+
+    public static final class Workload implements AutoCloseable {
+
+        private final Object instance;
+
+        private Workload(Object instance) {
+            this.instance = instance;
+        }
+
+        /**
+         * @param operation the name of a public method of the workload returning a {@link Callable}
+         * @return the operation
+         * @throws ReflectiveOperationException if the method cannot be found or invoked
+         */
+
+        @SuppressWarnings("unchecked")
+        public Callable<Object> operation(String operation) throws ReflectiveOperationException {
+            return (Callable<Object>) instance.getClass().getMethod(operation).invoke(instance);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!(instance instanceof AutoCloseable)) {
+                return;
+            }
+            try {
+                ((AutoCloseable) instance).close();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                throw new IOException("Could not close " + instance.getClass().getName(), e);
+            }
+        }
+    }
+}
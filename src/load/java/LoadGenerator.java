@@ -0,0 +1,468 @@
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LoadGenerator class drives an HTTP server over TCP with a weighted mix of GET requests.
+ * <p>
+ * Every simulated connection runs on its own thread with a blocking socket, sends a
+ * request, reads the whole response and records its status, body size and latency. With
+ * keep-alive the socket is reused until the server closes it, otherwise a new connection
+ * is opened for every request and asks the server to close it with {@code Connection: close}.
+ * <p>
+ * Two arrival models are supported:
+ * <ul>
+ *     <li>closed loop (rate zero) - each connection sends its next request as soon as the
+ *     previous response is complete, so the offered load adapts to the server and the
+ *     result is its maximum throughput for the given concurrency;</li>
+ *     <li>open loop - requests are due at a fixed total rate, spread evenly over the
+ *     connections, whatever the server's speed. Latency is measured from the time a
+ *     request was due rather than sent, so a stalled server is charged for the requests
+ *     that queued up behind the stall instead of hiding them.</li>
+ * </ul>
+ * A request fails when the connection fails or times out, or when the status differs
+ * from the one expected for its route, so a mix may include routes expected to be 404.
+ */
+
+public class LoadGenerator {
+
+    private static final int SOCKET_TIMEOUT_MILLIS = 10_000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * A route of the request mix.
+     */
+
+    public static final class Route {
+        private final String path;
+        private final double weight;
+        private final int expectedStatus;
+
+        /**
+         * @param path the request target, such as {@code /index.html}
+         * @param weight the relative share of requests sent to this route
+         * @param expectedStatus the status the server must answer with
+         */
+
+        public Route(String path, double weight, int expectedStatus) {
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Route weight must be positive: " + path);
+            }
+            this.path = path;
+            this.weight = weight;
+            this.expectedStatus = expectedStatus;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public int getExpectedStatus() {
+            return expectedStatus;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final boolean keepAlive;
+    private final double rate;
+    private final Route[] routes;
+    private final double[] cumulativeWeights;
+    private final byte[][] requests;
+
+    /**
+     * Constructs a new LoadGenerator.
+     *
+     * @param address the server address
+     * @param connections the number of concurrent connections
+     * @param keepAlive whether connections are reused for several requests
+     * @param rate the total number of requests per second in an open loop, or zero for a closed loop
+     * @param routes the request mix
+     * @throws IllegalArgumentException if there are no routes or connections, or the rate is negative
+     */
+
+    public LoadGenerator(InetSocketAddress address, int connections, boolean keepAlive, double rate, List<Route> routes) {
+        if (connections < 1 || routes.isEmpty() || !(rate >= 0)) {
+            throw new IllegalArgumentException("A load needs connections, routes and a non-negative rate");
+        }
+        this.address = address;
+        this.connections = connections;
+        this.keepAlive = keepAlive;
+        this.rate = rate;
+        this.routes = routes.toArray(new Route[0]);
+        this.cumulativeWeights = new double[this.routes.length];
+        this.requests = new byte[this.routes.length][];
+        double total = 0;
+        for (int i = 0; i < this.routes.length; i++) {
+            total += this.routes[i].weight;
+            cumulativeWeights[i] = total;
+            requests[i] = ("GET " + this.routes[i].path + " HTTP/1.1\r\n" +
+                    "Host: " + address.getHostString() + ":" + address.getPort() + "\r\n" +
+                    "User-Agent: LoadGenerator\r\n" +
+                    (keepAlive ? "" : "Connection: close\r\n") +
+                    "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Sends requests from all connections for the given time and waits for the last responses.
+     *
+     * @param durationNanos how long requests are sent
+     * @return the counts and latencies of the requests sent
+     * @throws InterruptedException if interrupted while waiting for the connections
+     */
+
+    public Result run(long durationNanos) throws InterruptedException {
+        Result result = new Result(connections, keepAlive, rate);
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            // Open-loop connections are staggered so that the requests are spread evenly in time
+            long interval = rate > 0 ? (long) (1e9 * connections / rate) : 0;
+            long first = start + interval * i / connections;
+            long seed = 31L * i + start;
+            Thread thread = new Thread(() -> drive(result, first, interval, deadline, new SplittableRandom(seed)), "load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void drive(Result result, long first, long interval, long deadline, SplittableRandom random) {
+        Connection connection = null;
+        long next = first;
+        try {
+            while (true) {
+                long intended;
+                if (interval > 0) {
+                    if (next >= deadline) {
+                        break;
+                    }
+                    long wait;
+                    while ((wait = next - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    intended = next;
+                    next += interval;
+                } else {
+                    intended = System.nanoTime();
+                    if (intended >= deadline) {
+                        break;
+                    }
+                }
+
+                int route = pick(random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1]);
+                try {
+                    if (connection == null) {
+                        connection = new Connection(address);
+                    }
+                    int status = connection.exchange(requests[route]);
+                    result.record(status, status == routes[route].expectedStatus, connection.bodyBytes, System.nanoTime() - intended);
+                    if (!keepAlive || connection.closed) {
+                        connection.close();
+                        connection = null;
+                    }
+                } catch (IOException e) {
+                    result.recordFailure(e);
+                    close(connection);
+                    connection = null;
+                }
+            }
+        } finally {
+            close(connection);
+        }
+    }
+
+    private int pick(double point) {
+        int index = Arrays.binarySearch(cumulativeWeights, point);
+        return Math.min(index >= 0 ? index + 1 : -index - 1, routes.length - 1);
+    }
+
+    private static void close(Connection connection) {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * A client connection reading responses with a minimal HTTP/1.1 parser.
+     */
+
+    private static final class Connection {
+        private final Socket socket;
+        private final InputStream input;
+        private final OutputStream output;
+        private final byte[] discard = new byte[BUFFER_BYTES];
+        private final StringBuilder line = new StringBuilder();
+        private long bodyBytes;
+        private boolean closed;
+
+        private Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+                socket.connect(address, SOCKET_TIMEOUT_MILLIS);
+                input = new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES);
+                output = socket.getOutputStream();
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Sends a request and reads its response, discarding the body.
+         *
+         * @return the response status
+         */
+
+        private int exchange(byte[] request) throws IOException {
+            output.write(request);
+            output.flush();
+
+            String statusLine = readLine();
+            if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+                throw new IOException("Malformed status line: " + statusLine);
+            }
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            long contentLength = -1;
+            boolean chunked = false;
+            closed = statusLine.startsWith("HTTP/1.0");
+            String header;
+            while (!(header = readLine()).isEmpty()) {
+                int colon = header.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = header.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                } else if (name.equals("connection")) {
+                    closed = value.equalsIgnoreCase("close");
+                }
+            }
+
+            if (chunked) {
+                bodyBytes = readChunks();
+            } else if (contentLength >= 0) {
+                skip(contentLength);
+                bodyBytes = contentLength;
+            } else if (status == 204 || status == 304) {
+                bodyBytes = 0;
+            } else {
+                bodyBytes = skipToEnd();
+                closed = true;
+            }
+            return status;
+        }
+
+        private long readChunks() throws IOException {
+            long total = 0;
+            while (true) {
+                String sizeLine = readLine();
+                int extension = sizeLine.indexOf(';');
+                long size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+                if (size == 0) {
+                    while (!readLine().isEmpty()) {
+                        // Trailer fields are ignored
+                    }
+                    return total;
+                }
+                skip(size);
+                total += size;
+                readLine();
+            }
+        }
+
+        private void skip(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = input.read(discard, 0, (int) Math.min(discard.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Connection closed in the middle of a body");
+                }
+                remaining -= read;
+            }
+        }
+
+        private long skipToEnd() throws IOException {
+            long total = 0;
+            int read;
+            while ((read = input.read(discard)) >= 0) {
+                total += read;
+            }
+            return total;
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            int b;
+            while ((b = input.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    /**
+     * The outcome of a run. Counts are updated concurrently by the connections while it runs.
+     */
+
+    public static final class Result {
+        private final int connections;
+        private final boolean keepAlive;
+        private final double rate;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long elapsedNanos;
+
+        private Result(int connections, boolean keepAlive, double rate) {
+            this.connections = connections;
+            this.keepAlive = keepAlive;
+            this.rate = rate;
+        }
+
+        private void record(int status, boolean expected, long bodyBytes, long latencyNanos) {
+            requests.increment();
+            if (!expected) {
+                errors.increment();
+            }
+            bytes.add(bodyBytes);
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            latency.record(latencyNanos);
+        }
+
+        private void recordFailure(IOException e) {
+            requests.increment();
+            errors.increment();
+            failures.computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+        }
+
+        /**
+         * @return the number of requests sent, including failed ones
+         */
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * @return the number of requests that failed or were answered with an unexpected status
+         */
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return the share of failed requests, between 0 and 1
+         */
+
+        public double getErrorRate() {
+            long total = getRequests();
+            return total == 0 ? 0 : (double) getErrors() / total;
+        }
+
+        /**
+         * @return the number of requests per second over the run
+         */
+
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : getRequests() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the latencies of the completed requests
+         */
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the number of responses by status
+         */
+
+        public Map<Integer, Long> getStatusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+
+        /**
+         * Prints the throughput, error rate and latency percentiles.
+         *
+         * @param name the name of the scenario
+         * @param out the stream to print to
+         */
+
+        public void print(String name, PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf("%s: %d connections, %s, %s, %.1f s%n", name, connections,
+                    keepAlive ? "keep-alive" : "one request per connection",
+                    rate > 0 ? String.format(Locale.ROOT, "open loop at %.0f requests/s", rate) : "closed loop", seconds);
+            out.printf("  throughput  %,.0f requests/s, %,.1f MB/s of bodies%n", getThroughput(), bytes.sum() / seconds / 1e6);
+            out.printf("  errors      %d of %d (%.3f%%)%s%n", getErrors(), getRequests(), getErrorRate() * 100,
+                    failures.isEmpty() ? "" : " " + failureCounts());
+            out.printf("  latency     p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n",
+                    millis(50), millis(90), millis(99), millis(99.9), millis(100));
+            out.printf("  statuses    %s%n", getStatusCounts());
+        }
+
+        private Map<String, Long> failureCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            failures.forEach((type, count) -> counts.put(type, count.sum()));
+            return counts;
+        }
+
+        private String millis(double percentile) {
+            return String.format(Locale.ROOT, "%.3f ms", latency.getValueAtPercentile(percentile) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the end-to-end throughput suite: starts the server in-process against a generated
+ * {@code html} tree and drives it over loopback with the {@link LoadGenerator}.
+ * <p>
+ * The generated tree holds pages and assets of 1 to 64 KB, served from the file cache or
+ * from memory mappings, and large files above the streaming threshold. The request mix
+ * picks among three groups with the weights of the {@code mix} property: {@code pages},
+ * {@code missing} routes answered with the 404 page and {@code large} files.
+ * <p>
+ * Each scenario of the {@code scenarios} property is named {@code <closed|open>-<keepalive|close>}
+ * and runs after a warmup of the same load. The suite fails, with exit status 1, when a
+ * scenario completes no request or its error rate exceeds {@code maxErrorRate}.
+ * <p>
+ * Run with {@code mvn -Pload verify}. The system properties {@code connections} (default 32),
+ * {@code seconds} (default 10, per scenario), {@code warmup} (default 2),
+ * {@code scenarios} (default {@code closed-keepalive,closed-close,open-keepalive}),
+ * {@code rate} (default 2000, total requests per second of open-loop scenarios),
+ * {@code mix} (default {@code pages:85,missing:10,large:5}), {@code engine} (default
+ * {@code blocking}) and {@code maxErrorRate} (default 0.01) can be passed through
+ * {@code -Dload.jvm.args}, as can any {@code server.*} key, which overrides the server's
+ * configuration.
+ */
+
+public class LoadTest {
+
+    private static final int PAGES = 40;
+    private static final int LARGE_FILES = 2;
+    private static final int LARGE_FILE_BYTES = 4 * 1024 * 1024;
+    private static final int MISSING_ROUTES = 50;
+    private static final byte[] FILLER = ("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, " +
+            "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua.</p>\n").getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("connections", 32);
+        int seconds = Integer.getInteger("seconds", 10);
+        int warmup = Integer.getInteger("warmup", 2);
+        double rate = Double.parseDouble(System.getProperty("rate", "2000"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("maxErrorRate", "0.01"));
+        String[] scenarios = System.getProperty("scenarios", "closed-keepalive,closed-close,open-keepalive").split(",");
+        Map<String, Double> mix = parseMix(System.getProperty("mix", "pages:85,missing:10,large:5"));
+
+        Path root = Files.createTempDirectory("load-test");
+        boolean passed = true;
+        try {
+            List<LoadGenerator.Route> routes = generateTree(root, mix);
+            ServerConfig config = configure(root, connections);
+            passed = run(config, root, routes, scenarios, connections, seconds, warmup, rate, maxErrorRate);
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.println(passed ? "Load test passed" : "Load test FAILED");
+        // The blocking accept loop does not always stop on interrupt
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(ServerConfig config, Path root, List<LoadGenerator.Route> routes, String[] scenarios,
+                               int connections, int seconds, int warmup, double rate, double maxErrorRate) throws Exception {
+        ServerSettings settings = ServerSettings.fromConfig(config);
+        LogQueue logQueue = LogQueue.fromConfig(config);
+        Thread logConsumer = new Thread(new LogConsumer(logQueue, root.resolve("access.log").toString()), "log-consumer");
+        logConsumer.start();
+        ServerMetrics metrics = new ServerMetrics();
+        ExecutorService threadPool = ServerExecutors.create(config);
+        ResizableSemaphore requestLimiter = new ResizableSemaphore(settings.getMaxTotalRequests());
+        FileAccessController fileAccessController = new FileAccessController(settings, metrics);
+        Thread server = "nio".equalsIgnoreCase(config.getConfig("server.engine"))
+                ? new NioHTTPServerThread(() -> settings, threadPool, fileAccessController, logQueue, requestLimiter, metrics)
+                : new MainHTTPServerThread(() -> settings, threadPool, fileAccessController, logQueue, requestLimiter, metrics);
+        server.start();
+
+        boolean passed = true;
+        try {
+            InetSocketAddress address = new InetSocketAddress("localhost", settings.getPort());
+            awaitListening(address);
+            for (String scenario : scenarios) {
+                String[] parts = scenario.trim().split("-");
+                if (parts.length != 2 || !parts[0].matches("closed|open") || !parts[1].matches("keepalive|close")) {
+                    throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected <closed|open>-<keepalive|close>");
+                }
+                LoadGenerator generator = new LoadGenerator(address, connections, parts[1].equals("keepalive"),
+                        parts[0].equals("open") ? rate : 0, routes);
+                if (warmup > 0) {
+                    generator.run(TimeUnit.SECONDS.toNanos(warmup));
+                }
+                LoadGenerator.Result result = generator.run(TimeUnit.SECONDS.toNanos(seconds));
+                result.print(scenario.trim(), System.out);
+                if (result.getRequests() == 0 || result.getErrorRate() > maxErrorRate) {
+                    System.out.printf("  FAILED: error rate above %.3f%%%n", maxErrorRate * 100);
+                    passed = false;
+                }
+            }
+            System.out.printf("server: p99 %.3f ms over %d requests, warmups included%n",
+                    metrics.getLatency(ServerMetrics.Phase.TOTAL).getValueAtPercentile(99) / 1e6,
+                    metrics.getLatency(ServerMetrics.Phase.TOTAL).getCount());
+        } finally {
+            server.interrupt();
+            server.join(1000);
+            threadPool.shutdownNow();
+            logConsumer.interrupt();
+            logConsumer.join(1000);
+        }
+        return passed;
+    }
+
+    /**
+     * Builds the server configuration: defaults, a free port, the generated root and
+     * enough threads and permits for every connection, then any {@code server.*} system property.
+     */
+
+    private static ServerConfig configure(Path root, int connections) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.port", String.valueOf(port));
+        config.setConfig("server.root", root.toString());
+        config.setConfig("server.document.root", root.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        config.setConfig("server.maximum.requests", String.valueOf(connections));
+        config.setConfig("server.max.total.requests", String.valueOf(2 * connections));
+        config.setConfig("server.engine", System.getProperty("engine", "blocking"));
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("server.")) {
+                config.setConfig(key, System.getProperty(key));
+            }
+        }
+        return config;
+    }
+
+    private static void awaitListening(InetSocketAddress address) throws InterruptedException, IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                new Socket(address.getHostString(), address.getPort()).close();
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * Writes the pages, large files and 404 page, and returns the routes of the mix.
+     */
+
+    private static List<LoadGenerator.Route> generateTree(Path root, Map<String, Double> mix) throws IOException {
+        write(root.resolve("404.html"), 512);
+        List<String> pages = new ArrayList<>();
+        pages.add("/index.html");
+        write(root.resolve("index.html"), 2 * 1024);
+        for (int i = 0; i < PAGES; i++) {
+            // 1 KB to 64 KB, so pages are served from both the file cache and memory mappings
+            String route = (i % 4 == 0 ? "/assets/style-" + i + ".css" : "/pages/page-" + i + ".html");
+            write(root.resolve(route.substring(1)), 1024 << (i % 7));
+            pages.add(route);
+        }
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < LARGE_FILES; i++) {
+            String route = "/downloads/archive-" + i + ".bin";
+            write(root.resolve(route.substring(1)), LARGE_FILE_BYTES);
+            large.add(route);
+        }
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < MISSING_ROUTES; i++) {
+            missing.add("/pages/missing-" + i + ".html");
+        }
+
+        Map<String, List<String>> groups = Map.of("pages", pages, "missing", missing, "large", large);
+        List<LoadGenerator.Route> routes = new ArrayList<>();
+        for (Map.Entry<String, Double> weight : mix.entrySet()) {
+            List<String> group = groups.get(weight.getKey());
+            if (group == null) {
+                throw new IllegalArgumentException("Unknown mix group " + weight.getKey() + ", expected pages, missing or large");
+            }
+            for (String route : group) {
+                routes.add(new LoadGenerator.Route(route, weight.getValue() / group.size(),
+                        weight.getKey().equals("missing") ? 404 : 200));
+            }
+        }
+        return routes;
+    }
+
+    private static Map<String, Double> parseMix(String value) {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] groupAndWeight = part.trim().split(":");
+            if (groupAndWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry " + part + ", expected <group>:<weight>");
+            }
+            double weight = Double.parseDouble(groupAndWeight[1]);
+            if (weight > 0) {
+                mix.put(groupAndWeight[0].trim(), weight);
+            }
+        }
+        return mix;
+    }
+
+    private static void write(Path file, int size) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i += FILLER.length) {
+            System.arraycopy(FILLER, 0, content, i, Math.min(FILLER.length, size - i));
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Locale;
+
+/**
+ * The AcceptEncoding class evaluates the {@code Accept-Encoding} header of a request.
+ * <p>
+ * The header lists content codings with optional quality values, such as
+ * {@code gzip, deflate, br;q=0.8}. A coding is acceptable when it is listed with a
+ * non-zero quality, or when it is not listed and {@code *} is, with a non-zero quality.
+ * The server picks among acceptable codings by its own preference rather than by
+ * quality, so only zero and non-zero qualities are told apart.
+ */
+
+public final class AcceptEncoding {
+
+    private AcceptEncoding() {
+    }
+
+    /**
+     * Tells whether a content coding is acceptable to the client.
+     *
+     * @param header the value of the Accept-Encoding header, or null if the request has none
+     * @param coding the content coding in lower case, such as {@code gzip}
+     * @return true if the header accepts the coding
+     */
+
+    public static boolean accepts(String header, String coding) {
+        if (header == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String element : header.split(",")) {
+            int semicolon = element.indexOf(';');
+            String name = (semicolon < 0 ? element : element.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+            boolean accepted = semicolon < 0 || quality(element.substring(semicolon + 1)) > 0;
+            if (name.equals(coding) || name.equals("x-" + coding)) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Returns the quality of the parameters of a coding, one when there is none or it is malformed.
+     */
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(parameter.substring(equals + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The BinaryLogConverter class is a command line tool that turns a binary access log into JSON lines.
+ * <p>
+ * Usage: {@code java -cp target/classes BinaryLogConverter <binary log> [<output file>]}.
+ * Without an output file the JSON lines are written to standard output. Rotated segments
+ * compressed with gzip, named {@code *.gz}, are read directly. Each line has
+ * the same fields as a log written with {@code server.log.format=json}.
+ */
+
+public class BinaryLogConverter {
+
+    private BinaryLogConverter() {
+    }
+
+    /**
+     * Converts the file named by the first argument.
+     *
+     * @param args the binary log path and an optional output path
+     */
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BinaryLogConverter <binary log> [<output file>]");
+            System.exit(2);
+        }
+
+        try (InputStream file = new FileInputStream(args[0]);
+             BinaryLogReader reader = new BinaryLogReader(args[0].endsWith(".gz") ? new GZIPInputStream(file) : file);
+             OutputStream output = args.length == 2 ? new FileOutputStream(args[1]) : System.out) {
+            long entries = convert(reader, output);
+            System.err.println("Converted " + entries + " entries.");
+        } catch (IOException e) {
+            System.err.println("Error converting the log file: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Streams every entry of a binary log to an output as JSON lines.
+     *
+     * @param reader the binary log
+     * @param output the destination, flushed but not closed
+     * @return the number of entries converted
+     * @throws IOException if reading or writing fails
+     */
+
+    public static long convert(BinaryLogReader reader, OutputStream output) throws IOException {
+        LogEntryEncoder encoder = new LogEntryEncoder();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        long entries = 0;
+        LogEntry entry;
+        while ((entry = reader.read()) != null) {
+            int length = encoder.encode(entry);
+            writer.write(encoder.getBuffer(), 0, length);
+            writer.write('\n');
+            entries++;
+        }
+        writer.flush();
+        return entries;
+    }
+}
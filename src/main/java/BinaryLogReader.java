@@ -0,0 +1,109 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BinaryLogReader class reads access log entries written by a {@link BinaryLogWriter}.
+ * <p>
+ * Entries are returned one at a time, so files of any size are streamed. A record cut
+ * short at the end of the file, as left by a crash, ends the stream like a regular end
+ * of file.
+ */
+
+public class BinaryLogReader implements Closeable {
+
+    private final DataInputStream input;
+    private final List<String> dictionary = new ArrayList<>();
+
+    /**
+     * Constructs a new BinaryLogReader.
+     *
+     * @param input the stream to read from, owned by the new reader
+     */
+
+    public BinaryLogReader(InputStream input) {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+    }
+
+    /**
+     * Reads the next entry.
+     *
+     * @return the entry, or null at the end of the log
+     * @throws IOException if reading fails or the data is not a binary access log
+     */
+
+    public LogEntry read() throws IOException {
+        try {
+            while (true) {
+                int tag = input.read();
+                if (tag == -1) {
+                    return null;
+                }
+                if (tag == BinaryLogWriter.MAGIC[0]) {
+                    readHeader();
+                } else if (tag == BinaryLogWriter.TAG_STRING) {
+                    byte[] bytes = new byte[readVarint()];
+                    input.readFully(bytes);
+                    dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                } else if (tag == BinaryLogWriter.TAG_ENTRY) {
+                    long timestampNanos = input.readLong();
+                    int status = input.readUnsignedShort();
+                    String method = lookup(readVarint());
+                    String route = lookup(readVarint());
+                    String origin = lookup(readVarint());
+                    return new LogEntry(timestampNanos, method, route, origin, status);
+                } else {
+                    throw new IOException("Not a binary access log: unexpected record tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readHeader() throws IOException {
+        for (int i = 1; i < BinaryLogWriter.MAGIC.length; i++) {
+            if (input.readUnsignedByte() != BinaryLogWriter.MAGIC[i]) {
+                throw new IOException("Not a binary access log: bad header");
+            }
+        }
+        int version = input.readUnsignedByte();
+        if (version != BinaryLogWriter.VERSION) {
+            throw new IOException("Unsupported binary access log version " + version);
+        }
+        dictionary.clear();
+    }
+
+    private String lookup(int id) throws IOException {
+        if (id == 0) {
+            return null;
+        }
+        if (id > dictionary.size()) {
+            throw new IOException("Binary access log refers to undefined string " + id);
+        }
+        return dictionary.get(id - 1);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary access log");
+    }
+}
@@ -0,0 +1,78 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BufferPool class recycles direct byte buffers of a fixed size.
+ * <p>
+ * Direct buffers are expensive to allocate and are only released by the garbage
+ * collector, but they can be written to a socket channel without an intermediate copy.
+ * Keeping a bounded number of them for reuse avoids both costs on every request.
+ * A buffer is handed out in write mode, cleared; when the pool is empty a new buffer is
+ * allocated, and buffers returned to a full pool are simply dropped.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public class BufferPool {
+
+    private final int bufferBytes;
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * Constructs a new BufferPool.
+     *
+     * @param bufferBytes the capacity of every buffer
+     * @param maxPooled the maximum number of idle buffers kept for reuse
+     */
+
+    public BufferPool(int bufferBytes, int maxPooled) {
+        this.bufferBytes = bufferBytes;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating one if none is idle.
+     *
+     * @return a cleared direct buffer of {@link #getBufferBytes()} capacity
+     */
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            allocations.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferBytes);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer a buffer obtained from {@link #acquire()}
+     */
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferBytes && buffer.isDirect()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * @return the capacity of the pooled buffers
+     */
+
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * @return the number of buffers allocated because the pool was empty
+     */
+
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+}
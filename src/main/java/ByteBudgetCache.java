@@ -0,0 +1,272 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * The ByteBudgetCache class is the least recently used cache the file caches are built on.
+ * <p>
+ * Values are weighed in bytes by a function given at construction, and the total weight
+ * of the cached values is bounded by a budget. When a new value does not fit, the least
+ * recently used values are evicted until it does. Values heavier than the whole budget
+ * are never cached, and a budget of zero disables the cache.
+ * <p>
+ * A lookup passes a predicate that tells whether the cached value is still valid, such
+ * as a check of the file's size and modification time; an invalid value is removed and
+ * the lookup counts as a miss. Every value leaving the cache, whether evicted, replaced,
+ * invalidated or found stale, is handed to an optional removal hook.
+ * <p>
+ * Lookups take no lock, so that requests for popular files do not queue behind one
+ * another: values are held in a {@link ConcurrentHashMap} and a hit only sets the
+ * value's reference bit. Recency is approximated with the CLOCK algorithm. Values sit
+ * in insertion order, and eviction, which happens under a lock on insertion only, gives
+ * every referenced value a second chance, clearing its bit and moving it to the back,
+ * before evicting the first unreferenced one.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <V> the type of the cached values
+ * @see FileCache
+ * @see MappedFileCache
+ * @see CompressedFileCache
+ */
+
+public class ByteBudgetCache<V> {
+
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> onRemoval;
+    private final ConcurrentHashMap<String, Node<V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Guarded by evictionLock; may still hold nodes already removed from the entries
+    private final ArrayDeque<Node<V>> clock = new ArrayDeque<>();
+    private final AtomicLong currentBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new ByteBudgetCache without a removal hook.
+     *
+     * @param maxBytes the maximum total weight of the cached values, zero disables caching
+     * @param weigher the weight of a value in bytes, which must not change while it is cached
+     * @throws IllegalArgumentException if the budget is negative
+     */
+
+    public ByteBudgetCache(long maxBytes, ToLongFunction<V> weigher) {
+        this(maxBytes, weigher, value -> { });
+    }
+
+    /**
+     * Constructs a new ByteBudgetCache.
+     *
+     * @param maxBytes the maximum total weight of the cached values, zero disables caching
+     * @param weigher the weight of a value in bytes, which must not change while it is cached
+     * @param onRemoval called with every value that leaves the cache, for instance to close it
+     * @throws IllegalArgumentException if the budget is negative
+     */
+
+    public ByteBudgetCache(long maxBytes, ToLongFunction<V> weigher, Consumer<V> onRemoval) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.onRemoval = onRemoval;
+    }
+
+    /**
+     * Returns the cached value for a key if it is still valid.
+     *
+     * @param key the key of the value
+     * @param valid tells whether the cached value is still up to date
+     * @return the cached value, or null if it is absent or invalid
+     */
+
+    public V get(String key, Predicate<V> valid) {
+        Node<V> node = entries.get(key);
+        if (node != null && valid.test(node.value)) {
+            // Only write when needed, so that hits on a popular value share its cache line
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            hits.increment();
+            return node.value;
+        }
+        misses.increment();
+        if (node != null && unlink(node)) {
+            removed(node.value);
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value, evicting least recently used values if needed.
+     *
+     * @param key the key of the value
+     * @param value the value, which is not cached if it weighs more than the budget
+     */
+
+    public void put(String key, V value) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxBytes) {
+            return;
+        }
+
+        Node<V> node = new Node<>(key, value, weight);
+        List<V> removedValues = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            Node<V> previous = entries.put(key, node);
+            currentBytes.addAndGet(weight);
+            if (previous != null) {
+                currentBytes.addAndGet(-previous.weight);
+                removedValues.add(previous.value);
+            }
+            clock.addLast(node);
+
+            while (currentBytes.get() > maxBytes) {
+                Node<V> candidate = clock.pollFirst();
+                if (candidate == null) {
+                    break;
+                }
+                if (entries.get(candidate.key) != candidate) {
+                    continue;
+                }
+                if (candidate == node || candidate.referenced) {
+                    candidate.referenced = false;
+                    clock.addLast(candidate);
+                    continue;
+                }
+                if (unlink(candidate)) {
+                    evictions.increment();
+                    removedValues.add(candidate.value);
+                }
+            }
+
+            // Drop the nodes of values removed by lookups and invalidations
+            if (clock.size() > 2 * entries.size() + 16) {
+                clock.removeIf(dead -> entries.get(dead.key) != dead);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        removedValues.forEach(this::removed);
+    }
+
+    /**
+     * Removes the value for a key, if present.
+     *
+     * @param key the key of the value
+     */
+
+    public void invalidate(String key) {
+        Node<V> node = entries.get(key);
+        if (node != null && unlink(node)) {
+            removed(node.value);
+        }
+    }
+
+    /**
+     * Removes every value whose key matches a predicate.
+     *
+     * @param keys tells which keys to remove
+     */
+
+    public void invalidateIf(Predicate<String> keys) {
+        for (Node<V> node : entries.values()) {
+            if (keys.test(node.key) && unlink(node)) {
+                removed(node.value);
+            }
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that found no valid value
+     */
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of values evicted to respect the byte budget
+     */
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the total weight of the cached values
+     */
+
+    public long getCurrentBytes() {
+        return currentBytes.get();
+    }
+
+    /**
+     * @return the configured byte budget
+     */
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of values currently cached
+     */
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes a node from the entries, unless another thread removed or replaced it first.
+     *
+     * @return true if this call removed the node
+     */
+
+    private boolean unlink(Node<V> node) {
+        if (entries.remove(node.key, node)) {
+            currentBytes.addAndGet(-node.weight);
+            return true;
+        }
+        return false;
+    }
+
+    // Called outside the lock, so that a slow hook does not hold up insertions
+    private void removed(V value) {
+        if (value != null) {
+            onRemoval.accept(value);
+        }
+    }
+
+    private static final class Node<V> {
+        private final String key;
+        private final V value;
+        private final long weight;
+        private volatile boolean referenced;
+
+        private Node(String key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ByteRange class represents one satisfiable range of a {@code Range: bytes=...} request header.
+ * <p>
+ * {@link #parse(String, long)} accepts the three forms of byte range specs:
+ * {@code first-last}, {@code first-} and the suffix form {@code -length}. Ranges are
+ * clipped to the representation and unsatisfiable ones are dropped. Overlapping or
+ * adjacent ranges are coalesced and the result is sorted, which keeps a client from
+ * asking for the same bytes many times over in one request.
+ * <p>
+ * Instances are immutable.
+ */
+
+public final class ByteRange {
+
+    /**
+     * Maximum number of range specs accepted in one header; longer headers are ignored.
+     */
+
+    public static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long first;
+    private final long last;
+
+    /**
+     * Constructs a new ByteRange.
+     *
+     * @param first the offset of the first byte
+     * @param last the offset of the last byte, inclusive
+     */
+
+    public ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses a Range header against a representation of the given size.
+     *
+     * @param header the value of the Range header
+     * @param size the size of the complete representation in bytes
+     * @return the coalesced satisfiable ranges in ascending order, an empty list if none
+     * is satisfiable, or null if the header is malformed, uses another unit or lists
+     * more than {@link #MAX_RANGES} ranges and must be ignored
+     */
+
+    public static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        boolean anySpec = false;
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            anySpec = true;
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    first = Math.max(0, size - suffix);
+                    last = size - 1;
+                    if (suffix == 0) {
+                        continue;
+                    }
+                } else {
+                    boolean openEnded = dash == spec.length() - 1;
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = openEnded ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (first < 0 || last < first) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (first < size) {
+                ranges.add(new ByteRange(first, Math.min(last, size - 1)));
+            }
+        }
+        return anySpec ? coalesce(ranges) : null;
+    }
+
+    /**
+     * @return the offset of the first byte
+     */
+
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the offset of the last byte, inclusive
+     */
+
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * @return the number of bytes in the range
+     */
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * Formats the value of a {@code Content-Range} header for this range.
+     *
+     * @param size the size of the complete representation
+     * @return the header value, such as {@code bytes 0-499/1234}
+     */
+
+    public String toContentRange(long size) {
+        return "bytes " + first + "-" + last + "/" + size;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ByteRange)) {
+            return false;
+        }
+        ByteRange range = (ByteRange) other;
+        return first == range.first && last == range.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(first) * 31 + Long.hashCode(last);
+    }
+
+    @Override
+    public String toString() {
+        return first + "-" + last;
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort((a, b) -> Long.compare(a.first, b.first));
+        List<ByteRange> merged = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.first <= current.last + 1) {
+                current = new ByteRange(current.first, Math.max(current.last, next.last));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
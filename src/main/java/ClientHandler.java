@@ -1,126 +1,278 @@
 import java.io.*;
 import java.net.Socket;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * The ClientHandler class represents a thread that handles individual client connections to the HTTP server.
  * <p>
- * It processes HTTP requests, serves files from the server's root directory, and logs all requests
+ * It reads HTTP requests from a blocking socket and hands them to a {@link RequestProcessor},
+ * which serves files from the server's root directory and logs all requests
  * to a centralized logging system.
  * The class implements proper file access control, error handling,
  * and concurrent request management via {@link BlockingQueue}.
+ * <p>
+ * Connections are persistent by default for HTTP/1.1 clients: several requests, including
+ * pipelined ones, are answered in order on the same socket until the client asks to close,
+ * the connection stays idle for {@code server.keepalive.timeout.ms} milliseconds or
+ * {@code server.keepalive.max.requests} requests have been served.
+ * <p>
+ * A connection holds its thread, and its request limiter permit, for as long as it stays
+ * open, idle time included. So that a handful of idle clients cannot keep everyone else
+ * waiting, the server tells the handler when it is saturated, that is when other
+ * connections wait for a thread or a permit. A saturated server answers with
+ * {@code Connection: close}, and a connection waiting for its next request is closed
+ * within {@value #IDLE_CHECK_MILLIS} milliseconds once the server becomes saturated.
+ * The trade-off is that, under load, clients pay for a new TCP connection per request
+ * instead of waiting up to the keep-alive timeout for a thread; the
+ * {@link NioHTTPServerThread} engine, where idle connections hold no thread, does not
+ * need this.
  */
 
 public class ClientHandler implements Runnable {
 
+    private static final int INPUT_BUFFER_BYTES = 8 * 1024;
+
+    /**
+     * How often an idle persistent connection checks whether it should give its thread up.
+     */
+
+    static final int IDLE_CHECK_MILLIS = 100;
+
     private final Socket client;
-    private final ServerConfig config;
-    private final FileAccessController fileAccessController;
-    private final BlockingQueue<LogEntry> logQueue;
+    private final ServerSettings settings;
+    private final RequestProcessor requestProcessor;
+    private final ServerMetrics metrics;
+    private final long acceptedNanos;
+    private final BooleanSupplier saturated;
 
     /**
      * Constructs a new ClientHandler with the specified client connection and dependencies.
      *
      * @param client the Socket representing the client connection
-     * @param config the ServerConfig containing server configuration parameters
+     * @param settings the ServerSettings snapshot containing server configuration parameters
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     */
+
+    public ClientHandler(Socket client, ServerSettings settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue ) {
+        this(client, settings, fileAccessController, logQueue, new ServerMetrics());
+    }
+
+    /**
+     * Constructs a new ClientHandler that counts its responses in the server's metrics.
+     *
+     * @param client the Socket representing the client connection
+     * @param settings the ServerSettings snapshot containing server configuration parameters
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     * @param metrics the ServerMetrics shared by all connections
+     */
+
+    public ClientHandler(Socket client, ServerSettings settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, ServerMetrics metrics) {
+        this(client, settings, fileAccessController, logQueue, metrics, System.nanoTime());
+    }
+
+    /**
+     * Constructs a new ClientHandler for a connection accepted at a known time.
+     *
+     * @param client the Socket representing the client connection
+     * @param settings the ServerSettings snapshot containing server configuration parameters
      * @param fileAccessController the FileAccessController for thread-safe file operations
      * @param logQueue the BlockingQueue for asynchronous log processing
+     * @param metrics the ServerMetrics shared by all connections
+     * @param acceptedNanos the {@link System#nanoTime()} at which the connection was accepted,
+     *                      where the total latency of its first request starts
      */
 
-    public ClientHandler(Socket client, ServerConfig config, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue ) {
+    public ClientHandler(Socket client, ServerSettings settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, ServerMetrics metrics, long acceptedNanos) {
+        this(client, settings, fileAccessController, logQueue, metrics, acceptedNanos, () -> false);
+    }
+
+    /**
+     * Constructs a new ClientHandler that stops keeping its connection alive while the server is saturated.
+     *
+     * @param client the Socket representing the client connection
+     * @param settings the ServerSettings snapshot containing server configuration parameters
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     * @param metrics the ServerMetrics shared by all connections
+     * @param acceptedNanos the {@link System#nanoTime()} at which the connection was accepted,
+     *                      where the total latency of its first request starts
+     * @param saturated tells whether other connections are waiting for a thread or a permit
+     */
+
+    public ClientHandler(Socket client, ServerSettings settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, ServerMetrics metrics, long acceptedNanos, BooleanSupplier saturated) {
 
         this.client = client;
-        this.config = config;
-        this.fileAccessController = fileAccessController;
-        this.logQueue = logQueue;
+        this.settings = settings;
+        this.metrics = metrics;
+        this.acceptedNanos = acceptedNanos;
+        this.saturated = saturated;
+        this.requestProcessor = new RequestProcessor(() -> settings, fileAccessController, logQueue, metrics);
     }
 
     /**
      * The main execution method for handling client requests.
      * <p>
-     * This method reads the HTTP request, processes it, serves the appropriate file (or error page),
-     * and logs the transaction. It implements proper resource management by ensuring all streams
-     * and sockets are closed after processing.
+     * This method reads HTTP requests from the connection, processes them, serves the
+     * appropriate file (or error page) and logs each transaction. Responses carry a
+     * {@code Content-Length} header, or use chunked transfer encoding when their length
+     * is not known in advance, so the connection can be reused; the loop ends when
+     * the client closes the connection, asks for it to be closed, stays idle for longer
+     * than the keep-alive timeout or reaches the per-connection request limit.
+     * <p>
+     * Request heads are read into a reusable buffer and parsed incrementally by an
+     * {@link HttpRequestParser}. A head that exceeds the configured size limits or has a
+     * malformed request line is answered with the matching error status before closing.
+     * <p>
+     * When the socket has a channel, each response leaves in a single gathering write and
+     * large files are transferred straight from disk to the socket, see {@link HttpResponse#writeTo}.
+     * Otherwise responses to pipelined requests are buffered and flushed together once no
+     * further request is waiting in the input buffer. It implements proper resource management by
+     * ensuring all streams and sockets are closed after processing.
+     * <p>
+     * The time taken to write each response, and to serve each request as a whole, is
+     * recorded in the {@link ServerMetrics}.
      */
 
     @Override
     public void run() {
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
+        try (InputStream clientInput = client.getInputStream();
 
-            OutputStream clientOutput = client.getOutputStream()) {
+            OutputStream clientOutput = new BufferedOutputStream(client.getOutputStream())) {
 
-            StringBuilder requestBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null && !line.isBlank()) {
-                requestBuilder.append(line).append("\r\n");
-            }
+            int keepAliveTimeoutMillis = settings.getKeepAliveTimeoutMillis();
+            client.setSoTimeout(keepAliveTimeoutMillis);
+            int maxRequests = settings.getKeepAliveMaxRequests();
+            int handledRequests = 0;
+            HttpRequestParser parser = HttpRequestParser.fromSettings(settings);
+            ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_BYTES).flip();
 
-            String request = requestBuilder.toString();
-            String[] tokens = request.split(" ");
-            if (tokens.length < 2) {
-                System.err.println("Invalid request received.");
-                return;
-            }
-            String route = tokens[1];
-            route = URLDecoder.decode(route, StandardCharsets.UTF_8);
-            System.out.println("Request received: " + request);
-
-            if (route.equals("/")) {
-                route = "/" + config.getConfig("server.default.page") + "." + config.getConfig("server.default.page.extension");
-            }
-
-            byte[] content;
-            int httpStatus;
-
-            try {
-                content = fileAccessController.readFile(route);
-                httpStatus = 200;
-            } catch (IOException | InterruptedException e) {
+            while (true) {
+                HttpRequest request;
                 try {
-                    content = Files.readAllBytes(Paths.get(config.getConfig("server.root") + "/" + config.getConfig("server.page.404")));
-                } catch (IOException ex) {
-                    content = "<html><body><h1>404 Not Found</h1></body></html>".getBytes();
-
+                    if (handledRequests > 0 && !input.hasRemaining() && parser.isIdle()) {
+                        // Idle between requests: wake up regularly to yield to waiting connections
+                        client.setSoTimeout(Math.min(IDLE_CHECK_MILLIS, keepAliveTimeoutMillis));
+                        request = readNextRequest(clientInput, input, parser, keepAliveTimeoutMillis);
+                        client.setSoTimeout(keepAliveTimeoutMillis);
+                    } else {
+                        request = readRequest(clientInput, input, parser);
+                    }
+                } catch (SocketTimeoutException e) {
+                    break;
+                } catch (HttpParseException e) {
+                    DiagnosticLog.warn("Invalid request received: %s", e.getMessage());
+                    try (HttpResponse response = requestProcessor.error(e.getStatus())) {
+                        response.writeTo(clientOutput, client.getChannel());
+                    }
+                    break;
+                }
+                if (request == null) {
+                    break;
                 }
-                httpStatus = 404;
-            }
 
-            clientOutput.write(("HTTP/1.1 " + (httpStatus == 200 ? "200 OK" : "404 Not Found") + "\r\n").getBytes());
+                long started = handledRequests == 0 ? acceptedNanos : System.nanoTime();
+                handledRequests++;
+                boolean keepAlive = request.isKeepAlive() && handledRequests < maxRequests && !saturated.getAsBoolean();
 
-            clientOutput.write("Content-Type: text/html\r\n".getBytes());;
-            clientOutput.write("\r\n".getBytes());
+                try (HttpResponse response = requestProcessor.process(request, client.getInetAddress().toString(), keepAlive)) {
+                    long writing = System.nanoTime();
+                    response.writeTo(clientOutput, client.getChannel());
+                    long written = System.nanoTime();
+                    metrics.recordLatency(ServerMetrics.Phase.RESPONSE_WRITE, written - writing);
+                    metrics.recordLatency(ServerMetrics.Phase.TOTAL, written - started);
+                }
 
-            clientOutput.write(content);
-            clientOutput.write("\r\n\r\n".getBytes());
+                if (!keepAlive) {
+                    break;
+                }
+                if (!input.hasRemaining() && clientInput.available() == 0) {
+                    clientOutput.flush();
+                }
+            }
             clientOutput.flush();
 
-            LogEntry logEntry = new LogEntry(
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")),
-                    "GET",
-                    route,
-                    client.getInetAddress().toString(),
-                    httpStatus
-            );
-
-            logQueue.put(logEntry);
-
         } catch (IOException | InterruptedException e) {
-            System.err.println("Error handling client request.");
-            e.printStackTrace();
+            DiagnosticLog.warn("Error handling client request: %s", e);
 
         } finally {
             try {
                 client.close();
             } catch (IOException e) {
-                e.printStackTrace();
+                DiagnosticLog.debug("Error closing client connection: %s", e);
             }
         }
     }
+
+    /**
+     * Waits for the next request on a persistent connection, with a short socket timeout.
+     * <p>
+     * While no byte of the request has arrived, the connection is given up as soon as
+     * the server is saturated, or once it has been idle for the keep-alive timeout. Once
+     * the request has started, it is read like any other.
+     *
+     * @return the parsed request, or null if the client closed the connection
+     * @throws SocketTimeoutException if the connection is given up
+     */
+
+    private HttpRequest readNextRequest(InputStream clientInput, ByteBuffer input, HttpRequestParser parser, int keepAliveTimeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(keepAliveTimeoutMillis);
+        while (true) {
+            int read;
+            try {
+                read = clientInput.read(input.array(), 0, input.capacity());
+            } catch (SocketTimeoutException e) {
+                if (saturated.getAsBoolean() || System.nanoTime() - deadline >= 0) {
+                    throw e;
+                }
+                continue;
+            }
+            if (read == -1) {
+                return null;
+            }
+            input.clear().limit(read);
+            client.setSoTimeout(keepAliveTimeoutMillis);
+            return readRequest(clientInput, input, parser);
+        }
+    }
+
+    /**
+     * Reads the next request head from the connection.
+     * <p>
+     * Bytes left in the input buffer by a previous request are parsed first, so pipelined
+     * requests need no further socket read. Any request body announced with
+     * {@code Content-Length} is skipped so that the next request starts at the right position.
+     *
+     * @param clientInput the input stream of the connection
+     * @param input the connection's input buffer in read mode
+     * @param parser the connection's request parser
+     * @return the parsed request, or null if the client closed the connection
+     * @throws HttpParseException if the request head is malformed or too large, or the length
+     * of its body is unknown
+     * @throws IOException if reading from the connection fails or times out
+     */
+
+    private static HttpRequest readRequest(InputStream clientInput, ByteBuffer input, HttpRequestParser parser) throws IOException {
+        HttpRequest request;
+        while ((request = parser.parse(input)) == null) {
+            // The parser consumed the whole buffer, so it can be refilled from the start
+            int read = clientInput.read(input.array(), 0, input.capacity());
+            if (read == -1) {
+                return null;
+            }
+            input.clear().limit(read);
+        }
+
+        long bodyBytes = request.getContentLength();
+        int buffered = (int) Math.min(bodyBytes, input.remaining());
+        input.position(input.position() + buffered);
+        clientInput.skipNBytes(bodyBytes - buffered);
+        return request;
+    }
 }
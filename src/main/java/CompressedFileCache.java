@@ -0,0 +1,139 @@
+/**
+ * The CompressedFileCache class keeps the compressed variants of recently served files in memory.
+ * <p>
+ * Compressing a file on the fly costs far more than sending it, so every variant is
+ * compressed once and reused. Entries are keyed by the normalized absolute path of the
+ * file and the content coding, and remember the size and modification time of the
+ * file they were compressed from; a lookup only returns a variant while both still
+ * match the file on disk, so edited files are transparently recompressed.
+ * <p>
+ * Like the {@link FileCache}, the total number of cached bytes is bounded by a
+ * {@link ByteBudgetCache} and the least recently used variants are evicted first. A budget of zero disables the cache.
+ *
+ * @see FileAccessController
+ */
+
+public class CompressedFileCache {
+
+    private final ByteBudgetCache<CompressedFile> entries;
+
+    /**
+     * Constructs a new CompressedFileCache with the given byte budget.
+     *
+     * @param maxBytes the maximum number of compressed bytes kept in memory, zero disables caching
+     * @throws IllegalArgumentException if the budget is negative
+     */
+
+    public CompressedFileCache(long maxBytes) {
+        this.entries = new ByteBudgetCache<>(maxBytes, entry -> entry.content.length);
+    }
+
+    /**
+     * Returns the compressed variant of a file if it is still up to date.
+     * <p>
+     * A variant compressed from a file of another size or modification time is stale;
+     * it is removed and the lookup counts as a miss. The returned array is shared
+     * between callers and must not be modified.
+     *
+     * @param path the normalized absolute path of the file
+     * @param coding the content coding, such as {@code gzip}
+     * @param size the current size of the file on disk
+     * @param lastModified the current modification time of the file in milliseconds
+     * @return the compressed content, or null if it is absent or stale
+     */
+
+    public byte[] get(String path, String coding, long size, long lastModified) {
+        CompressedFile entry = entries.get(key(path, coding),
+                compressed -> compressed.sourceSize == size && compressed.lastModified == lastModified);
+        return entry != null ? entry.content : null;
+    }
+
+    /**
+     * Stores the compressed variant of a file, evicting least recently used variants if needed.
+     *
+     * @param path the normalized absolute path of the file
+     * @param coding the content coding, such as {@code gzip}
+     * @param content the compressed content, which must not be modified afterwards
+     * @param sourceSize the size of the file the content was compressed from
+     * @param lastModified the modification time of the file the content was compressed from
+     */
+
+    public void put(String path, String coding, byte[] content, long sourceSize, long lastModified) {
+        entries.put(key(path, coding), new CompressedFile(content, sourceSize, lastModified));
+    }
+
+    /**
+     * Removes every variant of a file, if present.
+     *
+     * @param path the normalized absolute path of the file
+     */
+
+    public void invalidate(String path) {
+        String prefix = key(path, "");
+        entries.invalidateIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * @return the number of lookups answered from memory
+     */
+
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that found no valid variant
+     */
+
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    /**
+     * @return the number of variants evicted to respect the byte budget
+     */
+
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * @return the number of compressed bytes currently held in memory
+     */
+
+    public long getCurrentBytes() {
+        return entries.getCurrentBytes();
+    }
+
+    /**
+     * @return the configured byte budget
+     */
+
+    public long getMaxBytes() {
+        return entries.getMaxBytes();
+    }
+
+    /**
+     * @return the number of variants currently cached
+     */
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String key(String path, String coding) {
+        return path + '\0' + coding;
+    }
+
+    private static final class CompressedFile {
+        private final byte[] content;
+        private final long sourceSize;
+        private final long lastModified;
+
+        private CompressedFile(byte[] content, long sourceSize, long lastModified) {
+            this.content = content;
+            this.sourceSize = sourceSize;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 /**
  * The ConfigLoader class provides functionality to load server configuration from a properties file.
@@ -8,9 +10,13 @@ import java.util.Properties;
  * This utility class reads a configuration file in Java Properties format and creates
  * a {@link ServerConfig} object populated with the configuration values.
  * It handles the file loading and parsing operations, converting the flat properties structure
- * into a configuration object for the server
+ * into a configuration object for the server. {@link #loadSettings(String)} additionally
+ * resolves it into the immutable {@link ServerSettings} snapshot read by the request path,
+ * and {@link #watch(String, ServerSettings, Consumer)} keeps that snapshot up to date
+ * while the server runs.
  *
  * @see ServerConfig
+ * @see ServerSettings
  * @see Properties
  */
 
@@ -47,4 +53,38 @@ public class ConfigLoader {
 
         return config;
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads the configuration file and resolves it into an immutable {@link ServerSettings} snapshot.
+     *
+     * @param configFilePath the absolute or relative path to the configuration file
+     * @return the validated settings
+     * @throws IOException if the configuration file cannot be read
+     * @throws IllegalArgumentException if a setting is missing or invalid
+     *
+     * @see ServerSettings#fromConfig(ServerConfig)
+     */
+
+    public static ServerSettings loadSettings(String configFilePath) throws IOException {
+        return ServerSettings.fromConfig(loadConfig(configFilePath));
+    }
+
+    /**
+     * Starts watching the configuration file for changes on a daemon thread.
+     *
+     * @param configFilePath the absolute or relative path to the configuration file
+     * @param initial the snapshot loaded at startup
+     * @param listener called with every new valid snapshot
+     * @return the watcher, which supplies the current snapshot
+     *
+     * @see ConfigWatcher
+     */
+
+    public static ConfigWatcher watch(String configFilePath, ServerSettings initial, Consumer<ServerSettings> listener) {
+        ConfigWatcher watcher = new ConfigWatcher(Path.of(configFilePath), initial, listener);
+        Thread thread = new Thread(watcher, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The ConfigWatcher class reloads the configuration file whenever it changes on disk.
+ * <p>
+ * It watches the directory of the file with a {@link WatchService} and, after a short
+ * quiet period that lets editors finish writing, loads the file again and resolves it
+ * into a new {@link ServerSettings} snapshot. A valid snapshot atomically replaces the
+ * current one, returned by {@link #get()}, and is passed to the reload listener, which
+ * resizes the thread pool and the request limiter. A file that cannot be read or fails
+ * validation is rejected with a message and the previous snapshot stays in effect.
+ * <p>
+ * Components read the snapshot once per connection or request, so requests in flight
+ * finish with the settings they started with. The port, engine, server root, cache
+ * budgets and log settings are fixed at startup and still need a restart.
+ *
+ * @see ConfigLoader#watch(String, ServerSettings, Consumer)
+ */
+
+public class ConfigWatcher implements Runnable, Supplier<ServerSettings> {
+
+    private static final long QUIET_PERIOD_MS = 100;
+
+    private final Path configFile;
+    private final Consumer<ServerSettings> listener;
+    private volatile ServerSettings current;
+
+    /**
+     * Constructs a new ConfigWatcher.
+     *
+     * @param configFile the configuration file to watch
+     * @param initial the snapshot in effect before the first reload
+     * @param listener called on the watcher thread with every accepted snapshot
+     */
+
+    public ConfigWatcher(Path configFile, ServerSettings initial, Consumer<ServerSettings> listener) {
+        this.configFile = configFile.toAbsolutePath().normalize();
+        this.current = initial;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the current settings snapshot
+     */
+
+    @Override
+    public ServerSettings get() {
+        return current;
+    }
+
+    /**
+     * Watches the configuration file until the thread is interrupted.
+     */
+
+    @Override
+    public void run() {
+        Path directory = configFile.getParent();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = consumeEvents(key);
+                if (!key.isValid()) {
+                    DiagnosticLog.warn("Configuration hot reload stopped, %s is no longer accessible.", directory);
+                    break;
+                }
+                if (!changed) {
+                    continue;
+                }
+
+                // Coalesce the bursts of events produced by a single save
+                while ((key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+                    consumeEvents(key);
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            DiagnosticLog.warn("Configuration hot reload disabled, cannot watch %s: %s", configFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the configuration file and swaps in the new snapshot if it is valid.
+     *
+     * @return true if the new snapshot was accepted
+     */
+
+    public boolean reload() {
+        ServerSettings settings;
+        try {
+            settings = ConfigLoader.loadSettings(configFile.toString());
+        } catch (IOException | IllegalArgumentException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            DiagnosticLog.warn("Rejected configuration change, keeping the previous configuration: %s", cause.getMessage());
+            return false;
+        }
+
+        current = settings;
+        listener.accept(settings);
+        DiagnosticLog.info("Configuration reloaded from %s", configFile);
+        return true;
+    }
+
+    private boolean consumeEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || configFile.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,377 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The DiagnosticLog class is the leveled, asynchronous logger for the server's own diagnostic messages.
+ * <p>
+ * Printing to {@link System#out} from request threads serializes them on the stream's
+ * lock and makes them wait for the terminal. A message logged here is only queued, with
+ * its printf-style format and arguments, and the {@link LogConsumer} thread formats and
+ * prints it alongside the access log. When the bounded queue is full, messages are
+ * dropped and counted rather than blocking the caller.
+ * <p>
+ * A message below the configured level returns after a single comparison: nothing is
+ * formatted or queued. The fixed-arity methods take up to three arguments so that no
+ * argument array is created for it either; callers passing primitives should check
+ * {@link #isEnabled(Level)} first to avoid boxing them. Messages up to {@code INFO} are
+ * printed to the standard output, warnings to the error stream.
+ * <p>
+ * The level is configured with {@code server.log.diagnostic.level} and defaults to
+ * {@code info}, which leaves out the per-request {@code debug} messages.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public final class DiagnosticLog {
+
+    /**
+     * Number of messages that can wait for the log consumer.
+     */
+
+    public static final int CAPACITY = 8192;
+
+    /**
+     * The severity of a message, in increasing order. {@code OFF} disables all messages.
+     */
+
+    public enum Level {
+
+        /**
+         * Detail for tracing a problem, such as every request received.
+         */
+
+        DEBUG,
+
+        /**
+         * Lifecycle events, such as a configuration reload.
+         */
+
+        INFO,
+
+        /**
+         * Problems the server recovers from, such as an invalid request.
+         */
+
+        WARN,
+
+        /**
+         * Not a message level: set as the level, it disables every message.
+         */
+
+        OFF;
+
+        /**
+         * Parses a level name, ignoring case.
+         *
+         * @param name the configured name, or null for the default
+         * @return the level
+         * @throws IllegalArgumentException if the name is unknown
+         */
+
+        public static Level fromName(String name) {
+            if (name == null) {
+                return INFO;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown server.log.diagnostic.level: " + name);
+            }
+        }
+    }
+
+    private static final ArrayBlockingQueue<Message> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static volatile Level level = Level.INFO;
+
+    private DiagnosticLog() {
+    }
+
+    /**
+     * Sets the level from {@code server.log.diagnostic.level}.
+     *
+     * @param config the server configuration
+     * @throws IllegalArgumentException if the level is unknown
+     */
+
+    public static void configure(ServerConfig config) {
+        setLevel(Level.fromName(config.getConfig("server.log.diagnostic.level")));
+    }
+
+    /**
+     * @param newLevel the lowest level of the messages logged from now on
+     */
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * @return the lowest level of the messages logged
+     */
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @param messageLevel the level of a message
+     * @return true if messages of the level are logged
+     */
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+    }
+
+    /**
+     * Logs a debug message as is.
+     *
+     * @param message the message
+     */
+
+    public static void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            queue(Level.DEBUG, message, 0, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug message with one argument, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg the argument
+     */
+
+    public static void debug(String format, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            queue(Level.DEBUG, format, 1, arg, null, null);
+        }
+    }
+
+    /**
+     * Logs a debug message with two arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+
+    public static void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            queue(Level.DEBUG, format, 2, arg1, arg2, null);
+        }
+    }
+
+    /**
+     * Logs a debug message with three arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+
+    public static void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.DEBUG)) {
+            queue(Level.DEBUG, format, 3, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Logs an informational message as is.
+     *
+     * @param message the message
+     */
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            queue(Level.INFO, message, 0, null, null, null);
+        }
+    }
+
+    /**
+     * Logs an informational message with one argument, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg the argument
+     */
+
+    public static void info(String format, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            queue(Level.INFO, format, 1, arg, null, null);
+        }
+    }
+
+    /**
+     * Logs an informational message with two arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+
+    public static void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            queue(Level.INFO, format, 2, arg1, arg2, null);
+        }
+    }
+
+    /**
+     * Logs an informational message with three arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+
+    public static void info(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.INFO)) {
+            queue(Level.INFO, format, 3, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Logs a warning as is.
+     *
+     * @param message the message
+     */
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            queue(Level.WARN, message, 0, null, null, null);
+        }
+    }
+
+    /**
+     * Logs a warning with one argument, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg the argument
+     */
+
+    public static void warn(String format, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            queue(Level.WARN, format, 1, arg, null, null);
+        }
+    }
+
+    /**
+     * Logs a warning with two arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+
+    public static void warn(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            queue(Level.WARN, format, 2, arg1, arg2, null);
+        }
+    }
+
+    /**
+     * Logs a warning with three arguments, formatted only when it is written.
+     *
+     * @param format the format, see {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+
+    public static void warn(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.WARN)) {
+            queue(Level.WARN, format, 3, arg1, arg2, arg3);
+        }
+    }
+
+    private static void queue(Level messageLevel, String format, int argCount, Object arg1, Object arg2, Object arg3) {
+        Message message = new Message(messageLevel, System.currentTimeMillis(), Thread.currentThread().getName(),
+                format, argCount, arg1, arg2, arg3);
+        if (!QUEUE.offer(message)) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    /**
+     * Formats and prints every queued message. Called by the {@link LogConsumer} thread.
+     *
+     * @return the number of messages printed
+     */
+
+    public static int writePending() {
+        return writePending(System.out, System.err);
+    }
+
+    /**
+     * Formats and prints every queued message to the given streams.
+     *
+     * @param out the stream receiving debug and informational messages
+     * @param err the stream receiving warnings
+     * @return the number of messages printed
+     */
+
+    public static int writePending(PrintStream out, PrintStream err) {
+        int written = 0;
+        Message message;
+        while ((message = QUEUE.poll()) != null) {
+            (message.level == Level.WARN ? err : out).println(message.format());
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+            err.flush();
+        }
+        return written;
+    }
+
+    /**
+     * @return the number of messages dropped because the queue was full
+     */
+
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    private static final class Message {
+        private final Level level;
+        private final long timeMillis;
+        private final String thread;
+        private final String format;
+        private final int argCount;
+        private final Object arg1;
+        private final Object arg2;
+        private final Object arg3;
+
+        private Message(Level level, long timeMillis, String thread, String format, int argCount, Object arg1, Object arg2, Object arg3) {
+            this.level = level;
+            this.timeMillis = timeMillis;
+            this.thread = thread;
+            this.format = format;
+            this.argCount = argCount;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.arg3 = arg3;
+        }
+
+        private String format() {
+            String text;
+            if (argCount == 0) {
+                text = format;
+            } else {
+                Object[] args = argCount == 1 ? new Object[] { arg1 } : argCount == 2 ? new Object[] { arg1, arg2 } : new Object[] { arg1, arg2, arg3 };
+                try {
+                    text = String.format(Locale.ROOT, format, args);
+                } catch (IllegalFormatException e) {
+                    text = format + " " + Arrays.toString(args);
+                }
+            }
+            return Instant.ofEpochMilli(timeMillis) + " " + level + " [" + thread + "] " + text;
+        }
+    }
+}
@@ -1,42 +1,148 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The FileAccessController class manages thread-safe file access operations for the HTTP server.
  * <p>
  * This class implements a file locking mechanism to prevent concurrent modifications and
- * path transversal attacks. It maintains a map of file locks to ensure exclusive access
- * to files during read operations using ReentrantLock with fair ordering policy.
+ * path transversal attacks. Files are guarded by read-write locks with fair ordering
+ * policy: any number of readers of the same file proceed in parallel, while writers
+ * such as {@link #invalidate(String)} get exclusive access.
  * <p>
  * The locking mechanism includes timeout protection to prevent deadlocks. Each file
- * path has its own dedicated lock object managed in a concurrent hash map.
+ * path maps, by the hash of its path, to one of a fixed set of lock stripes, so the
+ * locks never need to be created or removed, and a file always maps to the same lock
+ * whichever thread asks for it. Files sharing a stripe only exclude each other while
+ * one of them is invalidated. Lock activity is traced at the {@code debug} level of the
+ * {@link DiagnosticLog}.
+ * <p>
+ * Recently read files are kept in a size-bounded {@link FileCache}, whose budget is
+ * configured through {@code server.cache.max.bytes}. Cache hits skip both the disk
+ * read and the per-file lock. Medium-sized files are memory-mapped instead and the
+ * mappings are shared through a {@link MappedFileCache} bounded by
+ * {@code server.mmap.cache.max.bytes}, leaving their content to the operating system's
+ * page cache rather than the Java heap.
+ * <p>
+ * Every served file carries strong {@link FileValidators}, an entity tag derived from
+ * its inode, size and modification time. They are cached per path and recomputed only
+ * when the file's attributes change, and {@link #getValidators(String)} returns them
+ * without reading the file so that conditional requests can be answered from metadata.
+ * <p>
+ * {@link #openEncoded(StaticFile, String)} provides compressed variants of a file: a
+ * precompressed {@code .br} or {@code .gz} sibling when one is at least as recent as the
+ * file, or else a gzip variant compressed on the fly and kept in a {@link CompressedFileCache}
+ * bounded by {@code server.compress.cache.max.bytes}, so that each file is compressed once.
  *
- * @see ReentrantLock
+ * @see ReentrantReadWriteLock
  * @see ConcurrentHashMap
+ * @see FileCache
+ * @see MappedFileCache
+ * @see CompressedFileCache
  */
 
 public class FileAccessController {
 
-    private static final ConcurrentHashMap<String, ReentrantLock> fileLocks = new ConcurrentHashMap<>();
-    private final ServerConfig config;
+    private static final int LOCK_STRIPES = 256;
+    private static final ReentrantReadWriteLock[] fileLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final ServerSettings settings;
     private static final long LOCK_TIMEOUT_SECONDS = 5;
+    private static final int MAX_VALIDATOR_ENTRIES = 16384;
+    private final ConcurrentHashMap<String, FileValidators> validators = new ConcurrentHashMap<>();
+    private final FileCache fileCache;
+    private final MappedFileCache mappedFileCache;
+    private final CompressedFileCache compressedFileCache;
+    private final long compressMaxBytes;
+    private final long readDelayMillis;
+    private final long streamThresholdBytes;
+    private final long mmapMinBytes;
+    private final long mmapMaxBytes;
+    private final ServerMetrics metrics;
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            fileLocks[i] = new ReentrantReadWriteLock(true);
+        }
+    }
 
     /**
-     * Constructs a new FileAccessController with the specified server configuration.
+     * Constructs a new FileAccessController with the specified server settings.
      * <p>
-     * The configuration object must contain valid server root directory and default page settings.
-     * The controller will use these settings for all file access operations.
+     * The server root and default page of the snapshot are used for all file access operations.
+     * The file cache budget is read from {@code server.cache.max.bytes} and defaults to 64 MiB.
+     * Files of at least {@code server.stream.threshold.bytes} (1 MiB by default) are streamed
+     * by {@link #openFile(String)} instead of being loaded into memory, unless they are
+     * mapped: files between {@code server.mmap.min.bytes} (16 KiB) and
+     * {@code server.mmap.max.bytes} (32 MiB) are memory-mapped while the total stays within
+     * {@code server.mmap.cache.max.bytes} (256 MiB, zero disables mapping).
+     * {@code server.read.delay.ms} adds an artificial delay to every disk read; it exists only
+     * to make lock contention observable in tests and defaults to zero.
+     *
+     * @param settings the ServerSettings snapshot containing server configuration parameters.
+     */
+
+    public FileAccessController(ServerSettings settings) {
+        this(settings, new ServerMetrics());
+    }
+
+    /**
+     * Constructs a new FileAccessController that records how long reads wait for the per-file locks.
      *
-     * @param config the ServerConfig object containing server configuration parameters.
+     * @param settings the ServerSettings snapshot containing server configuration parameters.
+     * @param metrics the metrics the {@link ServerMetrics.Phase#LOCK_WAIT} latencies are recorded in
      */
 
-    public FileAccessController(ServerConfig config) {
-        this.config = config;
+    public FileAccessController(ServerSettings settings, ServerMetrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        this.fileCache = new FileCache(settings.getCacheMaxBytes());
+        this.readDelayMillis = settings.getReadDelayMillis();
+        this.streamThresholdBytes = settings.getStreamThresholdBytes();
+        this.mappedFileCache = new MappedFileCache(settings.getMmapCacheMaxBytes());
+        this.mmapMinBytes = settings.getMmapMinBytes();
+        this.mmapMaxBytes = settings.getMmapMaxBytes();
+        this.compressedFileCache = new CompressedFileCache(settings.getCompressCacheMaxBytes());
+        this.compressMaxBytes = settings.getCompressMaxBytes();
+    }
+
+    /**
+     * Returns the cache holding recently read file contents, for inspection of its counters.
+     *
+     * @return the FileCache used by this controller
+     */
+
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    /**
+     * Returns the cache holding the memory mappings of medium-sized files, for inspection of its counters.
+     *
+     * @return the MappedFileCache used by this controller
+     */
+
+    public MappedFileCache getMappedFileCache() {
+        return mappedFileCache;
+    }
+
+    /**
+     * Returns the cache holding the compressed variants of files, for inspection of its counters.
+     *
+     * @return the CompressedFileCache used by this controller
+     */
+
+    public CompressedFileCache getCompressedFileCache() {
+        return compressedFileCache;
     }
 
     /**
@@ -44,11 +150,15 @@ public class FileAccessController {
      * <p>
      * This method performs several security checks and operations in sequence:
      * Validates the requested path against the server root to prevent path traversal.
-     * Acquires an exclusive lock for the life with timeout.
+     * Returns the cached content if the file has not changed since it was cached.
+     * Acquires a shared read lock for the file with timeout.
      * Verifies file existence and type.
-     * Reads file contents and releases the lock and cleans up.
+     * Reads file contents, stores them in the cache and releases the lock and cleans up.
+     * <p>
+     * The returned array may be shared with other callers and must not be modified.
      * <p>
-     * Lock acquisition follows strict first-come-first-served ordering due to fair locking.
+     * Concurrent readers of the same file do not wait for each other. Lock acquisition
+     * follows first-come-first-served ordering relative to writers due to fair locking.
      * The method guarantees lock release even if an exception occurs during the file reading.
      *
      * @param route the relative path of the file to read from server root
@@ -64,51 +174,268 @@ public class FileAccessController {
      */
 
     public byte[] readFile(String route) throws IOException, InterruptedException {
-        Path rootPath = Paths.get(config.getConfig("server.root")).toAbsolutePath().normalize();
+        Path filePath = resolvePath(route);
+        return read(filePath, readAttributes(filePath));
+    }
 
-        if (route == null || route.isEmpty()) {
-            route = "/" + config.getConfig("server.default.page") +
-                    "." + config.getConfig("server.default.page.extension");
+    /**
+     * Opens a file from the server's root directory for serving.
+     * <p>
+     * Files within the mapping range are served from a shared read-only memory mapping,
+     * created under the file's read lock on first use. Other files smaller than
+     * {@code server.stream.threshold.bytes} are read like in {@link #readFile(String)},
+     * through the cache. Larger files are not loaded at all: a read-only {@link FileChannel}
+     * is opened under the file's read lock and returned in a streamed {@link StaticFile},
+     * which the caller must close after sending it.
+     * <p>
+     * Mapped files must not be truncated in place while they are served; replace them
+     * with a new file instead.
+     *
+     * @param route the relative path of the file to read from server root
+     *              If null or empty, defaults to configured default page.
+     * @return the opened file
+     * @throws IOException if path traversal attempt is detected,
+     * file is not found,
+     * path is a directory,
+     * timeout occurs while waiting for file lock or
+     * general I/O error occurs during reading
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+
+    public StaticFile openFile(String route) throws IOException, InterruptedException {
+        Path filePath = resolvePath(route);
+        return open(filePath, readAttributes(filePath));
+    }
+
+    /**
+     * Opens the variant of a file compressed with the given content coding.
+     * <p>
+     * A sibling holding the precompressed content, {@code index.html.br} or
+     * {@code index.html.gz}, is served when it is not older than the file; it is opened
+     * like any other file, so it goes through the same caches and may be mapped or
+     * streamed. Without one, a gzip variant is compressed from the file on the fly,
+     * unless the file is larger than {@code server.compress.max.bytes} or the
+     * compressed variant cache is disabled. Only gzip is compressed on the fly; the
+     * JDK has no brotli encoder, so brotli is served from siblings only.
+     * <p>
+     * The given file stays open and remains owned by the caller.
+     *
+     * @param file the opened file, as returned by {@link #openFile(String)}
+     * @param coding the content coding, {@code br} or {@code gzip}
+     * @return the compressed variant, or null if there is none or it is not smaller than the file
+     * @throws IOException if reading the file or its sibling fails
+     * @throws InterruptedException if the thread is interrupted while waiting for a lock
+     */
+
+    public StaticFile openEncoded(StaticFile file, String coding) throws IOException, InterruptedException {
+        String extension = "br".equals(coding) ? ".br" : "gzip".equals(coding) ? ".gz" : null;
+        if (extension == null) {
+            return null;
         }
 
-        if (route.startsWith("/")) {
-            route = route.substring(1);
+        Path siblingPath = file.getPath().resolveSibling(file.getPath().getFileName() + extension);
+        BasicFileAttributes sibling = readAttributes(siblingPath);
+        if (sibling != null && sibling.isRegularFile() && sibling.lastModifiedTime().toMillis() >= file.getLastModified()) {
+            return open(siblingPath, sibling);
         }
 
-        Path requestedPath = Paths.get(route).normalize();
-        Path filePath = rootPath.resolve(requestedPath).toAbsolutePath().normalize();
+        if (!"gzip".equals(coding) || file.getSize() > compressMaxBytes || compressedFileCache.getMaxBytes() == 0) {
+            return null;
+        }
+        String cacheKey = file.getPath().toString();
+        byte[] compressed = compressedFileCache.get(cacheKey, coding, file.getSize(), file.getLastModified());
+        if (compressed == null) {
+            compressed = gzip(file);
+            compressedFileCache.put(cacheKey, coding, compressed, file.getSize(), file.getLastModified());
+        }
+        if (compressed.length >= file.getSize()) {
+            return null;
+        }
+        return StaticFile.inMemory(file.getPath(), file.getLastModified(), file.getETag(), compressed);
+    }
 
-        if (!filePath.startsWith(rootPath)) {
-            String errorMsg = String.format(
-                    "Access denied: Path traversal attempt. Requested '%s' is outside server root '%s'",
-                    filePath, rootPath);
-            System.err.println("Security violation: " + errorMsg);
-            throw new IOException(errorMsg);
+    /**
+     * Compresses the whole content of a file with gzip, reading it positionally in chunks.
+     */
+
+    private static byte[] gzip(StaticFile file) throws IOException {
+        long size = file.getSize();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) (size / 4) + 64);
+        try (GZIPOutputStream output = new GZIPOutputStream(compressed, 8192)) {
+            if (file.getContent() != null) {
+                output.write(file.getContent());
+            } else {
+                ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(size, 64 * 1024));
+                for (long position = 0; position < size; position += chunk.limit()) {
+                    chunk.clear().limit((int) Math.min(chunk.capacity(), size - position));
+                    file.read(position, chunk);
+                    output.write(chunk.array(), 0, chunk.limit());
+                }
+            }
         }
+        return compressed.toByteArray();
+    }
 
-        ReentrantLock fileLock = fileLocks.computeIfAbsent(
-                filePath.toString(),
-                k -> new ReentrantLock(true)
-        );
+    /**
+     * Opens a resolved file in the tier matching its size.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @param attributes the attributes of the file, or null if it could not be inspected
+     * @return the opened file
+     * @throws IOException if the file is missing, is a directory, the lock times out or reading fails
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
 
-        System.out.printf("[%s] Trying to acquire lock for: %s (Queued threads: %d)%n",
-                Thread.currentThread().getName(),
-                filePath,
-                fileLock.getQueueLength());
+    private StaticFile open(Path filePath, BasicFileAttributes attributes) throws IOException, InterruptedException {
+        if (attributes != null && attributes.isRegularFile() && isMappable(attributes.size())) {
+            return map(filePath, attributes);
+        }
 
-        if (!fileLock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
-            System.err.printf("[%s] Timeout when waiting for lock: %s%n",
-                    Thread.currentThread().getName(),
-                    filePath);
-            throw new IOException("Timeout waiting for file access: " + filePath);
+        if (attributes == null || !attributes.isRegularFile() || attributes.size() < streamThresholdBytes) {
+            byte[] content = read(filePath, attributes);
+            if (attributes == null) {
+                return StaticFile.inMemory(filePath, 0, null, content);
+            }
+            return StaticFile.inMemory(filePath, attributes.lastModifiedTime().toMillis(), validators(filePath, attributes).getETag(), content);
         }
 
+        ReentrantReadWriteLock fileLock = acquireReadLock(filePath);
         try {
-            System.out.printf("[%s] Lock acquired for: %s (Time on the system: %dns)%n",
-                    Thread.currentThread().getName(),
-                    filePath,
-                    System.nanoTime());
+            FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            return StaticFile.streamed(filePath, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    validators(filePath, attributes).getETag(), channel);
+        } finally {
+            releaseReadLock(filePath, fileLock);
+        }
+    }
+
+    /**
+     * Returns the validators of a file from the server's root directory without reading it.
+     * <p>
+     * Only the file's attributes are read, and no lock is taken: the validators describe
+     * the file as it is on disk at the time of the call.
+     *
+     * @param route the relative path of the file from server root
+     *              If null or empty, defaults to configured default page.
+     * @return the validators, or null if the file does not exist or is not a regular file
+     * @throws IOException if path traversal attempt is detected
+     */
+
+    public FileValidators getValidators(String route) throws IOException {
+        Path filePath = resolvePath(route);
+        BasicFileAttributes attributes = readAttributes(filePath);
+        if (attributes == null || !attributes.isRegularFile()) {
+            return null;
+        }
+        return validators(filePath, attributes);
+    }
+
+    /**
+     * Returns the cached validators of a resolved file, computing them if its attributes changed.
+     * <p>
+     * The cache holds one entry per served path and is cleared when it exceeds
+     * {@value #MAX_VALIDATOR_ENTRIES} entries, which only costs a recomputation.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @param attributes the current attributes of the file
+     * @return the validators
+     */
 
+    private FileValidators validators(Path filePath, BasicFileAttributes attributes) {
+        String key = filePath.toString();
+        FileValidators cached = validators.get(key);
+        if (cached != null && cached.matches(attributes)) {
+            return cached;
+        }
+
+        FileValidators computed = new FileValidators(inode(filePath, attributes), attributes);
+        if (validators.size() >= MAX_VALIDATOR_ENTRIES) {
+            validators.clear();
+        }
+        validators.put(key, computed);
+        return computed;
+    }
+
+    /**
+     * Reads the inode number of a file, falling back to a hash of its file key where
+     * the file system has no inodes.
+     */
+
+    private static long inode(Path filePath, BasicFileAttributes attributes) {
+        try {
+            Object inode = Files.getAttribute(filePath, "unix:ino");
+            if (inode instanceof Long) {
+                return (Long) inode;
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            // Not a POSIX file system
+        }
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? 0 : fileKey.hashCode() & 0xffffffffL;
+    }
+
+    /**
+     * Tells whether a file of the given size is served from a memory mapping.
+     *
+     * @param size the size of the file in bytes
+     * @return true if the size is within the mapping range and the mapping budget
+     */
+
+    private boolean isMappable(long size) {
+        return size > 0 && size >= mmapMinBytes && size <= mmapMaxBytes && size <= mappedFileCache.getMaxBytes();
+    }
+
+    /**
+     * Returns the shared mapping of a resolved file, mapping it under the file's read lock on a miss.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @param attributes the attributes read before the lookup
+     * @return the mapped file
+     * @throws IOException if the lock times out or the file cannot be mapped
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+
+    private StaticFile map(Path filePath, BasicFileAttributes attributes) throws IOException, InterruptedException {
+        String cacheKey = filePath.toString();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String eTag = validators(filePath, attributes).getETag();
+        ByteBuffer mapped = mappedFileCache.get(cacheKey, attributes.size(), lastModified);
+        if (mapped != null) {
+            return StaticFile.mapped(filePath, lastModified, eTag, mapped);
+        }
+
+        ReentrantReadWriteLock fileLock = acquireReadLock(filePath);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, attributes.size());
+            mappedFileCache.put(cacheKey, buffer, lastModified);
+            return StaticFile.mapped(filePath, lastModified, eTag, buffer.asReadOnlyBuffer());
+        } finally {
+            releaseReadLock(filePath, fileLock);
+        }
+    }
+
+    /**
+     * Reads a resolved file through the cache, taking the file's read lock on a miss.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @param attributes the attributes read before the lookup, or null if the file could not be inspected
+     * @return the file contents
+     * @throws IOException if the file is missing, is a directory, the lock times out or reading fails
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+
+    private byte[] read(Path filePath, BasicFileAttributes attributes) throws IOException, InterruptedException {
+        String cacheKey = filePath.toString();
+        if (attributes != null && attributes.isRegularFile()) {
+            byte[] cached = fileCache.get(cacheKey, attributes.size(), attributes.lastModifiedTime().toMillis());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ReentrantReadWriteLock fileLock = acquireReadLock(filePath);
+        try {
             if (!Files.exists(filePath)) {
                 throw new IOException("File not found: " + filePath);
             }
@@ -116,19 +443,150 @@ public class FileAccessController {
                 throw new IOException("Path is a directory: " + filePath);
             }
 
-            Thread.sleep(100);
+            if (readDelayMillis > 0) {
+                Thread.sleep(readDelayMillis);
+            }
 
-            return Files.readAllBytes(filePath);
+            byte[] content = Files.readAllBytes(filePath);
+            if (attributes != null) {
+                fileCache.put(cacheKey, content, attributes.lastModifiedTime().toMillis());
+            }
+            return content;
         } finally {
-            System.out.printf("[%s] Releasing lock: %s (Tempo no sistema: %dns)%n",
-                    Thread.currentThread().getName(),
-                    filePath,
-                    System.nanoTime());
+            releaseReadLock(filePath, fileLock);
+        }
+    }
 
-            if (!fileLock.hasQueuedThreads()) {
-                fileLocks.remove(filePath.toString(), fileLock);
-            }
-            fileLock.unlock();
+    /**
+     * Acquires the shared read lock of a file, waiting at most the lock timeout, and records the wait.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @return the acquired lock, to be passed to {@link #releaseReadLock(Path, ReentrantReadWriteLock)}
+     * @throws IOException if the lock could not be acquired in time
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+
+    private ReentrantReadWriteLock acquireReadLock(Path filePath) throws IOException, InterruptedException {
+        ReentrantReadWriteLock fileLock = lockFor(filePath.toString());
+
+        if (DiagnosticLog.isEnabled(DiagnosticLog.Level.DEBUG)) {
+            DiagnosticLog.debug("Trying to acquire read lock for: %s (Queued threads: %d)", filePath, fileLock.getQueueLength());
+        }
+
+        long waiting = System.nanoTime();
+        boolean acquired = fileLock.readLock().tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        metrics.recordLatency(ServerMetrics.Phase.LOCK_WAIT, System.nanoTime() - waiting);
+        if (!acquired) {
+            DiagnosticLog.warn("Timeout when waiting for lock: %s", filePath);
+            throw new IOException("Timeout waiting for file access: " + filePath);
+        }
+
+        DiagnosticLog.debug("Read lock acquired for: %s", filePath);
+        return fileLock;
+    }
+
+    /**
+     * Releases a read lock taken with {@link #acquireReadLock(Path)}.
+     *
+     * @param filePath the normalized absolute path of the file
+     * @param fileLock the lock to release
+     */
+
+    private static void releaseReadLock(Path filePath, ReentrantReadWriteLock fileLock) {
+        DiagnosticLog.debug("Releasing read lock: %s", filePath);
+
+        fileLock.readLock().unlock();
+    }
+
+    /**
+     * Discards any cached content or mapping of a file so that the next read reloads it from disk.
+     * <p>
+     * This is the writer side of the per-file lock: it waits for in-flight reads of the
+     * same file to finish and blocks new ones until the cache entry has been removed.
+     *
+     * @param route the relative path of the file from server root
+     * @throws IOException if path traversal attempt is detected or
+     * timeout occurs while waiting for file lock
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+
+    public void invalidate(String route) throws IOException, InterruptedException {
+        Path filePath = resolvePath(route);
+        String cacheKey = filePath.toString();
+
+        ReentrantReadWriteLock fileLock = lockFor(cacheKey);
+
+        if (!fileLock.writeLock().tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("Timeout waiting for file access: " + filePath);
+        }
+
+        try {
+            fileCache.invalidate(cacheKey);
+            mappedFileCache.invalidate(cacheKey);
+            compressedFileCache.invalidate(cacheKey);
+            validators.remove(cacheKey);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Resolves a request route against the server root, rejecting path traversal attempts.
+     *
+     * @param route the relative path of the file from server root,
+     *              if null or empty the configured default page is used
+     * @return the normalized absolute path of the file
+     * @throws IOException if the resolved path is outside the server root
+     */
+
+    private Path resolvePath(String route) throws IOException {
+        Path rootPath = settings.getRoot();
+
+        if (route == null || route.isEmpty()) {
+            route = settings.getDefaultRoute();
+        }
+
+        if (route.startsWith("/")) {
+            route = route.substring(1);
+        }
+
+        Path requestedPath = Paths.get(route).normalize();
+        Path filePath = rootPath.resolve(requestedPath).toAbsolutePath().normalize();
+
+        if (!filePath.startsWith(rootPath)) {
+            String errorMsg = String.format(
+                    "Access denied: Path traversal attempt. Requested '%s' is outside server root '%s'",
+                    filePath, rootPath);
+            DiagnosticLog.warn("Security violation: %s", errorMsg);
+            throw new IOException(errorMsg);
+        }
+        return filePath;
+    }
+
+    /**
+     * Returns the lock stripe guarding a file.
+     *
+     * @param key the normalized absolute path of the file
+     * @return the same lock for every call with the same path
+     */
+
+    static ReentrantReadWriteLock lockFor(String key) {
+        int hash = key.hashCode();
+        return fileLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Reads the basic attributes of a file without following the read path.
+     *
+     * @param filePath the absolute path of the file
+     * @return the file attributes, or null if the file does not exist or cannot be inspected
+     */
+
+    private static BasicFileAttributes readAttributes(Path filePath) {
+        try {
+            return Files.readAttributes(filePath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
         }
     }
 }
\ No newline at end of file
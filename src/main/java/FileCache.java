@@ -0,0 +1,131 @@
+/**
+ * The FileCache class keeps the contents of recently served files in memory.
+ * <p>
+ * Entries are keyed by the normalized absolute path of the file and remember the
+ * size and modification time the content was read with. A lookup only returns the
+ * cached content when both still match the file on disk, so edited files are
+ * transparently reloaded.
+ * <p>
+ * The total number of cached bytes is bounded by a configurable budget. When a new
+ * entry does not fit, the least recently used entries are evicted until it does.
+ * Files larger than the whole budget are never cached. A budget of zero disables
+ * the cache. The bookkeeping is that of the {@link ByteBudgetCache} it is built on.
+ *
+ * @see FileAccessController
+ */
+
+public class FileCache {
+
+    private final ByteBudgetCache<CachedFile> entries;
+
+    /**
+     * Constructs a new FileCache with the given byte budget.
+     *
+     * @param maxBytes the maximum number of content bytes kept in memory, zero disables caching
+     * @throws IllegalArgumentException if the budget is negative
+     */
+
+    public FileCache(long maxBytes) {
+        this.entries = new ByteBudgetCache<>(maxBytes, entry -> entry.size);
+    }
+
+    /**
+     * Returns the cached content of a file if it is still up to date.
+     * <p>
+     * An entry whose size or modification time differs from the given values is
+     * considered stale; it is removed and the lookup counts as a miss.
+     * The returned array is shared between callers and must not be modified.
+     *
+     * @param key the normalized absolute path of the file
+     * @param size the current size of the file on disk
+     * @param lastModified the current modification time of the file in milliseconds
+     * @return the cached content, or null if it is absent or stale
+     */
+
+    public byte[] get(String key, long size, long lastModified) {
+        CachedFile entry = entries.get(key, cached -> cached.size == size && cached.lastModified == lastModified);
+        return entry != null ? entry.content : null;
+    }
+
+    /**
+     * Stores the content of a file, evicting least recently used entries if needed.
+     *
+     * @param key the normalized absolute path of the file
+     * @param content the file content, which must not be modified afterwards
+     * @param lastModified the modification time of the file when the content was read
+     */
+
+    public void put(String key, byte[] content, long lastModified) {
+        entries.put(key, new CachedFile(content, content.length, lastModified));
+    }
+
+    /**
+     * Removes the entry for a file, if present.
+     *
+     * @param key the normalized absolute path of the file
+     */
+
+    public void invalidate(String key) {
+        entries.invalidate(key);
+    }
+
+    /**
+     * @return the number of lookups answered from memory
+     */
+
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that found no valid entry
+     */
+
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    /**
+     * @return the number of entries evicted to respect the byte budget
+     */
+
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * @return the number of content bytes currently held in memory
+     */
+
+    public long getCurrentBytes() {
+        return entries.getCurrentBytes();
+    }
+
+    /**
+     * @return the configured byte budget
+     */
+
+    public long getMaxBytes() {
+        return entries.getMaxBytes();
+    }
+
+    /**
+     * @return the number of files currently cached
+     */
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class CachedFile {
+        private final byte[] content;
+        private final long size;
+        private final long lastModified;
+
+        private CachedFile(byte[] content, long size, long lastModified) {
+            this.content = content;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * The FileValidators class holds the validators of a file: its strong entity tag and modification time.
+ * <p>
+ * The entity tag is derived from file metadata only, the inode number, the size and the
+ * modification time, so it is computed without reading the content. Replacing a file,
+ * even with one of the same size, gives it a new inode or modification time and therefore
+ * a new tag. Instances are created and cached by the {@link FileAccessController}, which
+ * reuses them while the attributes they were derived from are unchanged.
+ * <p>
+ * Instances are immutable.
+ */
+
+public final class FileValidators {
+
+    private final Object fileKey;
+    private final long size;
+    private final long lastModified;
+    private final String eTag;
+
+    /**
+     * Constructs the validators of a file.
+     *
+     * @param inode the inode number of the file, or zero when the file system does not expose one
+     * @param attributes the attributes the validators are derived from
+     */
+
+    public FileValidators(long inode, BasicFileAttributes attributes) {
+        this.fileKey = attributes.fileKey();
+        this.size = attributes.size();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.eTag = "\"" + Long.toHexString(inode) + "-" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Tells whether these validators still describe a file with the given attributes.
+     *
+     * @param attributes the current attributes of the file
+     * @return true if the file key, size and modification time are unchanged
+     */
+
+    public boolean matches(BasicFileAttributes attributes) {
+        return size == attributes.size()
+                && lastModified == attributes.lastModifiedTime().toMillis()
+                && (fileKey == null ? attributes.fileKey() == null : fileKey.equals(attributes.fileKey()));
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the modification time of the file in milliseconds
+     */
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the strong entity tag, quotes included, such as {@code "1a2b-400-18c3f2d9e10"}
+     */
+
+    public String getETag() {
+        return eTag;
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The GzipChannel class reads a {@link StaticFile} compressed in the gzip format, as it goes.
+ * <p>
+ * Unlike compressing the whole file up front, only one input block and the deflater's
+ * state are held in memory, whatever the size of the file, so the compressed content
+ * can be sent as it is produced. Its length is not known before the end, which is why
+ * responses using it are sent with chunked transfer encoding, see {@link HttpResponse}.
+ * <p>
+ * The file is read positionally through {@link StaticFile#read(long, ByteBuffer)}, so
+ * in-memory, mapped and streamed files are all supported. The channel owns the file and
+ * closes it when it is closed itself.
+ * <p>
+ * A GzipChannel is read by one thread at a time and is not thread-safe.
+ */
+
+public class GzipChannel implements ReadableByteChannel {
+
+    private static final int INPUT_BYTES = 32 * 1024;
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final StaticFile file;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer input;
+    private ByteBuffer pending = ByteBuffer.wrap(HEADER);
+    private long position;
+    private boolean trailerQueued;
+    private boolean open = true;
+
+    /**
+     * Constructs a new GzipChannel with the default compression level.
+     *
+     * @param file the file to compress, owned by the new channel
+     */
+
+    public GzipChannel(StaticFile file) {
+        this.file = file;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.input = ByteBuffer.allocate((int) Math.min(INPUT_BYTES, Math.max(file.getSize(), 1)));
+        this.input.limit(0);
+    }
+
+    /**
+     * Fills the target with the next compressed bytes.
+     *
+     * @param target the buffer to fill
+     * @return the number of bytes written to the target, or -1 once the whole gzip stream has been read
+     * @throws IOException if reading the file fails or the channel is closed
+     */
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int start = target.position();
+        while (target.hasRemaining()) {
+            if (pending.hasRemaining()) {
+                int length = Math.min(pending.remaining(), target.remaining());
+                target.put(pending.slice(pending.position(), length));
+                pending.position(pending.position() + length);
+                continue;
+            }
+            if (trailerQueued) {
+                break;
+            }
+            if (deflater.finished()) {
+                pending = trailer();
+                trailerQueued = true;
+                continue;
+            }
+            if (deflater.needsInput() && !input.hasRemaining()) {
+                fillInput();
+            }
+            deflater.deflate(target);
+        }
+        int read = target.position() - start;
+        return read == 0 && trailerQueued && !pending.hasRemaining() ? -1 : read;
+    }
+
+    /**
+     * Reads the next block of the file into the deflater, and finishes the stream after the last one.
+     */
+
+    private void fillInput() throws IOException {
+        long size = file.getSize();
+        if (position < size) {
+            input.clear().limit((int) Math.min(input.capacity(), size - position));
+            file.read(position, input);
+            input.flip();
+            crc.update(input.duplicate());
+            position += input.remaining();
+            deflater.setInput(input);
+        }
+        if (position >= size) {
+            deflater.finish();
+        }
+    }
+
+    private ByteBuffer trailer() {
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue());
+        trailer.putInt((int) position);
+        return trailer.flip();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Releases the deflater and closes the file.
+     *
+     * @throws IOException if closing the file fails
+     */
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            deflater.end();
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * The HttpDate class formats timestamps as HTTP dates, such as {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+ * <p>
+ * The {@code Date} header of every response only changes once per second, so its
+ * encoded form is cached and shared by all responses sent within the same second.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public final class HttpDate {
+
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private static volatile CachedHeader cachedHeader = new CachedHeader(Long.MIN_VALUE, null);
+
+    private HttpDate() {
+    }
+
+    /**
+     * Formats a timestamp as an HTTP date.
+     *
+     * @param epochMillis the timestamp in milliseconds since the epoch
+     * @return the formatted date
+     */
+
+    public static String format(long epochMillis) {
+        return FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    /**
+     * Parses an HTTP date in the preferred IMF-fixdate format.
+     * <p>
+     * The obsolete RFC 850 and asctime formats are not recognized; like any other
+     * invalid date they make the header they appear in be ignored.
+     *
+     * @param value the header value, possibly null
+     * @return the timestamp in milliseconds since the epoch, or -1 if the value is not a valid date
+     */
+
+    public static long parse(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Instant.from(FORMAT.parse(value.trim())).toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the complete {@code Date} header line for the current second.
+     *
+     * @return the encoded header, including its CRLF terminator; it must not be modified
+     */
+
+    public static byte[] dateHeader() {
+        long now = System.currentTimeMillis();
+        long second = now / 1000;
+        CachedHeader cached = cachedHeader;
+        if (cached.second != second) {
+            byte[] header = ("Date: " + format(second * 1000) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            cached = new CachedHeader(second, header);
+            cachedHeader = cached;
+        }
+        return cached.header;
+    }
+
+    private static final class CachedHeader {
+        private final long second;
+        private final byte[] header;
+
+        private CachedHeader(long second, byte[] header) {
+            this.second = second;
+            this.header = header;
+        }
+    }
+}
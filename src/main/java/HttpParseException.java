@@ -0,0 +1,42 @@
+import java.io.IOException;
+
+/**
+ * The HttpParseException class signals a request head that cannot be accepted.
+ * <p>
+ * It carries the HTTP status code the server answers with before closing the
+ * connection: 400 for a malformed request line, 414 for a request line that is too
+ * long and 431 for a header section that exceeds the configured limit.
+ *
+ * @see HttpRequestParser
+ */
+
+public class HttpParseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @serial the HTTP status code to answer with
+     */
+
+    private final int status;
+
+    /**
+     * Constructs a new HttpParseException.
+     *
+     * @param status the HTTP status code to answer with
+     * @param message the detail message
+     */
+
+    public HttpParseException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return the HTTP status code to answer with
+     */
+
+    public int getStatus() {
+        return status;
+    }
+}
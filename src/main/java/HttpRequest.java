@@ -0,0 +1,148 @@
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HttpRequest class represents the head of a single HTTP request.
+ * <p>
+ * It holds the request line (method, target and protocol version) and the header
+ * fields. Header names are stored in lower case so lookups are case-insensitive,
+ * as required by the HTTP specification.
+ * <p>
+ * Instances of this class are immutable and therefore thread-safe.
+ */
+
+public class HttpRequest {
+
+    private final String method;
+    private final String target;
+    private final String version;
+    private final Map<String, String> headers;
+
+    /**
+     * Constructs a new HttpRequest from its parsed components.
+     *
+     * @param method the request method, such as GET
+     * @param target the request target exactly as sent by the client
+     * @param version the protocol version, such as HTTP/1.1
+     * @param headers the header fields keyed by lower-case name
+     */
+
+    public HttpRequest(String method, String target, String version, Map<String, String> headers) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Parses a request head made of the request line followed by header lines.
+     * <p>
+     * Lines may be terminated by CRLF or LF and empty lines before the request line are
+     * ignored. A missing protocol version is treated as HTTP/1.0. Header lines without a
+     * colon are skipped. Connections are parsed incrementally with an
+     * {@link HttpRequestParser}; this method is a convenience for complete heads.
+     *
+     * @param head the request head, with or without the terminating blank line
+     * @return the parsed request, or null if the request line is malformed
+     */
+
+    public static HttpRequest parse(String head) {
+        return HttpRequestParser.parse(head);
+    }
+
+    /**
+     * @return the request method
+     */
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the request target exactly as sent by the client
+     */
+
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the protocol version
+     */
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Retrieves a header value.
+     *
+     * @param name the header name, in any case
+     * @return the header value, or null if the header is absent
+     */
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the length of the request body announced by the client.
+     *
+     * @return the value of the Content-Length header, or zero if absent
+     * @throws HttpParseException with status 400 if the value is not a non-negative decimal
+     * number, or with status 501 if the body has a Transfer-Encoding such as chunked, which
+     * is not decoded: in both cases the end of the body, and so the start of the next
+     * request, is unknown
+     */
+
+    public long getContentLength() throws HttpParseException {
+        String transferEncoding = getHeader("transfer-encoding");
+        if (transferEncoding != null) {
+            throw new HttpParseException(501, "Unsupported Transfer-Encoding: " + transferEncoding);
+        }
+        String value = getHeader("content-length");
+        if (value == null) {
+            return 0;
+        }
+        String digits = value.trim();
+        try {
+            long length = Long.parseLong(digits);
+            if (length >= 0 && digits.charAt(0) != '+') {
+                return length;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new HttpParseException(400, "Invalid Content-Length: " + value);
+    }
+
+    /**
+     * Determines whether the client wants the connection to stay open after this request.
+     * <p>
+     * HTTP/1.1 connections are persistent unless the client sends {@code Connection: close}.
+     * Older protocol versions are closed unless the client sends {@code Connection: keep-alive}.
+     *
+     * @return true if the connection should be kept open
+     */
+
+    public boolean isKeepAlive() {
+        if ("HTTP/1.1".equals(version)) {
+            return !hasConnectionToken("close");
+        }
+        return hasConnectionToken("keep-alive");
+    }
+
+    private boolean hasConnectionToken(String token) {
+        String connection = getHeader("connection");
+        if (connection == null) {
+            return false;
+        }
+        for (String value : connection.split(",")) {
+            if (value.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
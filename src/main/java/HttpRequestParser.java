@@ -0,0 +1,337 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HttpRequestParser class incrementally parses request heads from raw bytes.
+ * <p>
+ * Bytes are fed as they arrive from the socket, in pieces of any size; the parser
+ * keeps its state between calls, so a request line or header split across several
+ * TCP reads is handled transparently. Complete lines are parsed straight away and only
+ * the unfinished line is kept, in a reusable buffer owned by the parser. Bytes after
+ * the end of a head are left in the input for the next request, which makes pipelining
+ * a matter of calling {@link #parse(ByteBuffer)} again.
+ * <p>
+ * Parsing works on bytes rather than decoded characters. Common methods, protocol
+ * versions and header names are matched against constant tables and reuse the
+ * existing String instances, so a typical request only allocates its target, its
+ * header values and the header map.
+ * <p>
+ * The request line, together with any empty lines sent before it, is limited to
+ * {@code maxRequestLineBytes} and the header section to {@code maxHeaderBytes};
+ * exceeding either, or sending a malformed request line,
+ * raises an {@link HttpParseException} carrying the status code to answer with.
+ * <p>
+ * A parser is bound to a single connection and is not thread-safe.
+ */
+
+public class HttpRequestParser {
+
+    /**
+     * Default limit for the request line, in bytes.
+     */
+
+    public static final int DEFAULT_MAX_REQUEST_LINE_BYTES = 8 * 1024;
+
+    /**
+     * Default limit for the header section, in bytes.
+     */
+
+    public static final int DEFAULT_MAX_HEADER_BYTES = 16 * 1024;
+
+    private static final int INITIAL_LINE_CAPACITY = 256;
+
+    private static final String[] METHODS = {
+            "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT"
+    };
+    private static final String[] VERSIONS = { "HTTP/1.1", "HTTP/1.0" };
+    private static final String[] HEADER_NAMES = {
+            "host", "connection", "content-length", "user-agent", "accept", "accept-encoding",
+            "accept-language", "cache-control", "content-type", "cookie", "if-modified-since",
+            "if-none-match", "pragma", "range", "referer", "transfer-encoding", "upgrade"
+    };
+    private static final byte[][] METHOD_BYTES = toBytes(METHODS);
+    private static final byte[][] VERSION_BYTES = toBytes(VERSIONS);
+    private static final byte[][] HEADER_NAME_BYTES = toBytes(HEADER_NAMES);
+
+    private final int maxRequestLineBytes;
+    private final int maxHeaderBytes;
+
+    private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+    private int lineLength;
+    private boolean inHeaders;
+    private int headerBytes;
+    private int emptyLineBytes;
+
+    private String method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;
+
+    /**
+     * Constructs a new HttpRequestParser with the default size limits.
+     */
+
+    public HttpRequestParser() {
+        this(DEFAULT_MAX_REQUEST_LINE_BYTES, DEFAULT_MAX_HEADER_BYTES);
+    }
+
+    /**
+     * Constructs a new HttpRequestParser.
+     *
+     * @param maxRequestLineBytes the maximum length of the request line, terminator included
+     * @param maxHeaderBytes the maximum length of the header section, terminators included
+     */
+
+    public HttpRequestParser(int maxRequestLineBytes, int maxHeaderBytes) {
+        this.maxRequestLineBytes = maxRequestLineBytes;
+        this.maxHeaderBytes = maxHeaderBytes;
+    }
+
+    /**
+     * Constructs a new HttpRequestParser with the limits configured through
+     * {@code server.max.request.line.bytes} and {@code server.max.header.bytes}.
+     *
+     * @param settings the server settings
+     * @return the configured parser
+     */
+
+    public static HttpRequestParser fromSettings(ServerSettings settings) {
+        return new HttpRequestParser(settings.getMaxRequestLineBytes(), settings.getMaxHeaderBytes());
+    }
+
+    /**
+     * Consumes bytes from the input until a request head is complete or the input is exhausted.
+     * <p>
+     * Empty lines before the request line are ignored, but count towards the limit of the
+     * request line. When a head is complete the input
+     * is positioned just after its terminating empty line and the parser is ready for the
+     * next request; otherwise all input has been consumed and more must be fed.
+     *
+     * @param input the buffer in read mode
+     * @return the parsed request, or null if more input is needed
+     * @throws HttpParseException if the request line is malformed or a size limit is exceeded;
+     * the parser must then be {@link #reset()} before it is used again
+     */
+
+    public HttpRequest parse(ByteBuffer input) throws HttpParseException {
+        while (input.hasRemaining()) {
+            int start = input.position();
+            int limit = input.limit();
+            int end = start;
+            while (end < limit && input.get(end) != '\n') {
+                end++;
+            }
+
+            boolean complete = end < limit;
+            append(input, start, end - start);
+            input.position(complete ? end + 1 : end);
+            if (!complete) {
+                return null;
+            }
+
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            int lineBytes = lineLength + 1;
+            lineLength = 0;
+
+            if (!inHeaders) {
+                if (length > 0) {
+                    parseRequestLine(length);
+                    inHeaders = true;
+                } else {
+                    emptyLineBytes += lineBytes;
+                    if (emptyLineBytes >= maxRequestLineBytes) {
+                        throw new HttpParseException(400, "Too many empty lines before the request line");
+                    }
+                }
+            } else if (length == 0) {
+                return complete();
+            } else {
+                parseHeaderLine(length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if no byte of the next request has been consumed yet
+     */
+
+    public boolean isIdle() {
+        return !inHeaders && lineLength == 0;
+    }
+
+    /**
+     * Discards any partially parsed request.
+     */
+
+    public void reset() {
+        lineLength = 0;
+        inHeaders = false;
+        headerBytes = 0;
+        emptyLineBytes = 0;
+        method = null;
+        target = null;
+        version = null;
+        headers = null;
+    }
+
+    /**
+     * Parses a complete request head held in a String, as used by tests and tools.
+     *
+     * @param head the request head, with or without the terminating blank line
+     * @return the parsed request, or null if it is malformed or incomplete
+     */
+
+    public static HttpRequest parse(String head) {
+        HttpRequestParser parser = new HttpRequestParser(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        try {
+            HttpRequest request = parser.parse(ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)));
+            if (request == null) {
+                request = parser.parse(ByteBuffer.wrap(new byte[] { '\r', '\n', '\r', '\n' }));
+            }
+            return request;
+        } catch (HttpParseException e) {
+            return null;
+        }
+    }
+
+    private void append(ByteBuffer input, int offset, int length) throws HttpParseException {
+        int newLength = lineLength + length;
+        int limit = inHeaders ? maxHeaderBytes - headerBytes : maxRequestLineBytes - emptyLineBytes;
+        if (newLength >= limit) {
+            if (inHeaders) {
+                throw new HttpParseException(431, "Request header fields too large");
+            }
+            throw new HttpParseException(414, "Request line too long");
+        }
+        if (newLength > line.length) {
+            byte[] grown = new byte[Math.min(Math.max(newLength, line.length * 2), limit)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        input.get(offset, line, lineLength, length);
+        lineLength = newLength;
+    }
+
+    private void parseRequestLine(int length) throws HttpParseException {
+        int methodEnd = indexOf(' ', 0, length);
+        if (methodEnd <= 0) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+        int targetStart = skipSpaces(methodEnd, length);
+        int targetEnd = indexOf(' ', targetStart, length);
+        if (targetEnd < 0) {
+            targetEnd = length;
+        }
+        if (targetStart == targetEnd) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+        int versionStart = skipSpaces(targetEnd, length);
+        int versionEnd = length;
+        while (versionEnd > versionStart && line[versionEnd - 1] == ' ') {
+            versionEnd--;
+        }
+
+        method = lookup(METHODS, METHOD_BYTES, 0, methodEnd, false);
+        target = new String(line, targetStart, targetEnd - targetStart, StandardCharsets.ISO_8859_1);
+        version = versionStart < versionEnd
+                ? lookup(VERSIONS, VERSION_BYTES, versionStart, versionEnd, false)
+                : "HTTP/1.0";
+        headers = new HashMap<>();
+        headerBytes = 0;
+    }
+
+    private void parseHeaderLine(int length) {
+        headerBytes += length + 2;
+        int colon = indexOf(':', 0, length);
+        if (colon <= 0) {
+            return;
+        }
+
+        int nameEnd = colon;
+        while (nameEnd > 0 && isWhitespace(line[nameEnd - 1])) {
+            nameEnd--;
+        }
+        int valueStart = colon + 1;
+        while (valueStart < length && isWhitespace(line[valueStart])) {
+            valueStart++;
+        }
+        int valueEnd = length;
+        while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+            valueEnd--;
+        }
+
+        String name = lookup(HEADER_NAMES, HEADER_NAME_BYTES, 0, nameEnd, true);
+        headers.put(name, new String(line, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+    }
+
+    private HttpRequest complete() {
+        HttpRequest request = new HttpRequest(method, target, version, headers);
+        reset();
+        return request;
+    }
+
+    /**
+     * Returns the constant matching the given bytes, or a new String if there is none.
+     * Header names are matched ignoring ASCII case and returned in lower case.
+     */
+
+    private String lookup(String[] constants, byte[][] constantBytes, int start, int end, boolean ignoreCase) {
+        int length = end - start;
+        for (int i = 0; i < constantBytes.length; i++) {
+            byte[] candidate = constantBytes[i];
+            if (candidate.length == length && matches(candidate, start, ignoreCase)) {
+                return constants[i];
+            }
+        }
+        String value = new String(line, start, length, StandardCharsets.ISO_8859_1);
+        return ignoreCase ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    private boolean matches(byte[] candidate, int start, boolean ignoreCase) {
+        for (int i = 0; i < candidate.length; i++) {
+            byte b = line[start + i];
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != candidate[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && line[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static byte[][] toBytes(String[] values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,611 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The HttpResponse class represents a complete HTTP response ready to be sent to a client.
+ * <p>
+ * It holds the status code, content type, body and whether the connection stays open
+ * afterwards. The response head always carries {@code Content-Type}, {@code Content-Length},
+ * {@code Date}, {@code Server} and {@code Connection} headers, so the same response can be
+ * written to a blocking stream or to a non-blocking channel. The only exception is
+ * {@code 304 Not Modified}, which has no body and therefore no content headers.
+ * <p>
+ * The head is assembled from pre-encoded byte arrays: status lines and content type
+ * headers are encoded once per distinct value, the {@code Date} header once per second
+ * (see {@link HttpDate}) and the content length is written digit by digit. It goes into a
+ * direct buffer taken from a shared {@link BufferPool}, so that head and body leave in a
+ * single gathering write on the socket channel.
+ * <p>
+ * Additional headers, such as {@code Content-Range}, are added with
+ * {@link #addHeader(String, String)} before the response is sent.
+ * <p>
+ * The body is a byte array, a {@link ByteBuffer} such as a shared memory mapping, or a
+ * region of an open {@link FileChannel}. Buffer bodies are written to the socket channel
+ * directly, so a mapped file is sent without being copied onto the heap. File bodies
+ * are sent with {@link FileChannel#transferTo}, which lets the operating system copy the
+ * data straight from the page cache to the socket (sendfile on Linux) when the target is
+ * a socket channel. A response with a file body owns the channel and must be closed once
+ * it has been sent.
+ * <p>
+ * A body whose length is not known in advance, such as content compressed as it is
+ * sent, is read from a {@link ReadableByteChannel} and sent with
+ * {@code Transfer-Encoding: chunked} instead of a {@code Content-Length}, so the
+ * connection can still be kept alive afterwards. Chunks are framed in a fixed-size
+ * direct buffer taken from a shared pool and reused for the whole body, see
+ * {@link #nextChunk()}. Chunked responses are only meant for HTTP/1.1 clients.
+ * <p>
+ * A response to a {@code HEAD} request, see {@link #forMethod(String)}, keeps the head of
+ * the response to the equivalent GET, {@code Content-Length} included, but never sends its
+ * body, so that a client reading the next response on the same connection finds it
+ * right after the head.
+ * <p>
+ * The head buffer is returned to the pool by {@link #close()}, so every response must be
+ * closed once it has been sent. Apart from that buffer, instances are immutable; the body
+ * array or buffer is shared and must not be modified.
+ */
+
+public class HttpResponse implements Closeable {
+
+    private static final int HEAD_BUFFER_BYTES = 1024;
+    private static final BufferPool HEAD_BUFFERS = new BufferPool(HEAD_BUFFER_BYTES, 1024);
+
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = ascii("Transfer-Encoding: chunked\r\n");
+    private static final byte[] LAST_CHUNK = ascii("0\r\n\r\n");
+    private static final byte[] SERVER = ascii("Server: pa-web-server\r\n");
+    private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+    private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+    private static final ConcurrentHashMap<Integer, byte[]> STATUS_LINES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, byte[]> CONTENT_TYPE_HEADERS = new ConcurrentHashMap<>();
+    private static final byte[] NO_HEADERS = new byte[0];
+    private static final byte[] NO_BODY = new byte[0];
+
+    /**
+     * Maximum number of body bytes in one chunk.
+     */
+
+    public static final int CHUNK_DATA_BYTES = 16 * 1024;
+
+    // Room for the size of a full chunk in hex and its CRLF
+    private static final int CHUNK_PREFIX_BYTES = Integer.toHexString(CHUNK_DATA_BYTES).length() + 2;
+    private static final BufferPool CHUNK_BUFFERS =
+            new BufferPool(CHUNK_PREFIX_BYTES + CHUNK_DATA_BYTES + CRLF.length + LAST_CHUNK.length, 256);
+
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+    private final ByteBuffer bodyBuffer;
+    private final FileChannel bodyChannel;
+    private final ReadableByteChannel bodySource;
+    private final long bodyOffset;
+    private final long contentLength;
+    private final boolean keepAlive;
+    private byte[] extraHeaders = NO_HEADERS;
+    private ByteBuffer head;
+    private ByteBuffer chunk;
+    private boolean lastChunkSent;
+    private boolean headOnly;
+
+    /**
+     * Constructs a new HttpResponse.
+     *
+     * @param status the HTTP status code
+     * @param contentType the value of the Content-Type header
+     * @param body the response body
+     * @param keepAlive whether the connection stays open after this response
+     */
+
+    public HttpResponse(int status, String contentType, byte[] body, boolean keepAlive) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+        this.bodyBuffer = null;
+        this.bodyChannel = null;
+        this.bodySource = null;
+        this.bodyOffset = 0;
+        this.contentLength = body.length;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Constructs a new HttpResponse whose body is the remaining content of a buffer.
+     *
+     * @param status the HTTP status code
+     * @param contentType the value of the Content-Type header
+     * @param bodyBuffer the response body, read from its position to its limit; it is never modified
+     * @param keepAlive whether the connection stays open after this response
+     */
+
+    public HttpResponse(int status, String contentType, ByteBuffer bodyBuffer, boolean keepAlive) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = null;
+        this.bodyBuffer = bodyBuffer;
+        this.bodyChannel = null;
+        this.bodySource = null;
+        this.bodyOffset = 0;
+        this.contentLength = bodyBuffer.remaining();
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Constructs a new HttpResponse whose body is streamed from a file channel.
+     *
+     * @param status the HTTP status code
+     * @param contentType the value of the Content-Type header
+     * @param bodyChannel the open channel holding the body, owned by the new response
+     * @param contentLength the number of bytes to send, starting at position zero
+     * @param keepAlive whether the connection stays open after this response
+     */
+
+    public HttpResponse(int status, String contentType, FileChannel bodyChannel, long contentLength, boolean keepAlive) {
+        this(status, contentType, bodyChannel, 0, contentLength, keepAlive);
+    }
+
+    /**
+     * Constructs a new HttpResponse whose body is a region of a file channel.
+     * <p>
+     * The region is read positionally, so the channel position is left untouched.
+     *
+     * @param status the HTTP status code
+     * @param contentType the value of the Content-Type header
+     * @param bodyChannel the open channel holding the body, owned by the new response
+     * @param bodyOffset the position of the first body byte in the file
+     * @param contentLength the number of bytes to send
+     * @param keepAlive whether the connection stays open after this response
+     */
+
+    public HttpResponse(int status, String contentType, FileChannel bodyChannel, long bodyOffset, long contentLength, boolean keepAlive) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = null;
+        this.bodyBuffer = null;
+        this.bodyChannel = bodyChannel;
+        this.bodySource = null;
+        this.bodyOffset = bodyOffset;
+        this.contentLength = contentLength;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Constructs a new HttpResponse whose body has an unknown length and is sent in chunks.
+     *
+     * @param status the HTTP status code
+     * @param contentType the value of the Content-Type header
+     * @param bodySource the channel producing the body until it reports the end of stream,
+     *                   owned by the new response
+     * @param keepAlive whether the connection stays open after this response
+     */
+
+    public HttpResponse(int status, String contentType, ReadableByteChannel bodySource, boolean keepAlive) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = null;
+        this.bodyBuffer = null;
+        this.bodyChannel = null;
+        this.bodySource = bodySource;
+        this.bodyOffset = 0;
+        this.contentLength = -1;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return the HTTP status code
+     */
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the response body, or null if the body is a buffer or is streamed from a file channel
+     */
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return a view of the buffer holding the body with its own position, or null if the body is not a buffer
+     */
+
+    public ByteBuffer getBodyBuffer() {
+        return bodyBuffer == null ? null : bodyBuffer.duplicate();
+    }
+
+    /**
+     * @return the file channel holding the body, or null if the body is in memory
+     */
+
+    public FileChannel getBodyChannel() {
+        return bodyChannel;
+    }
+
+    /**
+     * @return the position of the first body byte in the body channel, zero for other bodies
+     */
+
+    public long getBodyOffset() {
+        return bodyOffset;
+    }
+
+    /**
+     * @return true if the body has an unknown length and is sent with chunked transfer encoding
+     */
+
+    public boolean isChunked() {
+        return bodySource != null;
+    }
+
+    /**
+     * @return the number of body bytes, or -1 for a chunked body
+     */
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return true if the connection stays open after this response
+     */
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Adapts the response to the method of the request it answers. A response to a
+     * {@code HEAD} request sends its head only; the body, if any, is never read.
+     *
+     * @param method the request method
+     * @return this response
+     */
+
+    public HttpResponse forMethod(String method) {
+        headOnly = "HEAD".equals(method);
+        return this;
+    }
+
+    /**
+     * @return true if only the head is sent, because the response answers a {@code HEAD} request
+     */
+
+    public boolean isHeadOnly() {
+        return headOnly;
+    }
+
+    /**
+     * Adds a header to the response head.
+     *
+     * @param name the header name
+     * @param value the header value
+     * @return this response
+     * @throws IllegalStateException if the head has already been encoded for sending
+     */
+
+    public HttpResponse addHeader(String name, String value) {
+        if (head != null) {
+            throw new IllegalStateException("Response head already encoded");
+        }
+        byte[] line = ascii(name + ": " + value + "\r\n");
+        byte[] headers = new byte[extraHeaders.length + line.length];
+        System.arraycopy(extraHeaders, 0, headers, 0, extraHeaders.length);
+        System.arraycopy(line, 0, headers, extraHeaders.length, line.length);
+        extraHeaders = headers;
+        return this;
+    }
+
+    /**
+     * Encodes the status line and headers, including the terminating blank line.
+     *
+     * @return the response head as bytes
+     */
+
+    public byte[] headBytes() {
+        byte[] date = HttpDate.dateHeader();
+        ByteBuffer buffer = ByteBuffer.allocate(headLength(date));
+        encodeHead(buffer, date);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the complete response.
+     * <p>
+     * When the socket channel is available, head and body are sent to it with a single
+     * gathering write, file bodies follow with {@link FileChannel#transferTo} and chunked
+     * bodies chunk by chunk; anything buffered in the stream is flushed first. Without a channel the head and byte array
+     * bodies are written to the stream without flushing it, and other bodies are copied
+     * through it. The body of a response to a {@code HEAD} request is not written.
+     *
+     * @param output the stream connected to the client
+     * @param channel the channel connected to the client, or null to write through the stream only
+     * @throws IOException if writing fails or the file shrank while being sent
+     */
+
+    public void writeTo(OutputStream output, WritableByteChannel channel) throws IOException {
+        WritableByteChannel target;
+        if (channel != null) {
+            output.flush();
+            writeFully(channel, toByteBuffers());
+            if (headOnly) {
+                return;
+            }
+            target = channel;
+        } else {
+            output.write(headBytes());
+            if (headOnly) {
+                return;
+            }
+            if (body != null) {
+                output.write(body);
+                return;
+            }
+            output.flush();
+            target = Channels.newChannel(output);
+            if (bodyBuffer != null) {
+                writeFully(target, new ByteBuffer[] { bodyBuffer.duplicate() });
+            }
+        }
+        if (bodySource != null) {
+            ByteBuffer next;
+            while ((next = nextChunk()) != null) {
+                writeFully(target, new ByteBuffer[] { next });
+            }
+            return;
+        }
+        if (bodyChannel == null) {
+            return;
+        }
+
+        long position = 0;
+        while (position < contentLength) {
+            long sent = bodyChannel.transferTo(bodyOffset + position, contentLength - position, target);
+            if (sent <= 0 && bodyOffset + position >= bodyChannel.size()) {
+                throw new EOFException("File shrank while being sent");
+            }
+            position += sent;
+        }
+    }
+
+    /**
+     * Writes the complete response to a stream, copying file bodies through it.
+     *
+     * @param output the stream connected to the client
+     * @throws IOException if writing fails
+     */
+
+    public void writeTo(OutputStream output) throws IOException {
+        writeTo(output, null);
+    }
+
+    /**
+     * Wraps the head and any in-memory or buffer body in buffers suitable for a gathering channel write.
+     * <p>
+     * The head is encoded into a pooled direct buffer on the first call, which is held until
+     * the response is closed. For file bodies only the head is returned; the body must be
+     * sent from {@link #getBodyChannel()}. Likewise for chunked bodies, which must be sent
+     * chunk by chunk from {@link #nextChunk()}. Only the head is returned for a response
+     * to a {@code HEAD} request.
+     *
+     * @return the buffers, in order, each with its own position
+     */
+
+    public ByteBuffer[] toByteBuffers() {
+        if (head == null) {
+            byte[] date = HttpDate.dateHeader();
+            int length = headLength(date);
+            head = length <= HEAD_BUFFER_BYTES ? HEAD_BUFFERS.acquire() : ByteBuffer.allocate(length);
+            encodeHead(head, date);
+            head.flip();
+        }
+
+        if (bodyBuffer != null && !headOnly) {
+            return new ByteBuffer[] { head.duplicate(), bodyBuffer.duplicate() };
+        }
+        if (body == null || headOnly) {
+            return new ByteBuffer[] { head.duplicate() };
+        }
+        return new ByteBuffer[] { head.duplicate(), ByteBuffer.wrap(body) };
+    }
+
+    /**
+     * Reads the next piece of a chunked body and frames it as a chunk.
+     * <p>
+     * Every call reuses the same pooled buffer, so the previous chunk must have been
+     * written entirely before the next one is requested. When the body source reaches
+     * its end the terminating zero-length chunk is appended, and further calls return null.
+     *
+     * @return the framed chunk in read mode, or null once the last chunk has been returned,
+     * if the body is not chunked or if the response answers a {@code HEAD} request
+     * @throws IOException if reading the body source fails
+     */
+
+    public ByteBuffer nextChunk() throws IOException {
+        if (bodySource == null || lastChunkSent || headOnly) {
+            return null;
+        }
+        if (chunk == null) {
+            chunk = CHUNK_BUFFERS.acquire();
+        }
+
+        chunk.clear().position(CHUNK_PREFIX_BYTES).limit(CHUNK_PREFIX_BYTES + CHUNK_DATA_BYTES);
+        boolean ended = false;
+        while (chunk.hasRemaining() && !ended) {
+            ended = bodySource.read(chunk) < 0;
+        }
+        int length = chunk.position() - CHUNK_PREFIX_BYTES;
+        chunk.limit(chunk.capacity());
+
+        int start = CHUNK_PREFIX_BYTES;
+        if (length > 0) {
+            String size = Integer.toHexString(length);
+            start -= size.length() + CRLF.length;
+            chunk.put(start, ascii(size));
+            chunk.put(CHUNK_PREFIX_BYTES - CRLF.length, CRLF);
+            chunk.put(CRLF);
+        }
+        if (ended) {
+            chunk.put(LAST_CHUNK);
+            lastChunkSent = true;
+        }
+        return chunk.flip().position(start);
+    }
+
+    /**
+     * Returns the head and chunk buffers to their pools and closes the file channel or
+     * body source of a streamed body.
+     *
+     * @throws IOException if closing the channel fails
+     */
+
+    @Override
+    public void close() throws IOException {
+        if (head != null) {
+            HEAD_BUFFERS.release(head);
+            head = null;
+        }
+        if (chunk != null) {
+            CHUNK_BUFFERS.release(chunk);
+            chunk = null;
+        }
+        if (bodyChannel != null) {
+            bodyChannel.close();
+        }
+        if (bodySource != null) {
+            bodySource.close();
+        }
+    }
+
+    private int headLength(byte[] date) {
+        int contentHeaders = status == 304 ? 0 : contentTypeHeader(contentType).length + (bodySource != null
+                ? TRANSFER_ENCODING_CHUNKED.length
+                : CONTENT_LENGTH.length + digits(contentLength) + CRLF.length);
+        return statusLine(status).length + contentHeaders +
+                extraHeaders.length + date.length + SERVER.length +
+                (keepAlive ? CONNECTION_KEEP_ALIVE.length : CONNECTION_CLOSE.length) + CRLF.length;
+    }
+
+    private void encodeHead(ByteBuffer target, byte[] date) {
+        target.put(statusLine(status));
+        if (status != 304) {
+            target.put(contentTypeHeader(contentType));
+            if (bodySource != null) {
+                target.put(TRANSFER_ENCODING_CHUNKED);
+            } else {
+                target.put(CONTENT_LENGTH);
+                putDigits(target, contentLength);
+                target.put(CRLF);
+            }
+        }
+        target.put(extraHeaders);
+        target.put(date);
+        target.put(SERVER);
+        target.put(keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
+        target.put(CRLF);
+    }
+
+    private static byte[] statusLine(int status) {
+        return STATUS_LINES.computeIfAbsent(status, s -> ascii("HTTP/1.1 " + s + " " + reasonPhrase(s) + "\r\n"));
+    }
+
+    private static byte[] contentTypeHeader(String contentType) {
+        return CONTENT_TYPE_HEADERS.computeIfAbsent(contentType, type -> ascii("Content-Type: " + type + "\r\n"));
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static void putDigits(ByteBuffer target, long value) {
+        int end = target.position() + digits(value);
+        for (int index = end - 1; index >= target.position(); index--) {
+            target.put(index, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        target.position(end);
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers) throws IOException {
+        if (!(channel instanceof GatheringByteChannel)) {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return;
+        }
+        GatheringByteChannel gathering = (GatheringByteChannel) channel;
+        while (buffers[buffers.length - 1].hasRemaining() || buffers[0].hasRemaining()) {
+            gathering.write(buffers);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Creates a small HTML error response that closes the connection.
+     *
+     * @param status the HTTP status code
+     * @return the error response
+     */
+
+    public static HttpResponse error(int status) {
+        String page = "<html><body><h1>" + status + " " + reasonPhrase(status) + "</h1></body></html>";
+        return new HttpResponse(status, "text/html", page.getBytes(StandardCharsets.ISO_8859_1), false);
+    }
+
+    /**
+     * Creates a {@code 304 Not Modified} response, which has no body.
+     * <p>
+     * Its head carries no {@code Content-Type} or {@code Content-Length}; the validators
+     * and caching headers of the unchanged file are added with {@link #addHeader(String, String)}.
+     *
+     * @param keepAlive whether the connection stays open after this response
+     * @return the empty response
+     */
+
+    public static HttpResponse notModified(boolean keepAlive) {
+        return new HttpResponse(304, "text/html", NO_BODY, keepAlive);
+    }
+
+    /**
+     * Returns the standard reason phrase for a status code.
+     *
+     * @param status the HTTP status code
+     * @return the reason phrase
+     */
+
+    public static String reasonPhrase(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 206: return "Partial Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 414: return "URI Too Long";
+            case 416: return "Range Not Satisfiable";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            default: return "Unknown";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JsonLogWriter class writes the access log as UTF-8 JSON lines.
+ * <p>
+ * Each entry is rendered by a {@link LogEntryEncoder} straight into a reusable buffer
+ * and followed by a single {@code \n}.
+ */
+
+public class JsonLogWriter implements LogWriter {
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final BufferedWriter writer;
+    private final LogEntryEncoder encoder = new LogEntryEncoder();
+
+    /**
+     * Constructs a new JsonLogWriter.
+     *
+     * @param output the stream to write to, owned by the new writer
+     */
+
+    public JsonLogWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    @Override
+    public void write(LogEntry entry) throws IOException {
+        int length = encoder.encode(entry);
+        writer.write(encoder.getBuffer(), 0, length);
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records durations into a fixed set of log-linear buckets.
+ * <p>
+ * As in an HDR histogram, every power of two is split into {@value #SUB_BUCKETS} linear
+ * sub-buckets, so a recorded value is known to within about 3% whatever its magnitude,
+ * from nanoseconds to hours, and percentiles can be read back at any time. All buckets
+ * are allocated up front in one array of counters: recording a value computes its bucket
+ * with a few shifts and increments one counter, and never allocates.
+ * <p>
+ * Percentiles are computed from a bucket by bucket snapshot that is not atomic, so a
+ * value recorded during the computation may or may not be counted.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see ServerMetrics
+ */
+
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are recorded as zero
+     */
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded durations in nanoseconds
+     */
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the duration below which the given percentage of the recorded durations fall.
+     * <p>
+     * The result is the highest value of the bucket holding the percentile, so it
+     * overstates the exact value by at most the bucket width, about 3%.
+     *
+     * @param percentile the percentile, between 0 and 100, such as {@code 99.9}
+     * @return the duration in nanoseconds, or zero if nothing was recorded
+     */
+
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    /**
+     * Returns the bucket of a value: values below {@link #SUB_BUCKETS} have a bucket each,
+     * larger ones share a bucket with the values having the same highest
+     * {@link #SUB_BUCKET_BITS} + 1 bits.
+     */
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket.
+     */
+
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -1,28 +1,83 @@
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The LogConsumer class implements asynchronous file logging using a producer-consumer pattern.
  * <p>
  * This component runs in a dedicated thread, consuming LogEntry objects from
  * a shared blocking queue and writting them sequentially to a log file
- * in JSON format. It ensures thread-safe log writing and proper resource management.
+ * in the configured {@link LogFormat}: JSON lines by default, or the compact binary
+ * format of {@link BinaryLogWriter}. It ensures thread-safe log writing and proper
+ * resource management. Entries are encoded by a {@link LogWriter} owned by the
+ * consumer thread, straight into reusable buffers.
  * <p>
- * The log file is opened in append mode, preserving existing log entries.
+ * Entries are written in batches: every wake-up drains all queued entries, up to the
+ * batch size, and the file is flushed once at least {@code batchSize} entries are pending
+ * or the oldest pending entry has waited {@code flushMillis} milliseconds. Under load this
+ * turns one write system call per request into one per batch (group commit), while a
+ * quiet server still sees its entries on disk within the flush interval.
+ * <p>
+ * The log file is opened in append mode, preserving existing log entries. With a
+ * {@link LogRotator} the file is rotated by size or time between two batches, so no
+ * entry is lost or written twice across segments. Entries still queued when the
+ * thread is interrupted are written and flushed before it terminates.
+ * <p>
+ * An I/O error, such as a full disk, does not stop the consumer: it is reported through the
+ * {@link DiagnosticLog}, the log file is closed, and it is reopened after
+ * {@link #REOPEN_DELAY_MILLIS} milliseconds. Meanwhile entries keep being taken from the
+ * queue and are discarded and counted, so request threads never wait for a log that
+ * cannot be written, even with the {@code block} overflow policy of {@link LogQueue}.
+ * <p>
+ * The consumer thread is also the background writer of the {@link DiagnosticLog}: queued
+ * diagnostic messages are printed after every batch, and at least every
+ * {@link #DIAGNOSTIC_INTERVAL_MILLIS} milliseconds while no entry arrives.
  *
  * @see BlockingQueue
  * @see LogEntry
  */
 
 public class LogConsumer implements Runnable {
+
+    /**
+     * Default number of entries after which pending entries are flushed.
+     */
+
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    /**
+     * Default maximum time, in milliseconds, an entry waits before being flushed.
+     */
+
+    public static final long DEFAULT_FLUSH_MILLIS = 50;
+
+    /**
+     * Maximum time, in milliseconds, a {@link DiagnosticLog} message waits to be printed while the access log is idle.
+     */
+
+    public static final long DIAGNOSTIC_INTERVAL_MILLIS = 100;
+
+    /**
+     * Time, in milliseconds, after which the log file is reopened following an I/O error.
+     */
+
+    public static final long REOPEN_DELAY_MILLIS = 1000;
+
     private BlockingQueue<LogEntry> logQueue;
     private final String logFilePath;
+    private final LogFormat format;
+    private final LogRotator rotator;
+    private final int batchSize;
+    private final long flushMillis;
 
     /**
      * Constructs a new LogConsumer with the specified queue and output file path.
      * <p>
      * The consumer will write all log entries taken from the queue to the specified file,
      * creating it if necessary or appending to existing content.
+     * Entries are written as JSON lines with the default batch size and flush interval.
      *
      *
      * @param logQueue the shared blocking queue containing log entries to consume.
@@ -30,47 +85,221 @@ public class LogConsumer implements Runnable {
      */
 
     public LogConsumer(BlockingQueue<LogEntry> logQueue, String logFilePath){
+        this(logQueue, logFilePath, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_MILLIS);
+    }
+
+    /**
+     * Constructs a new LogConsumer with explicit flush thresholds.
+     * <p>
+     * A batch size of one flushes after every entry.
+     *
+     * @param logQueue the shared blocking queue containing log entries to consume.
+     * @param logFilePath the path to the log file where entries will be written.
+     * @param batchSize the number of pending entries that triggers a flush, at least one
+     * @param flushMillis the maximum time a written entry waits for a flush, in milliseconds
+     */
+
+    public LogConsumer(BlockingQueue<LogEntry> logQueue, String logFilePath, int batchSize, long flushMillis){
+        this(logQueue, logFilePath, LogFormat.JSON, batchSize, flushMillis);
+    }
+
+    /**
+     * Constructs a new LogConsumer writing in the given format.
+     *
+     * @param logQueue the shared blocking queue containing log entries to consume.
+     * @param logFilePath the path to the log file where entries will be written.
+     * @param format the on-disk format of the log file
+     * @param batchSize the number of pending entries that triggers a flush, at least one
+     * @param flushMillis the maximum time a written entry waits for a flush, in milliseconds
+     */
+
+    public LogConsumer(BlockingQueue<LogEntry> logQueue, String logFilePath, LogFormat format, int batchSize, long flushMillis){
+        this(logQueue, logFilePath, format, batchSize, flushMillis, null);
+    }
+
+    /**
+     * Constructs a new LogConsumer writing in the given format and rotating the log file.
+     *
+     * @param logQueue the shared blocking queue containing log entries to consume.
+     * @param logFilePath the path to the log file where entries will be written.
+     * @param format the on-disk format of the log file
+     * @param batchSize the number of pending entries that triggers a flush, at least one
+     * @param flushMillis the maximum time a written entry waits for a flush, in milliseconds
+     * @param rotator the rotator managing {@code logFilePath}, or null to append to a single file
+     */
+
+    public LogConsumer(BlockingQueue<LogEntry> logQueue, String logFilePath, LogFormat format, int batchSize, long flushMillis, LogRotator rotator){
         this.logQueue = logQueue;
         this.logFilePath = logFilePath;
+        this.format = format;
+        this.rotator = rotator;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = Math.max(0, flushMillis);
+    }
 
+    /**
+     * Constructs a new LogConsumer configured through {@code server.log.file},
+     * {@code server.log.format}, {@code server.log.batch.size} and {@code server.log.flush.ms}.
+     * The file is rotated as described by {@link LogRotator#fromConfig(ServerConfig)} when
+     * {@code server.log.rotate.max.bytes} or {@code server.log.rotate.interval} is set.
+     *
+     * @param logQueue the shared blocking queue containing log entries to consume.
+     * @param config the server configuration
+     * @return the configured consumer
+     * @throws IllegalArgumentException if the log format or rotation interval is unknown
+     */
+
+    public static LogConsumer fromConfig(BlockingQueue<LogEntry> logQueue, ServerConfig config) {
+        boolean rotate = config.getLongConfig("server.log.rotate.max.bytes", 0) > 0
+                || LogRotator.Interval.fromName(config.getConfig("server.log.rotate.interval")) != LogRotator.Interval.NONE;
+        return new LogConsumer(logQueue, config.getConfig("server.log.file"),
+                LogFormat.fromName(config.getConfig("server.log.format")),
+                config.getIntConfig("server.log.batch.size", DEFAULT_BATCH_SIZE),
+                config.getLongConfig("server.log.flush.ms", DEFAULT_FLUSH_MILLIS),
+                rotate ? LogRotator.fromConfig(config) : null);
     }
 
     /**
      * The main execution method that continuously consumes log entries from the queue
      * and writes them to the log file.
      * <p>
-     * This method runs in a loop until the thread is interrupted, writing each log entry
-     * to the log file in JSON format. It handles interruptions gracefully and ensures
-     * proper cleanup of resources.
+     * This method runs in a loop until the thread is interrupted. It blocks until an entry
+     * arrives, until the flush deadline of already written entries or for at most the
+     * diagnostic interval, then drains the queue into a batch, writes the batch, flushes
+     * when a threshold is reached and prints pending diagnostic messages. When the
+     * rotator reports that the current segment is due, the writer is closed and a new
+     * segment opened before the batch is written.
+     * <p>
+     * When writing fails, the batch and any unflushed entries are lost and the writer is
+     * closed; until it can be reopened, entries are drained and discarded.
      * <p>
-     * On interruption, completes any pending write operations before terminating.
+     * On interruption, drains and writes everything still queued and flushes before terminating.
      * This method guarantees proper closure of file resources even if exceptions occur.
-     *
-     * @throws RuntimeException if an unrecoverable I/O error occurs during the file writting.
      */
 
     @Override
     public void run() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFilePath, true))){
+        LogWriter writer = null;
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        int pending = 0;
+        long flushDeadline = 0;
+        long reopenAt = 0;
+        long discarded = 0;
+        try {
+            writer = openWriter();
+        } catch (IOException e) {
+            DiagnosticLog.warn("Cannot open the access log, retrying in %d ms: %s", REOPEN_DELAY_MILLIS, e);
+            reopenAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REOPEN_DELAY_MILLIS);
+        }
+        try {
            while(!Thread.currentThread().isInterrupted()){
                try {
-                   LogEntry logEntry = logQueue.take();
+                   if (writer == null && System.nanoTime() - reopenAt >= 0) {
+                       writer = openWriter();
+                       if (discarded > 0) {
+                           DiagnosticLog.warn("Access log reopened, %d entries were discarded", discarded);
+                           discarded = 0;
+                       }
+                   }
 
-                   writer.write(logEntry.toJSON());
-                   writer.newLine();
-                   writer.flush();
+                   long timeout = TimeUnit.MILLISECONDS.toNanos(DIAGNOSTIC_INTERVAL_MILLIS);
+                   if (pending > 0) {
+                       timeout = Math.min(timeout, flushDeadline - System.nanoTime());
+                   }
+                   LogEntry first = logQueue.poll(timeout, TimeUnit.NANOSECONDS);
+
+                   if (first != null) {
+                       batch.add(first);
+                       logQueue.drainTo(batch, batchSize - 1);
+                       if (writer == null) {
+                           discarded += batch.size();
+                           batch.clear();
+                       } else {
+                           if (rotator != null && rotator.shouldRotate(System.currentTimeMillis())) {
+                               LogWriter rotated = writer;
+                               writer = null;
+                               rotated.close();
+                               pending = 0;
+                               rotator.rotate();
+                               writer = openWriter();
+                           }
+                           if (pending == 0) {
+                               flushDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                           }
+                           write(writer, batch);
+                           pending += batch.size();
+                           batch.clear();
+                       }
+                   }
+
+                   if (pending >= batchSize || (pending > 0 && System.nanoTime() - flushDeadline >= 0)) {
+                       writer.flush();
+                       pending = 0;
+                   }
                }
                catch (InterruptedException e) {
                    Thread.currentThread().interrupt();
                    break;
                }
+               catch (IOException e) {
+                   DiagnosticLog.warn("Error writing the access log, reopening it in %d ms: %s", REOPEN_DELAY_MILLIS, e);
+                   discarded += pending + batch.size();
+                   batch.clear();
+                   pending = 0;
+                   closeQuietly(writer);
+                   writer = null;
+                   reopenAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REOPEN_DELAY_MILLIS);
+               }
+               DiagnosticLog.writePending();
+           }
+
+           logQueue.drainTo(batch);
+           if (writer != null) {
+               write(writer, batch);
+               writer.flush();
+           } else if (discarded + batch.size() > 0) {
+               DiagnosticLog.warn("Access log unavailable, %d entries were discarded", discarded + batch.size());
            }
         }
         catch (IOException e){
-            if(!Thread.currentThread().isInterrupted()) {
-                e.printStackTrace();
+            DiagnosticLog.warn("Error writing the access log on shutdown: %s", e);
+        }
+        finally {
+            close(writer);
+            DiagnosticLog.writePending();
+        }
+    }
+
+    private LogWriter openWriter() throws IOException {
+        OutputStream output = rotator != null ? rotator.open() : new FileOutputStream(logFilePath, true);
+        return format.open(output);
+    }
+
+    private void close(LogWriter writer) {
+        try {
+            closeQuietly(writer);
+        } finally {
+            if (rotator != null) {
+                rotator.close();
             }
         }
     }
 
+    private static void closeQuietly(LogWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            DiagnosticLog.warn("Error closing the access log: %s", e);
+        }
+    }
+
+    private static void write(LogWriter writer, List<LogEntry> batch) throws IOException {
+        for (LogEntry logEntry : batch) {
+            writer.write(logEntry);
+        }
+    }
+
 }
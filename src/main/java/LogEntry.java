@@ -1,15 +1,18 @@
+import java.time.Instant;
+
 /**
  * The LogEntry class represents a single log entry for HTTP requests in JSON format.
  * <p>
  * This immutable class stores information about HTTP requests including
  * timestamp, method, route, client origin, and status code.
- * The class provides conversion to JSON format for logging purposes.
+ * The timestamp is kept as nanoseconds since the epoch and is only formatted when the
+ * entry is written, see {@link LogEntryEncoder}.
  * <p>
  * Instances of this class are thread-safe as they are immutable after construction.
  */
 
 public class LogEntry {
-    private final String timestamp;
+    private final long timestampNanos;
     private final String method;
     private final String route;
     private final String origin;
@@ -18,16 +21,16 @@ public class LogEntry {
     /**
      * Constructs a new LogEntry with all required fields.
      * <p>
-     * @param timestamp the exact time when the request was received in format
-     *                  "YYYY-MM-DD HH:MM:SS.SSS"
+     * @param timestampNanos the exact time when the request was received, in nanoseconds
+     *                       since the epoch
      * @param method the HTTP method used in the request (GET, POST, etc.)
      * @param route the requested route/path.
      * @param origin the IP address of the client
      * @param httpStatus the HTTP status code returned to the client.
      */
 
-    public LogEntry(String timestamp, String method, String route, String origin, int httpStatus){
-        this.timestamp = timestamp;
+    public LogEntry(long timestampNanos, String method, String route, String origin, int httpStatus){
+        this.timestampNanos = timestampNanos;
         this.method = method;
         this.route = route;
         this.origin = origin;
@@ -35,21 +38,67 @@ public class LogEntry {
     }
 
     /**
-     * Converts the log entry to JSON format.
+     * Returns the current time in nanoseconds since the epoch, with the precision of the system clock.
+     *
+     * @return the current timestamp
+     */
+
+    public static long currentTimeNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    /**
+     * @return the time the request was received, in nanoseconds since the epoch
+     */
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return the HTTP method of the request
+     */
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the requested route
+     */
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return the address of the client
+     */
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return the HTTP status code returned to the client
+     */
+
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+
+    /**
+     * Converts the log entry to a single line of JSON.
+     * <p>
+     * This allocates a new encoder and is meant for tests and tools; the {@link LogConsumer}
+     * encodes entries into a reusable buffer instead.
      *
      * @return a JSON string representation of the log entry.
      */
 
     public String toJSON(){
-        return String.format(
-                "{\n"+
-                        "\"timestamp\": \"%s\",\n" +
-                        "\"method\": \"%s\", \n" +
-                        "\"route\": \"%s\", \n" +
-                        "\"origin\": \"%s\", \n" +
-                        "\"httpStatus\": %d\n" +
-                "}", timestamp, method, route, origin, httpStatus
-
-        );
+        LogEntryEncoder encoder = new LogEntryEncoder();
+        return new String(encoder.getBuffer(), 0, encoder.encode(this));
     }
 }
@@ -0,0 +1,173 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The LogEntryEncoder class writes {@link LogEntry} objects as single-line JSON into a reusable buffer.
+ * <p>
+ * Fields are appended character by character into a char array that grows as needed
+ * and is reused for every entry, so encoding an entry allocates nothing in the common
+ * case. String values are escaped as required by JSON: quotes, backslashes and control
+ * characters can no longer break a log line.
+ * <p>
+ * Timestamps are formatted as local time, {@code yyyy-MM-dd HH:mm:ss.SSS}. The date and
+ * time up to the seconds are formatted once per distinct second and reused, only the
+ * milliseconds are appended for each entry.
+ * <p>
+ * An encoder is owned by a single thread, normally the {@link LogConsumer}, and is not thread-safe.
+ */
+
+public class LogEntryEncoder {
+
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ZoneId zone;
+    private char[] buffer = new char[256];
+    private int length;
+
+    private long cachedSecond = Long.MIN_VALUE;
+    private char[] cachedSecondText;
+
+    /**
+     * Constructs a new LogEntryEncoder that formats timestamps in the system time zone.
+     */
+
+    public LogEntryEncoder() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a new LogEntryEncoder that formats timestamps in the given time zone.
+     *
+     * @param zone the time zone of the formatted timestamps
+     */
+
+    public LogEntryEncoder(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Encodes an entry at the start of the buffer, replacing the previous one.
+     *
+     * @param entry the entry to encode
+     * @return the number of characters written to {@link #getBuffer()}
+     */
+
+    public int encode(LogEntry entry) {
+        length = 0;
+        append("{\"timestamp\":\"");
+        appendTimestamp(entry.getTimestampNanos());
+        append("\",\"method\":");
+        appendString(entry.getMethod());
+        append(",\"route\":");
+        appendString(entry.getRoute());
+        append(",\"origin\":");
+        appendString(entry.getOrigin());
+        append(",\"httpStatus\":");
+        appendInt(entry.getHttpStatus());
+        append('}');
+        return length;
+    }
+
+    /**
+     * Returns the buffer holding the last encoded entry. The array may be replaced when it
+     * grows, so it must be fetched again after every call to {@link #encode(LogEntry)}.
+     *
+     * @return the internal buffer
+     */
+
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    private void appendTimestamp(long timestampNanos) {
+        long second = Math.floorDiv(timestampNanos, 1_000_000_000L);
+        if (second != cachedSecond) {
+            ZoneOffset offset = zone.getRules().getOffset(Instant.ofEpochSecond(second));
+            cachedSecondText = SECOND_FORMAT.format(LocalDateTime.ofEpochSecond(second, 0, offset)).toCharArray();
+            cachedSecond = second;
+        }
+        append(cachedSecondText);
+
+        int millis = (int) (Math.floorMod(timestampNanos, 1_000_000_000L) / 1_000_000);
+        ensureCapacity(3);
+        buffer[length++] = (char) ('0' + millis / 100);
+        buffer[length++] = (char) ('0' + millis / 10 % 10);
+        buffer[length++] = (char) ('0' + millis % 10);
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            append("null");
+            return;
+        }
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': append("\\\""); break;
+                case '\\': append("\\\\"); break;
+                case '\n': append("\\n"); break;
+                case '\r': append("\\r"); break;
+                case '\t': append("\\t"); break;
+                default:
+                    if (c < 0x20 || c == 0x7f || c == 0x2028 || c == 0x2029) {
+                        append("\\u");
+                        ensureCapacity(4);
+                        buffer[length++] = HEX_DIGITS[(c >> 12) & 0xf];
+                        buffer[length++] = HEX_DIGITS[(c >> 8) & 0xf];
+                        buffer[length++] = HEX_DIGITS[(c >> 4) & 0xf];
+                        buffer[length++] = HEX_DIGITS[c & 0xf];
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+        append('"');
+    }
+
+    private void appendInt(int value) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void append(String value) {
+        ensureCapacity(value.length());
+        value.getChars(0, value.length(), buffer, length);
+        length += value.length();
+    }
+
+    private void append(char[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, length, value.length);
+        length += value.length;
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            char[] grown = new char[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
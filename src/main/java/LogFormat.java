@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The LogFormat enum lists the on-disk formats of the access log, selected with {@code server.log.format}.
+ * <ul>
+ *     <li>{@code json} (default) - one JSON object per line, see {@link JsonLogWriter};</li>
+ *     <li>{@code binary} - compact records with a string dictionary, see {@link BinaryLogWriter}.
+ *     Binary logs are turned back into JSON lines with {@link BinaryLogConverter}.</li>
+ * </ul>
+ */
+
+public enum LogFormat {
+
+    /**
+     * One JSON object per line, readable with any text tool.
+     */
+
+    JSON,
+
+    /**
+     * Compact records with a string dictionary, to be converted back to JSON for reading.
+     */
+
+    BINARY;
+
+    /**
+     * Parses a format name, ignoring case.
+     *
+     * @param name the configured name, or null for the default
+     * @return the format
+     * @throws IllegalArgumentException if the name is unknown
+     */
+
+    public static LogFormat fromName(String name) {
+        if (name == null) {
+            return JSON;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown server.log.format: " + name);
+        }
+    }
+
+    /**
+     * Creates a writer of this format on top of a stream.
+     *
+     * @param output the stream to write to, owned by the new writer
+     * @return the writer
+     * @throws IOException if the format header cannot be written
+     */
+
+    public LogWriter open(OutputStream output) throws IOException {
+        return this == BINARY ? new BinaryLogWriter(output) : new JsonLogWriter(output);
+    }
+}
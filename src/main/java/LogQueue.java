@@ -0,0 +1,182 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LogQueue class is the bounded hand-off between request threads and the {@link LogConsumer}.
+ * <p>
+ * It is a fixed-capacity ring buffer, so a stalled disk can no longer make the log
+ * pipeline grow until the server runs out of memory. What happens when the buffer is
+ * full is decided by the overflow policy, configured through {@code server.log.queue.overflow}:
+ * <ul>
+ *     <li>{@code block} - {@link #put(LogEntry)} waits for space, as an unbounded queue
+ *     would never have to; requests slow down to the speed of the disk;</li>
+ *     <li>{@code drop-and-count} (default) - the new entry is discarded and counted, and
+ *     the number of dropped entries is reported as a {@link DiagnosticLog} warning, at
+ *     most once per second; a request thread never waits for logging.</li>
+ * </ul>
+ * The current
+ * depth and the number of dropped entries can be read at any time for monitoring.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public class LogQueue extends ArrayBlockingQueue<LogEntry> {
+
+    /**
+     * Default number of entries the queue can hold.
+     */
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private static final long serialVersionUID = 1L;
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * The behaviour of {@link #put(LogEntry)} when the queue is full.
+     */
+
+    public enum OverflowPolicy {
+
+        /**
+         * Waits for space, so that no entry is ever lost.
+         */
+
+        BLOCK,
+
+        /**
+         * Discards the new entry, counts it and reports the drops periodically.
+         */
+
+        DROP_AND_COUNT;
+
+        /**
+         * Parses a policy name such as {@code drop-and-count}, ignoring case.
+         *
+         * @param name the configured name, or null for the default
+         * @return the policy
+         * @throws IllegalArgumentException if the name is unknown
+         */
+
+        public static OverflowPolicy fromName(String name) {
+            if (name == null) {
+                return DROP_AND_COUNT;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown server.log.queue.overflow policy: " + name);
+            }
+        }
+    }
+
+    /**
+     * @serial what {@link #put(LogEntry)} does when the queue is full
+     */
+
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * @serial the number of entries discarded so far
+     */
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @serial when the drops were last reported, in {@link System#nanoTime()} units
+     */
+
+    private final AtomicLong lastReport = new AtomicLong(System.nanoTime() - REPORT_INTERVAL_NANOS);
+
+    /**
+     * @serial the number of entries discarded as of the last report
+     */
+
+    private final AtomicLong reportedDrops = new AtomicLong();
+
+    /**
+     * Constructs a new LogQueue.
+     *
+     * @param capacity the maximum number of queued entries
+     * @param overflowPolicy what {@link #put(LogEntry)} does when the queue is full
+     * @throws IllegalArgumentException if the capacity is less than one
+     */
+
+    public LogQueue(int capacity, OverflowPolicy overflowPolicy) {
+        super(capacity);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Constructs a new LogQueue configured through {@code server.log.queue.capacity}
+     * and {@code server.log.queue.overflow}.
+     *
+     * @param config the server configuration
+     * @return the configured queue
+     * @throws IllegalArgumentException if the overflow policy is unknown
+     */
+
+    public static LogQueue fromConfig(ServerConfig config) {
+        return new LogQueue(config.getIntConfig("server.log.queue.capacity", DEFAULT_CAPACITY),
+                OverflowPolicy.fromName(config.getConfig("server.log.queue.overflow")));
+    }
+
+    /**
+     * Queues an entry according to the overflow policy.
+     *
+     * @param entry the entry to log
+     * @throws InterruptedException if the thread is interrupted while waiting with the {@code block} policy
+     */
+
+    @Override
+    public void put(LogEntry entry) throws InterruptedException {
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            super.put(entry);
+            return;
+        }
+        if (!offer(entry)) {
+            report(dropped.incrementAndGet());
+        }
+    }
+
+    /**
+     * @return the overflow policy of this queue
+     */
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the number of entries currently waiting to be written
+     */
+
+    public int getDepth() {
+        return size();
+    }
+
+    /**
+     * @return the maximum number of entries the queue can hold
+     */
+
+    public int getCapacity() {
+        return size() + remainingCapacity();
+    }
+
+    /**
+     * @return the number of entries discarded because the queue was full
+     */
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void report(long total) {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= REPORT_INTERVAL_NANOS && lastReport.compareAndSet(last, now)) {
+            long previous = reportedDrops.getAndSet(total);
+            DiagnosticLog.warn("Log queue full: dropped %d entries in the last interval (%d in total)",
+                    total - previous, total);
+        }
+    }
+}
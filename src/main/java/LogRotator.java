@@ -0,0 +1,369 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The LogRotator class splits the access log into segments by size and by time.
+ * <p>
+ * The active segment always has the configured {@code server.log.file} name. When it
+ * reaches {@code maxBytes}, or when the current hour or day ends, the {@link LogConsumer}
+ * closes its writer and calls {@link #rotate()}, which renames the segment to
+ * {@code <log file>.<yyyyMMdd-HHmmss>} after the time it was opened; the next writer
+ * then starts a new file. The consumer is the only thread writing the log and rotates
+ * between two batches, so every entry taken from the queue ends up in exactly one
+ * segment and entries still queued simply go to the next one.
+ * <p>
+ * Rotated segments are gzip-compressed and the retention limits applied on a single
+ * background thread of minimum priority, so compression never delays the writer. Each
+ * pass handles every rotated segment that is not compressed yet, which also picks up
+ * segments left over when the server stopped during a compression. Retention keeps at
+ * most {@code retainCount} rotated segments and removes those last written more than
+ * {@code retainMillis} ago; zero disables either limit.
+ * <p>
+ * Sizes are counted as bytes reach the file, so a segment can exceed {@code maxBytes}
+ * by what the writer buffers plus one batch.
+ *
+ * @see LogConsumer
+ */
+
+public class LogRotator implements Closeable {
+
+    /**
+     * The time-based rotation schedules, selected with {@code server.log.rotate.interval}.
+     */
+
+    public enum Interval {
+
+        /**
+         * No time-based rotation; the log only rotates on size, if configured.
+         */
+
+        NONE(null),
+
+        /**
+         * Rotates at the start of every hour.
+         */
+
+        HOURLY(ChronoUnit.HOURS),
+
+        /**
+         * Rotates at midnight, in the time zone of the server.
+         */
+
+        DAILY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Interval(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Parses an interval name, ignoring case.
+         *
+         * @param name the configured name, or null for {@link #NONE}
+         * @return the interval
+         * @throws IllegalArgumentException if the name is unknown
+         */
+
+        public static Interval fromName(String name) {
+            if (name == null) {
+                return NONE;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown server.log.rotate.interval: " + name);
+            }
+        }
+    }
+
+    private static final DateTimeFormatter SEGMENT_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final Path logFile;
+    private final long maxBytes;
+    private final Interval interval;
+    private final boolean compress;
+    private final int retainCount;
+    private final long retainMillis;
+    private final ZoneId zone;
+    private final ExecutorService compressor;
+
+    private CountingOutputStream current;
+    private LocalDateTime openedAt;
+    private long periodEndMillis = Long.MAX_VALUE;
+    private String lastBase;
+    private int lastCounter;
+
+    /**
+     * Constructs a new LogRotator.
+     *
+     * @param logFile the path of the active log file
+     * @param maxBytes the size that triggers a rotation, zero disables size-based rotation
+     * @param interval the time-based rotation schedule
+     * @param compress whether rotated segments are gzip-compressed
+     * @param retainCount the maximum number of rotated segments kept, zero keeps all
+     * @param retainMillis the maximum age of rotated segments, zero keeps all
+     */
+
+    public LogRotator(Path logFile, long maxBytes, Interval interval, boolean compress, int retainCount, long retainMillis) {
+        this(logFile, maxBytes, interval, compress, retainCount, retainMillis, ZoneId.systemDefault());
+    }
+
+    LogRotator(Path logFile, long maxBytes, Interval interval, boolean compress, int retainCount, long retainMillis, ZoneId zone) {
+        this.logFile = logFile.toAbsolutePath().normalize();
+        this.maxBytes = Math.max(0, maxBytes);
+        this.interval = interval;
+        this.compress = compress;
+        this.retainCount = Math.max(0, retainCount);
+        this.retainMillis = Math.max(0, retainMillis);
+        this.zone = zone;
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "log-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Constructs a new LogRotator for {@code server.log.file}, configured through
+     * {@code server.log.rotate.max.bytes}, {@code server.log.rotate.interval},
+     * {@code server.log.compress}, {@code server.log.retain.count} and
+     * {@code server.log.retain.hours}.
+     *
+     * @param config the server configuration
+     * @return the configured rotator
+     * @throws IllegalArgumentException if the rotation interval is unknown
+     */
+
+    public static LogRotator fromConfig(ServerConfig config) {
+        return new LogRotator(Path.of(config.getConfig("server.log.file")),
+                config.getLongConfig("server.log.rotate.max.bytes", 0),
+                Interval.fromName(config.getConfig("server.log.rotate.interval")),
+                config.getBooleanConfig("server.log.compress", true),
+                config.getIntConfig("server.log.retain.count", 0),
+                TimeUnit.HOURS.toMillis(config.getLongConfig("server.log.retain.hours", 0)));
+    }
+
+    /**
+     * Opens the active log file in append mode and starts a new segment.
+     * <p>
+     * Bytes already in the file count towards the size limit, and a file last written
+     * in an earlier period is rotated before the first new batch. A background pass
+     * compresses and prunes rotated segments left by previous runs.
+     *
+     * @return the stream to write the segment to
+     * @throws IOException if the file cannot be opened
+     */
+
+    public OutputStream open() throws IOException {
+        long existing = Files.exists(logFile) ? Files.size(logFile) : 0;
+        current = new CountingOutputStream(new FileOutputStream(logFile.toFile(), true), existing);
+        openedAt = existing > 0
+                ? LocalDateTime.ofInstant(Files.getLastModifiedTime(logFile).toInstant(), zone)
+                : LocalDateTime.now(zone);
+        periodEndMillis = interval.unit == null
+                ? Long.MAX_VALUE
+                : openedAt.truncatedTo(interval.unit).plus(1, interval.unit).atZone(zone).toInstant().toEpochMilli();
+        submitMaintenance();
+        return current;
+    }
+
+    /**
+     * Tells whether the active segment is due for rotation.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     * @return true if the size limit is reached or the time period has ended
+     */
+
+    public boolean shouldRotate(long nowMillis) {
+        return current != null
+                && current.count > 0
+                && ((maxBytes > 0 && current.count >= maxBytes) || nowMillis >= periodEndMillis);
+    }
+
+    /**
+     * Renames the active segment and schedules its compression.
+     * <p>
+     * The writer on the stream returned by {@link #open()} must have been closed;
+     * {@link #open()} must be called again before writing further entries.
+     *
+     * @return the path the segment was renamed to
+     * @throws IOException if the segment cannot be renamed
+     */
+
+    public Path rotate() throws IOException {
+        current = null;
+        String base = logFile.getFileName() + "." + SEGMENT_SUFFIX.format(openedAt);
+        // Counters only grow within a second, even once retention removed earlier segments
+        int counter = base.equals(lastBase) ? lastCounter + 1 : 0;
+        Path target = segmentPath(base, counter);
+        while (Files.exists(target) || Files.exists(target.resolveSibling(target.getFileName() + GZIP_EXTENSION))) {
+            target = segmentPath(base, ++counter);
+        }
+        Files.move(logFile, target);
+        lastBase = base;
+        lastCounter = counter;
+        submitMaintenance();
+        return target;
+    }
+
+    private Path segmentPath(String base, int counter) {
+        return logFile.resolveSibling(counter == 0 ? base : base + "-" + counter);
+    }
+
+    /**
+     * Stops the compression thread once the passes already scheduled have run.
+     */
+
+    @Override
+    public void close() {
+        compressor.shutdown();
+    }
+
+    /**
+     * Waits for the scheduled compression and retention passes after {@link #close()}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all passes completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return compressor.awaitTermination(timeout, unit);
+    }
+
+    private void submitMaintenance() {
+        if (!compressor.isShutdown()) {
+            compressor.execute(this::maintain);
+        }
+    }
+
+    /**
+     * Compresses every uncompressed rotated segment, then applies the retention limits.
+     */
+
+    private void maintain() {
+        try {
+            if (compress) {
+                for (Path segment : listSegments()) {
+                    if (!segment.getFileName().toString().endsWith(GZIP_EXTENSION)) {
+                        compress(segment);
+                    }
+                }
+            }
+
+            List<Path> segments = listSegments();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < segments.size(); i++) {
+                Path segment = segments.get(i);
+                boolean tooMany = retainCount > 0 && i < segments.size() - retainCount;
+                boolean tooOld = retainMillis > 0 && now - Files.getLastModifiedTime(segment).toMillis() > retainMillis;
+                if (tooMany || tooOld) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            DiagnosticLog.warn("Error maintaining rotated log files: %s", e.getMessage());
+        }
+    }
+
+    private void compress(Path segment) throws IOException {
+        Path compressed = segment.resolveSibling(segment.getFileName() + GZIP_EXTENSION);
+        Path temp = segment.resolveSibling(compressed.getFileName() + TEMP_EXTENSION);
+        try (InputStream input = Files.newInputStream(segment);
+             OutputStream output = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            input.transferTo(output);
+        }
+        FileTime lastModified = Files.getLastModifiedTime(segment);
+        Files.move(temp, compressed, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(compressed, lastModified);
+        Files.delete(segment);
+    }
+
+    /**
+     * Returns the rotated segments of the log file, oldest first.
+     */
+
+    private List<Path> listSegments() throws IOException {
+        String prefix = logFile.getFileName() + ".";
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(logFile.getParent(), prefix + "*")) {
+            for (Path path : directory) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(TEMP_EXTENSION)
+                        && name.length() > prefix.length()
+                        && Character.isDigit(name.charAt(prefix.length()))) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort(Comparator.comparing((Path path) -> segmentTime(path, prefix))
+                .thenComparingInt(path -> segmentCounter(path, prefix)));
+        return segments;
+    }
+
+    /**
+     * Returns the time part of a segment name, which sorts chronologically.
+     */
+
+    private static String segmentTime(Path segment, String prefix) {
+        String name = segmentName(segment).substring(prefix.length());
+        int dash = name.indexOf('-', name.indexOf('-') + 1);
+        return dash < 0 ? name : name.substring(0, dash);
+    }
+
+    /**
+     * Returns the counter appended to segments rotated within the same second, zero if there is none.
+     */
+
+    private static int segmentCounter(Path segment, String prefix) {
+        String name = segmentName(segment).substring(prefix.length());
+        int dash = name.indexOf('-', name.indexOf('-') + 1);
+        try {
+            return dash < 0 ? 0 : Integer.parseInt(name.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String segmentName(Path segment) {
+        String name = segment.getFileName().toString();
+        return name.endsWith(GZIP_EXTENSION) ? name.substring(0, name.length() - GZIP_EXTENSION.length()) : name;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream output, long count) {
+            super(output);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
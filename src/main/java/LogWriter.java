@@ -0,0 +1,25 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * The LogWriter interface is implemented by the encoders of the access log formats.
+ * <p>
+ * A writer wraps an output stream, buffers what it encodes and only guarantees that
+ * entries reached the stream after {@link #flush()}. Writers are used by the single
+ * {@link LogConsumer} thread and need not be thread-safe.
+ *
+ * @see LogFormat
+ */
+
+public interface LogWriter extends Closeable, Flushable {
+
+    /**
+     * Encodes one entry into the writer's buffer.
+     *
+     * @param entry the entry to write
+     * @throws IOException if writing to the underlying stream fails
+     */
+
+    void write(LogEntry entry) throws IOException;
+}
@@ -1,7 +1,6 @@
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ExecutorService;
 
 /**
  * The Main class is the entry point for the HTTP server application.
@@ -13,16 +12,29 @@ import java.util.concurrent.Semaphore;
 
 public class Main {
 
+    private static final long LOG_SHUTDOWN_TIMEOUT_MS = 5000;
+
     /**
      * The main method that starts the HTTP server.
      * <p>
      * The method performs the following initialization sequence:
-     * 1. Loads server configuration from server.config file
-     * 2. Sets up asynchronous logging system
+     * 1. Loads server configuration from server.config file and resolves it into an
+     *    immutable {@link ServerSettings} snapshot used by the request path
+     * 2. Sets up asynchronous logging system behind a bounded {@link LogQueue}, whose
+     *    pending entries are flushed when the server stops or the JVM shuts down. The log
+     *    consumer also prints the {@link DiagnosticLog} messages, at the level configured
+     *    with {@code server.log.diagnostic.level}
      * 3. Initializes file access controller
-     * 4. Creates thread pool with configured size
-     * 5. Configures request limiter semaphore
-     * 6. Starts main server thread
+     * 4. Creates the client executor, a thread pool with configured size or
+     *    virtual threads when {@code server.executor=virtual}
+     * 5. Configures request limiter semaphore and starts watching server.config: a valid
+     *    change is swapped in without a restart and resizes the thread pool
+     *    ({@code server.maximum.requests}) and the limiter ({@code server.max.total.requests})
+     * 6. Registers the thread pool, request limiter, log queue and file caches with the
+     *    {@link ServerMetrics}, which also hold per-phase request latencies and are served
+     *    on {@code server.metrics.route}
+     * 7. Starts main server thread, either the blocking {@link MainHTTPServerThread} or,
+     *    when {@code server.engine=nio}, the non-blocking {@link NioHTTPServerThread}
      * </p>
      * <p>
      * The server runs until interrupted, handling all client
@@ -36,28 +48,66 @@ public class Main {
         try {
             String configFilePath = System.getProperty("user.dir") + "/server.config";
             ServerConfig config = ConfigLoader.loadConfig(configFilePath);
+            ServerSettings settings = ServerSettings.fromConfig(config);
+            DiagnosticLog.configure(config);
 
-            BlockingQueue<LogEntry> logQueue = new LinkedBlockingQueue<>();
+            BlockingQueue<LogEntry> logQueue = LogQueue.fromConfig(config);
 
-            Thread logConsumerThread = new Thread(new LogConsumer(logQueue, config.getConfig("server.log.file")));
+            Thread logConsumerThread = new Thread(LogConsumer.fromConfig(logQueue, config), "log-consumer");
             logConsumerThread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> stopLogConsumer(logConsumerThread)));
+
+            ServerMetrics metrics = new ServerMetrics();
+            FileAccessController fileAccessController = new FileAccessController(settings, metrics);
 
-            FileAccessController fileAccessController = new FileAccessController(config);
+            ExecutorService threadPool = ServerExecutors.create(config);
 
-            ThreadPool threadPool = new ThreadPool(config.getIntConfig("server.maximum.requests"), config.getIntConfig("server.maximum.requests"));
+            ResizableSemaphore requestLimiter = new ResizableSemaphore(settings.getMaxTotalRequests());
 
-            Semaphore requestLimiter = new Semaphore(config.getIntConfig("server.max.total.requests"), true);
+            ConfigWatcher configWatcher = ConfigLoader.watch(configFilePath, settings, reloaded -> {
+                if (threadPool instanceof ThreadPool) {
+                    ((ThreadPool) threadPool).resize(reloaded.getMaximumRequests());
+                }
+                requestLimiter.resize(reloaded.getMaxTotalRequests());
+            });
 
-            MainHTTPServerThread serverThread = new MainHTTPServerThread(config, threadPool, fileAccessController, logQueue, requestLimiter);
+            metrics.registerExecutor(threadPool);
+            metrics.registerRequestLimiter(requestLimiter);
+            metrics.registerLogQueue(logQueue);
+            metrics.registerCaches(fileAccessController);
+            metrics.registerCounter("server_diagnostic_log_dropped_total", "Diagnostic messages dropped because their queue was full.",
+                    DiagnosticLog::getDroppedCount);
+
+            Thread serverThread = "nio".equalsIgnoreCase(config.getConfig("server.engine"))
+                    ? new NioHTTPServerThread(configWatcher, threadPool, fileAccessController, logQueue, requestLimiter, metrics)
+                    : new MainHTTPServerThread(configWatcher, threadPool, fileAccessController, logQueue, requestLimiter, metrics);
 
             serverThread.start();
             serverThread.join();
+            stopLogConsumer(logConsumerThread);
 
         } catch (IOException e) {
             System.err.println("Error loading the configuration file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid configuration: " + e.getMessage());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             System.err.println("Server was interrupted");
         }
     }
+
+    /**
+     * Interrupts the log consumer and waits for it to write out the entries still queued.
+     *
+     * @param logConsumerThread the thread running the {@link LogConsumer}
+     */
+
+    private static void stopLogConsumer(Thread logConsumerThread) {
+        logConsumerThread.interrupt();
+        try {
+            logConsumerThread.join(LOG_SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
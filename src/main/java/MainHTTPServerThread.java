@@ -1,8 +1,12 @@
 import java.io.*;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
 
 /**
  * The MainHTTPServerThread class implements the core HTTP server that listens on a specified port.
@@ -11,33 +15,73 @@ import java.util.concurrent.Semaphore;
  * a configured thread pool and enforces requests limits through a semaphore. It
  * coordinates with other components to serve files securely
  * and maintain request logs in JSON format.
+ * <p>
+ * Each connection occupies a pool thread and a limiter permit until it is closed. While
+ * other connections wait for either, the server counts as saturated and its
+ * {@link ClientHandler}s stop keeping connections alive, so that idle clients cannot
+ * starve the others.
  */
 
 public class MainHTTPServerThread extends Thread {
 
-    private final ServerConfig config;
-    private final ThreadPool threadPool;
+    private final Supplier<ServerSettings> settings;
+    private final ExecutorService threadPool;
     private final FileAccessController fileAccessController;
     private BlockingQueue<LogEntry> logQueue;
     private final Semaphore requestLimiter;
+    private final ServerMetrics metrics;
 
     /**
      * Constructs a new MainHTTPServerThreads with the specified configuration,
      * thread pool, file access controller, log queue, and request limiter.
      *
-     * @param config The server configuration containing settings such as port and root directories.
-     * @param threadPool The thread pool used to handle client requests.
+     * @param settings The server settings such as port and root directories.
+     * @param threadPool The thread pool used to handle client requests, see {@link ServerExecutors}.
      * @param fileAccessController The controller managing file access permissions.
      * @param logQueue The queue for logging server activities.
      * @param requestLimiter The semaphore to limit the number of concurrent requests limit.
      */
 
-    public MainHTTPServerThread(ServerConfig config, ThreadPool threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter) {
-        this.config = config;
+    public MainHTTPServerThread(ServerSettings settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter) {
+        this(() -> settings, threadPool, fileAccessController, logQueue, requestLimiter);
+    }
+
+    /**
+     * Constructs a new MainHTTPServerThread that follows configuration reloads.
+     * <p>
+     * Each connection is handled with the settings snapshot current when it was accepted.
+     *
+     * @param settings Supplies the current server settings, see {@link ConfigWatcher}.
+     * @param threadPool The thread pool used to handle client requests, see {@link ServerExecutors}.
+     * @param fileAccessController The controller managing file access permissions.
+     * @param logQueue The queue for logging server activities.
+     * @param requestLimiter The semaphore to limit the number of concurrent requests limit.
+     */
+
+    public MainHTTPServerThread(Supplier<ServerSettings> settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter) {
+        this(settings, threadPool, fileAccessController, logQueue, requestLimiter, new ServerMetrics());
+    }
+
+    /**
+     * Constructs a new MainHTTPServerThread that follows configuration reloads and records metrics.
+     * <p>
+     * Each connection is handled with the settings snapshot current when it was accepted.
+     *
+     * @param settings Supplies the current server settings, see {@link ConfigWatcher}.
+     * @param threadPool The thread pool used to handle client requests, see {@link ServerExecutors}.
+     * @param fileAccessController The controller managing file access permissions.
+     * @param logQueue The queue for logging server activities.
+     * @param requestLimiter The semaphore to limit the number of concurrent requests limit.
+     * @param metrics The metrics every response is counted in, see {@link ServerMetrics}.
+     */
+
+    public MainHTTPServerThread(Supplier<ServerSettings> settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter, ServerMetrics metrics) {
+        this.settings = settings;
         this.threadPool = threadPool;
         this.fileAccessController = fileAccessController;
         this.logQueue = logQueue;
         this.requestLimiter = requestLimiter;
+        this.metrics = metrics;
     }
 
     /**
@@ -45,35 +89,47 @@ public class MainHTTPServerThread extends Thread {
      * Processes HTTP GET requests and serves files from the defined server root directory.
      * <p>
      * The server runs indefinitely until interrupted, performing the following operarions:
-     * 1. Listen on the configured port for incoming connections
+     * 1. Listen on the configured port for incoming connections. Connections are accepted
+     *    through a blocking {@link ServerSocketChannel}, so every client socket has a channel
+     *    that large files can be transferred to without copying them onto the heap
      * 2. Acquire a permit from the semaphore for each new request
      * 3. Delegates request processing to the thread pool
      * 4. Releases the semaphore permit when processing completes
      * </p>
      * <p>
+     * The time each connection waits for a permit and then for a thread is recorded in
+     * the {@link ServerMetrics}.
+     * </p>
+     * <p>
      * On interruption or IO error, the server shuts down by:
      * 1. Interrupting the current thread
      * 2. Shutting down the thread pool
-     * 3. Closing all resources
+     * 3. Closing all resources, including the listening channel
      * </p>
      *
      */
 
     @Override
     public void run() {
-        try {
-            ServerSocket server = new ServerSocket(config.getIntConfig("server.port"));
-            System.out.println("Server started on port: " + config.getIntConfig("server.port"));
-            System.out.println("Server Root: " + config.getConfig("server.root"));
-            System.out.println("Document Root: " + config.getConfig("server.document.root"));
+        ServerSettings settings = this.settings.get();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(settings.getPort()));
+            System.out.println("Server started on port: " + settings.getPort());
+            System.out.println("Server Root: " + settings.getRoot());
+            System.out.println("Document Root: " + settings.getDocumentRoot());
 
             while (true) {
-                Socket client = server.accept();
+                Socket client = server.accept().socket();
+                long accepted = System.nanoTime();
                 requestLimiter.acquire();
+                long permitted = System.nanoTime();
+                metrics.recordLatency(ServerMetrics.Phase.LIMITER_WAIT, permitted - accepted);
+                ServerSettings connectionSettings = this.settings.get();
 
                 threadPool.execute(() -> {
                     try {
-                        new ClientHandler(client, config, fileAccessController, logQueue).run();
+                        metrics.recordLatency(ServerMetrics.Phase.QUEUE_WAIT, System.nanoTime() - permitted);
+                        new ClientHandler(client, connectionSettings, fileAccessController, logQueue, metrics, accepted, this::isSaturated).run();
                     } finally {
                         requestLimiter.release();
                     }
@@ -85,4 +141,16 @@ public class MainHTTPServerThread extends Thread {
             threadPool.shutdown();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tells whether connections are waiting: the accept loop for a limiter permit, or
+     * accepted connections for a pool thread.
+     */
+
+    private boolean isSaturated() {
+        if (requestLimiter.hasQueuedThreads()) {
+            return true;
+        }
+        return threadPool instanceof ThreadPoolExecutor && !((ThreadPoolExecutor) threadPool).getQueue().isEmpty();
+    }
+}
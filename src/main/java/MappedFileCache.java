@@ -0,0 +1,136 @@
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * The MappedFileCache class keeps read-only memory mappings of recently served files.
+ * <p>
+ * It complements the heap based {@link FileCache} for medium-sized files: instead of
+ * copying the content onto the Java heap, the file is mapped once and the same
+ * {@link MappedByteBuffer} is shared by every request for it. The data lives in the
+ * operating system's page cache, so it does not add to garbage collection work and a
+ * socket channel can send it without an intermediate copy.
+ * <p>
+ * Like the FileCache, entries remember the size and modification time of the file
+ * they were mapped from and are dropped when either changes. The total number of
+ * mapped bytes is bounded by a {@link ByteBudgetCache}, and the least recently used
+ * mappings are evicted first.
+ * Java offers no way to unmap a buffer that may still be in use, so a dropped mapping
+ * is released by the garbage collector once the last response using it has been sent.
+ *
+ * @see FileAccessController
+ */
+
+public class MappedFileCache {
+
+    private final ByteBudgetCache<MappedFile> entries;
+
+    /**
+     * Constructs a new MappedFileCache with the given budget of mapped bytes.
+     *
+     * @param maxBytes the maximum number of bytes mapped at once, zero disables mapping
+     * @throws IllegalArgumentException if the budget is negative
+     */
+
+    public MappedFileCache(long maxBytes) {
+        this.entries = new ByteBudgetCache<>(maxBytes, entry -> entry.size);
+    }
+
+    /**
+     * Returns the mapping of a file if it is still up to date.
+     * <p>
+     * An entry whose size or modification time differs from the given values is
+     * considered stale; it is removed and the lookup counts as a miss.
+     *
+     * @param key the normalized absolute path of the file
+     * @param size the current size of the file on disk
+     * @param lastModified the current modification time of the file in milliseconds
+     * @return a read-only view of the mapping with its own position, or null if it is absent or stale
+     */
+
+    public ByteBuffer get(String key, long size, long lastModified) {
+        MappedFile entry = entries.get(key, mapped -> mapped.size == size && mapped.lastModified == lastModified);
+        return entry != null ? entry.buffer.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Stores the mapping of a file, evicting least recently used mappings if needed.
+     *
+     * @param key the normalized absolute path of the file
+     * @param buffer the read-only mapping of the whole file
+     * @param lastModified the modification time of the file when it was mapped
+     */
+
+    public void put(String key, MappedByteBuffer buffer, long lastModified) {
+        entries.put(key, new MappedFile(buffer, buffer.capacity(), lastModified));
+    }
+
+    /**
+     * Removes the mapping of a file, if present.
+     *
+     * @param key the normalized absolute path of the file
+     */
+
+    public void invalidate(String key) {
+        entries.invalidate(key);
+    }
+
+    /**
+     * @return the number of lookups answered by an existing mapping
+     */
+
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that found no valid mapping
+     */
+
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    /**
+     * @return the number of mappings evicted to respect the byte budget
+     */
+
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * @return the number of bytes currently mapped through this cache
+     */
+
+    public long getCurrentBytes() {
+        return entries.getCurrentBytes();
+    }
+
+    /**
+     * @return the configured byte budget
+     */
+
+    public long getMaxBytes() {
+        return entries.getMaxBytes();
+    }
+
+    /**
+     * @return the number of files currently mapped
+     */
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class MappedFile {
+        private final MappedByteBuffer buffer;
+        private final long size;
+        private final long lastModified;
+
+        private MappedFile(MappedByteBuffer buffer, long size, long lastModified) {
+            this.buffer = buffer;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
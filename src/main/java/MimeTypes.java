@@ -0,0 +1,68 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The MimeTypes class maps file extensions to the media types sent in {@code Content-Type}.
+ * <p>
+ * The table covers the assets a static site usually serves. Files with another
+ * extension, or none, are sent as {@code application/octet-stream}.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public final class MimeTypes {
+
+    /**
+     * Media type of files whose extension is not known.
+     */
+
+    public static final String DEFAULT_TYPE = "application/octet-stream";
+
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("html", "text/html");
+        TYPES.put("htm", "text/html");
+        TYPES.put("css", "text/css");
+        TYPES.put("js", "text/javascript");
+        TYPES.put("mjs", "text/javascript");
+        TYPES.put("txt", "text/plain");
+        TYPES.put("csv", "text/csv");
+        TYPES.put("json", "application/json");
+        TYPES.put("xml", "application/xml");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("png", "image/png");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("woff", "font/woff");
+        TYPES.put("woff2", "font/woff2");
+        TYPES.put("pdf", "application/pdf");
+        TYPES.put("wasm", "application/wasm");
+        TYPES.put("mp4", "video/mp4");
+        TYPES.put("webm", "video/webm");
+        TYPES.put("mp3", "audio/mpeg");
+    }
+
+    private MimeTypes() {
+    }
+
+    /**
+     * Returns the media type of a route, from the extension of its last segment.
+     *
+     * @param route the requested route, such as {@code /css/site.css}
+     * @return the media type, or {@link #DEFAULT_TYPE} if the extension is not known
+     */
+
+    public static String of(String route) {
+        int slash = route.lastIndexOf('/');
+        int dot = route.lastIndexOf('.');
+        if (dot <= slash) {
+            return DEFAULT_TYPE;
+        }
+        return TYPES.getOrDefault(route.substring(dot + 1).toLowerCase(Locale.ROOT), DEFAULT_TYPE);
+    }
+}
@@ -0,0 +1,524 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The NioHTTPServerThread class implements a non-blocking alternative to {@link MainHTTPServerThread}.
+ * <p>
+ * This thread accepts connections on a {@link ServerSocketChannel} and distributes them
+ * round-robin over a fixed number of event-loop threads, configured through
+ * {@code server.nio.event.loops}. Each event loop owns a {@link Selector} and performs
+ * all socket reads and writes of its connections without blocking, so idle keep-alive
+ * connections cost no thread at all.
+ * <p>
+ * Incoming bytes are fed to a per-connection {@link HttpRequestParser}, so request heads
+ * may arrive in any number of reads. Once a complete request head has been parsed it is
+ * handed to the thread pool,
+ * where the shared {@link RequestProcessor} produces the response; the request limiter
+ * semaphore bounds how many requests are processed at the same time. The response is
+ * then written back by the event loop; file bodies above the streaming threshold are
+ * sent with {@link FileChannel#transferTo} as the socket becomes writable, and chunked
+ * bodies are produced one chunk at a time, only when the previous one has been sent.
+ * Producing a chunk may mean compressing it, so it is done on the thread pool and the
+ * chunk handed back to the event loop, which never waits for it. Requests
+ * pipelined on one connection are processed one at a time, so their responses are sent
+ * in order.
+ * <p>
+ * The time each request waits for the pool and the limiter, the time taken to write its
+ * response and its total latency are recorded in the {@link ServerMetrics}.
+ * <p>
+ * Keep-alive behaviour follows the same settings as {@link ClientHandler}:
+ * {@code server.keepalive.timeout.ms} and {@code server.keepalive.max.requests}.
+ */
+
+public class NioHTTPServerThread extends Thread {
+
+    private static final int INPUT_BUFFER_BYTES = 4 * 1024;
+
+    /**
+     * How often an event loop looks for idle connections, which also bounds how long it
+     * blocks in a select. Scanning every key after each select would cost O(connections)
+     * per event under load; idle connections are instead closed at most this long after
+     * their keep-alive timeout.
+     */
+
+    static final long IDLE_SWEEP_INTERVAL_MS = 250;
+
+    private final Supplier<ServerSettings> settings;
+    private final ExecutorService threadPool;
+    private final RequestProcessor requestProcessor;
+    private final Semaphore requestLimiter;
+    private final ServerMetrics metrics;
+
+    /**
+     * Constructs a new NioHTTPServerThread with the specified configuration,
+     * thread pool, file access controller, log queue, and request limiter.
+     *
+     * @param settings The server settings such as port and root directories.
+     * @param threadPool The thread pool used to process complete requests, see {@link ServerExecutors}.
+     * @param fileAccessController The controller managing file access permissions.
+     * @param logQueue The queue for logging server activities.
+     * @param requestLimiter The semaphore to limit the number of requests processed at the same time.
+     */
+
+    public NioHTTPServerThread(ServerSettings settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter) {
+        this(() -> settings, threadPool, fileAccessController, logQueue, requestLimiter);
+    }
+
+    /**
+     * Constructs a new NioHTTPServerThread that follows configuration reloads.
+     * <p>
+     * Keep-alive and parser limits are taken from the snapshot current when a connection
+     * is accepted, and each request is processed with the snapshot current when it starts.
+     *
+     * @param settings Supplies the current server settings, see {@link ConfigWatcher}.
+     * @param threadPool The thread pool used to process complete requests, see {@link ServerExecutors}.
+     * @param fileAccessController The controller managing file access permissions.
+     * @param logQueue The queue for logging server activities.
+     * @param requestLimiter The semaphore to limit the number of requests processed at the same time.
+     */
+
+    public NioHTTPServerThread(Supplier<ServerSettings> settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter) {
+        this(settings, threadPool, fileAccessController, logQueue, requestLimiter, new ServerMetrics());
+    }
+
+    /**
+     * Constructs a new NioHTTPServerThread that follows configuration reloads and records metrics.
+     * <p>
+     * Keep-alive and parser limits are taken from the snapshot current when a connection
+     * is accepted, and each request is processed with the snapshot current when it starts.
+     *
+     * @param settings Supplies the current server settings, see {@link ConfigWatcher}.
+     * @param threadPool The thread pool used to process complete requests, see {@link ServerExecutors}.
+     * @param fileAccessController The controller managing file access permissions.
+     * @param logQueue The queue for logging server activities.
+     * @param requestLimiter The semaphore to limit the number of requests processed at the same time.
+     * @param metrics The metrics every response is counted in, see {@link ServerMetrics}.
+     */
+
+    public NioHTTPServerThread(Supplier<ServerSettings> settings, ExecutorService threadPool, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, Semaphore requestLimiter, ServerMetrics metrics) {
+        this.settings = settings;
+        this.threadPool = threadPool;
+        this.requestProcessor = new RequestProcessor(settings, fileAccessController, logQueue, metrics);
+        this.requestLimiter = requestLimiter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the event loops and accepts incoming connections until interrupted.
+     * <p>
+     * Accepted channels are switched to non-blocking mode and registered with the next
+     * event loop. On interruption or IO error the server shuts down by closing the
+     * listening channel, stopping the event loops and shutting down the thread pool.
+     */
+
+    @Override
+    public void run() {
+        ServerSettings settings = this.settings.get();
+        int eventLoopCount = settings.getNioEventLoops();
+        EventLoop[] eventLoops = new EventLoop[eventLoopCount];
+        Thread[] eventLoopThreads = new Thread[eventLoopCount];
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            for (int i = 0; i < eventLoopCount; i++) {
+                eventLoops[i] = new EventLoop(Selector.open());
+                eventLoopThreads[i] = new Thread(eventLoops[i], "nio-event-loop-" + i);
+                eventLoopThreads[i].start();
+            }
+
+            server.bind(new InetSocketAddress(settings.getPort()));
+            System.out.println("Server started on port: " + settings.getPort() + " (NIO, " + eventLoopCount + " event loops)");
+            System.out.println("Server Root: " + settings.getRoot());
+            System.out.println("Document Root: " + settings.getDocumentRoot());
+
+            int next = 0;
+            while (!isInterrupted()) {
+                SocketChannel client = server.accept();
+                long accepted = System.nanoTime();
+                client.configureBlocking(false);
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                eventLoops[next].register(client, accepted);
+                next = (next + 1) % eventLoopCount;
+            }
+        } catch (IOException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Thread eventLoopThread : eventLoopThreads) {
+                if (eventLoopThread != null) {
+                    eventLoopThread.interrupt();
+                }
+            }
+            threadPool.shutdown();
+        }
+    }
+
+    /**
+     * A single selector thread that owns a subset of the connections.
+     * <p>
+     * All state of a connection is only touched by its event loop thread. Worker threads
+     * hand results back through a task queue followed by a selector wake-up.
+     */
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private long nextIdleSweep = System.nanoTime();
+
+        private EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(SocketChannel channel, long acceptedNanos) {
+            submit(() -> {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel, acceptedNanos));
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        private void submit(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextIdleSweep - System.nanoTime())));
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.writeOutput(key);
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            connection.close(key);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+
+                    long now = System.nanoTime();
+                    if (now - nextIdleSweep >= 0) {
+                        closeIdleConnections(now);
+                        nextIdleSweep = now + TimeUnit.MILLISECONDS.toNanos(IDLE_SWEEP_INTERVAL_MS);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                closeQuietly(selector);
+            }
+        }
+
+        private void closeIdleConnections(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && connection.isIdleSince(now)) {
+                    connection.close(key);
+                }
+            }
+        }
+
+        /**
+         * The per-connection state: buffered input, the pending response and keep-alive bookkeeping.
+         */
+
+        private final class Connection {
+
+            private final SocketChannel channel;
+            private final String origin;
+            private final ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_BYTES);
+            private final HttpRequestParser parser;
+            private final long keepAliveTimeoutMillis;
+            private final int maxRequestsPerConnection;
+            private final long acceptedNanos;
+            private HttpResponse current;
+            private ByteBuffer[] output;
+            private ByteBuffer chunk;
+            private boolean producingChunk;
+            private boolean chunksDone;
+            private long bodyPosition;
+            private boolean inFlight;
+            private boolean closeAfterWrite;
+            private int handledRequests;
+            private long bodyBytesToSkip;
+            private long lastActivity = System.nanoTime();
+            private long requestStarted;
+            private long writeStarted;
+            private boolean timed;
+
+            private Connection(SocketChannel channel, long acceptedNanos) throws IOException {
+                this.channel = channel;
+                this.acceptedNanos = acceptedNanos;
+                this.origin = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().toString();
+                ServerSettings settings = NioHTTPServerThread.this.settings.get();
+                this.parser = HttpRequestParser.fromSettings(settings);
+                this.keepAliveTimeoutMillis = settings.getKeepAliveTimeoutMillis();
+                this.maxRequestsPerConnection = settings.getKeepAliveMaxRequests();
+            }
+
+            private boolean isIdleSince(long now) {
+                return !inFlight && now - lastActivity > TimeUnit.MILLISECONDS.toNanos(keepAliveTimeoutMillis);
+            }
+
+            private void onReadable(SelectionKey key) throws IOException {
+                int read = channel.read(input);
+                if (read == -1) {
+                    if (inFlight) {
+                        closeAfterWrite = true;
+                        key.interestOps(0);
+                    } else {
+                        close(key);
+                    }
+                    return;
+                }
+                lastActivity = System.nanoTime();
+                dispatchNext(key);
+            }
+
+            /**
+             * Parses the buffered input and hands the next complete request to the thread pool.
+             */
+
+            private void dispatchNext(SelectionKey key) {
+                if (inFlight) {
+                    return;
+                }
+
+                input.flip();
+                int skip = (int) Math.min(bodyBytesToSkip, input.remaining());
+                input.position(input.position() + skip);
+                bodyBytesToSkip -= skip;
+
+                HttpRequest request;
+                try {
+                    request = parser.parse(input);
+                    if (request != null) {
+                        bodyBytesToSkip = request.getContentLength();
+                    }
+                } catch (HttpParseException e) {
+                    DiagnosticLog.warn("Invalid request received: %s", e.getMessage());
+                    input.clear();
+                    inFlight = true;
+                    closeAfterWrite = true;
+                    key.interestOps(0);
+                    startWrite(key, requestProcessor.error(e.getStatus()));
+                    return;
+                }
+                input.compact();
+                if (request == null) {
+                    return;
+                }
+
+                requestStarted = handledRequests == 0 ? acceptedNanos : System.nanoTime();
+                timed = true;
+                handledRequests++;
+                boolean keepAlive = request.isKeepAlive() && handledRequests < maxRequestsPerConnection;
+                inFlight = true;
+                key.interestOps(0);
+
+                try {
+                    long queued = System.nanoTime();
+                    threadPool.execute(() -> {
+                        try {
+                            long dequeued = System.nanoTime();
+                            metrics.recordLatency(ServerMetrics.Phase.QUEUE_WAIT, dequeued - queued);
+                            requestLimiter.acquire();
+                            metrics.recordLatency(ServerMetrics.Phase.LIMITER_WAIT, System.nanoTime() - dequeued);
+                            HttpResponse response;
+                            try {
+                                response = requestProcessor.process(request, origin, keepAlive);
+                            } finally {
+                                requestLimiter.release();
+                            }
+                            submit(() -> startWrite(key, response));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            submit(() -> close(key));
+                        } catch (RuntimeException | Error e) {
+                            // Without a response the connection would wait for one forever
+                            DiagnosticLog.warn("Failed to process %s: %s", request.getTarget(), e);
+                            submit(() -> startWrite(key, requestProcessor.error(500)));
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    close(key);
+                }
+            }
+
+            private void startWrite(SelectionKey key, HttpResponse response) {
+                if (!key.isValid()) {
+                    closeQuietly(response);
+                    return;
+                }
+                current = response;
+                writeStarted = System.nanoTime();
+                output = response.toByteBuffers();
+                chunk = null;
+                chunksDone = response.isHeadOnly();
+                bodyPosition = 0;
+                closeAfterWrite |= !response.isKeepAlive();
+                try {
+                    writeOutput(key);
+                } catch (IOException | CancelledKeyException e) {
+                    close(key);
+                }
+            }
+
+            /**
+             * Writes as much of the pending response as the socket accepts: first the buffers,
+             * then any chunked body one chunk at a time, or any file body with
+             * {@link FileChannel#transferTo}. Once a chunk has been sent, the next one is
+             * requested from the thread pool, see {@link #produceNextChunk}.
+             */
+
+            private void writeOutput(SelectionKey key) throws IOException {
+                channel.write(output);
+                for (ByteBuffer buffer : output) {
+                    if (buffer.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                if (current.isChunked() && !chunksDone) {
+                    if (chunk != null) {
+                        channel.write(chunk);
+                        if (chunk.hasRemaining()) {
+                            key.interestOps(SelectionKey.OP_WRITE);
+                            return;
+                        }
+                    }
+                    produceNextChunk(key);
+                    return;
+                }
+
+                FileChannel bodyChannel = current.isHeadOnly() ? null : current.getBodyChannel();
+                if (bodyChannel != null) {
+                    long offset = current.getBodyOffset();
+                    long length = current.getContentLength();
+                    while (bodyPosition < length) {
+                        long sent = bodyChannel.transferTo(offset + bodyPosition, length - bodyPosition, channel);
+                        if (sent == 0) {
+                            if (offset + bodyPosition >= bodyChannel.size()) {
+                                throw new EOFException("File shrank while being sent");
+                            }
+                            key.interestOps(SelectionKey.OP_WRITE);
+                            return;
+                        }
+                        bodyPosition += sent;
+                    }
+                }
+
+                closeQuietly(current);
+                current = null;
+                output = null;
+                chunk = null;
+                inFlight = false;
+                lastActivity = System.nanoTime();
+                if (timed) {
+                    metrics.recordLatency(ServerMetrics.Phase.RESPONSE_WRITE, lastActivity - writeStarted);
+                    metrics.recordLatency(ServerMetrics.Phase.TOTAL, lastActivity - requestStarted);
+                    timed = false;
+                }
+                if (closeAfterWrite) {
+                    close(key);
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+                dispatchNext(key);
+            }
+
+            /**
+             * Has the next chunk of the current response produced on the thread pool.
+             * <p>
+             * The connection waits for no event meanwhile. The response, which the worker
+             * is using, is not closed before the chunk has been handed back, see
+             * {@link #onChunk}.
+             */
+
+            private void produceNextChunk(SelectionKey key) {
+                HttpResponse response = current;
+                producingChunk = true;
+                key.interestOps(0);
+                try {
+                    threadPool.execute(() -> {
+                        ByteBuffer next;
+                        try {
+                            next = response.nextChunk();
+                        } catch (IOException | RuntimeException e) {
+                            DiagnosticLog.warn("Failed to produce a chunk: %s", e);
+                            submit(() -> {
+                                producingChunk = false;
+                                close(key);
+                            });
+                            return;
+                        }
+                        submit(() -> onChunk(key, next));
+                    });
+                } catch (RejectedExecutionException e) {
+                    producingChunk = false;
+                    close(key);
+                }
+            }
+
+            private void onChunk(SelectionKey key, ByteBuffer next) {
+                producingChunk = false;
+                if (!key.isValid()) {
+                    close(key);
+                    return;
+                }
+                chunk = next;
+                chunksDone = next == null;
+                try {
+                    writeOutput(key);
+                } catch (IOException | CancelledKeyException e) {
+                    close(key);
+                }
+            }
+
+            private void close(SelectionKey key) {
+                key.cancel();
+                closeQuietly(channel);
+                if (current != null && !producingChunk) {
+                    closeQuietly(current);
+                    current = null;
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The PartialContent class builds the responses to {@code Range} requests for a {@link StaticFile}.
+ * <p>
+ * A single range is answered with {@code 206 Partial Content} and a body that is a view
+ * of the file: a slice of the in-memory content or of the memory mapping, or a region
+ * of the file channel that is sent positionally with {@link java.nio.channels.FileChannel#transferTo}.
+ * Nothing outside the range is read.
+ * <p>
+ * Several ranges are answered with a {@code multipart/byteranges} body, assembled in
+ * memory from positional reads of just the requested bytes. When their total exceeds
+ * {@link #MAX_MULTIPART_BYTES} the Range header is ignored, as the specification allows,
+ * and the caller sends the whole file instead. Requests with no satisfiable range get
+ * {@code 416 Range Not Satisfiable}.
+ *
+ * @see ByteRange
+ */
+
+public final class PartialContent {
+
+    /**
+     * Maximum total size of the ranges served as one multipart body.
+     */
+
+    public static final long MAX_MULTIPART_BYTES = 8L * 1024 * 1024;
+
+    private static final byte[] NOT_SATISFIABLE_PAGE =
+            "<html><body><h1>416 Range Not Satisfiable</h1></body></html>".getBytes(StandardCharsets.ISO_8859_1);
+
+    private PartialContent() {
+    }
+
+    /**
+     * Builds the response for the satisfiable ranges of a file.
+     * <p>
+     * The file is closed unless the response takes ownership of its channel.
+     *
+     * @param file the requested file
+     * @param ranges the result of {@link ByteRange#parse(String, long)}, not null
+     * @param contentType the content type of the file
+     * @param keepAlive whether the connection stays open after this response
+     * @return the 206 or 416 response, or null if the ranges are too large to serve as
+     * multipart, in which case the file is left open
+     * @throws IOException if reading the ranges fails; the file is closed
+     */
+
+    public static HttpResponse respond(StaticFile file, List<ByteRange> ranges, String contentType, boolean keepAlive) throws IOException {
+        long size = file.getSize();
+        if (ranges.isEmpty()) {
+            file.close();
+            return new HttpResponse(416, "text/html", NOT_SATISFIABLE_PAGE, keepAlive)
+                    .addHeader("Content-Range", "bytes */" + size);
+        }
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return slice(file, range, contentType, keepAlive)
+                    .addHeader("Content-Range", range.toContentRange(size))
+                    .addHeader("Accept-Ranges", "bytes");
+        }
+
+        long total = 0;
+        for (ByteRange range : ranges) {
+            total += range.getLength();
+        }
+        if (total > MAX_MULTIPART_BYTES) {
+            return null;
+        }
+
+        try {
+            String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+            byte[] body = multipart(file, ranges, contentType, boundary);
+            return new HttpResponse(206, "multipart/byteranges; boundary=" + boundary, body, keepAlive)
+                    .addHeader("Accept-Ranges", "bytes");
+        } finally {
+            file.close();
+        }
+    }
+
+    private static HttpResponse slice(StaticFile file, ByteRange range, String contentType, boolean keepAlive) {
+        int first = (int) range.getFirst();
+        int length = (int) range.getLength();
+        if (file.isStreamed()) {
+            return new HttpResponse(206, contentType, file.getChannel(), range.getFirst(), range.getLength(), keepAlive);
+        }
+        if (file.isMapped()) {
+            ByteBuffer mapping = file.getBuffer();
+            return new HttpResponse(206, contentType, mapping.slice(mapping.position() + first, length), keepAlive);
+        }
+        return new HttpResponse(206, contentType, ByteBuffer.wrap(file.getContent(), first, length), keepAlive);
+    }
+
+    private static byte[] multipart(StaticFile file, List<ByteRange> ranges, String contentType, String boundary) throws IOException {
+        byte[][] partHeads = new byte[ranges.size()][];
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            partHeads[i] = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType +
+                    "\r\nContent-Range: " + range.toContentRange(file.getSize()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            length += partHeads[i].length + range.getLength();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteBuffer body = ByteBuffer.allocate((int) (length + end.length));
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            body.put(partHeads[i]);
+            ByteBuffer part = body.slice(body.position(), (int) range.getLength());
+            file.read(range.getFirst(), part);
+            body.position(body.position() + (int) range.getLength());
+        }
+        body.put(end);
+        return body.array();
+    }
+}
@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * The RequestProcessor class turns a parsed HTTP request into a response.
+ * <p>
+ * It resolves the requested route against the server root through the
+ * {@link FileAccessController}, falls back to the configured 404 page when the file
+ * cannot be served, and logs every transaction to the shared log queue. Every response
+ * is also counted in the {@link ServerMetrics}, served on their own route, which
+ * record the time taken to open the requested file as well.
+ * <p>
+ * The processor does no socket I/O itself, so it is shared by the blocking
+ * {@link ClientHandler} and the non-blocking {@link NioHTTPServerThread} engine.
+ * It holds no per-request state and is thread-safe.
+ */
+
+public class RequestProcessor {
+
+    /**
+     * Content codings offered to clients, in order of preference.
+     */
+
+    private static final String[] CODINGS = { "br", "gzip" };
+
+    private final Supplier<ServerSettings> settings;
+    private final FileAccessController fileAccessController;
+    private final BlockingQueue<LogEntry> logQueue;
+    private final ServerMetrics metrics;
+
+    /**
+     * Constructs a new RequestProcessor with its dependencies.
+     *
+     * @param settings the ServerSettings snapshot containing server configuration parameters
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     */
+
+    public RequestProcessor(ServerSettings settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue) {
+        this(() -> settings, fileAccessController, logQueue);
+    }
+
+    /**
+     * Constructs a new RequestProcessor that follows configuration reloads.
+     * <p>
+     * The snapshot is read once at the start of every request.
+     *
+     * @param settings supplies the current ServerSettings snapshot, see {@link ConfigWatcher}
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     */
+
+    public RequestProcessor(Supplier<ServerSettings> settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue) {
+        this(settings, fileAccessController, logQueue, new ServerMetrics());
+    }
+
+    /**
+     * Constructs a new RequestProcessor that follows configuration reloads and records its responses.
+     *
+     * @param settings supplies the current ServerSettings snapshot, see {@link ConfigWatcher}
+     * @param fileAccessController the FileAccessController for thread-safe file operations
+     * @param logQueue the BlockingQueue for asynchronous log processing
+     * @param metrics the metrics the responses are counted in, shared by all processors of a server
+     */
+
+    public RequestProcessor(Supplier<ServerSettings> settings, FileAccessController fileAccessController, BlockingQueue<LogEntry> logQueue, ServerMetrics metrics) {
+        this.settings = settings;
+        this.fileAccessController = fileAccessController;
+        this.logQueue = logQueue;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Serves a single request.
+     * <p>
+     * The root route is mapped to the configured default page. If the file cannot be
+     * read the configured 404 page is returned instead, or a built-in page if that one
+     * is missing too. The transaction is logged before the response is returned.
+     * <p>
+     * Files above the streaming threshold produce a response with a file channel body,
+     * which the caller must close after sending it.
+     * <p>
+     * Every file response advertises {@code Accept-Ranges: bytes}. GET requests with a
+     * {@code Range} header get the requested bytes only, as a {@code 206} response or a
+     * {@code 416} when no range is satisfiable, see {@link PartialContent}.
+     * <p>
+     * File responses carry an {@code ETag}, a {@code Last-Modified} date and the
+     * {@code Cache-Control} value configured for the file's extension. A GET or HEAD
+     * request whose {@code If-None-Match} or, in its absence, {@code If-Modified-Since}
+     * header shows that the client's copy is current gets a bodyless {@code 304}; it is
+     * answered from the file's cached validators, without opening or reading the file.
+     * <p>
+     * Files whose media type is listed in {@code server.compress.types} are negotiated
+     * through {@code Accept-Encoding}: a brotli or gzip variant is sent when the client
+     * accepts it and {@link FileAccessController#openEncoded(StaticFile, String)} has one,
+     * with an entity tag of its own. Files too large to be compressed into memory are
+     * compressed while they are sent instead, with chunked transfer encoding, to HTTP/1.1
+     * clients. Their responses all carry {@code Vary: Accept-Encoding}.
+     * Range requests are always served from the uncompressed file.
+     * <p>
+     * A GET or HEAD request for the configured metrics route gets the current
+     * {@link ServerMetrics} instead of a file.
+     * <p>
+     * The response to a HEAD request has the headers of the response to the same GET
+     * request but sends no body, see {@link HttpResponse#forMethod(String)}.
+     *
+     * @param request the parsed request
+     * @param origin the address of the client, used for logging
+     * @param keepAlive whether the connection stays open after this response
+     * @return the complete response
+     * @throws InterruptedException if the thread is interrupted while logging
+     */
+
+    public HttpResponse process(HttpRequest request, String origin, boolean keepAlive) throws InterruptedException {
+        ServerSettings settings = this.settings.get();
+        String route = request.getTarget();
+        if (route.indexOf('%') >= 0 || route.indexOf('+') >= 0) {
+            route = URLDecoder.decode(route, StandardCharsets.UTF_8);
+        }
+        DiagnosticLog.debug("Request received: %s %s %s", request.getMethod(), request.getTarget(), request.getVersion());
+
+        if (route.equals("/")) {
+            route = settings.getDefaultRoute();
+        }
+
+        HttpResponse response;
+        if (route.equals(settings.getMetricsRoute())
+                && ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            response = new HttpResponse(200, ServerMetrics.CONTENT_TYPE, metrics.scrape().getBytes(StandardCharsets.UTF_8), keepAlive)
+                    .addHeader("Cache-Control", "no-store");
+        } else {
+            StaticFile file = null;
+            StaticFile variant = null;
+            boolean handedOver = false;
+            try {
+                response = notModifiedResponse(request, route, settings, keepAlive);
+                if (response == null) {
+                    long opening = System.nanoTime();
+                    file = fileAccessController.openFile(route);
+                    metrics.recordLatency(ServerMetrics.Phase.FILE_READ, System.nanoTime() - opening);
+                    response = rangeResponse(request, route, file, settings, keepAlive);
+                }
+                if (response == null) {
+                    String coding = null;
+                    if (isNegotiated(settings, route, file.getSize())) {
+                        String acceptEncoding = request.getHeader("accept-encoding");
+                        for (int i = 0; i < CODINGS.length && variant == null; i++) {
+                            if (AcceptEncoding.accepts(acceptEncoding, CODINGS[i])) {
+                                variant = openEncoded(file, CODINGS[i]);
+                                coding = variant != null ? CODINGS[i] : null;
+                            }
+                        }
+                    }
+                    response = fileResponse(request, route, file, variant, coding, settings, keepAlive);
+                }
+                handedOver = true;
+            } catch (IOException | InterruptedException e) {
+                response = new HttpResponse(404, "text/html", settings.getNotFoundPage(), keepAlive);
+            } finally {
+                // Whatever was opened and not handed to a response is closed here, on every path
+                if (!handedOver) {
+                    closeQuietly(variant);
+                    closeQuietly(file);
+                } else if (variant != null) {
+                    closeQuietly(file);
+                }
+            }
+        }
+        response.forMethod(request.getMethod());
+        metrics.recordResponse(response.getStatus(), response.isHeadOnly() ? 0 : response.getContentLength());
+
+        LogEntry logEntry = new LogEntry(
+                LogEntry.currentTimeNanos(),
+                request.getMethod(),
+                route,
+                origin,
+                response.getStatus()
+        );
+
+        try {
+            logQueue.put(logEntry);
+        } catch (InterruptedException e) {
+            try {
+                response.close();
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Builds the error response sent for a request that could not be parsed, and counts it.
+     *
+     * @param status the error status code
+     * @return the error response, which closes the connection
+     */
+
+    public HttpResponse error(int status) {
+        HttpResponse response = HttpResponse.error(status);
+        metrics.recordResponse(status, response.getContentLength());
+        return response;
+    }
+
+    /**
+     * Answers a conditional request from the file's validators alone.
+     * <p>
+     * An If-None-Match tag of any encoded variant of the file is accepted, and the
+     * matching tag is sent back. After If-Modified-Since the tag of a negotiated file
+     * is left out, since telling which variant the client holds would require a lookup.
+     *
+     * @return a 304 response, or null if the request is unconditional, the file is
+     * missing or the client's copy is outdated
+     */
+
+    private HttpResponse notModifiedResponse(HttpRequest request, String route, ServerSettings settings, boolean keepAlive) throws IOException {
+        String ifNoneMatch = request.getHeader("if-none-match");
+        String ifModifiedSince = request.getHeader("if-modified-since");
+        if (ifNoneMatch == null && ifModifiedSince == null
+                || !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        FileValidators validators = fileAccessController.getValidators(route);
+        if (validators == null) {
+            return null;
+        }
+        boolean negotiated = isNegotiated(settings, route, validators.getSize());
+        String eTag;
+        if (ifNoneMatch != null) {
+            eTag = matchingTag(ifNoneMatch, validators.getETag(), negotiated);
+            if (eTag == null) {
+                return null;
+            }
+        } else {
+            long since = HttpDate.parse(ifModifiedSince);
+            if (since < 0 || validators.getLastModified() / 1000 * 1000 > since) {
+                return null;
+            }
+            eTag = negotiated ? null : validators.getETag();
+        }
+        return addCacheHeaders(HttpResponse.notModified(keepAlive), eTag, validators.getLastModified(),
+                settings.getCacheControl(route), negotiated);
+    }
+
+    /**
+     * Returns the tag of an If-None-Match list that matches the file or, if it is
+     * negotiated, one of its encoded variants, using the weak comparison.
+     *
+     * @return the matching tag without any weak prefix, or null if none matches
+     */
+
+    private static String matchingTag(String ifNoneMatch, String eTag, boolean negotiated) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return eTag;
+            }
+            if (negotiated) {
+                for (String coding : CODINGS) {
+                    if (candidate.equals(encodedTag(eTag, coding))) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entity tag of the variant of a file encoded with a content coding,
+     * such as {@code "1a2b-400-18c3f2d9e10-gzip"}.
+     */
+
+    private static String encodedTag(String eTag, String coding) {
+        if (eTag == null || coding == null) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + coding + "\"";
+    }
+
+    private static boolean isNegotiated(ServerSettings settings, String route, long size) {
+        return size >= settings.getCompressMinBytes() && settings.isCompressible(MimeTypes.of(route));
+    }
+
+    private static HttpResponse addCacheHeaders(HttpResponse response, String eTag, long lastModified, String cacheControl, boolean negotiated) {
+        if (eTag != null) {
+            response.addHeader("ETag", eTag);
+        }
+        if (lastModified > 0) {
+            response.addHeader("Last-Modified", HttpDate.format(lastModified));
+        }
+        if (cacheControl != null) {
+            response.addHeader("Cache-Control", cacheControl);
+        }
+        if (negotiated) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        return response;
+    }
+
+    /**
+     * Builds the response to a {@code Range} request for an opened file, with its caching headers.
+     * <p>
+     * The ranges are honoured for GET requests unless an {@code If-Range} validator shows
+     * that the client holds another version of the file.
+     *
+     * @return the 206 or 416 response, which took care of the file, or null if the whole
+     * file is to be sent, in which case the file is left open
+     */
+
+    private HttpResponse rangeResponse(HttpRequest request, String route, StaticFile file, ServerSettings settings, boolean keepAlive)
+            throws IOException {
+        String rangeHeader = request.getHeader("range");
+        if (rangeHeader == null || !"GET".equals(request.getMethod()) || !isCurrent(request.getHeader("if-range"), file)) {
+            return null;
+        }
+        HttpResponse partial = PartialContent.respond(file, ByteRange.parse(rangeHeader, file.getSize()), MimeTypes.of(route), keepAlive);
+        if (partial == null || partial.getStatus() == 416) {
+            return partial;
+        }
+        return addCacheHeaders(partial, file.getETag(), file.getLastModified(), settings.getCacheControl(route),
+                isNegotiated(settings, route, file.getSize()));
+    }
+
+    /**
+     * Builds the response for an opened file: an encoded variant or the whole file, with
+     * its caching headers.
+     * <p>
+     * Files too large to have a variant are compressed while they are sent when the
+     * client accepts gzip. Closing the file, or the variant's original, is left to the caller.
+     *
+     * @param variant the encoded variant of the file, or null to send the file itself
+     * @param coding the content coding of the variant, or null
+     */
+
+    private HttpResponse fileResponse(HttpRequest request, String route, StaticFile file, StaticFile variant, String coding,
+                                      ServerSettings settings, boolean keepAlive) {
+        String contentType = MimeTypes.of(route);
+        String eTag = file.getETag();
+        long lastModified = file.getLastModified();
+        String cacheControl = settings.getCacheControl(route);
+        boolean negotiated = isNegotiated(settings, route, file.getSize());
+
+        if (negotiated && variant == null && file.getSize() > settings.getCompressMaxBytes()
+                && "HTTP/1.1".equals(request.getVersion()) && AcceptEncoding.accepts(request.getHeader("accept-encoding"), "gzip")) {
+            HttpResponse response = new HttpResponse(200, contentType, metrics.countBytes(new GzipChannel(file)), keepAlive)
+                    .addHeader("Accept-Ranges", "bytes")
+                    .addHeader("Content-Encoding", "gzip");
+            return addCacheHeaders(response, encodedTag(eTag, "gzip"), lastModified, cacheControl, true);
+        }
+
+        StaticFile body = variant != null ? variant : file;
+        HttpResponse response;
+        if (body.isMapped()) {
+            response = new HttpResponse(200, contentType, body.getBuffer(), keepAlive);
+        } else if (body.isStreamed()) {
+            response = new HttpResponse(200, contentType, body.getChannel(), body.getSize(), keepAlive);
+        } else {
+            response = new HttpResponse(200, contentType, body.getContent(), keepAlive);
+        }
+        response.addHeader("Accept-Ranges", "bytes");
+        if (coding != null) {
+            response.addHeader("Content-Encoding", coding);
+        }
+        return addCacheHeaders(response, encodedTag(eTag, coding), lastModified, cacheControl, negotiated);
+    }
+
+    /**
+     * Opens an encoded variant of a file, leaving the file open.
+     * A failure to open the variant is not fatal: the file is then sent as it is.
+     */
+
+    private StaticFile openEncoded(StaticFile file, String coding) throws InterruptedException {
+        try {
+            return fileAccessController.openEncoded(file, coding);
+        } catch (IOException e) {
+            DiagnosticLog.warn("Could not open the %s variant of %s: %s", coding, file.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void closeQuietly(StaticFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            DiagnosticLog.debug("Error closing %s: %s", file.getPath(), e);
+        }
+    }
+
+    /**
+     * Tells whether an If-Range validator, if any, matches the file.
+     * <p>
+     * An entity tag must match strongly, so a weak tag never does; a date must be the
+     * file's exact Last-Modified date.
+     */
+
+    private static boolean isCurrent(String ifRange, StaticFile file) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(file.getETag());
+        }
+        return ifRange.equals(HttpDate.format(file.getLastModified()));
+    }
+}
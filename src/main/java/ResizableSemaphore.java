@@ -0,0 +1,61 @@
+import java.util.concurrent.Semaphore;
+
+/**
+ * The ResizableSemaphore class is a fair {@link Semaphore} whose total number of permits can change at runtime.
+ * <p>
+ * It backs the request limiter, so {@code server.max.total.requests} can be tuned by a
+ * configuration reload. Growing releases the additional permits straight away. Shrinking
+ * withdraws permits without waiting: permits already held are returned normally, and
+ * new acquirers block until the number in use drops below the new limit. Requests in
+ * flight are therefore never interrupted.
+ */
+
+public class ResizableSemaphore extends Semaphore {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @serial the current total number of permits
+     */
+
+    private int maxPermits;
+
+    /**
+     * Constructs a new fair ResizableSemaphore.
+     *
+     * @param permits the initial total number of permits
+     */
+
+    public ResizableSemaphore(int permits) {
+        super(permits, true);
+        this.maxPermits = permits;
+    }
+
+    /**
+     * Changes the total number of permits.
+     *
+     * @param permits the new total, at least one
+     * @throws IllegalArgumentException if the total is not positive
+     */
+
+    public synchronized void resize(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Permits must be positive: " + permits);
+        }
+        int delta = permits - maxPermits;
+        if (delta > 0) {
+            release(delta);
+        } else if (delta < 0) {
+            reducePermits(-delta);
+        }
+        maxPermits = permits;
+    }
+
+    /**
+     * @return the current total number of permits, whether in use or not
+     */
+
+    public synchronized int getMaxPermits() {
+        return maxPermits;
+    }
+}
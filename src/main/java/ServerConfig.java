@@ -53,4 +53,45 @@ public class ServerConfig {
     public int getIntConfig(String key) {
         return Integer.parseInt(configMap.get(key));
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves an integer configuration value, falling back to a default when the key is absent.
+     *
+     * @param key the configuration key to retrieve
+     * @param defaultValue the value returned when the key is not configured
+     * @return the configuration value as an integer, or the default value
+     * @throws NumberFormatException If the value cannot be parsed as an integer
+     */
+
+    public int getIntConfig(String key, int defaultValue) {
+        String value = configMap.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Retrieves a long configuration value, falling back to a default when the key is absent.
+     *
+     * @param key the configuration key to retrieve
+     * @param defaultValue the value returned when the key is not configured
+     * @return the configuration value as a long, or the default value
+     * @throws NumberFormatException If the value cannot be parsed as a long
+     */
+
+    public long getLongConfig(String key, long defaultValue) {
+        String value = configMap.get(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Retrieves a boolean configuration value, falling back to a default when the key is absent.
+     *
+     * @param key the configuration key to retrieve
+     * @param defaultValue the value returned when the key is not configured
+     * @return true if the value is {@code true} ignoring case, the default value if the key is absent
+     */
+
+    public boolean getBooleanConfig(String key, boolean defaultValue) {
+        String value = configMap.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
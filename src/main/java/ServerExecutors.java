@@ -0,0 +1,75 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ServerExecutors class creates the executor that runs client handlers.
+ * <p>
+ * The execution mode is selected with {@code server.executor}:
+ * <ul>
+ *     <li>{@code platform} (default) - a fixed {@link ThreadPool} sized from
+ *     {@code server.maximum.requests};</li>
+ *     <li>{@code virtual} - one virtual thread per task, so a blocked connection does not
+ *     hold a platform thread. Concurrency is then bounded only by the request limiter
+ *     semaphore ({@code server.max.total.requests}).</li>
+ * </ul>
+ * Virtual threads require Java 21. The executor is looked up reflectively so the server
+ * still builds and runs on Java 17; on older runtimes the virtual mode falls back to the
+ * platform pool with a warning.
+ * <p>
+ * Code running on these executors must not block while holding a monitor, otherwise a
+ * virtual thread pins its carrier thread. The request path therefore relies on
+ * {@link java.util.concurrent.locks.ReentrantLock} based synchronization only.
+ */
+
+public class ServerExecutors {
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * Creates the client handler executor described by the configuration.
+     *
+     * @param config the ServerConfig containing {@code server.executor} and {@code server.maximum.requests}
+     * @return a new executor service
+     * @throws IllegalArgumentException if {@code server.executor} names an unknown mode
+     */
+
+    public static ExecutorService create(ServerConfig config) {
+        String mode = config.getConfig("server.executor");
+        if (mode == null || mode.equalsIgnoreCase("platform")) {
+            return newPlatformPool(config);
+        }
+        if (!mode.equalsIgnoreCase("virtual")) {
+            throw new IllegalArgumentException("Unknown server.executor mode: " + mode);
+        }
+
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualExecutor == null) {
+            DiagnosticLog.warn("Virtual threads require Java 21 or newer (running %s), falling back to the platform thread pool.",
+                    Runtime.version());
+            return newPlatformPool(config);
+        }
+        return virtualExecutor;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return the executor, or null if the running JVM does not support virtual threads
+     */
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformPool(ServerConfig config) {
+        int size = config.getIntConfig("server.maximum.requests");
+        return new ThreadPool(size, size);
+    }
+}
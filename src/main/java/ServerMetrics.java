@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The ServerMetrics class counts what the server does and renders it in the Prometheus text format.
+ * <p>
+ * Three kinds of metrics are kept:
+ * <ul>
+ *     <li>counters recorded on the request path: the number of responses by status code
+ *     and the number of body bytes sent. Each is a {@link LongAdder}, so threads recording
+ *     at the same time update separate cells instead of contending on one value, and
+ *     recording a response costs two uncontended additions and no allocation;</li>
+ *     <li>the latency of each {@link Phase} of a request, recorded into one
+ *     {@link LatencyHistogram} per phase whose buckets are allocated up front, and
+ *     reported as the 50th, 99th and 99.9th percentiles;</li>
+ *     <li>registered values, read from the component that owns them only when the metrics
+ *     are scraped, such as the thread pool size, the log queue depth or the cache
+ *     counters. They cost nothing while requests are served.</li>
+ * </ul>
+ * The metrics are served by the {@link RequestProcessor} on the route configured with
+ * {@code server.metrics.route}, and not at all by default. Once configured, the route
+ * is open to every client, so it should be kept unreachable from outside, by a firewall
+ * or a reverse proxy.
+ * <p>
+ * This class is thread-safe.
+ */
+
+public class ServerMetrics {
+
+    /**
+     * Media type of the Prometheus text exposition format.
+     */
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The phases of a request whose latency is recorded.
+     * <p>
+     * {@code LIMITER_WAIT} and {@code QUEUE_WAIT} are spent waiting for a permit of the
+     * request limiter and for a thread of the pool, {@code LOCK_WAIT} for the per-file read
+     * lock of the {@link FileAccessController}. {@code FILE_READ} opens the requested file,
+     * lock wait included, and {@code RESPONSE_WRITE} writes the response to the socket.
+     * {@code TOTAL} covers the whole request. With the blocking engine, the limiter
+     * and queue waits are recorded once per connection, before its first request, and the
+     * total of the first request starts when the connection was accepted. With the NIO
+     * engine, each request waits for the pool and then for the limiter, and its total
+     * starts when its head has been read.
+     */
+
+    public enum Phase {
+
+        /**
+         * Waiting for a request limiter permit.
+         */
+
+        LIMITER_WAIT,
+
+        /**
+         * Waiting in the thread pool queue for a worker.
+         */
+
+        QUEUE_WAIT,
+
+        /**
+         * Waiting for the lock of a file that is read from disk.
+         */
+
+        LOCK_WAIT,
+
+        /**
+         * Opening the requested file, from a cache or from disk.
+         */
+
+        FILE_READ,
+
+        /**
+         * Writing the response to the client.
+         */
+
+        RESPONSE_WRITE,
+
+        /**
+         * The whole request, from its start to its response being written.
+         */
+
+        TOTAL;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final LongAdder[] responses = new LongAdder[MAX_STATUS - MIN_STATUS + 1];
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final List<Metric> registered = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a new ServerMetrics with all counters at zero and no registered values.
+     */
+
+    public ServerMetrics() {
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a response.
+     *
+     * @param status the status code of the response; codes outside 100-599 are not counted
+     * @param bodyBytes the length of the body, zero or negative if it is not known yet
+     */
+
+    public void recordResponse(int status, long bodyBytes) {
+        if (status >= MIN_STATUS && status <= MAX_STATUS) {
+            responses[status - MIN_STATUS].increment();
+        }
+        if (bodyBytes > 0) {
+            bytesSent.add(bodyBytes);
+        }
+    }
+
+    /**
+     * Records the duration of a phase of a request.
+     *
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds, as measured with {@link System#nanoTime()}
+     */
+
+    public void recordLatency(Phase phase, long nanos) {
+        latencies[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param phase the phase
+     * @return the histogram the durations of the phase are recorded in
+     */
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    /**
+     * Wraps the body of a response of unknown length so that its bytes are counted as they are read.
+     *
+     * @param source the body source, which the returned channel closes
+     * @return a channel reading from the source
+     */
+
+    public ReadableByteChannel countBytes(ReadableByteChannel source) {
+        return new CountingChannel(source);
+    }
+
+    /**
+     * @param status the status code
+     * @return the number of responses recorded with the status code
+     */
+
+    public long getResponseCount(int status) {
+        return status >= MIN_STATUS && status <= MAX_STATUS ? responses[status - MIN_STATUS].sum() : 0;
+    }
+
+    /**
+     * @return the number of body bytes recorded
+     */
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Registers a value that can go up and down, read when the metrics are scraped.
+     *
+     * @param name the metric name, such as {@code server_log_queue_depth}
+     * @param help the description of the metric
+     * @param value supplies the current value; it must be cheap and thread-safe
+     * @return this ServerMetrics, for chaining
+     */
+
+    public ServerMetrics registerGauge(String name, String help, LongSupplier value) {
+        registered.add(new Metric(name, help, "gauge", value));
+        return this;
+    }
+
+    /**
+     * Registers a value that only increases, maintained elsewhere and read when the metrics are scraped.
+     *
+     * @param name the metric name, ending with {@code _total}
+     * @param help the description of the metric
+     * @param value supplies the current value; it must be cheap and thread-safe
+     * @return this ServerMetrics, for chaining
+     */
+
+    public ServerMetrics registerCounter(String name, String help, LongSupplier value) {
+        registered.add(new Metric(name, help, "counter", value));
+        return this;
+    }
+
+    /**
+     * Registers the active thread count, pool size and queue size of the client executor.
+     * Executors other than a {@link ThreadPoolExecutor}, such as the virtual thread
+     * executor, expose none of them and are ignored.
+     *
+     * @param executor the client executor
+     */
+
+    public void registerExecutor(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            registerGauge("server_thread_pool_active_threads", "Threads running a task.", pool::getActiveCount);
+            registerGauge("server_thread_pool_size", "Threads in the client thread pool.", pool::getPoolSize);
+            registerGauge("server_thread_pool_queue_size", "Tasks waiting for a thread.", () -> pool.getQueue().size());
+            registerCounter("server_thread_pool_completed_tasks_total", "Tasks run to completion.", pool::getCompletedTaskCount);
+        }
+    }
+
+    /**
+     * Registers the available permits of the request limiter.
+     *
+     * @param requestLimiter the semaphore bounding the requests processed at the same time
+     */
+
+    public void registerRequestLimiter(Semaphore requestLimiter) {
+        registerGauge("server_request_limiter_available_permits", "Requests that can start without waiting.", requestLimiter::availablePermits);
+    }
+
+    /**
+     * Registers the depth of the log queue and, for a {@link LogQueue}, its capacity and dropped entries.
+     *
+     * @param logQueue the queue between the request path and the log consumer
+     */
+
+    public void registerLogQueue(BlockingQueue<LogEntry> logQueue) {
+        registerGauge("server_log_queue_depth", "Log entries waiting to be written.", logQueue::size);
+        if (logQueue instanceof LogQueue) {
+            LogQueue queue = (LogQueue) logQueue;
+            registerGauge("server_log_queue_capacity", "Log entries the queue can hold.", queue::getCapacity);
+            registerCounter("server_log_queue_dropped_total", "Log entries dropped because the queue was full.", queue::getDroppedCount);
+        }
+    }
+
+    /**
+     * Registers the statistics of the heap, mapped and compressed file caches.
+     *
+     * @param fileAccessController the controller owning the caches
+     */
+
+    public void registerCaches(FileAccessController fileAccessController) {
+        FileCache fileCache = fileAccessController.getFileCache();
+        registerCache("server_file_cache", "heap file cache", fileCache::getHitCount, fileCache::getMissCount,
+                fileCache::getEvictionCount, fileCache::getCurrentBytes);
+        MappedFileCache mappedFileCache = fileAccessController.getMappedFileCache();
+        registerCache("server_mapped_file_cache", "mapped file cache", mappedFileCache::getHitCount, mappedFileCache::getMissCount,
+                mappedFileCache::getEvictionCount, mappedFileCache::getCurrentBytes);
+        CompressedFileCache compressedFileCache = fileAccessController.getCompressedFileCache();
+        registerCache("server_compressed_file_cache", "compressed variant cache", compressedFileCache::getHitCount,
+                compressedFileCache::getMissCount, compressedFileCache::getEvictionCount, compressedFileCache::getCurrentBytes);
+    }
+
+    private void registerCache(String prefix, String description, LongSupplier hits, LongSupplier misses,
+                               LongSupplier evictions, LongSupplier bytes) {
+        registerCounter(prefix + "_hits_total", "Lookups answered by the " + description + ".", hits);
+        registerCounter(prefix + "_misses_total", "Lookups missed by the " + description + ".", misses);
+        registerCounter(prefix + "_evictions_total", "Entries evicted from the " + description + ".", evictions);
+        registerGauge(prefix + "_bytes", "Bytes held by the " + description + ".", bytes);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format, version 0.0.4.
+     * <p>
+     * Response counts are only listed for status codes that were recorded at least once.
+     * Phase latencies are rendered as a summary with the 0.5, 0.99 and 0.999 quantiles,
+     * in seconds.
+     *
+     * @return the metrics, one sample per line
+     */
+
+    public String scrape() {
+        StringBuilder text = new StringBuilder(4096);
+        header(text, "http_responses_total", "Responses sent, by status code.", "counter");
+        for (int i = 0; i < responses.length; i++) {
+            long count = responses[i].sum();
+            if (count > 0) {
+                text.append("http_responses_total{code=\"").append(i + MIN_STATUS).append("\"} ").append(count).append('\n');
+            }
+        }
+        header(text, "http_response_body_bytes_total", "Response body bytes sent.", "counter");
+        text.append("http_response_body_bytes_total ").append(bytesSent.sum()).append('\n');
+        header(text, "http_request_phase_seconds", "Time spent in each phase of a request.", "summary");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = latencies[phase.ordinal()];
+            for (double quantile : QUANTILES) {
+                text.append("http_request_phase_seconds{phase=\"").append(phase.label).append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            text.append("http_request_phase_seconds_sum{phase=\"").append(phase.label).append("\"} ").append(seconds(histogram.getSum())).append('\n');
+            text.append("http_request_phase_seconds_count{phase=\"").append(phase.label).append("\"} ").append(histogram.getCount()).append('\n');
+        }
+        for (Metric metric : registered) {
+            header(text, metric.name, metric.help, metric.type);
+            text.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static final class Metric {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final LongSupplier value;
+
+        private Metric(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Counts the bytes read from a chunked body source as they are sent.
+     */
+
+    private final class CountingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel source;
+
+        private CountingChannel(ReadableByteChannel source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            int read = source.read(target);
+            if (read > 0) {
+                bytesSent.add(read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,477 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ServerSettings class is an immutable, validated snapshot of the settings read on every request.
+ * <p>
+ * A {@link ServerConfig} is a mutable map of strings, and parsing its values on the
+ * request path repeats the same work for every request. The snapshot is built once at
+ * startup with {@link #fromConfig(ServerConfig)}: numbers are parsed and range-checked,
+ * the server root is resolved to a normalized absolute {@link Path}, the default page is
+ * turned into a route and the 404 page is read into memory. Request handling then only
+ * reads final fields.
+ * <p>
+ * Later changes to the ServerConfig the snapshot was built from are not seen by it.
+ * Settings used once at startup, such as the log pipeline and executor, are still read
+ * from the ServerConfig by the components they configure.
+ *
+ * @see ConfigLoader
+ */
+
+public final class ServerSettings {
+
+    /**
+     * Port used when {@code server.port} is not configured.
+     */
+
+    public static final int DEFAULT_PORT = 8888;
+
+    /**
+     * Default idle time, in milliseconds, after which a persistent connection is closed.
+     */
+
+    public static final int DEFAULT_KEEPALIVE_TIMEOUT_MS = 5000;
+
+    /**
+     * Default number of requests served on one persistent connection.
+     */
+
+    public static final int DEFAULT_KEEPALIVE_MAX_REQUESTS = 100;
+
+    /**
+     * Default number of threads of the platform client pool.
+     */
+
+    public static final int DEFAULT_MAXIMUM_REQUESTS = 5;
+
+    /**
+     * Default number of requests processed at the same time.
+     */
+
+    public static final int DEFAULT_MAX_TOTAL_REQUESTS = 20;
+
+    /**
+     * Default budget of the heap file cache, in bytes.
+     */
+
+    public static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Default size from which files are streamed instead of loaded into memory, in bytes.
+     */
+
+    public static final long DEFAULT_STREAM_THRESHOLD_BYTES = 1024 * 1024;
+
+    /**
+     * Default size from which files are memory-mapped, in bytes.
+     */
+
+    public static final long DEFAULT_MMAP_MIN_BYTES = 16 * 1024;
+
+    /**
+     * Default size up to which files are memory-mapped, in bytes.
+     */
+
+    public static final long DEFAULT_MMAP_MAX_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Default budget of the mapped file cache, in bytes.
+     */
+
+    public static final long DEFAULT_MMAP_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Media types compressed when {@code server.compress.types} is not configured.
+     */
+
+    public static final String DEFAULT_COMPRESS_TYPES =
+            "text/html,text/css,text/plain,text/csv,text/javascript,application/json,application/xml,image/svg+xml";
+
+    /**
+     * Default size below which files are sent uncompressed, in bytes.
+     */
+
+    public static final long DEFAULT_COMPRESS_MIN_BYTES = 1024;
+
+    /**
+     * Default size above which compressed variants are streamed instead of cached, in bytes.
+     */
+
+    public static final long DEFAULT_COMPRESS_MAX_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Default budget of the compressed variant cache, in bytes.
+     */
+
+    public static final long DEFAULT_COMPRESS_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final byte[] BUILT_IN_NOT_FOUND_PAGE = "<html><body><h1>404 Not Found</h1></body></html>".getBytes();
+
+    private final int port;
+    private final Path root;
+    private final String documentRoot;
+    private final String defaultRoute;
+    private final byte[] notFoundPage;
+    private final int keepAliveTimeoutMillis;
+    private final int keepAliveMaxRequests;
+    private final int maxRequestLineBytes;
+    private final int maxHeaderBytes;
+    private final int maximumRequests;
+    private final int maxTotalRequests;
+    private final int nioEventLoops;
+    private final long cacheMaxBytes;
+    private final long readDelayMillis;
+    private final long streamThresholdBytes;
+    private final long mmapMinBytes;
+    private final long mmapMaxBytes;
+    private final long mmapCacheMaxBytes;
+    private final Map<String, String> cacheControl;
+    private final Set<String> compressTypes;
+    private final long compressMinBytes;
+    private final long compressMaxBytes;
+    private final long compressCacheMaxBytes;
+    private final String metricsRoute;
+
+    private ServerSettings(ServerConfig config) {
+        String rootValue = config.getConfig("server.root");
+        if (rootValue == null || rootValue.isBlank()) {
+            throw new IllegalArgumentException("Missing required configuration: server.root");
+        }
+
+        this.port = (int) range(config, "server.port", DEFAULT_PORT, 0, 65535);
+        this.root = Paths.get(rootValue.trim()).toAbsolutePath().normalize();
+        this.documentRoot = config.getConfig("server.document.root");
+        this.defaultRoute = "/" + config.getConfig("server.default.page") + "." + config.getConfig("server.default.page.extension");
+        this.notFoundPage = readNotFoundPage(root, config.getConfig("server.page.404"));
+        this.keepAliveTimeoutMillis = (int) range(config, "server.keepalive.timeout.ms", DEFAULT_KEEPALIVE_TIMEOUT_MS, 1, Integer.MAX_VALUE);
+        this.keepAliveMaxRequests = (int) range(config, "server.keepalive.max.requests", DEFAULT_KEEPALIVE_MAX_REQUESTS, 1, Integer.MAX_VALUE);
+        this.maxRequestLineBytes = (int) range(config, "server.max.request.line.bytes", HttpRequestParser.DEFAULT_MAX_REQUEST_LINE_BYTES, 1, Integer.MAX_VALUE);
+        this.maxHeaderBytes = (int) range(config, "server.max.header.bytes", HttpRequestParser.DEFAULT_MAX_HEADER_BYTES, 1, Integer.MAX_VALUE);
+        this.maximumRequests = (int) range(config, "server.maximum.requests", DEFAULT_MAXIMUM_REQUESTS, 1, Integer.MAX_VALUE);
+        this.maxTotalRequests = (int) range(config, "server.max.total.requests", DEFAULT_MAX_TOTAL_REQUESTS, 1, Integer.MAX_VALUE);
+        this.nioEventLoops = (int) range(config, "server.nio.event.loops", Runtime.getRuntime().availableProcessors(), 1, 1024);
+        this.cacheMaxBytes = range(config, "server.cache.max.bytes", DEFAULT_CACHE_MAX_BYTES, 0, Long.MAX_VALUE);
+        this.readDelayMillis = range(config, "server.read.delay.ms", 0, 0, Long.MAX_VALUE);
+        this.streamThresholdBytes = range(config, "server.stream.threshold.bytes", DEFAULT_STREAM_THRESHOLD_BYTES, 0, Long.MAX_VALUE);
+        this.mmapMinBytes = range(config, "server.mmap.min.bytes", DEFAULT_MMAP_MIN_BYTES, 0, Long.MAX_VALUE);
+        this.mmapMaxBytes = range(config, "server.mmap.max.bytes", DEFAULT_MMAP_MAX_BYTES, 0, Integer.MAX_VALUE);
+        this.mmapCacheMaxBytes = range(config, "server.mmap.cache.max.bytes", DEFAULT_MMAP_CACHE_MAX_BYTES, 0, Long.MAX_VALUE);
+        this.cacheControl = cacheControlRules(config.getConfig("server.cache.control"));
+        this.compressTypes = mediaTypes(config.getConfig("server.compress.types"));
+        this.compressMinBytes = range(config, "server.compress.min.bytes", DEFAULT_COMPRESS_MIN_BYTES, 0, Long.MAX_VALUE);
+        this.compressMaxBytes = range(config, "server.compress.max.bytes", DEFAULT_COMPRESS_MAX_BYTES, 0, Integer.MAX_VALUE - 8);
+        this.compressCacheMaxBytes = range(config, "server.compress.cache.max.bytes", DEFAULT_COMPRESS_CACHE_MAX_BYTES, 0, Long.MAX_VALUE);
+        this.metricsRoute = metricsRoute(config.getConfig("server.metrics.route"));
+    }
+
+    /**
+     * Builds a snapshot of the given configuration.
+     * <p>
+     * Only {@code server.root} is required; every other setting falls back to its default.
+     * A missing or unreadable 404 page is replaced by a built-in page.
+     *
+     * @param config the configuration to resolve
+     * @return the snapshot
+     * @throws IllegalArgumentException if {@code server.root} is missing or a numeric setting
+     * is not a number or is out of range, naming the offending key
+     */
+
+    public static ServerSettings fromConfig(ServerConfig config) {
+        return new ServerSettings(config);
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the normalized absolute path of the server root
+     */
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the configured document root, as displayed at startup
+     */
+
+    public String getDocumentRoot() {
+        return documentRoot;
+    }
+
+    /**
+     * @return the route served for {@code /}, such as {@code /index.html}
+     */
+
+    public String getDefaultRoute() {
+        return defaultRoute;
+    }
+
+    /**
+     * Returns the body of 404 responses. The array is shared and must not be modified.
+     *
+     * @return the content of the configured 404 page, or a built-in page
+     */
+
+    public byte[] getNotFoundPage() {
+        return notFoundPage;
+    }
+
+    /**
+     * @return the idle time, in milliseconds, after which a persistent connection is closed,
+     * at least one, since a zero socket timeout would never expire
+     */
+
+    public int getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    /**
+     * @return the maximum number of requests served on one persistent connection
+     */
+
+    public int getKeepAliveMaxRequests() {
+        return keepAliveMaxRequests;
+    }
+
+    /**
+     * @return the maximum length of a request line, in bytes
+     */
+
+    public int getMaxRequestLineBytes() {
+        return maxRequestLineBytes;
+    }
+
+    /**
+     * @return the maximum length of a header section, in bytes
+     */
+
+    public int getMaxHeaderBytes() {
+        return maxHeaderBytes;
+    }
+
+    /**
+     * @return the number of threads of the platform client pool
+     */
+
+    public int getMaximumRequests() {
+        return maximumRequests;
+    }
+
+    /**
+     * @return the maximum number of requests processed at the same time
+     */
+
+    public int getMaxTotalRequests() {
+        return maxTotalRequests;
+    }
+
+    /**
+     * @return the number of event loops of the NIO engine
+     */
+
+    public int getNioEventLoops() {
+        return nioEventLoops;
+    }
+
+    /**
+     * @return the budget of the heap file cache, in bytes
+     */
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    /**
+     * @return the artificial delay added to every disk read, in milliseconds
+     */
+
+    public long getReadDelayMillis() {
+        return readDelayMillis;
+    }
+
+    /**
+     * @return the size from which files are streamed instead of loaded into memory, in bytes
+     */
+
+    public long getStreamThresholdBytes() {
+        return streamThresholdBytes;
+    }
+
+    /**
+     * @return the size from which files are memory-mapped, in bytes
+     */
+
+    public long getMmapMinBytes() {
+        return mmapMinBytes;
+    }
+
+    /**
+     * @return the size up to which files are memory-mapped, in bytes
+     */
+
+    public long getMmapMaxBytes() {
+        return mmapMaxBytes;
+    }
+
+    /**
+     * @return the budget of the mapped file cache, in bytes
+     */
+
+    public long getMmapCacheMaxBytes() {
+        return mmapCacheMaxBytes;
+    }
+
+    /**
+     * Returns the {@code Cache-Control} value configured for a route through
+     * {@code server.cache.control}, by file extension.
+     *
+     * @param route the requested route, such as {@code /css/site.css}
+     * @return the header value for the route's extension, the {@code *} rule if there is
+     * none, or null if no rule applies
+     */
+
+    public String getCacheControl(String route) {
+        int slash = route.lastIndexOf('/');
+        int dot = route.lastIndexOf('.');
+        String rule = dot > slash ? cacheControl.get(route.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+        return rule != null ? rule : cacheControl.get("*");
+    }
+
+    /**
+     * Tells whether files of a media type are sent compressed to clients that accept it.
+     *
+     * @param mediaType the media type, see {@link MimeTypes#of(String)}
+     * @return true if the type is listed in {@code server.compress.types}
+     */
+
+    public boolean isCompressible(String mediaType) {
+        return compressTypes.contains(mediaType);
+    }
+
+    /**
+     * @return the size below which files are sent uncompressed, in bytes
+     */
+
+    public long getCompressMinBytes() {
+        return compressMinBytes;
+    }
+
+    /**
+     * @return the size above which files without a precompressed sibling are compressed while
+     * they are sent, with chunked transfer encoding, instead of being compressed once and cached
+     */
+
+    public long getCompressMaxBytes() {
+        return compressMaxBytes;
+    }
+
+    /**
+     * @return the budget of the compressed variant cache, in bytes; zero disables on-the-fly compression
+     */
+
+    public long getCompressCacheMaxBytes() {
+        return compressCacheMaxBytes;
+    }
+
+    /**
+     * @return the route on which the {@link ServerMetrics} are served, or null if they are not
+     *         served, which is the default
+     */
+
+    public String getMetricsRoute() {
+        return metricsRoute;
+    }
+
+    /**
+     * Parses rules such as {@code html:no-cache;css,js:public, max-age=86400;*:no-store}:
+     * a comma separated list of extensions, a colon and the header value, with rules
+     * separated by semicolons.
+     */
+
+    private static Map<String, String> cacheControlRules(String value) {
+        if (value == null || value.isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> rules = new HashMap<>();
+        for (String rule : value.split(";")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            int colon = rule.indexOf(':');
+            String header = colon < 0 ? "" : rule.substring(colon + 1).trim();
+            if (colon <= 0 || header.isEmpty()) {
+                throw new IllegalArgumentException("Invalid server.cache.control: '" + rule.trim() + "' is not of the form extensions:value");
+            }
+            for (String extension : rule.substring(0, colon).split(",")) {
+                String key = extension.trim().toLowerCase(Locale.ROOT);
+                rules.put(key.startsWith(".") ? key.substring(1) : key, header);
+            }
+        }
+        return Collections.unmodifiableMap(rules);
+    }
+
+    private static Set<String> mediaTypes(String value) {
+        Set<String> types = new HashSet<>();
+        for (String type : (value == null ? DEFAULT_COMPRESS_TYPES : value).split(",")) {
+            if (!type.isBlank()) {
+                types.add(type.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return Collections.unmodifiableSet(types);
+    }
+
+    private static String metricsRoute(String value) {
+        // Metrics tell anyone who can reach them about the server's load, so they are opt-in
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.trim();
+        if (!value.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid server.metrics.route: '" + value + "' does not start with /");
+        }
+        return value;
+    }
+
+    private static long range(ServerConfig config, String key, long defaultValue, long min, long max) {
+        String value = config.getConfig(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        long parsed;
+        try {
+            parsed = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": '" + value + "' is not a number");
+        }
+        if (parsed < min || parsed > max) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + parsed + " is outside [" + min + ", " + max + "]");
+        }
+        return parsed;
+    }
+
+    private static byte[] readNotFoundPage(Path root, String page) {
+        if (page == null) {
+            return BUILT_IN_NOT_FOUND_PAGE;
+        }
+        try {
+            return Files.readAllBytes(root.resolve(page.startsWith("/") ? page.substring(1) : page));
+        } catch (IOException e) {
+            DiagnosticLog.warn("Could not read the 404 page, using the built-in one: %s", e.getMessage());
+            return BUILT_IN_NOT_FOUND_PAGE;
+        }
+    }
+}
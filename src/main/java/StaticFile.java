@@ -0,0 +1,195 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * The StaticFile class describes a file opened by the {@link FileAccessController} for serving.
+ * <p>
+ * Small files are held in memory, usually shared with the {@link FileCache}. Medium-sized
+ * files are served from a read-only memory mapping shared through the {@link MappedFileCache}.
+ * Larger files are represented by an open {@link FileChannel} instead, so their content can
+ * be sent to the client with {@link FileChannel#transferTo} without passing through the
+ * Java heap.
+ * <p>
+ * A streamed StaticFile owns its channel and must be closed once the response has been sent.
+ * Closing an in-memory or mapped StaticFile has no effect; mappings are owned by the cache.
+ */
+
+public class StaticFile implements Closeable {
+
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final String eTag;
+    private final byte[] content;
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+
+    private StaticFile(Path path, long size, long lastModified, String eTag, byte[] content, ByteBuffer buffer, FileChannel channel) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.content = content;
+        this.buffer = buffer;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a StaticFile whose content is held in memory.
+     *
+     * @param path the absolute path of the file
+     * @param lastModified the modification time of the file in milliseconds
+     * @param eTag the entity tag of the file, or null if it has none
+     * @param content the file content, which must not be modified
+     * @return the in-memory StaticFile
+     */
+
+    public static StaticFile inMemory(Path path, long lastModified, String eTag, byte[] content) {
+        return new StaticFile(path, content.length, lastModified, eTag, content, null, null);
+    }
+
+    /**
+     * Creates a StaticFile whose content is a view of a memory-mapped file.
+     *
+     * @param path the absolute path of the file
+     * @param lastModified the modification time of the file in milliseconds
+     * @param eTag the entity tag of the file, or null if it has none
+     * @param buffer a read-only view of the mapping, positioned at the start of the content
+     * @return the mapped StaticFile
+     */
+
+    public static StaticFile mapped(Path path, long lastModified, String eTag, ByteBuffer buffer) {
+        return new StaticFile(path, buffer.remaining(), lastModified, eTag, null, buffer, null);
+    }
+
+    /**
+     * Creates a StaticFile whose content is streamed from an open channel.
+     *
+     * @param path the absolute path of the file
+     * @param size the number of bytes to send
+     * @param lastModified the modification time of the file in milliseconds
+     * @param eTag the entity tag of the file, or null if it has none
+     * @param channel the open channel, owned by the new StaticFile
+     * @return the streamed StaticFile
+     */
+
+    public static StaticFile streamed(Path path, long size, long lastModified, String eTag, FileChannel channel) {
+        return new StaticFile(path, size, lastModified, eTag, null, null, channel);
+    }
+
+    /**
+     * @return the absolute path of the file
+     */
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the modification time of the file in milliseconds
+     */
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the strong entity tag of the file, quotes included, or null if it has none
+     */
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return true if the content must be streamed from {@link #getChannel()}
+     */
+
+    public boolean isStreamed() {
+        return channel != null;
+    }
+
+    /**
+     * @return true if the content must be sent from the memory mapping in {@link #getBuffer()}
+     */
+
+    public boolean isMapped() {
+        return buffer != null;
+    }
+
+    /**
+     * @return the in-memory content, or null for a mapped or streamed file
+     */
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return the read-only view of a mapped file, or null for other files
+     */
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the open channel of a streamed file, or null for other files
+     */
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Copies part of the content into a buffer, whatever the way the file is held.
+     * <p>
+     * Streamed files are read positionally, so only the requested bytes are read from
+     * disk and the channel position is left untouched.
+     *
+     * @param position the offset of the first byte to copy
+     * @param target the buffer to fill up to its limit
+     * @throws IOException if reading fails or the file is shorter than expected
+     */
+
+    public void read(long position, ByteBuffer target) throws IOException {
+        if (content != null) {
+            target.put(content, (int) position, target.remaining());
+        } else if (buffer != null) {
+            target.put(buffer.slice(buffer.position() + (int) position, target.remaining()));
+        } else {
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new EOFException("File shrank while being read");
+                }
+                position += read;
+            }
+        }
+    }
+
+    /**
+     * Closes the channel of a streamed file.
+     *
+     * @throws IOException if closing the channel fails
+     */
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
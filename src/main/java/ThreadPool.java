@@ -6,7 +6,8 @@ import java.util.concurrent.TimeUnit;
  * The threadPool class extends ThreadPoolExecutor to provide custom thread pool functionality.
  * <p>
  * This thread pool provides detailed logging of task lifecycle events including:
- * task start, completion and pool termination. It maintains a fixed-size pool
+ * task start, completion and pool termination, through the {@link DiagnosticLog}; task
+ * events are logged at the {@code debug} level. It maintains a fixed-size pool
  * with an unbounded task queue.
  *
  * @see ThreadPoolExecutor
@@ -28,6 +29,26 @@ public class ThreadPool extends ThreadPoolExecutor {
         super (corePoolSize, maximumPoolSize, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
     }
 
+    /**
+     * Changes the number of threads of the pool, keeping core and maximum sizes equal.
+     * <p>
+     * Running tasks are not affected. When the pool shrinks, surplus threads exit once
+     * they finish their current task; when it grows, new threads start for queued tasks.
+     *
+     * @param poolSize the new number of threads, at least one
+     * @throws IllegalArgumentException if the size is not positive
+     */
+
+    public void resize(int poolSize) {
+        if (poolSize > getMaximumPoolSize()) {
+            setMaximumPoolSize(poolSize);
+            setCorePoolSize(poolSize);
+        } else {
+            setCorePoolSize(poolSize);
+            setMaximumPoolSize(poolSize);
+        }
+    }
+
     /**
      * Logs task execution start.
      * <p>
@@ -40,7 +61,7 @@ public class ThreadPool extends ThreadPoolExecutor {
     @Override
     protected void beforeExecute(Thread thread, Runnable runnable) {
         super.beforeExecute(thread, runnable);
-        System.out.println("Executing task: " + runnable);
+        DiagnosticLog.debug("Executing task: %s", runnable);
     }
 
     /**
@@ -54,7 +75,7 @@ public class ThreadPool extends ThreadPoolExecutor {
 
     protected void afterExecute(Runnable runnable, Throwable throwable) {
         super.afterExecute(runnable, throwable);
-        System.out.println("Task completed: " + runnable);
+        DiagnosticLog.debug("Task completed: %s", runnable);
     }
 
     /**
@@ -65,6 +86,6 @@ public class ThreadPool extends ThreadPoolExecutor {
 
     protected void terminated() {
         super.terminated();
-        System.out.println("Thread pool terminated.");
+        DiagnosticLog.info("Thread pool terminated.");
     }
 }
@@ -0,0 +1,27 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AcceptEncodingTest {
+
+    @Test
+    @DisplayName("Should accept listed codings with a non-zero quality")
+    public void testListedCodings() {
+        assertTrue(AcceptEncoding.accepts("gzip, deflate, br", "br"));
+        assertTrue(AcceptEncoding.accepts("deflate, GZIP;q=0.5", "gzip"), "Codings should be matched ignoring case");
+        assertTrue(AcceptEncoding.accepts("x-gzip", "gzip"), "x-gzip is an alias of gzip");
+        assertFalse(AcceptEncoding.accepts("gzip;q=0, br", "gzip"), "A zero quality should refuse the coding");
+        assertFalse(AcceptEncoding.accepts("gzip ; q=0.000", "gzip"));
+        assertFalse(AcceptEncoding.accepts("deflate", "gzip"));
+        assertFalse(AcceptEncoding.accepts(null, "gzip"), "Without the header only the identity is acceptable");
+    }
+
+    @Test
+    @DisplayName("Should apply a wildcard to codings that are not listed")
+    public void testWildcard() {
+        assertTrue(AcceptEncoding.accepts("*", "br"));
+        assertFalse(AcceptEncoding.accepts("*;q=0, identity", "gzip"));
+        assertFalse(AcceptEncoding.accepts("gzip;q=0, *", "gzip"), "An explicit entry should override the wildcard");
+    }
+}
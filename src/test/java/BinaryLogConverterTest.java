@@ -0,0 +1,39 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryLogConverterTest {
+
+    @Test
+    @DisplayName("Should convert a binary log into the same JSON lines as the json format")
+    public void testConvertMatchesJsonFormat() throws IOException {
+        List<LogEntry> entries = List.of(
+                new LogEntry(1711627200000000000L, "GET", "/", "127.0.0.1", 200),
+                new LogEntry(1711627201000000000L, "GET", "/say \"hi\"\n.html", "192.168.1.1", 404),
+                new LogEntry(1711627202000000000L, "GET", "/", "127.0.0.1", 200));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        try (LogWriter jsonWriter = LogFormat.JSON.open(json); LogWriter binaryWriter = LogFormat.BINARY.open(binary)) {
+            for (LogEntry entry : entries) {
+                jsonWriter.write(entry);
+                binaryWriter.write(entry);
+            }
+        }
+
+        ByteArrayOutputStream converted = new ByteArrayOutputStream();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(binary.toByteArray()))) {
+            assertEquals(3, BinaryLogConverter.convert(reader, converted));
+        }
+
+        assertEquals(json.toString(StandardCharsets.UTF_8), converted.toString(StandardCharsets.UTF_8));
+        assertEquals(entries.get(1).toJSON(), converted.toString(StandardCharsets.UTF_8).split("\n")[1]);
+    }
+}
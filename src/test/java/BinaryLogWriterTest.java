@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryLogWriterTest {
+
+    private static final long TIMESTAMP = 1711627200123456789L;
+
+    @Test
+    @DisplayName("Should read back every field, including nulls and non-ASCII values")
+    public void testRoundTrip() throws IOException {
+        List<LogEntry> entries = List.of(
+                new LogEntry(TIMESTAMP, "GET", "/index.html", "127.0.0.1", 200),
+                new LogEntry(TIMESTAMP + 1, "HEAD", "/caf\u00e9/\u65e5\u672c.html", "10.0.0.7", 404),
+                new LogEntry(TIMESTAMP + 2, null, "/index.html", null, 400),
+                new LogEntry(TIMESTAMP + 3, "GET", "/index.html", "127.0.0.1", 200));
+
+        List<LogEntry> read = readAll(write(entries));
+
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).toJSON(), read.get(i).toJSON());
+            assertEquals(entries.get(i).getTimestampNanos(), read.get(i).getTimestampNanos(), "Nanoseconds should be kept");
+        }
+    }
+
+    @Test
+    @DisplayName("Should be at least five times smaller than JSON for repeated routes and origins")
+    public void testSizeReduction() throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.add(new LogEntry(TIMESTAMP + i * 1_000_000L, i % 10 == 0 ? "HEAD" : "GET",
+                    "/docs/section" + (i % 50) + "/page.html", "192.168.1." + (i % 200), i % 17 == 0 ? 404 : 200));
+        }
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (LogWriter writer = LogFormat.JSON.open(json)) {
+            for (LogEntry entry : entries) {
+                writer.write(entry);
+            }
+        }
+        byte[] binary = write(entries);
+
+        double ratio = (double) json.size() / binary.length;
+        assertTrue(ratio >= 5, "Binary log should be at least 5x smaller, was " + ratio +
+                " (JSON: " + json.size() + " bytes, binary: " + binary.length + " bytes)");
+    }
+
+    @Test
+    @DisplayName("Should read files appended to by several writers and stop at a truncated record")
+    public void testAppendedSectionsAndTruncation() throws IOException {
+        byte[] first = write(List.of(new LogEntry(TIMESTAMP, "GET", "/a", "1.1.1.1", 200)));
+        byte[] second = write(List.of(
+                new LogEntry(TIMESTAMP, "POST", "/b", "2.2.2.2", 201),
+                new LogEntry(TIMESTAMP, "GET", "/c", "3.3.3.3", 200)));
+        byte[] file = new byte[first.length + second.length];
+        System.arraycopy(first, 0, file, 0, first.length);
+        System.arraycopy(second, 0, file, first.length, second.length);
+
+        List<LogEntry> read = readAll(file);
+        assertEquals(List.of("/a", "/b", "/c"), read.stream().map(LogEntry::getRoute).toList());
+        assertEquals("POST", read.get(1).getMethod(), "Ids should refer to the dictionary of their own section");
+
+        List<LogEntry> truncated = readAll(Arrays.copyOf(file, file.length - 3));
+        assertEquals(List.of("/a", "/b"), truncated.stream().map(LogEntry::getRoute).toList());
+
+        assertThrows(IOException.class, () -> readAll("{\"timestamp\":0}".getBytes()));
+    }
+
+    private static byte[] write(List<LogEntry> entries) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (LogWriter writer = new BinaryLogWriter(output)) {
+            for (LogEntry entry : entries) {
+                writer.write(entry);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static List<LogEntry> readAll(byte[] bytes) throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes))) {
+            LogEntry entry;
+            while ((entry = reader.read()) != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+}
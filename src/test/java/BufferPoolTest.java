@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+
+    @Test
+    @DisplayName("Should hand out released buffers again instead of allocating new ones")
+    public void testReuse() {
+        BufferPool pool = new BufferPool(64, 2);
+        ByteBuffer first = pool.acquire();
+        assertTrue(first.isDirect());
+        assertEquals(64, first.capacity());
+
+        first.put((byte) 1);
+        pool.release(first);
+        ByteBuffer second = pool.acquire();
+        assertSame(first, second, "A released buffer should be reused");
+        assertEquals(0, second.position(), "Reused buffers should be cleared");
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    @DisplayName("Should keep at most the configured number of idle buffers")
+    public void testBound() {
+        BufferPool pool = new BufferPool(64, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        pool.release(ByteBuffer.allocate(64));
+
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire(), "Buffers beyond the bound should be dropped");
+        assertEquals(3, pool.getAllocationCount());
+    }
+}
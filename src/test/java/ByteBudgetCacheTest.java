@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteBudgetCacheTest {
+
+    @Test
+    @DisplayName("Should weigh values with the weigher and evict the least recently used beyond the budget")
+    public void testWeigherAndEviction() {
+        ByteBudgetCache<String> cache = new ByteBudgetCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+
+        // Touch a so that b becomes the eldest value
+        assertEquals("aaaa", cache.get("a", value -> true));
+        cache.put("c", "cccc");
+
+        assertNull(cache.get("b", value -> true), "Least recently used value should be evicted");
+        assertEquals("cccc", cache.get("c", value -> true));
+        assertEquals(8, cache.getCurrentBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.put("big", "x".repeat(11));
+        assertEquals(2, cache.size(), "A value heavier than the budget should not be cached");
+        assertThrows(IllegalArgumentException.class, () -> new ByteBudgetCache<String>(-1, String::length));
+    }
+
+    @Test
+    @DisplayName("Should hand every value leaving the cache to the removal hook")
+    public void testRemovalHook() {
+        List<String> removed = new ArrayList<>();
+        ByteBudgetCache<String> cache = new ByteBudgetCache<>(8, String::length, removed::add);
+        cache.put("a", "a1");
+        cache.put("a", "a2");
+        assertEquals(List.of("a1"), removed, "A replaced value should be removed");
+
+        assertNull(cache.get("a", value -> false));
+        assertEquals(List.of("a1", "a2"), removed, "An invalid value should be removed");
+
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+        cache.put("d", "dd");
+        assertEquals(List.of("a1", "a2", "bbbb"), removed, "An evicted value should be removed");
+
+        cache.invalidate("c");
+        cache.put("x/1", "x1");
+        cache.put("x/2", "x2");
+        cache.invalidateIf(key -> key.startsWith("x/"));
+        assertEquals(List.of("a1", "a2", "bbbb", "cccc"), removed.subList(0, 4), "An invalidated value should be removed");
+        assertEquals(Set.of("x1", "x2"), Set.copyOf(removed.subList(4, removed.size())), "Invalidated values should be removed");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getCurrentBytes());
+    }
+
+    @Test
+    @DisplayName("Should keep the byte count consistent and within the budget under concurrent use")
+    public void testConcurrentUse() throws InterruptedException {
+        ByteBudgetCache<byte[]> cache = new ByteBudgetCache<>(1000, value -> value.length);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "/" + random.nextInt(64);
+                    int operation = random.nextInt(10);
+                    if (operation < 7) {
+                        cache.get(key, value -> value.length % 7 != 0);
+                    } else if (operation < 9) {
+                        cache.put(key, new byte[random.nextInt(1, 100)]);
+                    } else {
+                        cache.invalidate(key);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long cached = 0;
+        for (int i = 0; i < 64; i++) {
+            byte[] value = cache.get("/" + i, v -> true);
+            cached += value != null ? value.length : 0;
+        }
+        assertEquals(cached, cache.getCurrentBytes(), "The byte count should match the cached values");
+        assertTrue(cache.getCurrentBytes() <= 1000, "The budget should be respected");
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+}
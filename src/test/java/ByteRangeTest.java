@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteRangeTest {
+
+    @Test
+    @DisplayName("Should parse bounded, open-ended and suffix ranges and clip them to the size")
+    public void testRangeForms() {
+        assertEquals(List.of(new ByteRange(0, 99)), ByteRange.parse("bytes=0-99", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=900-", 1000));
+        assertEquals(List.of(new ByteRange(800, 999)), ByteRange.parse("bytes=-200", 1000));
+        assertEquals(List.of(new ByteRange(0, 999)), ByteRange.parse("bytes=-5000", 1000), "Suffix longer than the file");
+        assertEquals(List.of(new ByteRange(500, 999)), ByteRange.parse("Bytes=500-1999", 1000), "Last byte clipped");
+        assertEquals("bytes 0-99/1000", new ByteRange(0, 99).toContentRange(1000));
+    }
+
+    @Test
+    @DisplayName("Should coalesce overlapping ranges and drop unsatisfiable ones")
+    public void testCoalesceAndUnsatisfiable() {
+        assertEquals(List.of(new ByteRange(0, 199), new ByteRange(500, 599)),
+                ByteRange.parse("bytes=500-599, 100-199, 0-100, 2000-3000", 1000));
+        assertEquals(List.of(), ByteRange.parse("bytes=1000-1100", 1000));
+        assertEquals(List.of(), ByteRange.parse("bytes=-0", 1000));
+        assertEquals(List.of(), ByteRange.parse("bytes=1000-", 1000));
+    }
+
+    @Test
+    @DisplayName("Should ignore malformed headers, other units and too many ranges")
+    public void testIgnoredHeaders() {
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=", 1000));
+        assertNull(ByteRange.parse("bytes=5-1", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=" + "0-0,".repeat(ByteRange.MAX_RANGES + 1), 1000));
+    }
+}
@@ -1,177 +1,687 @@
-//import org.junit.jupiter.api.*;
-//import static org.junit.jupiter.api.Assertions.*;
-//import java.io.*;
-//import java.net.ServerSocket;
-//import java.net.Socket;
-//import java.nio.file.Files;
-//import java.nio.file.Path;
-//import java.util.concurrent.BlockingQueue;
-//import java.util.concurrent.LinkedBlockingQueue;
-//
-//class ClientHandlerTest {
-//
-//    private static Path tempDir;
-//    private ServerConfig config;
-//    private FileAccessController fileAccessController;
-//    private BlockingQueue<LogEntry> logQueue;
-//
-//    @BeforeAll
-//    static void setUpBeforeAll() throws IOException {
-//        System.out.println("[SETUP] Creating temporary test directory...");
-//        // Create temporary directory for server files
-//        tempDir = Files.createTempDirectory("test_server_root");
-//        System.out.println("[SETUP] Temporary directory created at: " + tempDir);
-//
-//        // Create test files
-//        System.out.println("[SETUP] Creating test files (index.html, 404.html)...");
-//        Files.write(tempDir.resolve("index.html"),
-//                "<html><body><h1>Test Page</h1></body></html>".getBytes());
-//        Files.write(tempDir.resolve("404.html"),
-//                "<html><body><h1>404 Not Found</h1></body></html>".getBytes());
-//    }
-//
-//    @AfterAll
-//    static void tearDownAfterAll() throws IOException {
-//        System.out.println("[TEARDOWN] Cleaning up temporary directory...");
-//        // Clean up temporary directory
-//        Files.walk(tempDir)
-//                .sorted(java.util.Comparator.reverseOrder())
-//                .forEach(path -> {
-//                    try { Files.delete(path); }
-//                    catch (IOException e) {
-//                        System.err.println("[WARNING] Failed to delete: " + path);
-//                    }
-//                });
-//        System.out.println("[TEARDOWN] Cleanup complete");
-//    }
-//
-//    @BeforeEach
-//    void setUp() {
-//        System.out.println("\n[TEST SETUP] Configuring test environment...");
-//        // Configure server settings for testing
-//        config = new ServerConfig();
-//        config.setConfig("server.root", tempDir.toString());
-//        config.setConfig("server.document.root", tempDir.toString());
-//        config.setConfig("server.default.page", "index");
-//        config.setConfig("server.default.page.extension", "html");
-//        config.setConfig("server.page.404", "404.html");
-//
-//        fileAccessController = new FileAccessController(config);
-//        logQueue = new LinkedBlockingQueue<>();
-//        System.out.println("[TEST SETUP] Configuration complete");
-//    }
-//
-//    @Test
-//    @DisplayName("Test valid GET request")
-//    void testHandleValidGetRequest() throws Exception {
-//        System.out.println("\n[TEST] Starting valid GET request test...");
-//        try (ServerSocket testServer = new ServerSocket(0)) {
-//            int port = testServer.getLocalPort();
-//            System.out.println("[TEST] Test server started on port: " + port);
-//
-//            // Start handler in separate thread
-//            Thread handlerThread = new Thread(() -> {
-//                try (Socket clientSocket = testServer.accept()) {
-//                    System.out.println("[HANDLER] Connection accepted, starting handler...");
-//                    new ClientHandler(clientSocket, config, fileAccessController, logQueue).run();
-//                    System.out.println("[HANDLER] Handler completed");
-//                } catch (Exception e) {
-//                    System.err.println("[HANDLER ERROR] " + e.getMessage());
-//                    fail("Handler error: " + e.getMessage());
-//                }
-//            });
-//            handlerThread.start();
-//
-//            // Simulate client making valid GET request
-//            try (Socket client = new Socket("localhost", port)) {
-//                 client.setSoTimeout(3000);
-//                 PrintWriter out = new PrintWriter(client.getOutputStream(), true);
-//                 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
-//
-//                System.out.println("[CLIENT] Sending GET /index.html request...");
-//                out.println("GET /index.html HTTP/1.1");
-//                out.println("Host: localhost");
-//                out.println();
-//
-//                // Read and verify response
-//                String fullResponse = readFullResponse(in);
-//                System.out.println("[CLIENT] Received response:\n" + fullResponse);
-//
-//                assertTrue(fullResponse.contains("HTTP/1.1 200 OK"), "Should return 200 status");
-//
-//                String responseBody = extractResponseBody(fullResponse);
-//                assertEquals("<html><body><h1>Test Page</h1></body></html>", responseBody, "Should return exact index.html content");
-//            }
-//            handlerThread.join(3000);
-//            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
-//        }
-//    }
-//
-//    @Test
-//    @DisplayName("Test invalid GET request (file not found)")
-//    void testHandleInvalidGetRequest() throws Exception {
-//        System.out.println("\n[TEST] Starting invalid GET request test...");
-//        try (ServerSocket testServer = new ServerSocket(0)) {
-//            int port = testServer.getLocalPort();
-//            System.out.println("[TEST] Test server started on port: " + port);
-//
-//            // Start handler in separate thread
-//            Thread handlerThread = new Thread(() -> {
-//                try (Socket clientSocket = testServer.accept()) {
-//                    clientSocket.setSoTimeout(3000);
-//                    System.out.println("[HANDLER] Connection accepted, starting handler...");
-//                    new ClientHandler(clientSocket, config, fileAccessController, logQueue).run();
-//                    System.out.println("[HANDLER] Handler completed");
-//                } catch (Exception e) {
-//                    System.err.println("[HANDLER ERROR] " + e.getMessage());
-//                    fail("Handler error: " + e.getMessage());
-//                }
-//            });
-//            handlerThread.start();
-//
-//            // Simulate client making invalid GET request
-//            try (Socket client = new Socket("localhost", port);
-//                 PrintWriter out = new PrintWriter(client.getOutputStream(), true);
-//                 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()))) {
-//
-//                System.out.println("[CLIENT] Sending GET /nonexistent.html request...");
-//                out.println("GET /nonexistent.html HTTP/1.1");
-//                out.println("Host: localhost");
-//                out.println();
-//
-//                // Read and verify response
-//                String fullResponse = readFullResponse(in);
-//                System.out.println("[CLIENT] Received response:\n" + fullResponse);
-//
-//                assertTrue(fullResponse.contains("HTTP/1.1 404 Not Found"), "Should return 404 status");
-//
-//                String responseBody = extractResponseBody(fullResponse);
-//                assertEquals("<html><body><h1>404 Not Found</h1></body></html>", responseBody, "Should return exact 404.html content");
-//            }
-//            handlerThread.join(3000);
-//            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
-//        }
-//    }
-//
-//    private String readFullResponse(BufferedReader in) throws IOException {
-//        StringBuilder response = new StringBuilder();
-//        String line;
-//
-//        while ((line = in.readLine()) != null) {
-//            response.append(line).append("\n");
-//            if (line.isEmpty()) {
-//                // Read content if available
-//                while (in.ready()) {
-//                    response.append((char) in.read());
-//                }
-//                break;
-//            }
-//        }
-//        return response.toString().trim();
-//    }
-//
-//    private String extractResponseBody(String fullResponse) {
-//        String[] parts = fullResponse.split("\n\n", 2);
-//        return parts.length > 1 ? parts[1].trim() : "";
-//    }
-//}
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+class ClientHandlerTest {
+
+    private static Path tempDir;
+    private ServerConfig config;
+    private FileAccessController fileAccessController;
+    private BlockingQueue<LogEntry> logQueue;
+    private ServerMetrics metrics;
+
+    @BeforeAll
+    static void setUpBeforeAll() throws IOException {
+        // Create temporary directory for server files
+        tempDir = Files.createTempDirectory("test_server_root");
+
+        // Create test files
+        Files.write(tempDir.resolve("index.html"),
+                "<html><body><h1>Test Page</h1></body></html>".getBytes());
+        Files.write(tempDir.resolve("404.html"),
+                "<html><body><h1>404 Not Found</h1></body></html>".getBytes());
+    }
+
+    @AfterAll
+    static void tearDownAfterAll() throws IOException {
+        // Clean up temporary directory
+        Files.walk(tempDir)
+                .sorted(java.util.Comparator.reverseOrder())
+                .forEach(path -> {
+                    try { Files.delete(path); }
+                    catch (IOException e) {
+                        System.err.println("[WARNING] Failed to delete: " + path);
+                    }
+                });
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Configure server settings for testing
+        config = new ServerConfig();
+        config.setConfig("server.root", tempDir.toString());
+        config.setConfig("server.document.root", tempDir.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        config.setConfig("server.keepalive.timeout.ms", "2000");
+
+        metrics = new ServerMetrics();
+        fileAccessController = new FileAccessController(ServerSettings.fromConfig(config), metrics);
+        logQueue = new LinkedBlockingQueue<>();
+    }
+
+    @Test
+    @DisplayName("Test valid GET request")
+    void testHandleValidGetRequest() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            // Simulate client making valid GET request
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+
+                // Read and verify response
+                Response response = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", response.statusLine, "Should return 200 status");
+                assertEquals("<html><body><h1>Test Page</h1></body></html>", response.body, "Should return exact index.html content");
+            }
+            handlerThread.join(3000);
+            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
+        }
+    }
+
+    @Test
+    @DisplayName("Test invalid GET request (file not found)")
+    void testHandleInvalidGetRequest() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            // Simulate client making invalid GET request
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /nonexistent.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+                out.flush();
+
+                // Read and verify response
+                Response response = readResponse(in);
+                assertEquals("HTTP/1.1 404 Not Found", response.statusLine, "Should return 404 status");
+                assertEquals("close", response.headers.get("connection"), "Should honour Connection: close");
+                assertEquals("<html><body><h1>404 Not Found</h1></body></html>", response.body, "Should return exact 404.html content");
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+            handlerThread.join(3000);
+            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
+        }
+    }
+
+    @Test
+    @DisplayName("Test pipelined requests on a persistent connection are answered in order")
+    void testKeepAliveAndPipelining() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                // Send three requests at once without waiting for the responses
+                out.write(("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                        "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                        "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+                out.flush();
+
+                Response first = readResponse(in);
+                Response second = readResponse(in);
+                Response third = readResponse(in);
+
+                assertEquals("HTTP/1.1 200 OK", first.statusLine);
+                assertEquals("keep-alive", first.headers.get("connection"));
+                assertEquals("HTTP/1.1 404 Not Found", second.statusLine);
+                assertEquals("HTTP/1.1 200 OK", third.statusLine);
+                assertEquals("close", third.headers.get("connection"));
+                assertEquals(-1, in.read(), "Server should close the connection after the last request");
+            }
+            handlerThread.join(3000);
+            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
+            assertEquals(3, logQueue.size(), "Every request should be logged");
+        }
+    }
+
+    @Test
+    @DisplayName("Test connection is closed after the maximum number of requests")
+    void testMaxRequestsPerConnection() throws Exception {
+        config.setConfig("server.keepalive.max.requests", "2");
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                assertEquals("keep-alive", readResponse(in).headers.get("connection"));
+
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                assertEquals("close", readResponse(in).headers.get("connection"), "Second request should reach the limit");
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+            handlerThread.join(3000);
+            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
+        }
+    }
+
+    @Test
+    @DisplayName("Test a chunked request body is rejected with 501 and the connection closed")
+    void testChunkedRequestBody() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                // The body would otherwise be read as a second request
+                out.write(("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                        "1e\r\nGET /index.html HTTP/1.1\r\n\r\n\r\n0\r\n\r\n").getBytes());
+                out.flush();
+
+                Response response = readResponse(in);
+                assertEquals("HTTP/1.1 501 Not Implemented", response.statusLine);
+                assertEquals("close", response.headers.get("connection"));
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+            handlerThread.join(3000);
+            assertTrue(logQueue.isEmpty(), "Rejected requests never reach the processor");
+        }
+    }
+
+    @Test
+    @DisplayName("Test an oversized request line is rejected with 414")
+    void testRequestLineTooLong() throws Exception {
+        config.setConfig("server.max.request.line.bytes", "64");
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write(("GET /" + "a".repeat(100) + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+                out.flush();
+
+                Response response = readResponse(in);
+                assertEquals("HTTP/1.1 414 URI Too Long", response.statusLine);
+                assertEquals("close", response.headers.get("connection"));
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+            handlerThread.join(3000);
+            assertTrue(logQueue.isEmpty(), "Rejected requests never reach the processor");
+        }
+    }
+
+    @Test
+    @DisplayName("Test large files are transferred from disk to the socket channel")
+    void testLargeFileIsStreamed() throws Exception {
+        config.setConfig("server.stream.threshold.bytes", "1024");
+        config.setConfig("server.mmap.cache.max.bytes", "0");
+        fileAccessController = new FileAccessController(ServerSettings.fromConfig(config));
+        byte[] large = new byte[256 * 1024];
+        new java.util.Random(42).nextBytes(large);
+        Files.write(tempDir.resolve("large.bin"), large);
+
+        try (java.nio.channels.ServerSocketChannel testServer = java.nio.channels.ServerSocketChannel.open()) {
+            testServer.bind(new java.net.InetSocketAddress(0));
+            Thread handlerThread = new Thread(() -> {
+                try (Socket clientSocket = testServer.accept().socket()) {
+                    new ClientHandler(clientSocket, ServerSettings.fromConfig(config), fileAccessController, logQueue, metrics).run();
+                } catch (IOException e) {
+                    System.err.println("[HANDLER ERROR] " + e.getMessage());
+                }
+            });
+            handlerThread.start();
+
+            try (Socket client = new Socket("localhost", testServer.socket().getLocalPort())) {
+                client.setSoTimeout(3000);
+                client.getOutputStream().write("GET /large.bin HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                assertEquals("HTTP/1.1 200 OK", readLine(in));
+                String line;
+                int length = -1;
+                while (!(line = readLine(in)).isEmpty()) {
+                    if (line.startsWith("Content-Length: ")) {
+                        length = Integer.parseInt(line.substring(16));
+                    }
+                }
+                assertEquals(large.length, length);
+                assertArrayEquals(large, in.readNBytes(length), "Streamed body should match the file");
+                assertEquals(-1, in.read());
+            }
+            handlerThread.join(3000);
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("large.bin"));
+        }
+    }
+
+    @Test
+    @DisplayName("Test medium-sized files are served from a memory mapping")
+    void testMappedFileIsServed() throws Exception {
+        byte[] medium = new byte[100 * 1024];
+        new java.util.Random(11).nextBytes(medium);
+        Files.write(tempDir.resolve("medium.bin"), medium);
+
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                for (int i = 0; i < 2; i++) {
+                    out.write("GET /medium.bin HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                    out.flush();
+
+                    assertEquals("HTTP/1.1 200 OK", readLine(in));
+                    int length = -1;
+                    String line;
+                    while (!(line = readLine(in)).isEmpty()) {
+                        if (line.startsWith("Content-Length: ")) {
+                            length = Integer.parseInt(line.substring(16));
+                        }
+                    }
+                    assertEquals(medium.length, length);
+                    assertArrayEquals(medium, in.readNBytes(length), "Mapped body should match the file");
+                }
+            }
+            handlerThread.join(3000);
+            assertEquals(1, fileAccessController.getMappedFileCache().getHitCount(), "The second request should reuse the mapping");
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("medium.bin"));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Range requests are answered with 206 and advertised with Accept-Ranges")
+    void testRangeRequest() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\nRange: bytes=12-20\r\n\r\n".getBytes());
+                out.flush();
+                Response partial = readResponse(in);
+                assertEquals("HTTP/1.1 206 Partial Content", partial.statusLine);
+                assertEquals("bytes 12-20/44", partial.headers.get("content-range"));
+                assertEquals("<h1>Test ", partial.body);
+
+                out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-3\r\nIf-Range: Mon, 01 Jan 2001 00:00:00 GMT\r\nConnection: close\r\n\r\n".getBytes());
+                out.flush();
+                Response full = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", full.statusLine, "A stale If-Range should get the whole file");
+                assertEquals("bytes", full.headers.get("accept-ranges"));
+                assertEquals("<html><body><h1>Test Page</h1></body></html>", full.body);
+            }
+            handlerThread.join(3000);
+        }
+        assertEquals(206, logQueue.take().getHttpStatus(), "The partial response should be logged as 206");
+    }
+
+    @Test
+    @DisplayName("Test conditional requests with current validators get a bodyless 304")
+    void testConditionalGet() throws Exception {
+        config.setConfig("server.cache.control", "html:no-cache;*:public, max-age=60");
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                Response full = readResponse(in);
+                String eTag = full.headers.get("etag");
+                String lastModified = full.headers.get("last-modified");
+                assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""), "The entity tag should be strong");
+                assertEquals(HttpDate.format(Files.getLastModifiedTime(tempDir.resolve("index.html")).toMillis()), lastModified);
+                assertEquals("no-cache", full.headers.get("cache-control"));
+
+                out.write(("GET /index.html HTTP/1.1\r\nHost: localhost\r\nIf-None-Match: \"other\", " + eTag + "\r\n\r\n").getBytes());
+                out.flush();
+                Response notModified = readResponse(in);
+                assertEquals("HTTP/1.1 304 Not Modified", notModified.statusLine);
+                assertNull(notModified.headers.get("content-length"), "A 304 response has no body");
+                assertEquals(eTag, notModified.headers.get("etag"));
+                assertEquals("no-cache", notModified.headers.get("cache-control"));
+
+                out.write(("GET /index.html HTTP/1.1\r\nHost: localhost\r\nIf-Modified-Since: " + lastModified + "\r\n\r\n").getBytes());
+                out.flush();
+                assertEquals("HTTP/1.1 304 Not Modified", readResponse(in).statusLine);
+
+                out.write(("GET /index.html HTTP/1.1\r\nHost: localhost\r\nIf-None-Match: \"other\"\r\nIf-Modified-Since: " + lastModified + "\r\nConnection: close\r\n\r\n").getBytes());
+                out.flush();
+                Response changed = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", changed.statusLine, "If-None-Match should take precedence over If-Modified-Since");
+                assertEquals("<html><body><h1>Test Page</h1></body></html>", changed.body);
+            }
+            handlerThread.join(3000);
+        }
+        FileCache cache = fileAccessController.getFileCache();
+        assertEquals(2, cache.getHitCount() + cache.getMissCount(), "The 304 responses should not read the file");
+    }
+
+    @Test
+    @DisplayName("Test Accept-Encoding negotiation serves gzip variants and precompressed siblings")
+    void testContentEncoding() throws Exception {
+        byte[] css = "body { margin: 0; padding: 0; }\n".repeat(200).getBytes();
+        Files.write(tempDir.resolve("site.css"), css);
+        Files.write(tempDir.resolve("app.js"), "console.log(1);\n".repeat(100).getBytes());
+        Files.write(tempDir.resolve("app.js.br"), "brotli bytes".getBytes());
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /site.css HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip, deflate\r\n\r\n".getBytes());
+                out.flush();
+                Response gzip = readRawResponse(in);
+                assertEquals("HTTP/1.1 200 OK", gzip.statusLine);
+                assertEquals("gzip", gzip.headers.get("content-encoding"));
+                assertEquals("text/css", gzip.headers.get("content-type"));
+                assertEquals("Accept-Encoding", gzip.headers.get("vary"));
+                assertTrue(gzip.headers.get("etag").endsWith("-gzip\""), "The variant should have its own entity tag");
+                try (java.util.zip.GZIPInputStream input = new java.util.zip.GZIPInputStream(new ByteArrayInputStream(gzip.rawBody))) {
+                    assertArrayEquals(css, input.readAllBytes());
+                }
+
+                out.write("GET /site.css HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                Response identity = readRawResponse(in);
+                assertNull(identity.headers.get("content-encoding"));
+                assertEquals("Accept-Encoding", identity.headers.get("vary"), "The identity response varies too");
+                assertArrayEquals(css, identity.rawBody);
+
+                out.write(("GET /site.css HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\nIf-None-Match: " + gzip.headers.get("etag") + "\r\n\r\n").getBytes());
+                out.flush();
+                Response notModified = readRawResponse(in);
+                assertEquals("HTTP/1.1 304 Not Modified", notModified.statusLine);
+                assertEquals(gzip.headers.get("etag"), notModified.headers.get("etag"));
+
+                out.write("GET /app.js HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip, br\r\nConnection: close\r\n\r\n".getBytes());
+                out.flush();
+                Response br = readRawResponse(in);
+                assertEquals("br", br.headers.get("content-encoding"));
+                assertEquals("brotli bytes", new String(br.rawBody, StandardCharsets.UTF_8));
+            }
+            handlerThread.join(3000);
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("site.css"));
+            Files.deleteIfExists(tempDir.resolve("app.js"));
+            Files.deleteIfExists(tempDir.resolve("app.js.br"));
+        }
+        assertEquals(1, fileAccessController.getCompressedFileCache().getMissCount(), "The stylesheet should be compressed once");
+    }
+
+    @Test
+    @DisplayName("Test large compressible files are gzipped as they are sent, in chunks, on a persistent connection")
+    void testChunkedCompression() throws Exception {
+        config.setConfig("server.compress.max.bytes", "4096");
+        fileAccessController = new FileAccessController(ServerSettings.fromConfig(config));
+        byte[] text = "line of a large log file\n".repeat(20_000).getBytes();
+        Files.write(tempDir.resolve("large.txt"), text);
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /large.txt HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n\r\n".getBytes());
+                out.flush();
+                Response chunked = readRawResponse(in);
+                assertEquals("chunked", chunked.headers.get("transfer-encoding"));
+                assertNull(chunked.headers.get("content-length"));
+                assertEquals("gzip", chunked.headers.get("content-encoding"));
+                try (java.util.zip.GZIPInputStream input = new java.util.zip.GZIPInputStream(new ByteArrayInputStream(chunked.rawBody))) {
+                    assertArrayEquals(text, input.readAllBytes());
+                }
+
+                out.write("GET /large.txt HTTP/1.0\r\nAccept-Encoding: gzip\r\n\r\n".getBytes());
+                out.flush();
+                Response identity = readRawResponse(in);
+                assertNull(identity.headers.get("content-encoding"), "HTTP/1.0 clients cannot receive chunked responses");
+                assertEquals(String.valueOf(text.length), identity.headers.get("content-length"));
+            }
+            handlerThread.join(3000);
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("large.txt"));
+        }
+        assertEquals(0, fileAccessController.getCompressedFileCache().size(), "Streamed variants should not be cached");
+    }
+
+    @Test
+    @DisplayName("Test responses are counted and served in the Prometheus format on the metrics route")
+    void testMetricsRoute() throws Exception {
+        config.setConfig("server.metrics.route", "/metrics");
+        metrics.registerLogQueue(logQueue);
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write(("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                        + "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                        + "GET /metrics HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+                out.flush();
+                readResponse(in);
+                readResponse(in);
+                Response scrape = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", scrape.statusLine);
+                assertEquals(ServerMetrics.CONTENT_TYPE, scrape.headers.get("content-type"));
+                assertEquals("no-store", scrape.headers.get("cache-control"));
+                assertTrue(scrape.body.contains("http_responses_total{code=\"200\"} 1\n"), scrape.body);
+                assertTrue(scrape.body.contains("http_responses_total{code=\"404\"} 1\n"), scrape.body);
+                assertTrue(scrape.body.contains("http_response_body_bytes_total 92\n"), scrape.body);
+                assertTrue(scrape.body.contains("server_log_queue_depth 2\n"), "The scrape should run before its own log entry: " + scrape.body);
+                assertTrue(scrape.body.contains("http_request_phase_seconds_count{phase=\"total\"} 2\n"), scrape.body);
+                assertTrue(scrape.body.contains("http_request_phase_seconds_count{phase=\"file_read\"} 1\n"), "Only the file found should be timed: " + scrape.body);
+                assertTrue(scrape.body.contains("http_request_phase_seconds{phase=\"response_write\",quantile=\"0.99\"} "), scrape.body);
+            }
+            handlerThread.join(3000);
+        }
+        assertEquals(2, metrics.getResponseCount(200), "The scrape should count itself once sent");
+        assertEquals(3, metrics.getLatency(ServerMetrics.Phase.TOTAL).getCount());
+        assertTrue(metrics.getLatency(ServerMetrics.Phase.LOCK_WAIT).getCount() > 0, "Reading from disk should wait for the file lock");
+        assertEquals(3, logQueue.size(), "The scrape should be logged like any request");
+    }
+
+    @Test
+    @DisplayName("Test metrics are not served unless a route is configured")
+    void testMetricsRouteIsOptIn() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET /metrics HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+                out.flush();
+                Response response = readResponse(in);
+                assertEquals("HTTP/1.1 404 Not Found", response.statusLine);
+                assertFalse(response.body.contains("http_responses_total"), response.body);
+            }
+            handlerThread.join(3000);
+        }
+    }
+
+    @Test
+    @DisplayName("Test a HEAD request sends no body, so the next response on the connection is read intact")
+    void testHeadThenGet() throws Exception {
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write(("HEAD /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                        "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+                out.flush();
+
+                Response head = readHead(in);
+                assertEquals("HTTP/1.1 200 OK", head.statusLine);
+                assertEquals("44", head.headers.get("content-length"), "HEAD should announce the length of the GET body");
+                assertEquals("keep-alive", head.headers.get("connection"));
+
+                Response get = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", get.statusLine, "The GET response should follow the HEAD response head directly");
+                assertEquals("<html><body><h1>Test Page</h1></body></html>", get.body);
+                assertEquals(-1, in.read(), "Server should close the connection after the last request");
+            }
+            handlerThread.join(3000);
+        }
+        assertEquals(44, metrics.getBytesSent(), "Only the GET body should be counted as sent");
+    }
+
+    @Test
+    @DisplayName("Test a saturated server stops keeping connections alive and gives idle ones up")
+    void testSaturatedServerClosesIdleConnections() throws Exception {
+        AtomicBoolean saturated = new AtomicBoolean(true);
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer, saturated::get);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                assertEquals("close", readResponse(in).headers.get("connection"), "A saturated server should not keep the connection alive");
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+            handlerThread.join(3000);
+        }
+
+        saturated.set(false);
+        try (ServerSocket testServer = new ServerSocket(0)) {
+            Thread handlerThread = startHandler(testServer, saturated::get);
+
+            try (Socket client = new Socket("localhost", testServer.getLocalPort())) {
+                client.setSoTimeout(3000);
+                OutputStream out = client.getOutputStream();
+                InputStream in = new BufferedInputStream(client.getInputStream());
+
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                out.flush();
+                assertEquals("keep-alive", readResponse(in).headers.get("connection"));
+
+                long idle = System.nanoTime();
+                saturated.set(true);
+                assertEquals(-1, in.read(), "Server should give the idle connection up");
+                long idleMillis = (System.nanoTime() - idle) / 1_000_000;
+                assertTrue(idleMillis < 1000, "The idle connection should be closed before the 2000 ms keep-alive timeout, took " + idleMillis + " ms");
+            }
+            handlerThread.join(3000);
+            assertFalse(handlerThread.isAlive(), "Handler thread should have completed");
+        }
+    }
+
+    private Thread startHandler(ServerSocket testServer) {
+        return startHandler(testServer, () -> false);
+    }
+
+    private Thread startHandler(ServerSocket testServer, BooleanSupplier saturated) {
+        // Start handler in separate thread
+        Thread handlerThread = new Thread(() -> {
+            try (Socket clientSocket = testServer.accept()) {
+                new ClientHandler(clientSocket, ServerSettings.fromConfig(config), fileAccessController, logQueue, metrics,
+                        System.nanoTime(), saturated).run();
+            } catch (Exception e) {
+                System.err.println("[HANDLER ERROR] " + e.getMessage());
+            }
+        });
+        handlerThread.start();
+        return handlerThread;
+    }
+
+    private Response readResponse(InputStream in) throws IOException {
+        Response response = readRawResponse(in);
+        response.body = new String(response.rawBody, StandardCharsets.UTF_8);
+        return response;
+    }
+
+    private Response readRawResponse(InputStream in) throws IOException {
+        Response response = readHead(in);
+        if ("chunked".equals(response.headers.get("transfer-encoding"))) {
+            response.rawBody = readChunkedBody(in);
+            return response;
+        }
+        int length = Integer.parseInt(response.headers.getOrDefault("content-length", "0"));
+        response.rawBody = in.readNBytes(length);
+        return response;
+    }
+
+    private Response readHead(InputStream in) throws IOException {
+        Response response = new Response();
+        response.statusLine = readLine(in);
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+        return response;
+    }
+
+    private byte[] readChunkedBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int size;
+        while ((size = Integer.parseInt(readLine(in), 16)) > 0) {
+            body.write(in.readNBytes(size));
+            assertEquals("", readLine(in), "Chunk data should be followed by CRLF");
+        }
+        assertEquals("", readLine(in), "The last chunk should end the message");
+        return body.toByteArray();
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed before end of line");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static class Response {
+        private String statusLine;
+        private final java.util.Map<String, String> headers = new java.util.HashMap<>();
+        private String body;
+        private byte[] rawBody;
+    }
+}
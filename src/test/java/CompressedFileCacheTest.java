@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressedFileCacheTest {
+
+    @Test
+    @DisplayName("Should keep one variant per coding while the source file is unchanged")
+    public void testVariantsPerCoding() {
+        CompressedFileCache cache = new CompressedFileCache(1024);
+        byte[] gzip = new byte[10];
+        byte[] br = new byte[8];
+        cache.put("/a", "gzip", gzip, 100, 1L);
+        cache.put("/a", "br", br, 100, 1L);
+
+        assertSame(gzip, cache.get("/a", "gzip", 100, 1L));
+        assertSame(br, cache.get("/a", "br", 100, 1L));
+        assertNull(cache.get("/a", "gzip", 100, 2L), "A variant of an older version should miss");
+        assertEquals(1, cache.size(), "The stale variant should be removed");
+        assertEquals(8, cache.getCurrentBytes(), "The budget should count compressed bytes");
+
+        cache.invalidate("/a");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used variants when the byte budget is exceeded")
+    public void testLruEviction() {
+        CompressedFileCache cache = new CompressedFileCache(10);
+        cache.put("/a", "gzip", new byte[4], 40, 1L);
+        cache.put("/b", "gzip", new byte[4], 40, 1L);
+        assertNotNull(cache.get("/a", "gzip", 40, 1L));
+        cache.put("/c", "gzip", new byte[4], 40, 1L);
+
+        assertNull(cache.get("/b", "gzip", 40, 1L), "Least recently used variant should be evicted");
+        assertNotNull(cache.get("/a", "gzip", 40, 1L));
+        assertEquals(1, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigWatcherTest {
+
+    private Path dir;
+    private Path configFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("config_watch");
+        configFile = dir.resolve("server.config");
+        writeConfig(5, 20);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    @DisplayName("Should swap in a valid configuration and keep the previous one when invalid")
+    void testReloadAcceptsValidAndRejectsInvalid() throws IOException {
+        ServerSettings initial = ConfigLoader.loadSettings(configFile.toString());
+        List<ServerSettings> reloaded = new CopyOnWriteArrayList<>();
+        ConfigWatcher watcher = new ConfigWatcher(configFile, initial, reloaded::add);
+
+        writeConfig(8, 40);
+        assertTrue(watcher.reload());
+        assertEquals(8, watcher.get().getMaximumRequests());
+        assertEquals(40, watcher.get().getMaxTotalRequests());
+        assertSame(watcher.get(), reloaded.get(0));
+
+        ServerSettings accepted = watcher.get();
+        Files.writeString(configFile, "server.root=" + dir + "\nserver.max.total.requests=-3\n");
+        assertFalse(watcher.reload());
+        Files.writeString(configFile, "server.port=8080\n");
+        assertFalse(watcher.reload(), "A file without server.root should be rejected");
+        assertSame(accepted, watcher.get(), "The previous configuration should stay in effect");
+        assertEquals(1, reloaded.size());
+    }
+
+    @Test
+    @DisplayName("Should reload when the file changes and resize the pool and limiter")
+    void testWatchResizesPoolAndLimiter() throws Exception {
+        ThreadPool pool = new ThreadPool(5, 5);
+        ResizableSemaphore limiter = new ResizableSemaphore(20);
+        ConfigWatcher watcher = ConfigLoader.watch(configFile.toString(), ConfigLoader.loadSettings(configFile.toString()), settings -> {
+            pool.resize(settings.getMaximumRequests());
+            limiter.resize(settings.getMaxTotalRequests());
+        });
+        try {
+            Thread.sleep(200);
+            writeConfig(2, 7);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (limiter.getMaxPermits() != 7 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(7, limiter.getMaxPermits());
+            assertEquals(2, pool.getCorePoolSize());
+            assertEquals(2, pool.getMaximumPoolSize());
+            assertEquals(2, watcher.get().getMaximumRequests());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void writeConfig(int maximumRequests, int maxTotalRequests) throws IOException {
+        Files.writeString(configFile, "server.root=" + dir + "\n" +
+                "server.maximum.requests=" + maximumRequests + "\n" +
+                "server.max.total.requests=" + maxTotalRequests + "\n");
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagnosticLogTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() {
+        DiagnosticLog.writePending(new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        DiagnosticLog.setLevel(DiagnosticLog.Level.INFO);
+    }
+
+    @Test
+    @DisplayName("Should format queued messages only when they are written, on the stream of their level")
+    public void testDeferredFormatting() {
+        DiagnosticLog.setLevel(DiagnosticLog.Level.DEBUG);
+        StringBuilder argument = new StringBuilder("before");
+        DiagnosticLog.debug("Request received: %s %s", "GET", argument);
+        DiagnosticLog.warn("Timeout when waiting for lock: %s", "/index.html");
+        argument.replace(0, argument.length(), "after");
+
+        assertEquals(2, DiagnosticLog.writePending(new PrintStream(out), new PrintStream(err)));
+        String debug = out.toString();
+        assertTrue(debug.contains(" DEBUG [" + Thread.currentThread().getName() + "] Request received: GET after"), debug);
+        assertTrue(err.toString().endsWith("WARN [" + Thread.currentThread().getName() + "] Timeout when waiting for lock: /index.html" + System.lineSeparator()), err.toString());
+        assertEquals(0, DiagnosticLog.writePending(new PrintStream(out), new PrintStream(err)), "Written messages should leave the queue");
+    }
+
+    @Test
+    @DisplayName("Should drop messages below the level without formatting their arguments")
+    public void testDisabledLevels() {
+        Object exploding = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("A disabled message should not be formatted");
+            }
+        };
+        DiagnosticLog.debug("Executing task: %s", exploding);
+        assertFalse(DiagnosticLog.isEnabled(DiagnosticLog.Level.DEBUG));
+        assertTrue(DiagnosticLog.isEnabled(DiagnosticLog.Level.WARN));
+
+        DiagnosticLog.setLevel(DiagnosticLog.Level.OFF);
+        DiagnosticLog.warn("Security violation: %s", exploding);
+        assertFalse(DiagnosticLog.isEnabled(DiagnosticLog.Level.OFF), "OFF is not a level messages can be logged at");
+        assertEquals(0, DiagnosticLog.writePending(new PrintStream(out), new PrintStream(err)));
+    }
+
+    @Test
+    @DisplayName("Should count the messages dropped when nobody writes them out")
+    public void testOverflow() {
+        long dropped = DiagnosticLog.getDroppedCount();
+        // A log consumer left running by another test may drain the queue concurrently
+        for (int i = 0; i < 10 * DiagnosticLog.CAPACITY && DiagnosticLog.getDroppedCount() == dropped; i++) {
+            DiagnosticLog.info("Message %d", i);
+        }
+        assertTrue(DiagnosticLog.getDroppedCount() > dropped, "A full queue should drop and count messages");
+        assertTrue(DiagnosticLog.writePending(new PrintStream(out), new PrintStream(err)) <= DiagnosticLog.CAPACITY);
+    }
+
+    @Test
+    @DisplayName("Should parse level names ignoring case")
+    public void testLevelNames() {
+        assertEquals(DiagnosticLog.Level.INFO, DiagnosticLog.Level.fromName(null));
+        assertEquals(DiagnosticLog.Level.DEBUG, DiagnosticLog.Level.fromName(" Debug "));
+        assertThrows(IllegalArgumentException.class, () -> DiagnosticLog.Level.fromName("verbose"));
+    }
+}
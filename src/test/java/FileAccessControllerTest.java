@@ -3,13 +3,16 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.Path;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -44,7 +47,7 @@ public class FileAccessControllerTest {
     @Test
     @DisplayName("Must allow controlled concurrent access to the same file")
     public void testConcurrentReads() throws InterruptedException, IOException {
-        FileAccessController controller = new FileAccessController(config);
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(config));
         Path testFilePath = Paths.get(config.getConfig("server.root"), testFile);
         byte[] expectedContent = Files.readAllBytes(testFilePath);
 
@@ -62,6 +65,219 @@ public class FileAccessControllerTest {
         executor.shutdownNow();
     }
 
+    @Test
+    @DisplayName("Must serve repeated reads from the cache and reload modified files")
+    public void testCachedReads() throws InterruptedException, IOException {
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(config));
+        Path cachedFilePath = Paths.get(config.getConfig("server.root"), "cached.html");
+        Files.write(cachedFilePath, "First version".getBytes());
+
+        try {
+            assertArrayEquals("First version".getBytes(), controller.readFile("cached.html"));
+            assertArrayEquals("First version".getBytes(), controller.readFile("cached.html"));
+            assertEquals(1, controller.getFileCache().getHitCount(), "Second read should hit the cache");
+
+            Files.write(cachedFilePath, "Second, longer version".getBytes());
+            assertArrayEquals("Second, longer version".getBytes(), controller.readFile("cached.html"),
+                    "A modified file should be read again from disk");
+
+            controller.invalidate("cached.html");
+            assertEquals(0, controller.getFileCache().size(), "Invalidation should drop the cached content");
+        } finally {
+            Files.deleteIfExists(cachedFilePath);
+        }
+    }
+
+    @Test
+    @DisplayName("Must let concurrent readers of the same file proceed in parallel")
+    public void testParallelReadersFinishInOneReadTime() throws InterruptedException {
+        long readDelayMillis = 300;
+        int threadCount = 5;
+
+        ServerConfig slowConfig = new ServerConfig();
+        slowConfig.setConfig("server.root", config.getConfig("server.root"));
+        slowConfig.setConfig("server.cache.max.bytes", "0");
+        slowConfig.setConfig("server.read.delay.ms", String.valueOf(readDelayMillis));
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(slowConfig));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch endLatch = new CountDownLatch(threadCount);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    controller.readFile(testFile);
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    endLatch.countDown();
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        startLatch.countDown();
+        assertTrue(endLatch.await(10, TimeUnit.SECONDS), "Time exceeded");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executor.shutdownNow();
+
+        assertEquals(0, failures.get(), "All reads should succeed");
+        assertTrue(elapsedMillis < 2 * readDelayMillis, threadCount + " readers took " + elapsedMillis +
+                " ms for reads of " + readDelayMillis + " ms, they should overlap instead of taking " +
+                threadCount * readDelayMillis + " ms");
+    }
+
+    @Test
+    @DisplayName("Must make invalidation wait for in-flight reads of the same file")
+    public void testInvalidateWaitsForReads() throws Exception {
+        long readDelayMillis = 300;
+        ServerConfig slowConfig = new ServerConfig();
+        slowConfig.setConfig("server.root", config.getConfig("server.root"));
+        slowConfig.setConfig("server.cache.max.bytes", "0");
+        slowConfig.setConfig("server.read.delay.ms", String.valueOf(readDelayMillis));
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(slowConfig));
+
+        for (int round = 0; round < 3; round++) {
+            AtomicInteger failures = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                try {
+                    controller.readFile(testFile);
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+            });
+            long readStarted = System.nanoTime();
+            reader.start();
+            Thread.sleep(readDelayMillis / 3);
+
+            controller.invalidate(testFile);
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - readStarted);
+            reader.join(3000);
+            assertEquals(0, failures.get(), "The read should succeed");
+            assertTrue(waitedMillis >= readDelayMillis,
+                    "Invalidation should wait for the in-flight read, returned after " + waitedMillis + " ms");
+        }
+        Path path = Paths.get(config.getConfig("server.root"), testFile).toAbsolutePath().normalize();
+        assertSame(FileAccessController.lockFor(path.toString()), FileAccessController.lockFor(path.toString()),
+                "A file should always map to the same lock");
+    }
+
+    @Test
+    @DisplayName("Must stream files above the threshold through an open channel instead of reading them")
+    public void testOpenFileStreamsLargeFiles() throws InterruptedException, IOException {
+        ServerConfig streamConfig = new ServerConfig();
+        streamConfig.setConfig("server.root", config.getConfig("server.root"));
+        streamConfig.setConfig("server.stream.threshold.bytes", "8");
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(streamConfig));
+
+        try (StaticFile small = controller.openFile(testFile)) {
+            assertTrue(small.isStreamed(), "A file above the threshold should be streamed");
+            assertNull(small.getContent());
+            assertEquals(Files.size(Paths.get(config.getConfig("server.root"), testFile)), small.getSize());
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) small.getSize());
+            small.getChannel().read(buffer, 0);
+            assertArrayEquals("Test content".getBytes(), buffer.array());
+        }
+        assertEquals(0, controller.getFileCache().size(), "Streamed files should not be cached");
+
+        streamConfig.setConfig("server.stream.threshold.bytes", "1024");
+        try (StaticFile inMemory = new FileAccessController(ServerSettings.fromConfig(streamConfig)).openFile(testFile)) {
+            assertFalse(inMemory.isStreamed(), "A file below the threshold should be read into memory");
+            assertArrayEquals("Test content".getBytes(), inMemory.getContent());
+        }
+    }
+
+    @Test
+    @DisplayName("Must share one memory mapping between requests for a medium-sized file")
+    public void testOpenFileMapsMediumFiles() throws InterruptedException, IOException {
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(config));
+        Path mappedFilePath = Paths.get(config.getConfig("server.root"), "mapped.bin");
+        byte[] content = new byte[64 * 1024];
+        new Random(3).nextBytes(content);
+        Files.write(mappedFilePath, content);
+
+        try {
+            StaticFile first = controller.openFile("mapped.bin");
+            StaticFile second = controller.openFile("mapped.bin");
+            assertTrue(first.isMapped(), "A medium-sized file should be mapped");
+            assertNull(first.getContent(), "A mapped file should not be copied onto the heap");
+            assertEquals(content.length, first.getSize());
+            assertEquals(1, controller.getMappedFileCache().getHitCount(), "The second open should reuse the mapping");
+            assertEquals(content.length, controller.getMappedFileCache().getCurrentBytes());
+
+            byte[] sent = new byte[content.length];
+            second.getBuffer().duplicate().get(sent);
+            assertArrayEquals(content, sent);
+            assertEquals(0, first.getBuffer().position(), "Views of the mapping must not share a position");
+
+            controller.invalidate("mapped.bin");
+            assertEquals(0, controller.getMappedFileCache().size(), "Invalidation should drop the mapping");
+        } finally {
+            Files.deleteIfExists(mappedFilePath);
+        }
+    }
+
+    @Test
+    @DisplayName("Must derive a stable entity tag from metadata and change it when the file changes")
+    public void testValidators() throws Exception {
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(config));
+        Path validatedPath = Paths.get(config.getConfig("server.root"), "validated.html");
+        Files.write(validatedPath, "version 1".getBytes());
+        try {
+            FileValidators first = controller.getValidators("/validated.html");
+            assertSame(first, controller.getValidators("/validated.html"), "Unchanged files should reuse the cached validators");
+            try (StaticFile file = controller.openFile("/validated.html")) {
+                assertEquals(first.getETag(), file.getETag());
+            }
+            assertEquals(1, controller.getFileCache().getMissCount(), "Only openFile should read the file");
+
+            Files.write(validatedPath, "version 2".getBytes());
+            Files.setLastModifiedTime(validatedPath, java.nio.file.attribute.FileTime.fromMillis(first.getLastModified() + 2000));
+            FileValidators second = controller.getValidators("/validated.html");
+            assertNotEquals(first.getETag(), second.getETag());
+            assertNull(controller.getValidators("/missing.html"));
+        } finally {
+            Files.deleteIfExists(validatedPath);
+        }
+    }
+
+    @Test
+    @DisplayName("Must compress a file once and prefer an up to date precompressed sibling")
+    public void testEncodedVariants() throws Exception {
+        FileAccessController controller = new FileAccessController(ServerSettings.fromConfig(config));
+        Path root = Paths.get(config.getConfig("server.root"));
+        Path textPath = root.resolve("encoded.txt");
+        Path siblingPath = root.resolve("encoded.txt.br");
+        byte[] text = "compress me ".repeat(500).getBytes();
+        Files.write(textPath, text);
+        try {
+            try (StaticFile file = controller.openFile("encoded.txt")) {
+                StaticFile gzip = controller.openEncoded(file, "gzip");
+                assertTrue(gzip.getContent().length < text.length / 10, "Repetitive text should compress well");
+                try (java.util.zip.GZIPInputStream input = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(gzip.getContent()))) {
+                    assertArrayEquals(text, input.readAllBytes());
+                }
+                assertSame(gzip.getContent(), controller.openEncoded(file, "gzip").getContent(), "The variant should be compressed once");
+                assertNull(controller.openEncoded(file, "br"), "Brotli is only served from a sibling");
+
+                Files.write(siblingPath, "brotli".getBytes());
+                Files.setLastModifiedTime(siblingPath, java.nio.file.attribute.FileTime.fromMillis(file.getLastModified() + 1000));
+                assertArrayEquals("brotli".getBytes(), controller.openEncoded(file, "br").getContent());
+
+                Files.setLastModifiedTime(siblingPath, java.nio.file.attribute.FileTime.fromMillis(file.getLastModified() - 1000));
+                assertNull(controller.openEncoded(file, "br"), "A sibling older than the file should be ignored");
+            }
+            assertEquals(1, controller.getCompressedFileCache().getMissCount());
+        } finally {
+            Files.deleteIfExists(textPath);
+            Files.deleteIfExists(siblingPath);
+        }
+    }
+
     private Runnable createTestTask(FileAccessController controller, byte[] expectedContent, CountDownLatch startLatch, CountDownLatch endLatch, int threadNumber) {
         return () -> {
             try {
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileCacheTest {
+
+    @Test
+    @DisplayName("Should return cached content while size and modification time are unchanged")
+    public void testHitAndMiss() {
+        FileCache cache = new FileCache(1024);
+        byte[] content = "cached".getBytes();
+
+        assertNull(cache.get("/a", content.length, 1L), "An empty cache should miss");
+        cache.put("/a", content, 1L);
+
+        assertSame(content, cache.get("/a", content.length, 1L), "An unchanged file should hit");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should invalidate an entry when the file size or modification time changes")
+    public void testStaleEntryIsDropped() {
+        FileCache cache = new FileCache(1024);
+        byte[] content = "cached".getBytes();
+        cache.put("/a", content, 1L);
+
+        assertNull(cache.get("/a", content.length, 2L), "A newer modification time should miss");
+        assertEquals(0, cache.size(), "The stale entry should be removed");
+
+        cache.put("/a", content, 1L);
+        assertNull(cache.get("/a", content.length + 1, 1L), "A different size should miss");
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used entries when the byte budget is exceeded")
+    public void testLruEviction() {
+        FileCache cache = new FileCache(10);
+        cache.put("/a", new byte[4], 1L);
+        cache.put("/b", new byte[4], 1L);
+
+        // Touch /a so that /b becomes the eldest entry
+        assertNotNull(cache.get("/a", 4, 1L));
+        cache.put("/c", new byte[4], 1L);
+
+        assertNotNull(cache.get("/a", 4, 1L), "Recently used entry should survive");
+        assertNull(cache.get("/b", 4, 1L), "Least recently used entry should be evicted");
+        assertNotNull(cache.get("/c", 4, 1L), "New entry should be cached");
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(8, cache.getCurrentBytes());
+    }
+
+    @Test
+    @DisplayName("Should not cache files larger than the budget or when the cache is disabled")
+    public void testOversizedAndDisabled() {
+        FileCache cache = new FileCache(4);
+        cache.put("/big", new byte[5], 1L);
+        assertEquals(0, cache.size());
+
+        FileCache disabled = new FileCache(0);
+        disabled.put("/a", new byte[1], 1L);
+        assertNull(disabled.get("/a", 1, 1L));
+
+        assertThrows(IllegalArgumentException.class, () -> new FileCache(-1));
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipChannelTest {
+
+    @Test
+    @DisplayName("Should produce a valid gzip stream from a streamed file through small reads")
+    public void testStreamedFile() throws IOException {
+        byte[] content = new byte[300_000];
+        java.util.Random random = new java.util.Random(5);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+        Path path = Files.createTempFile("gzip", ".txt");
+        Files.write(path, content);
+        try {
+            StaticFile file = StaticFile.streamed(path, content.length, 0, null, FileChannel.open(path));
+            byte[] compressed = readAll(new GzipChannel(file), 100);
+            assertTrue(compressed.length < content.length / 2);
+            assertFalse(file.getChannel().isOpen(), "Closing the channel should close the file");
+            assertArrayEquals(content, gunzip(compressed));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @DisplayName("Should produce a valid gzip stream for an empty file")
+    public void testEmptyFile() throws IOException {
+        StaticFile file = StaticFile.inMemory(Path.of("empty.txt"), 0, null, new byte[0]);
+        assertArrayEquals(new byte[0], gunzip(readAll(new GzipChannel(file), 4096)));
+    }
+
+    private static byte[] readAll(GzipChannel channel, int bufferBytes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (channel) {
+            ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                output.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpRequestParserTest {
+
+    private static final String HEAD = "GET /docs/index.html HTTP/1.1\r\nHost: localhost\r\nX-Custom:  value \r\n\r\n";
+
+    @Test
+    @DisplayName("Should parse a head delivered one byte at a time")
+    public void testSplitAcrossReads() throws HttpParseException {
+        HttpRequestParser parser = new HttpRequestParser();
+        byte[] bytes = HEAD.getBytes(StandardCharsets.ISO_8859_1);
+
+        HttpRequest request = null;
+        for (int i = 0; i < bytes.length; i++) {
+            assertNull(request, "The head should not be complete before its last byte");
+            request = parser.parse(ByteBuffer.wrap(bytes, i, 1));
+        }
+
+        assertNotNull(request);
+        assertSame("GET", request.getMethod(), "Known methods should reuse the constant");
+        assertEquals("/docs/index.html", request.getTarget());
+        assertSame("HTTP/1.1", request.getVersion());
+        assertEquals("localhost", request.getHeader("Host"));
+        assertEquals("value", request.getHeader("x-custom"), "Values should be trimmed");
+    }
+
+    @Test
+    @DisplayName("Should leave pipelined requests in the buffer for the next call")
+    public void testPipelinedRequests() throws HttpParseException {
+        HttpRequestParser parser = new HttpRequestParser();
+        ByteBuffer input = ByteBuffer.wrap((HEAD + "\r\nHEAD /second HTTP/1.0\nConnection: keep-alive\n\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals("/docs/index.html", parser.parse(input).getTarget());
+        HttpRequest second = parser.parse(input);
+        assertEquals("HEAD", second.getMethod());
+        assertEquals("/second", second.getTarget());
+        assertTrue(second.isKeepAlive(), "LF-only heads should be accepted");
+        assertFalse(input.hasRemaining());
+        assertNull(parser.parse(input));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed request lines and heads above the size limits")
+    public void testLimitsAndErrors() {
+        HttpParseException malformed = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser().parse(wrap("GARBAGE\r\n\r\n")));
+        assertEquals(400, malformed.getStatus());
+
+        HttpParseException longLine = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(32, 1024).parse(wrap("GET /" + "a".repeat(64))));
+        assertEquals(414, longLine.getStatus(), "The limit should apply before the line is complete");
+
+        HttpParseException largeHeaders = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(1024, 64).parse(wrap("GET / HTTP/1.1\r\nA: " + "b".repeat(40) + "\r\nC: " + "d".repeat(40) + "\r\n\r\n")));
+        assertEquals(431, largeHeaders.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should count empty lines before the request line towards its limit")
+    public void testLeadingEmptyLines() throws HttpParseException {
+        assertEquals("/", new HttpRequestParser(32, 1024).parse(wrap("\r\n\r\nGET / HTTP/1.1\r\n\r\n")).getTarget(),
+                "A few empty lines should still be ignored");
+
+        HttpParseException flood = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(32, 1024).parse(wrap("\r\n".repeat(20))));
+        assertEquals(400, flood.getStatus(), "Empty lines alone should not be accepted without limit");
+
+        HttpParseException combined = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(32, 1024).parse(wrap("\r\n".repeat(8) + "GET /" + "a".repeat(20) + " HTTP/1.1\r\n\r\n")));
+        assertEquals(414, combined.getStatus(), "Empty lines should use up the budget of the request line");
+    }
+
+    @Test
+    @DisplayName("Should lower-case header names the same way in every default locale")
+    public void testHeaderNamesIgnoreLocale() throws HttpParseException {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            HttpRequest request = new HttpRequestParser().parse(wrap("GET / HTTP/1.1\r\nX-TITLE: value\r\n\r\n"));
+            assertEquals("value", request.getHeader("x-title"), "A dotted i should stay a dotted i");
+            assertEquals("value", request.getHeader("X-TITLE"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static ByteBuffer wrap(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
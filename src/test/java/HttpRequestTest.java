@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpRequestTest {
+
+    @Test
+    @DisplayName("Should parse the request line and headers case-insensitively")
+    public void testParse() throws HttpParseException {
+        HttpRequest request = HttpRequest.parse("\r\nGET /index.html HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\n");
+
+        assertNotNull(request);
+        assertEquals("GET", request.getMethod());
+        assertEquals("/index.html", request.getTarget());
+        assertEquals("HTTP/1.1", request.getVersion());
+        assertEquals("localhost", request.getHeader("HOST"));
+        assertEquals(5, request.getContentLength());
+    }
+
+    @Test
+    @DisplayName("Should reject a Content-Length that is not a non-negative decimal number")
+    public void testInvalidContentLength() throws HttpParseException {
+        assertEquals(0, HttpRequest.parse("GET / HTTP/1.1\r\n\r\n").getContentLength(), "No header means no body");
+        for (String value : new String[] { "abc", "-1", "+5", "", "99999999999999999999" }) {
+            HttpRequest request = HttpRequest.parse("POST / HTTP/1.1\r\nContent-Length: " + value + "\r\n\r\n");
+            HttpParseException error = assertThrows(HttpParseException.class, request::getContentLength, value);
+            assertEquals(400, error.getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a request body with a Transfer-Encoding")
+    public void testTransferEncoding() {
+        HttpRequest request = HttpRequest.parse("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\nContent-Length: 5\r\n\r\n");
+        HttpParseException error = assertThrows(HttpParseException.class, request::getContentLength);
+        assertEquals(501, error.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed request line")
+    public void testParseInvalid() {
+        assertNull(HttpRequest.parse("GARBAGE\r\n\r\n"));
+        assertNull(HttpRequest.parse("\r\n"));
+    }
+
+    @Test
+    @DisplayName("Should apply the keep-alive defaults of each protocol version")
+    public void testKeepAlive() {
+        assertTrue(HttpRequest.parse("GET / HTTP/1.1\r\n").isKeepAlive());
+        assertFalse(HttpRequest.parse("GET / HTTP/1.1\r\nConnection: close\r\n").isKeepAlive());
+        assertFalse(HttpRequest.parse("GET / HTTP/1.0\r\n").isKeepAlive());
+        assertTrue(HttpRequest.parse("GET / HTTP/1.0\r\nConnection: Keep-Alive\r\n").isKeepAlive());
+    }
+}
@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpResponseTest {
+
+    @Test
+    @DisplayName("Should emit the standard headers followed directly by the body")
+    public void testHeadAndBody() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (HttpResponse response = new HttpResponse(200, "text/html", "<p>hello</p>".getBytes(), true)) {
+            response.writeTo(output);
+        }
+
+        String[] parts = output.toString(StandardCharsets.ISO_8859_1).split("\r\n\r\n", -1);
+        assertEquals(2, parts.length, "The head should end with exactly one blank line");
+        assertEquals("<p>hello</p>", parts[1], "Nothing should follow the body");
+
+        String[] head = parts[0].split("\r\n");
+        assertEquals("HTTP/1.1 200 OK", head[0]);
+        assertTrue(contains(head, "Content-Type: text/html"));
+        assertTrue(contains(head, "Content-Length: 12"));
+        assertTrue(contains(head, "Server: pa-web-server"));
+        assertTrue(contains(head, "Connection: keep-alive"));
+        assertTrue(parts[0].matches("(?s).*\r\nDate: [A-Z][a-z]{2}, \\d{2} [A-Z][a-z]{2} \\d{4} \\d{2}:\\d{2}:\\d{2} GMT\r\n.*"),
+                "The Date header should be an IMF-fixdate");
+    }
+
+    @Test
+    @DisplayName("Should send only the head, with the body's Content-Length, in response to HEAD")
+    public void testHeadRequest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (HttpResponse response = new HttpResponse(200, "text/html", "<p>hello</p>".getBytes(), true).forMethod("HEAD")) {
+            assertTrue(response.isHeadOnly());
+            assertEquals(1, response.toByteBuffers().length, "Only the head should be offered to a channel");
+            response.writeTo(output);
+        }
+        String written = output.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(written.contains("Content-Length: 12\r\n"));
+        assertTrue(written.endsWith("\r\n\r\n"), "Nothing should follow the head");
+
+        try (HttpResponse chunked = new HttpResponse(200, "text/plain",
+                Channels.newChannel(new ByteArrayInputStream(new byte[100])), true).forMethod("HEAD")) {
+            assertNull(chunked.nextChunk(), "A chunked body should not be produced for HEAD");
+        }
+    }
+
+    @Test
+    @DisplayName("Should write head and body with one gathering write to a channel")
+    public void testGatheringWrite() throws IOException {
+        Path target = Files.createTempFile("response", ".bin");
+        byte[] body = new byte[5000];
+        java.util.Arrays.fill(body, (byte) 'x');
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE);
+             HttpResponse response = new HttpResponse(404, "text/plain", ByteBuffer.wrap(body), false)) {
+            ByteBuffer[] buffers = response.toByteBuffers();
+            assertTrue(buffers[0].isDirect(), "The head should be encoded into a pooled direct buffer");
+            String head = new String(toArray(buffers[0].duplicate()), StandardCharsets.ISO_8859_1);
+            assertTrue(head.startsWith("HTTP/1.1 404 Not Found\r\n") && head.endsWith("\r\n\r\n"));
+
+            response.writeTo(new ByteArrayOutputStream(), channel);
+        }
+
+        String written = Files.readString(target, StandardCharsets.ISO_8859_1);
+        assertTrue(written.startsWith("HTTP/1.1 404 Not Found\r\n"));
+        assertTrue(written.contains("Content-Length: 5000\r\n"));
+        assertTrue(written.contains("Connection: close\r\n"));
+        assertTrue(written.endsWith("\r\n\r\n" + "x".repeat(5000)));
+        Files.delete(target);
+    }
+
+    @Test
+    @DisplayName("Should send 304 responses without content headers or body")
+    public void testNotModified() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (HttpResponse response = HttpResponse.notModified(true).addHeader("ETag", "\"1-2-3\"")) {
+            response.writeTo(output);
+        }
+
+        String written = output.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(written.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertTrue(written.contains("\r\nETag: \"1-2-3\"\r\n"));
+        assertFalse(written.contains("Content-Length") || written.contains("Content-Type"));
+        assertTrue(written.endsWith("\r\n\r\n"), "Nothing should follow the head");
+    }
+
+    @Test
+    @DisplayName("Should frame a body of unknown length as chunks ending with a zero-length chunk")
+    public void testChunkedBody() throws IOException {
+        byte[] body = new byte[40_000];
+        new java.util.Random(11).nextBytes(body);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (HttpResponse response = new HttpResponse(200, "text/plain",
+                java.nio.channels.Channels.newChannel(new java.io.ByteArrayInputStream(body)), true)) {
+            assertTrue(response.isChunked());
+            response.writeTo(output);
+        }
+
+        byte[] written = output.toByteArray();
+        String text = new String(written, StandardCharsets.ISO_8859_1);
+        int bodyStart = text.indexOf("\r\n\r\n") + 4;
+        String head = text.substring(0, bodyStart);
+        assertTrue(head.contains("\r\nTransfer-Encoding: chunked\r\n"));
+        assertFalse(head.contains("Content-Length"), "A chunked response has no Content-Length");
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int position = bodyStart;
+        int chunks = 0;
+        while (true) {
+            int lineEnd = text.indexOf("\r\n", position);
+            int size = Integer.parseInt(text.substring(position, lineEnd), 16);
+            assertTrue(size <= HttpResponse.CHUNK_DATA_BYTES, "Chunks should not exceed the chunk buffer");
+            position = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            decoded.write(written, position, size);
+            assertEquals("\r\n", text.substring(position + size, position + size + 2));
+            position += size + 2;
+            chunks++;
+        }
+        assertEquals("\r\n", text.substring(position), "The last chunk should end the message");
+        assertEquals(3, chunks);
+        assertArrayEquals(body, decoded.toByteArray());
+    }
+
+    private static boolean contains(String[] lines, String expected) {
+        for (String line : lines) {
+            if (line.equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -38,7 +38,7 @@ class LogConsumerTest {
     void testLogEntryIsWrittenToFile() throws InterruptedException, IOException {
         //Creates a test log entry
         LogEntry testEntry = new LogEntry(
-                "2024-03-28 12:00:00.000",
+                1711627200000000000L,
                 "GET",
                 "/index.html",
                 "127.0.0.1",
@@ -63,9 +63,9 @@ class LogConsumerTest {
     @DisplayName("Should correctly write multiple log entries in sequence to the log file")
     void testMultipleLogEntriesAreWritten() throws InterruptedException, IOException {
         //Creates several log entries
-        LogEntry entry1 = new LogEntry("2024-03-28 12:00:00.000", "GET", "/", "127.0.0.1", 200);
-        LogEntry entry2 = new LogEntry("2024-03-28 12:00:01.000", "GET", "/index.html", "192.168.1.1", 200);
-        LogEntry entry3 = new LogEntry("2024-03-28 12:00:02.000", "GET", "/nonexistent.html", "10.0.0.1", 404);
+        LogEntry entry1 = new LogEntry(1711627200000000000L, "GET", "/", "127.0.0.1", 200);
+        LogEntry entry2 = new LogEntry(1711627201000000000L, "GET", "/index.html", "192.168.1.1", 200);
+        LogEntry entry3 = new LogEntry(1711627202000000000L, "GET", "/nonexistent.html", "10.0.0.1", 404);
 
         //Add the entrys to the queue
         logQueue.put(entry1);
@@ -82,4 +82,120 @@ class LogConsumerTest {
         assertTrue(logContent.contains(entry2.toJSON()), "It should contain the second entry");
         assertTrue(logContent.contains(entry3.toJSON()), "It should contain the third entry");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should flush a partial batch once the flush interval has passed")
+    void testPartialBatchIsFlushedAfterInterval() throws InterruptedException, IOException {
+        Path logPath = Path.of("test-server-interval.log");
+        Thread thread = new Thread(new LogConsumer(logQueue, logPath.toString(), 1000, 20));
+        consumerThread.interrupt();
+        consumerThread.join(100);
+        thread.start();
+        try {
+            LogEntry entry = new LogEntry(1711627200000000000L, "GET", "/", "127.0.0.1", 200);
+            logQueue.put(entry);
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (!(Files.exists(logPath) && Files.readString(logPath).contains(entry.toJSON()))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.readString(logPath).contains(entry.toJSON()), "A single entry should not wait for a full batch");
+        } finally {
+            thread.interrupt();
+            thread.join(1000);
+            Files.deleteIfExists(logPath);
+        }
+    }
+
+    @Test
+    @DisplayName("Should write every queued entry when interrupted")
+    void testQueuedEntriesAreFlushedOnShutdown() throws InterruptedException, IOException {
+        Path logPath = Path.of("test-server-shutdown.log");
+        BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 1000; i++) {
+            queue.put(new LogEntry(1711627200000000000L, "GET", "/page" + i + ".html", "127.0.0.1", 200));
+        }
+
+        // Thresholds that are never reached, so only the shutdown path flushes
+        Thread thread = new Thread(new LogConsumer(queue, logPath.toString(), 1_000_000, 3_600_000));
+        thread.start();
+        thread.interrupt();
+        thread.join(2000);
+
+        try {
+            assertFalse(thread.isAlive());
+            String logContent = Files.readString(logPath);
+            assertTrue(logContent.contains("/page0.html") && logContent.contains("/page999.html"),
+                    "Entries queued at shutdown should be written");
+            assertTrue(queue.isEmpty());
+        } finally {
+            Files.deleteIfExists(logPath);
+        }
+    }
+
+    @Test
+    @DisplayName("Should write a binary log readable by BinaryLogReader when configured")
+    void testBinaryFormat() throws InterruptedException, IOException {
+        Path logPath = Path.of("test-server-binary.log");
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.log.file", logPath.toString());
+        config.setConfig("server.log.format", "binary");
+        BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>();
+        LogEntry entry = new LogEntry(1711627200000000000L, "GET", "/index.html", "127.0.0.1", 200);
+        queue.put(entry);
+
+        Thread thread = new Thread(LogConsumer.fromConfig(queue, config));
+        thread.start();
+        thread.interrupt();
+        thread.join(2000);
+
+        try (BinaryLogReader reader = new BinaryLogReader(new FileInputStream(logPath.toFile()))) {
+            assertEquals(entry.toJSON(), reader.read().toJSON());
+            assertNull(reader.read());
+        } finally {
+            Files.deleteIfExists(logPath);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep draining the queue while the log cannot be written, and resume once it can")
+    void testRecoversFromWriteErrors() throws Exception {
+        Path directory = Files.createTempDirectory("log-consumer").resolve("missing");
+        Path logPath = directory.resolve("access.log");
+        LogQueue queue = new LogQueue(2, LogQueue.OverflowPolicy.BLOCK);
+        Thread thread = new Thread(new LogConsumer(queue, logPath.toString(), 1, 0));
+        thread.start();
+
+        try {
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        queue.put(new LogEntry(1711627200000000000L, "GET", "/lost" + i + ".html", "127.0.0.1", 200));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            producer.join(2000);
+            assertFalse(producer.isAlive(), "Blocked producers should be released while the log cannot be opened");
+            assertTrue(thread.isAlive(), "The consumer should survive the error");
+
+            Files.createDirectories(directory);
+            Thread.sleep(LogConsumer.REOPEN_DELAY_MILLIS + 300);
+            queue.put(new LogEntry(1711627200000000000L, "GET", "/kept.html", "127.0.0.1", 200));
+            Thread.sleep(300);
+
+            String logContent = Files.readString(logPath);
+            assertTrue(logContent.contains("/kept.html"), "Entries should be written again once the log is reopened");
+            assertFalse(logContent.contains("/lost"), "Entries taken while the log was unavailable are discarded");
+        } finally {
+            thread.interrupt();
+            thread.join(1000);
+            Files.deleteIfExists(logPath);
+            Files.deleteIfExists(directory);
+            Files.deleteIfExists(directory.getParent());
+        }
+    }
+}
@@ -1,34 +1,56 @@
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class LogEntryTest {
 
+    private static final long TIMESTAMP = Instant.parse("2025-03-27T14:30:00.123456789Z").getEpochSecond() * 1_000_000_000L + 123_456_789L;
+
     @Test
     @DisplayName("Test JSON serialization of LogEntry with complete data")
     public void testToJSONFormat(){
         LogEntry entry = new LogEntry(
-                "2025-03-27 14:30:00.123",
+                TIMESTAMP,
                 "GET",
                 "/index.html",
                 "127.0.0.1",
                 200
         );
 
-        String currentJSON = entry.toJSON();
+        LogEntryEncoder encoder = new LogEntryEncoder(ZoneOffset.UTC);
+        String currentJSON = new String(encoder.getBuffer(), 0, encoder.encode(entry));
         System.out.println("=== JSON file ===\n" + currentJSON);
 
-        String expectedJSON =
-                "{\n"+
-                        "\"timestamp\": \"2025-03-27 14:30:00.123\",\n" +
-                        "\"method\": \"GET\", \n" +
-                        "\"route\": \"/index.html\", \n" +
-                        "\"origin\": \"127.0.0.1\", \n" +
-                        "\"httpStatus\": 200\n" +
-                        "}";
+        String expectedJSON = "{\"timestamp\":\"2025-03-27 14:30:00.123\",\"method\":\"GET\"," +
+                "\"route\":\"/index.html\",\"origin\":\"127.0.0.1\",\"httpStatus\":200}";
 
-        assertEquals(expectedJSON, entry.toJSON());
+        assertEquals(expectedJSON, currentJSON);
+        assertFalse(entry.toJSON().contains("\n"), "Every entry should fit on a single line");
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Test quotes, backslashes and control characters are escaped")
+    public void testEscaping() {
+        LogEntry entry = new LogEntry(TIMESTAMP, "GET", "/a\"b\\c\nd\u0001", "127.0.0.1", 404);
+        LogEntryEncoder encoder = new LogEntryEncoder(ZoneOffset.UTC);
+        String json = new String(encoder.getBuffer(), 0, encoder.encode(entry));
+
+        assertTrue(json.contains("\"route\":\"/a\\\"b\\\\c\\nd\\u0001\""), json);
+    }
+
+    @Test
+    @DisplayName("Test the encoder reuses its buffer across entries and seconds")
+    public void testEncoderReuse() {
+        LogEntryEncoder encoder = new LogEntryEncoder(ZoneOffset.UTC);
+        encoder.encode(new LogEntry(TIMESTAMP, "GET", "/" + "x".repeat(1000), "127.0.0.1", 200));
+        char[] grown = encoder.getBuffer();
+
+        int length = encoder.encode(new LogEntry(TIMESTAMP + 2_000_000_000L, "GET", "/", "127.0.0.1", 200));
+        assertSame(grown, encoder.getBuffer(), "A large buffer should be kept for later entries");
+        assertTrue(new String(encoder.getBuffer(), 0, length).startsWith("{\"timestamp\":\"2025-03-27 14:30:02.123\""));
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogQueueTest {
+
+    private static LogEntry entry(int i) {
+        return new LogEntry(1711627200000000000L, "GET", "/page" + i + ".html", "127.0.0.1", 200);
+    }
+
+    @Test
+    @DisplayName("Should discard and count new entries without waiting when full")
+    public void testDropPolicy() throws InterruptedException {
+        LogQueue queue = new LogQueue(2, LogQueue.OverflowPolicy.DROP_AND_COUNT);
+        for (int i = 0; i < 5; i++) {
+            queue.put(entry(i));
+        }
+
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getCapacity());
+        assertEquals(3, queue.getDroppedCount(), "Every dropped entry should be counted");
+        assertTrue(queue.take().toJSON().contains("/page0.html"), "The oldest entries should be kept");
+    }
+
+    @Test
+    @DisplayName("Should make producers wait for space with the block policy")
+    public void testBlockPolicy() throws InterruptedException {
+        LogQueue queue = new LogQueue(1, LogQueue.OverflowPolicy.BLOCK);
+        queue.put(entry(0));
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put(entry(1));
+                done.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "The producer should wait while the queue is full");
+        queue.take();
+        assertTrue(done.await(1, TimeUnit.SECONDS), "The producer should resume once space is available");
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("Should parse policy names from the configuration")
+    public void testFromConfig() {
+        ServerConfig config = new ServerConfig();
+        assertEquals(LogQueue.OverflowPolicy.DROP_AND_COUNT, LogQueue.fromConfig(config).getOverflowPolicy());
+        assertEquals(LogQueue.DEFAULT_CAPACITY, LogQueue.fromConfig(config).getCapacity());
+
+        config.setConfig("server.log.queue.overflow", "Block");
+        config.setConfig("server.log.queue.capacity", "16");
+        LogQueue queue = LogQueue.fromConfig(config);
+        assertEquals(LogQueue.OverflowPolicy.BLOCK, queue.getOverflowPolicy());
+        assertEquals(16, queue.getCapacity());
+
+        config.setConfig("server.log.queue.overflow", "sometimes");
+        assertThrows(IllegalArgumentException.class, () -> LogQueue.fromConfig(config));
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogRotatorTest {
+
+    private Path dir;
+    private Path logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("log_rotation");
+        logFile = dir.resolve("server.log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Should rotate and compress by size without losing or duplicating queued entries")
+    void testSizeRotationKeepsEveryEntryOnce() throws Exception {
+        BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>();
+        LogRotator rotator = new LogRotator(logFile, 4096, LogRotator.Interval.NONE, true, 0, 0);
+        Thread thread = new Thread(new LogConsumer(queue, logFile.toString(), LogFormat.JSON, 16, 5, rotator));
+        thread.start();
+        for (int i = 0; i < 2000; i++) {
+            queue.put(new LogEntry(1711627200000000000L, "GET", "/page" + i + ".html", "127.0.0.1", 200));
+            if (i % 100 == 0) {
+                Thread.sleep(5);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Thread.sleep(10);
+        }
+        thread.interrupt();
+        thread.join(2000);
+        assertTrue(rotator.awaitTermination(5, TimeUnit.SECONDS));
+
+        List<Path> segments = segments();
+        assertTrue(segments.size() > 1, "The log should have been rotated");
+        assertTrue(segments.stream().allMatch(path -> path.toString().endsWith(".gz")), "Rotated segments should be compressed");
+
+        List<String> lines = new ArrayList<>();
+        for (Path segment : segments) {
+            lines.addAll(readLines(new GZIPInputStream(Files.newInputStream(segment))));
+        }
+        lines.addAll(readLines(Files.newInputStream(logFile)));
+        assertEquals(2000, lines.size());
+        Set<String> routes = new HashSet<>();
+        for (String line : lines) {
+            routes.add(line.substring(line.indexOf("/page"), line.indexOf(".html")));
+        }
+        assertEquals(2000, routes.size(), "Every entry should appear exactly once");
+    }
+
+    @Test
+    @DisplayName("Should keep only the configured number of rotated segments")
+    void testRetentionByCount() throws Exception {
+        LogRotator rotator = new LogRotator(logFile, 1, LogRotator.Interval.NONE, false, 2, 0);
+        for (int i = 0; i < 12; i++) {
+            try (OutputStream output = rotator.open()) {
+                output.write(("segment " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            assertTrue(rotator.shouldRotate(System.currentTimeMillis()));
+            rotator.rotate();
+        }
+        rotator.close();
+        assertTrue(rotator.awaitTermination(5, TimeUnit.SECONDS));
+
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        Set<String> kept = new HashSet<>();
+        for (Path segment : segments) {
+            kept.add(Files.readString(segment));
+        }
+        assertEquals(Set.of("segment 10\n", "segment 11\n"), kept, "The newest segments should be kept");
+    }
+
+    @Test
+    @DisplayName("Should rotate at the end of the hour and prune segments by age")
+    void testHourlyRotationAndRetentionByAge() throws Exception {
+        Path stale = dir.resolve("server.log.20200101-000000");
+        Files.writeString(stale, "old\n");
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3)));
+        Path unrelated = dir.resolve("server.log.bak");
+        Files.writeString(unrelated, "keep\n");
+
+        LogRotator rotator = new LogRotator(logFile, 0, LogRotator.Interval.HOURLY, true, 0,
+                TimeUnit.HOURS.toMillis(1), ZoneOffset.UTC);
+        long now = System.currentTimeMillis();
+        try (OutputStream output = rotator.open()) {
+            assertFalse(rotator.shouldRotate(now), "An empty segment should not be rotated");
+            output.write('x');
+            assertFalse(rotator.shouldRotate(now));
+            assertTrue(rotator.shouldRotate(now + TimeUnit.HOURS.toMillis(1)));
+        }
+        rotator.close();
+        assertTrue(rotator.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(segments().isEmpty(), "Segments older than the retention age should be removed");
+        assertTrue(Files.exists(unrelated), "Files that are not segments should be left alone");
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().matches("server\\.log\\.\\d.*"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static List<String> readLines(InputStream input) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+}
@@ -107,11 +107,11 @@ public class MainHTTPServerThreadTest {
         // Create dependencies
         ThreadPool threadPool = new ThreadPool(2, 2);
         BlockingQueue<LogEntry> logQueue = new LinkedBlockingQueue<>();
-        FileAccessController fileAccessController = new FileAccessController(config);
+        FileAccessController fileAccessController = new FileAccessController(ServerSettings.fromConfig(config));
         Semaphore requestLimiter = new Semaphore(20);
 
         // Create and start server thread
-        serverThread = new MainHTTPServerThread(config, threadPool, fileAccessController, logQueue, requestLimiter);
+        serverThread = new MainHTTPServerThread(ServerSettings.fromConfig(config), threadPool, fileAccessController, logQueue, requestLimiter);
         serverThread.start();
 
         // Wait for server to start
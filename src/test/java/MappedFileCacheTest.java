@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFileCacheTest {
+
+    private Path tempFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempFile = Files.createTempFile("mapped", ".bin");
+        Files.write(tempFile, "0123456789".getBytes());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    @DisplayName("Should return independent read-only views of an up-to-date mapping")
+    public void testHitReturnsIndependentViews() throws IOException {
+        MappedFileCache cache = new MappedFileCache(1024);
+        assertNull(cache.get("/a", 10, 1L), "An empty cache should miss");
+        cache.put("/a", map(), 1L);
+
+        ByteBuffer first = cache.get("/a", 10, 1L);
+        ByteBuffer second = cache.get("/a", 10, 1L);
+        assertTrue(first.isReadOnly());
+        first.get(new byte[4]);
+        assertEquals(0, second.position(), "Views should not share a position");
+        assertEquals('0', second.get(0));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should drop stale mappings and evict the least recently used ones beyond the budget")
+    public void testStaleAndEviction() throws IOException {
+        MappedFileCache cache = new MappedFileCache(25);
+        cache.put("/a", map(), 1L);
+        assertNull(cache.get("/a", 10, 2L), "A newer modification time should miss");
+        assertEquals(0, cache.getCurrentBytes());
+
+        cache.put("/a", map(), 1L);
+        cache.put("/b", map(), 1L);
+        assertNotNull(cache.get("/a", 10, 1L));
+        cache.put("/c", map(), 1L);
+
+        assertNull(cache.get("/b", 10, 1L), "Least recently used mapping should be evicted");
+        assertNotNull(cache.get("/a", 10, 1L));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(20, cache.getCurrentBytes());
+
+        cache.invalidate("/a");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should not keep mappings when disabled")
+    public void testDisabled() throws IOException {
+        MappedFileCache cache = new MappedFileCache(0);
+        cache.put("/a", map(), 1L);
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new MappedFileCache(-1));
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,379 @@
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioHTTPServerThreadTest {
+
+    private static Path tempDir;
+    private int port;
+    private ServerConfig config;
+    private NioHTTPServerThread serverThread;
+    private BlockingQueue<LogEntry> logQueue;
+
+    @BeforeAll
+    static void setUpBeforeAll() throws IOException {
+        tempDir = Files.createTempDirectory("nio_server_root");
+        Files.write(tempDir.resolve("index.html"), "<html><body><h1>NIO Page</h1></body></html>".getBytes());
+        Files.write(tempDir.resolve("404.html"), "<html><body><h1>404 Not Found</h1></body></html>".getBytes());
+    }
+
+    @AfterAll
+    static void tearDownAfterAll() throws IOException {
+        Files.walk(tempDir)
+                .sorted(java.util.Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        port = findAvailablePort();
+
+        config = new ServerConfig();
+        config.setConfig("server.port", String.valueOf(port));
+        config.setConfig("server.root", tempDir.toString());
+        config.setConfig("server.document.root", tempDir.toString());
+        config.setConfig("server.default.page", "index");
+        config.setConfig("server.default.page.extension", "html");
+        config.setConfig("server.page.404", "404.html");
+        config.setConfig("server.nio.event.loops", "2");
+        config.setConfig("server.keepalive.timeout.ms", "3000");
+        config.setConfig("server.stream.threshold.bytes", "65536");
+        config.setConfig("server.mmap.max.bytes", "1048576");
+        config.setConfig("server.compress.max.bytes", "4096");
+
+        logQueue = new LinkedBlockingQueue<>();
+        serverThread = new NioHTTPServerThread(ServerSettings.fromConfig(config), new ThreadPool(2, 2), new FileAccessController(ServerSettings.fromConfig(config)), logQueue, new Semaphore(5));
+        serverThread.start();
+
+        // Wait for server to start
+        Thread.sleep(300);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        serverThread.interrupt();
+        serverThread.join(1000);
+    }
+
+    @Test
+    @DisplayName("Should answer pipelined requests in order on one persistent connection")
+    void testPipelinedRequests() throws IOException {
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(3000);
+            OutputStream out = client.getOutputStream();
+            InputStream in = new BufferedInputStream(client.getInputStream());
+
+            out.write(("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            out.flush();
+
+            assertEquals("HTTP/1.1 200 OK", readResponse(in).get(0));
+            assertEquals("HTTP/1.1 404 Not Found", readResponse(in).get(0));
+            List<String> last = readResponse(in);
+            assertEquals("HTTP/1.1 200 OK", last.get(0));
+            assertEquals("<html><body><h1>NIO Page</h1></body></html>", last.get(last.size() - 1));
+            assertEquals(-1, in.read(), "Server should close the connection after Connection: close");
+        }
+        assertEquals(3, logQueue.size(), "Every request should be logged");
+    }
+
+    @Test
+    @DisplayName("Should reject a chunked request body with 501 and close the connection")
+    void testChunkedRequestBody() throws IOException {
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(3000);
+            OutputStream out = client.getOutputStream();
+            InputStream in = new BufferedInputStream(client.getInputStream());
+
+            // The body would otherwise be read as a second request
+            out.write(("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                    "1e\r\nGET /index.html HTTP/1.1\r\n\r\n\r\n0\r\n\r\n").getBytes());
+            out.flush();
+
+            assertEquals("HTTP/1.1 501 Not Implemented", readResponse(in).get(0));
+            assertEquals(-1, in.read(), "Server should close the connection");
+        }
+        assertTrue(logQueue.isEmpty(), "Rejected requests never reach the processor");
+    }
+
+    @Test
+    @DisplayName("Should send no body for HEAD, so the next pipelined response is read intact")
+    void testHeadThenGet() throws IOException {
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(3000);
+            OutputStream out = client.getOutputStream();
+            InputStream in = new BufferedInputStream(client.getInputStream());
+
+            out.write(("HEAD /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            out.flush();
+
+            assertEquals("HTTP/1.1 200 OK", readLine(in));
+            List<String> headers = new ArrayList<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                headers.add(line);
+            }
+            assertTrue(headers.contains("Content-Length: 43"), "HEAD should announce the length of the GET body: " + headers);
+
+            List<String> get = readResponse(in);
+            assertEquals("HTTP/1.1 200 OK", get.get(0), "The GET response should follow the HEAD response head directly");
+            assertEquals("<html><body><h1>NIO Page</h1></body></html>", get.get(get.size() - 1));
+            assertEquals(-1, in.read(), "Server should close the connection after Connection: close");
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep serving requests while many idle connections are open")
+    void testManyIdleConnections() throws IOException {
+        List<Socket> idleConnections = new ArrayList<>();
+        try {
+            // Far more idle connections than pool threads
+            for (int i = 0; i < 200; i++) {
+                idleConnections.add(new Socket("localhost", port));
+            }
+
+            try (Socket client = new Socket("localhost", port)) {
+                client.setSoTimeout(3000);
+                client.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                client.getOutputStream().flush();
+                assertEquals("HTTP/1.1 200 OK", readResponse(new BufferedInputStream(client.getInputStream())).get(0));
+            }
+        } finally {
+            for (Socket socket : idleConnections) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should stream files above the threshold with transferTo")
+    void testLargeFileIsStreamed() throws IOException {
+        byte[] large = new byte[3 * 1024 * 1024];
+        new java.util.Random(7).nextBytes(large);
+        Files.write(tempDir.resolve("large.bin"), large);
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(5000);
+            client.getOutputStream().write("GET /large.bin HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            InputStream in = new BufferedInputStream(client.getInputStream());
+
+            assertEquals("HTTP/1.1 200 OK", readLine(in));
+            String line;
+            int length = -1;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.startsWith("Content-Length: ")) {
+                    length = Integer.parseInt(line.substring(16));
+                }
+            }
+            assertEquals(large.length, length);
+            assertArrayEquals(large, in.readNBytes(length), "Streamed body should match the file");
+
+            // The connection stays usable after a streamed body
+            client.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            assertEquals("HTTP/1.1 200 OK", readResponse(in).get(0));
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("large.bin"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should send memory-mapped files with a gathering write")
+    void testMappedFileIsServed() throws IOException {
+        byte[] medium = new byte[512 * 1024];
+        new java.util.Random(5).nextBytes(medium);
+        Files.write(tempDir.resolve("medium.bin"), medium);
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(5000);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            for (int i = 0; i < 2; i++) {
+                client.getOutputStream().write("GET /medium.bin HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                List<String> response = readResponse(in);
+                assertEquals("HTTP/1.1 200 OK", response.get(0));
+                assertTrue(response.contains("Content-Length: " + medium.length));
+            }
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("medium.bin"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer a Range request on a streamed file with 206 and only the requested bytes")
+    void testRangeOfStreamedFile() throws IOException {
+        byte[] large = new byte[2 * 1024 * 1024];
+        new java.util.Random(3).nextBytes(large);
+        Files.write(tempDir.resolve("video.bin"), large);
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(5000);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            client.getOutputStream().write("GET /video.bin HTTP/1.1\r\nHost: localhost\r\nRange: bytes=1000000-1000999\r\n\r\n".getBytes());
+
+            assertEquals("HTTP/1.1 206 Partial Content", readLine(in));
+            List<String> headers = new ArrayList<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                headers.add(line);
+            }
+            assertTrue(headers.contains("Content-Length: 1000"));
+            assertTrue(headers.contains("Content-Range: bytes 1000000-1000999/" + large.length));
+            assertArrayEquals(java.util.Arrays.copyOfRange(large, 1_000_000, 1_001_000), in.readNBytes(1000));
+
+            client.getOutputStream().write("GET /video.bin HTTP/1.1\r\nHost: localhost\r\nRange: bytes=5000000-\r\n\r\n".getBytes());
+            assertEquals("HTTP/1.1 416 Range Not Satisfiable", readResponse(in).get(0));
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("video.bin"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should send gzip compressed on the fly in chunks and keep the connection open")
+    void testChunkedCompression() throws IOException {
+        byte[] text = "{\"event\": \"page view\", \"path\": \"/index.html\"}\n".repeat(10_000).getBytes();
+        Files.write(tempDir.resolve("events.json"), text);
+
+        try (Socket client = new Socket("localhost", port)) {
+            client.setSoTimeout(5000);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            client.getOutputStream().write("GET /events.json HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n\r\n".getBytes());
+
+            assertEquals("HTTP/1.1 200 OK", readLine(in));
+            List<String> headers = new ArrayList<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                headers.add(line);
+            }
+            assertTrue(headers.contains("Transfer-Encoding: chunked"));
+            assertTrue(headers.contains("Content-Encoding: gzip"));
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            int size;
+            while ((size = Integer.parseInt(readLine(in), 16)) > 0) {
+                compressed.write(in.readNBytes(size));
+                assertEquals("", readLine(in));
+            }
+            assertEquals("", readLine(in));
+            try (java.util.zip.GZIPInputStream input = new java.util.zip.GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                assertArrayEquals(text, input.readAllBytes());
+            }
+
+            client.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            assertEquals("HTTP/1.1 200 OK", readResponse(in).get(0), "The connection should stay usable after a chunked body");
+        } finally {
+            Files.deleteIfExists(tempDir.resolve("events.json"));
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer 500 and close the connection when processing a request fails")
+    void testProcessingFailure() throws Exception {
+        config.setConfig("server.port", String.valueOf(findAvailablePort()));
+        ServerSettings settings = ServerSettings.fromConfig(config);
+        FileAccessController failing = new FileAccessController(settings) {
+            @Override
+            public StaticFile openFile(String route) {
+                throw new IllegalStateException("Simulated failure");
+            }
+        };
+        NioHTTPServerThread failingServer = new NioHTTPServerThread(settings, new ThreadPool(1, 1), failing, logQueue, new Semaphore(1));
+        failingServer.start();
+        try {
+            Thread.sleep(300);
+            try (Socket client = new Socket("localhost", settings.getPort())) {
+                client.setSoTimeout(3000);
+                InputStream in = new BufferedInputStream(client.getInputStream());
+                client.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+
+                List<String> response = readResponse(in);
+                assertEquals("HTTP/1.1 500 Internal Server Error", response.get(0));
+                assertTrue(response.contains("Connection: close"), "The connection should not be reused: " + response);
+                assertEquals(-1, in.read(), "Server should close the connection");
+            }
+        } finally {
+            failingServer.interrupt();
+            failingServer.join(1000);
+        }
+    }
+
+    @Test
+    @DisplayName("Should close idle connections shortly after the keep-alive timeout")
+    void testIdleConnectionIsClosed() throws Exception {
+        config.setConfig("server.port", String.valueOf(findAvailablePort()));
+        config.setConfig("server.keepalive.timeout.ms", "200");
+        ServerSettings settings = ServerSettings.fromConfig(config);
+        NioHTTPServerThread shortTimeoutServer = new NioHTTPServerThread(settings, new ThreadPool(1, 1), new FileAccessController(settings), logQueue, new Semaphore(1));
+        shortTimeoutServer.start();
+        try {
+            Thread.sleep(300);
+            try (Socket client = new Socket("localhost", settings.getPort())) {
+                client.setSoTimeout(3000);
+                InputStream in = new BufferedInputStream(client.getInputStream());
+                client.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                assertEquals("HTTP/1.1 200 OK", readResponse(in).get(0));
+
+                long idle = System.nanoTime();
+                assertEquals(-1, in.read(), "Server should close the idle connection");
+                long idleMillis = (System.nanoTime() - idle) / 1_000_000;
+                assertTrue(idleMillis < 200 + 2 * NioHTTPServerThread.IDLE_SWEEP_INTERVAL_MS + 200,
+                        "The idle connection should be closed within a sweep of its timeout, took " + idleMillis + " ms");
+            }
+        } finally {
+            shortTimeoutServer.interrupt();
+            shortTimeoutServer.join(1000);
+        }
+    }
+
+    /**
+     * Reads a response and returns its status line, header lines and body as the last element.
+     */
+
+    private List<String> readResponse(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        int contentLength = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            lines.add(line);
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        lines.add(new String(in.readNBytes(contentLength), StandardCharsets.UTF_8));
+        return lines;
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Connection closed before end of line");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static int findAvailablePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not find available port", e);
+        }
+    }
+}
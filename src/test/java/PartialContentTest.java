@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartialContentTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Test
+    @DisplayName("Should send a single range of a streamed file positionally")
+    public void testSingleRangeOfStreamedFile() throws IOException {
+        Path path = Files.createTempFile("partial", ".bin");
+        Files.write(path, CONTENT);
+        try {
+            StaticFile file = StaticFile.streamed(path, CONTENT.length, 0, "\"test\"", FileChannel.open(path));
+            try (HttpResponse response = PartialContent.respond(file, ByteRange.parse("bytes=5-9", CONTENT.length), "text/plain", false)) {
+                assertEquals(206, response.getStatus());
+                assertEquals(5, response.getBodyOffset());
+                String text = write(response);
+                assertTrue(text.contains("Content-Range: bytes 5-9/20\r\n"));
+                assertTrue(text.contains("Content-Length: 5\r\n"));
+                assertTrue(text.endsWith("\r\n\r\n56789"));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    @DisplayName("Should send several ranges as multipart/byteranges")
+    public void testMultipartRanges() throws IOException {
+        StaticFile file = StaticFile.inMemory(Path.of("memory.txt"), 0, "\"test\"", CONTENT);
+        try (HttpResponse response = PartialContent.respond(file, ByteRange.parse("bytes=0-1,-2", CONTENT.length), "text/plain", true)) {
+            String text = write(response);
+            String boundary = text.substring(text.indexOf("boundary=") + 9, text.indexOf("\r\n", text.indexOf("boundary=")));
+
+            assertTrue(text.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+            String body = text.substring(text.indexOf("\r\n\r\n") + 4);
+            assertEquals("\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/20\r\n\r\n01" +
+                    "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 18-19/20\r\n\r\nij" +
+                    "\r\n--" + boundary + "--\r\n", body);
+            assertEquals(body.length(), response.getContentLength());
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer 416 with the complete length when no range is satisfiable")
+    public void testNotSatisfiable() throws IOException {
+        StaticFile file = StaticFile.inMemory(Path.of("memory.txt"), 0, "\"test\"", CONTENT);
+        try (HttpResponse response = PartialContent.respond(file, List.of(), "text/plain", true)) {
+            assertEquals(416, response.getStatus());
+            assertTrue(write(response).contains("Content-Range: bytes */20\r\n"));
+        }
+    }
+
+    private static String write(HttpResponse response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.writeTo(output);
+        return output.toString(StandardCharsets.ISO_8859_1);
+    }
+}
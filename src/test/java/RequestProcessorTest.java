@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestProcessorTest {
+
+    private static Path tempDir;
+    private ServerSettings settings;
+
+    @BeforeAll
+    static void setUpBeforeAll() throws IOException {
+        tempDir = Files.createTempDirectory("request_processor");
+        Files.write(tempDir.resolve("data.bin"), "0123456789".getBytes());
+        Files.write(tempDir.resolve("404.html"), "<html><body><h1>404 Not Found</h1></body></html>".getBytes());
+    }
+
+    @AfterAll
+    static void tearDownAfterAll() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", tempDir.toString());
+        config.setConfig("server.document.root", tempDir.toString());
+        config.setConfig("server.page.404", "404.html");
+        settings = ServerSettings.fromConfig(config);
+    }
+
+    @Test
+    @DisplayName("Should close the file when reading the requested ranges fails")
+    public void testFileIsClosedWhenRangesFail() throws Exception {
+        Path path = tempDir.resolve("data.bin");
+        FileChannel channel = FileChannel.open(path);
+        // The file claims more bytes than it holds, so reading the second range fails
+        FileAccessController shrunk = new FileAccessController(settings) {
+            @Override
+            public StaticFile openFile(String route) {
+                return StaticFile.streamed(path, 1000, 0, "\"shrunk\"", channel);
+            }
+        };
+        RequestProcessor processor = new RequestProcessor(settings, shrunk, new LinkedBlockingQueue<>());
+
+        HttpRequest request = HttpRequest.parse("GET /data.bin HTTP/1.1\r\nRange: bytes=0-4,500-509\r\n\r\n");
+        try (HttpResponse response = processor.process(request, "127.0.0.1", false)) {
+            assertEquals(404, response.getStatus());
+        }
+        assertFalse(channel.isOpen(), "The file channel should be closed");
+    }
+
+    @Test
+    @DisplayName("Should close the file when opening its encoded variant fails")
+    public void testFileIsClosedWhenVariantFails() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", tempDir.toString());
+        config.setConfig("server.document.root", tempDir.toString());
+        config.setConfig("server.page.404", "404.html");
+        config.setConfig("server.compress.min.bytes", "0");
+        ServerSettings compressing = ServerSettings.fromConfig(config);
+        Path path = tempDir.resolve("data.bin");
+        FileChannel channel = FileChannel.open(path);
+        FileAccessController interrupted = new FileAccessController(compressing) {
+            @Override
+            public StaticFile openFile(String route) {
+                return StaticFile.streamed(path, 10, 0, "\"data\"", channel);
+            }
+
+            @Override
+            public StaticFile openEncoded(StaticFile file, String coding) throws InterruptedException {
+                throw new InterruptedException("Simulated interrupt");
+            }
+        };
+        RequestProcessor processor = new RequestProcessor(compressing, interrupted, new LinkedBlockingQueue<>());
+
+        HttpRequest request = HttpRequest.parse("GET /page.html HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n");
+        try (HttpResponse response = processor.process(request, "127.0.0.1", false)) {
+            assertEquals(404, response.getStatus());
+        }
+        assertFalse(channel.isOpen(), "The file channel should be closed");
+    }
+}
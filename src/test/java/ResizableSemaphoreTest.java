@@ -0,0 +1,26 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResizableSemaphoreTest {
+
+    @Test
+    @DisplayName("Should grow immediately and shrink without taking permits back from holders")
+    public void testResize() throws InterruptedException {
+        ResizableSemaphore semaphore = new ResizableSemaphore(2);
+        semaphore.acquire(2);
+
+        semaphore.resize(3);
+        assertEquals(1, semaphore.availablePermits());
+
+        semaphore.resize(1);
+        assertEquals(1, semaphore.getMaxPermits());
+        assertEquals(-1, semaphore.availablePermits(), "Permits in use should stay valid");
+        assertFalse(semaphore.tryAcquire());
+
+        semaphore.release(2);
+        assertEquals(1, semaphore.availablePermits(), "The new limit should apply once holders release");
+        assertThrows(IllegalArgumentException.class, () -> semaphore.resize(0));
+    }
+}
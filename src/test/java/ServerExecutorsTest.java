@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerExecutorsTest {
+
+    @Test
+    @DisplayName("Should create a fixed platform thread pool by default")
+    public void testPlatformIsDefault() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.maximum.requests", "3");
+
+        ExecutorService executor = ServerExecutors.create(config);
+        try {
+            ThreadPool pool = assertInstanceOf(ThreadPool.class, executor);
+            assertEquals(3, pool.getCorePoolSize());
+            assertEquals(3, pool.getMaximumPoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should run tasks in virtual mode, using virtual threads when the JVM supports them")
+    public void testVirtualMode() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.maximum.requests", "2");
+        config.setConfig("server.executor", "virtual");
+
+        ExecutorService executor = ServerExecutors.create(config);
+        try {
+            Future<Thread> worker = executor.submit(Thread::currentThread);
+            Thread thread = worker.get(1, TimeUnit.SECONDS);
+
+            if (Runtime.version().feature() >= 21) {
+                assertFalse(executor instanceof ThreadPool, "Java 21 should provide a virtual thread executor");
+                assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread), "Tasks should run on virtual threads");
+            } else {
+                assertInstanceOf(ThreadPool.class, executor, "Older JVMs should fall back to the platform pool");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown executor mode")
+    public void testUnknownMode() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.executor", "green");
+
+        assertThrows(IllegalArgumentException.class, () -> ServerExecutors.create(config));
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerMetricsTest {
+
+    @Test
+    @DisplayName("Should count responses by status and their body bytes")
+    public void testRecordResponses() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.recordResponse(200, 100);
+        metrics.recordResponse(200, 50);
+        metrics.recordResponse(304, 0);
+        metrics.recordResponse(200, -1);
+        metrics.recordResponse(999, 10);
+
+        assertEquals(3, metrics.getResponseCount(200));
+        assertEquals(1, metrics.getResponseCount(304));
+        assertEquals(0, metrics.getResponseCount(404));
+        assertEquals(0, metrics.getResponseCount(999), "Codes outside 100-599 should not be counted");
+        assertEquals(160, metrics.getBytesSent(), "An unknown length should add nothing");
+    }
+
+    @Test
+    @DisplayName("Should not lose increments recorded from many threads at once")
+    public void testConcurrentRecording() throws InterruptedException {
+        ServerMetrics metrics = new ServerMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.recordResponse(200, 3);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, metrics.getResponseCount(200));
+        assertEquals(240_000, metrics.getBytesSent());
+    }
+
+    @Test
+    @DisplayName("Should render counters and registered values in the Prometheus text format")
+    public void testScrape() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.recordResponse(404, 48);
+        ResizableSemaphore limiter = new ResizableSemaphore(20);
+        limiter.acquireUninterruptibly(3);
+        metrics.registerRequestLimiter(limiter);
+        LogQueue logQueue = new LogQueue(16, LogQueue.OverflowPolicy.DROP_AND_COUNT);
+        logQueue.offer(new LogEntry(1L, "GET", "/", "origin", 200));
+        metrics.registerLogQueue(logQueue);
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE http_responses_total counter\n"), text);
+        assertTrue(text.contains("http_responses_total{code=\"404\"} 1\n"), text);
+        assertFalse(text.contains("code=\"200\""), "Codes never recorded should be left out");
+        assertTrue(text.contains("http_response_body_bytes_total 48\n"), text);
+        assertTrue(text.contains("# TYPE server_request_limiter_available_permits gauge\nserver_request_limiter_available_permits 17\n"), text);
+        assertTrue(text.contains("server_log_queue_depth 1\n"), text);
+        assertTrue(text.contains("server_log_queue_capacity 16\n"), text);
+        assertTrue(text.contains("# TYPE server_log_queue_dropped_total counter\nserver_log_queue_dropped_total 0\n"), text);
+        assertTrue(text.endsWith("\n"));
+    }
+
+    @Test
+    @DisplayName("Should render the latency percentiles of every phase in seconds")
+    public void testLatencySummary() {
+        ServerMetrics metrics = new ServerMetrics();
+        for (int i = 0; i < 1000; i++) {
+            metrics.recordLatency(ServerMetrics.Phase.QUEUE_WAIT, 1_000);
+        }
+        metrics.recordLatency(ServerMetrics.Phase.QUEUE_WAIT, 1_000_000_000);
+
+        assertEquals(1001, metrics.getLatency(ServerMetrics.Phase.QUEUE_WAIT).getCount());
+        assertEquals(0, metrics.getLatency(ServerMetrics.Phase.TOTAL).getCount());
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE http_request_phase_seconds summary\n"), text);
+        assertTrue(text.contains("http_request_phase_seconds{phase=\"queue_wait\",quantile=\"0.5\"} 1.007E-6\n"), "1000ns should fall in the bucket ending at 1007ns: " + text);
+        assertTrue(text.contains("http_request_phase_seconds{phase=\"queue_wait\",quantile=\"0.999\"} 1.007E-6\n"), text);
+        assertTrue(text.contains("http_request_phase_seconds_sum{phase=\"queue_wait\"} 1.001\n"), text);
+        assertTrue(text.contains("http_request_phase_seconds_count{phase=\"queue_wait\"} 1001\n"), text);
+        assertTrue(text.contains("http_request_phase_seconds_count{phase=\"lock_wait\"} 0\n"), "Every phase should be listed: " + text);
+    }
+
+    @Test
+    @DisplayName("Should read the thread pool only when it is a ThreadPoolExecutor")
+    public void testExecutorGauges() {
+        ThreadPool pool = new ThreadPool(2, 2);
+        try {
+            ServerMetrics metrics = new ServerMetrics();
+            metrics.registerExecutor(pool);
+            String text = metrics.scrape();
+            assertTrue(text.contains("server_thread_pool_active_threads 0\n"), text);
+            assertTrue(text.contains("server_thread_pool_queue_size 0\n"), text);
+        } finally {
+            pool.shutdown();
+        }
+
+        ExecutorService virtual = ServerExecutors.newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            ServerMetrics metrics = new ServerMetrics();
+            metrics.registerExecutor(virtual);
+            assertFalse(metrics.scrape().contains("server_thread_pool"));
+            virtual.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should count the bytes of a body of unknown length as they are read")
+    public void testCountBytes() throws Exception {
+        ServerMetrics metrics = new ServerMetrics();
+        ReadableByteChannel source = Channels.newChannel(new java.io.ByteArrayInputStream(new byte[300]));
+        try (ReadableByteChannel counted = metrics.countBytes(source)) {
+            ByteBuffer buffer = ByteBuffer.allocate(128);
+            while (counted.read(buffer.clear()) >= 0) {
+                assertTrue(counted.isOpen());
+            }
+        }
+        assertFalse(source.isOpen(), "Closing the wrapper should close the source");
+        assertEquals(300, metrics.getBytesSent());
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerSettingsTest {
+
+    @Test
+    @DisplayName("Should resolve the root, default route and 404 page once")
+    public void testResolvedValues() throws IOException {
+        Path root = Files.createTempDirectory("settings_root");
+        Files.writeString(root.resolve("404.html"), "<h1>missing</h1>");
+        try {
+            ServerConfig config = new ServerConfig();
+            config.setConfig("server.root", root.resolve("sub/..").toString());
+            config.setConfig("server.default.page", "index");
+            config.setConfig("server.default.page.extension", "html");
+            config.setConfig("server.page.404", "404.html");
+            config.setConfig("server.keepalive.max.requests", " 7 ");
+
+            ServerSettings settings = ServerSettings.fromConfig(config);
+            config.setConfig("server.keepalive.max.requests", "8");
+
+            assertEquals(root.toAbsolutePath().normalize(), settings.getRoot());
+            assertEquals("/index.html", settings.getDefaultRoute());
+            assertArrayEquals("<h1>missing</h1>".getBytes(), settings.getNotFoundPage());
+            assertEquals(7, settings.getKeepAliveMaxRequests(), "Later changes to the config should not affect the snapshot");
+            assertEquals(ServerSettings.DEFAULT_STREAM_THRESHOLD_BYTES, settings.getStreamThresholdBytes());
+        } finally {
+            Files.deleteIfExists(root.resolve("404.html"));
+            Files.deleteIfExists(root);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fall back to a built-in 404 page when the configured one is missing")
+    public void testMissingNotFoundPage() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", "does-not-exist");
+        config.setConfig("server.page.404", "404.html");
+
+        String page = new String(ServerSettings.fromConfig(config).getNotFoundPage());
+        assertTrue(page.contains("404 Not Found"));
+    }
+
+    @Test
+    @DisplayName("Should reject a missing root and invalid numbers, naming the key")
+    public void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(new ServerConfig()));
+
+        ServerConfig notANumber = new ServerConfig();
+        notANumber.setConfig("server.root", ".");
+        notANumber.setConfig("server.cache.max.bytes", "lots");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(notANumber));
+        assertTrue(error.getMessage().contains("server.cache.max.bytes"));
+
+        ServerConfig outOfRange = new ServerConfig();
+        outOfRange.setConfig("server.root", ".");
+        outOfRange.setConfig("server.port", "70000");
+        assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(outOfRange));
+    }
+
+    @Test
+    @DisplayName("Should require a keep-alive timeout of at least one millisecond")
+    public void testKeepAliveTimeoutBound() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", ".");
+        config.setConfig("server.keepalive.timeout.ms", "0");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(config));
+        assertTrue(error.getMessage().contains("server.keepalive.timeout.ms"));
+
+        config.setConfig("server.keepalive.timeout.ms", "1");
+        assertEquals(1, ServerSettings.fromConfig(config).getKeepAliveTimeoutMillis());
+    }
+
+    @Test
+    @DisplayName("Should pick the Cache-Control rule of the route's extension")
+    public void testCacheControlRules() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", ".");
+        assertNull(ServerSettings.fromConfig(config).getCacheControl("/index.html"), "No rule should apply by default");
+
+        config.setConfig("server.cache.control", "html:no-cache; .CSS,js:public, max-age=86400;*:no-store");
+        ServerSettings settings = ServerSettings.fromConfig(config);
+        assertEquals("no-cache", settings.getCacheControl("/index.html"));
+        assertEquals("public, max-age=86400", settings.getCacheControl("/assets/site.css"));
+        assertEquals("public, max-age=86400", settings.getCacheControl("/app.JS"));
+        assertEquals("no-store", settings.getCacheControl("/v1.2/README"), "A dot in a directory is not an extension");
+
+        config.setConfig("server.cache.control", "html");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(config));
+        assertTrue(error.getMessage().contains("server.cache.control"));
+    }
+
+    @Test
+    @DisplayName("Should serve metrics on the configured route only, not when it is missing or blank")
+    public void testMetricsRoute() {
+        ServerConfig config = new ServerConfig();
+        config.setConfig("server.root", ".");
+        assertNull(ServerSettings.fromConfig(config).getMetricsRoute(), "Metrics should be opt-in");
+
+        config.setConfig("server.metrics.route", " /internal/metrics ");
+        assertEquals("/internal/metrics", ServerSettings.fromConfig(config).getMetricsRoute());
+
+        config.setConfig("server.metrics.route", "");
+        assertNull(ServerSettings.fromConfig(config).getMetricsRoute());
+
+        config.setConfig("server.metrics.route", "metrics");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ServerSettings.fromConfig(config));
+        assertTrue(error.getMessage().contains("server.metrics.route"));
+    }
+}
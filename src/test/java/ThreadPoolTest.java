@@ -69,4 +69,18 @@ class ThreadPoolTest {
         assertTrue(secondDone.await(1, TimeUnit.SECONDS), "Second task should execute after first");
         assertEquals(1, secondStarted.get(), "Second task should have executed");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Resizes core and maximum sizes in both directions")
+    void resize() {
+        pool = new ThreadPool(2, 2);
+
+        pool.resize(6);
+        assertEquals(6, pool.getCorePoolSize());
+        assertEquals(6, pool.getMaximumPoolSize());
+
+        pool.resize(1);
+        assertEquals(1, pool.getCorePoolSize());
+        assertEquals(1, pool.getMaximumPoolSize());
+    }
+}